@@ -0,0 +1,98 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.bibref;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.*;
+import pl.edu.icm.cermine.bibref.model.BibEntry;
+import pl.edu.icm.cermine.exception.AnalysisException;
+
+/**
+ * Measures the shared CRF reference parser used by many threads at once.
+ * Every thread parses the test references one by one, so the time per operation
+ * stays flat with the number of threads as long as decoding scales.
+ * 
+ * Build with: mvn -Pbenchmarks test-compile, run with: java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main CRFBibReferenceParserBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CRFBibReferenceParserBenchmark {
+    
+    @Param({"1", "2", "4"})
+    private int threads;
+    
+    private List<String> references;
+    
+    private CRFBibReferenceParser parser;
+    
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() throws AnalysisException, IOException {
+        InputStream is = CRFBibReferenceParserBenchmark.class.getResourceAsStream("/pl/edu/icm/cermine/bibref/refs.txt");
+        try {
+            references = IOUtils.readLines(is, "UTF-8");
+        } finally {
+            is.close();
+        }
+        parser = CRFBibReferenceParser.getInstance();
+        executor = Executors.newFixedThreadPool(threads);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public List<List<BibEntry>> parse() throws Exception {
+        List<Future<List<BibEntry>>> futures = new ArrayList<Future<List<BibEntry>>>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(new Callable<List<BibEntry>>() {
+                @Override
+                public List<BibEntry> call() throws AnalysisException {
+                    List<BibEntry> entries = new ArrayList<BibEntry>(references.size());
+                    for (String reference : references) {
+                        entries.add(parser.parseBibReference(reference));
+                    }
+                    return entries;
+                }
+            }));
+        }
+        List<List<BibEntry>> results = new ArrayList<List<BibEntry>>();
+        for (Future<List<BibEntry>> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+    
+}
@@ -0,0 +1,117 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.metadata.zoneclassification.features;
+
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.SVMInitialZoneClassifier;
+import pl.edu.icm.cermine.structure.SVMMetadataZoneClassifier;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.model.BxZone;
+import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentReader;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
+
+/**
+ * Feature extraction benchmark for the initial and metadata zone classifiers,
+ * with and without a shared page feature context. The test document's pages are
+ * repeated to simulate longer documents, as some features compare a zone with
+ * the zones of all the other pages.
+ * 
+ * Build with: mvn -Pbenchmarks test-compile, run with: java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main ZoneFeaturesBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ZoneFeaturesBenchmark {
+    
+    @Param({"/pl/edu/icm/cermine/structure/001.xml", "/pl/edu/icm/cermine/structure/006.xml"})
+    private String resource;
+    
+    @Param({"1", "10"})
+    private int copies;
+    
+    @Param({"false", "true"})
+    private boolean shared;
+    
+    private BxDocument document;
+    
+    private FeatureVectorBuilder<BxZone, BxPage> initialBuilder;
+    
+    private FeatureVectorBuilder<BxZone, BxPage> metadataBuilder;
+
+    @Setup
+    public void setUp() throws TransformationException {
+        List<BxPage> pages = new ArrayList<BxPage>();
+        for (int i = 0; i < copies; i++) {
+            List<BxPage> copy = new TrueVizToBxDocumentReader().read(
+                    new InputStreamReader(ZoneFeaturesBenchmark.class.getResourceAsStream(resource)));
+            if (!pages.isEmpty()) {
+                link(pages.get(pages.size() - 1), copy.get(0));
+            }
+            pages.addAll(copy);
+        }
+        document = new BxDocument().setPages(pages);
+        initialBuilder = SVMInitialZoneClassifier.getFeatureVectorBuilder();
+        metadataBuilder = SVMMetadataZoneClassifier.getFeatureVectorBuilder();
+    }
+
+    @Benchmark
+    public void extractFeatures(Blackhole blackhole) {
+        if (shared) {
+            PageFeatureContext.openScope(this);
+        }
+        try {
+            for (BxPage page : document.getPages()) {
+                for (BxZone zone : page.getZones()) {
+                    blackhole.consume(initialBuilder.getFeatureVector(zone, page));
+                    blackhole.consume(metadataBuilder.getFeatureVector(zone, page));
+                }
+            }
+        } finally {
+            if (shared) {
+                PageFeatureContext.closeScope(this);
+            }
+        }
+    }
+    
+    private static void link(BxPage last, BxPage first) {
+        last.setNext(first);
+        first.setPrev(last);
+        BxZone lastZone = last.getZones().get(last.getZones().size() - 1);
+        while (lastZone.getNext() != null) {
+            lastZone = lastZone.getNext();
+        }
+        BxZone firstZone = first.getZones().get(0);
+        while (firstZone.getPrev() != null) {
+            firstZone = firstZone.getPrev();
+        }
+        lastZone.setNext(firstZone);
+        firstZone.setPrev(lastZone);
+    }
+    
+}
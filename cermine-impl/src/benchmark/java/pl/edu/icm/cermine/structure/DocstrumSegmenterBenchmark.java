@@ -0,0 +1,92 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.structure.model.*;
+
+/**
+ * Docstrum segmentation benchmark measuring page time against the number
+ * of chunks on synthetic dense pages.
+ * 
+ * Build with: mvn -Pbenchmarks test-compile, run with: java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main DocstrumSegmenterBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DocstrumSegmenterBenchmark {
+    
+    private static final double PAGE_WIDTH = 600;
+    private static final double PAGE_HEIGHT = 800;
+    
+    @Param({"500", "2000", "5000", "10000", "20000"})
+    private int chunks;
+    
+    private BxDocument document;
+    
+    private DocstrumSegmenter segmenter;
+
+    @Setup
+    public void setUp() {
+        document = createDocument(chunks, new Random(chunks));
+        segmenter = new DocstrumSegmenter();
+    }
+
+    @Benchmark
+    public BxDocument segment() throws AnalysisException {
+        return segmenter.segmentDocument(document);
+    }
+    
+    /**
+     * Creates a page with two columns of text lines and scattered small
+     * symbols, like a page of formulas or a dense table. Font size decreases
+     * with the number of chunks so that the page is filled.
+     */
+    private static BxDocument createDocument(int chunkCount, Random random) {
+        double fontSize = Math.min(10, Math.sqrt(PAGE_WIDTH * PAGE_HEIGHT / chunkCount) / 1.3);
+        double columnWidth = PAGE_WIDTH / 2;
+        
+        BxPage page = new BxPage();
+        int count = 0;
+        for (int column = 0; count < chunkCount; column = (column + 1) % 2) {
+            double y = random.nextDouble() * fontSize;
+            while (count < chunkCount && y < PAGE_HEIGHT) {
+                double x = column * columnWidth + fontSize;
+                while (count < chunkCount && x < (column + 1) * columnWidth - fontSize) {
+                    double height = random.nextInt(10) == 0 ? fontSize * 0.6 : fontSize;
+                    double shift = random.nextInt(10) == 0 ? random.nextGaussian() * fontSize * 0.3 : 0;
+                    BxBounds bounds = new BxBounds(x, y + shift, fontSize * 0.5, height);
+                    page.addChunk(new BxChunk(bounds, String.valueOf((char) ('a' + random.nextInt(26)))));
+                    count++;
+                    x += fontSize * (random.nextInt(6) == 0 ? 1.2 : 0.6);
+                }
+                y += fontSize * 1.3;
+            }
+        }
+        page.setBounds(new BxBounds(0, 0, PAGE_WIDTH, PAGE_HEIGHT));
+        return new BxDocument().addPage(page);
+    }
+    
+}
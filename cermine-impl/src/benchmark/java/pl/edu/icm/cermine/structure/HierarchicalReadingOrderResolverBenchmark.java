@@ -0,0 +1,88 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import pl.edu.icm.cermine.structure.model.*;
+
+/**
+ * Reading order resolution benchmark on synthetic pages. The page sizes do not
+ * exceed HierarchicalReadingOrderResolver.MAX_ZONES, larger pages are ordered
+ * by a plain YX sort instead of clustering.
+ * 
+ * Build with: mvn -Pbenchmarks test-compile, run with: java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main HierarchicalReadingOrderResolverBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HierarchicalReadingOrderResolverBenchmark {
+    
+    private static final double PAGE_WIDTH = 600;
+    private static final double PAGE_HEIGHT = 800;
+    
+    @Param({"50", "200", "500", "1000"})
+    private int zones;
+    
+    private BxDocument document;
+    
+    private HierarchicalReadingOrderResolver resolver;
+
+    @Setup
+    public void setUp() {
+        document = createDocument(zones, new Random(zones));
+        resolver = new HierarchicalReadingOrderResolver();
+    }
+
+    @Benchmark
+    public BxDocument resolve() {
+        return resolver.resolve(document);
+    }
+    
+    /**
+     * Creates a page with zones laid out in columns, like a table or a dense reference list.
+     */
+    private static BxDocument createDocument(int zoneCount, Random random) {
+        int columns = 1 + (int) Math.sqrt(zoneCount) / 4;
+        int rows = (zoneCount + columns - 1) / columns;
+        double columnWidth = PAGE_WIDTH / columns;
+        double rowHeight = PAGE_HEIGHT / rows;
+        
+        BxPage page = new BxPage();
+        for (int i = 0; i < zoneCount; i++) {
+            double x = (i % columns) * columnWidth + random.nextDouble() * columnWidth * 0.1;
+            double y = (i / columns) * rowHeight + random.nextDouble() * rowHeight * 0.1;
+            double width = columnWidth * (0.5 + random.nextDouble() * 0.35);
+            double height = rowHeight * (0.5 + random.nextDouble() * 0.35);
+            BxBounds bounds = new BxBounds(x, y, width, height);
+            
+            BxChunk chunk = new BxChunk(bounds, "z");
+            BxWord word = new BxWord().setBounds(bounds).addChunk(chunk);
+            BxLine line = new BxLine().setBounds(bounds).addWord(word);
+            page.addZone(new BxZone().setBounds(bounds).addLine(line));
+        }
+        page.setBounds(new BxBounds(0, 0, PAGE_WIDTH, PAGE_HEIGHT));
+        return new BxDocument().addPage(page);
+    }
+    
+}
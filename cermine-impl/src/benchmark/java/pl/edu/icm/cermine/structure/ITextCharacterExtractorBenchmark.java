@@ -0,0 +1,74 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+
+/**
+ * Compares the character extraction from a memory-mapped file, read partially,
+ * with the extraction from a stream, read into memory as a whole. The memory used
+ * by both paths is reported by the GC profiler.
+ * 
+ * Build with: mvn -Pbenchmarks test-compile, run with: java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main ITextCharacterExtractorBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ITextCharacterExtractorBenchmark {
+    
+    @Param({"/pl/edu/icm/cermine/test1.pdf", "/pl/edu/icm/cermine/test2.pdf"})
+    private String resource;
+    
+    private File file;
+    
+    private ITextCharacterExtractor extractor;
+
+    @Setup
+    public void setUp() throws URISyntaxException {
+        file = new File(ITextCharacterExtractorBenchmark.class.getResource(resource).toURI());
+        extractor = new ITextCharacterExtractor();
+    }
+
+    @Benchmark
+    public BxDocument extractFromFile() throws AnalysisException {
+        return extractor.extractCharacters(file);
+    }
+
+    @Benchmark
+    public BxDocument extractFromStream() throws AnalysisException, IOException {
+        InputStream stream = new FileInputStream(file);
+        try {
+            return extractor.extractCharacters(stream);
+        } finally {
+            stream.close();
+        }
+    }
+    
+}
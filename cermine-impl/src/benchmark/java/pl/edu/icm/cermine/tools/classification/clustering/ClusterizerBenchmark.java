@@ -0,0 +1,73 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.clustering;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures single and complete linkage clustering of random points.
+ * <p>
+ * Build with: mvn -Pbenchmarks test-compile, run with: java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main ClusterizerBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClusterizerBenchmark {
+
+    @Param({"10", "100", "1000", "5000"})
+    public int points;
+    
+    private double[][] distances;
+    
+    private double maxDistance;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        double[][] coordinates = new double[points][2];
+        for (double[] point : coordinates) {
+            point[0] = random.nextDouble();
+            point[1] = random.nextDouble();
+        }
+        distances = new double[points][points];
+        for (int i = 0; i < points; i++) {
+            for (int j = 0; j < points; j++) {
+                distances[i][j] = Math.hypot(coordinates[i][0] - coordinates[j][0], 
+                        coordinates[i][1] - coordinates[j][1]);
+            }
+        }
+        maxDistance = 1.0 / Math.sqrt(points);
+    }
+    
+    @Benchmark
+    public int[] singleLinkage() {
+        return new SingleLinkageClusterizer().clusterize(distances, maxDistance);
+    }
+    
+    @Benchmark
+    public int[] completeLinkage() {
+        return new CompleteLinkageClusterizer().clusterize(distances, maxDistance);
+    }
+    
+}
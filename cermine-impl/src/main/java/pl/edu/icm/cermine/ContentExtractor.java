@@ -19,6 +19,7 @@
 package pl.edu.icm.cermine;
 
 import com.google.common.collect.Lists;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -28,6 +29,7 @@ import pl.edu.icm.cermine.bibref.model.BibEntry;
 import pl.edu.icm.cermine.bibref.transformers.BibEntryToNLMElementConverter;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.StructureCache;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 
 /**
@@ -49,6 +51,7 @@ public class ContentExtractor {
            
     
     private InputStream pdfFile;
+    private File pdfPath;
     private BxDocument bxDocument;
     private Element nlmMetadata;
     private List<BibEntry> bibEntryReferences;
@@ -72,12 +75,28 @@ public class ContentExtractor {
         this.pdfFile = pdfFile;
     }
     
+    /**
+     * Sets the PDF file to be processed. Only the parts of the file
+     * needed for the processed pages are read.
+     * 
+     * @param pdfPath PDF file
+     * @throws IOException 
+     */
+    public void uploadPDF(File pdfPath) throws IOException {
+        this.reset();
+        this.pdfPath = pdfPath;
+    }
+    
     public BxDocument getBxDocument() throws AnalysisException {
-        if (pdfFile == null) {
+        if (pdfFile == null && pdfPath == null) {
             throw new AnalysisException("No PDF document uploaded!");
         }
         if (bxDocument == null) {
-            bxDocument = structureExtractor.extractStructure(pdfFile);
+            if (pdfPath != null) {
+                bxDocument = structureExtractor.extractStructure(pdfPath);
+            } else {
+                bxDocument = structureExtractor.extractStructure(pdfFile);
+            }
         }
         return bxDocument;
     }
@@ -168,6 +187,7 @@ public class ContentExtractor {
             pdfFile.close();
         }
         pdfFile = null;
+        pdfPath = null;
     }
 
     public void setMetadataExtractor(PdfNLMMetadataExtractor metadataExtractor) {
@@ -186,6 +206,16 @@ public class ContentExtractor {
         this.structureExtractor = structureExtractor;
     }
 
+    /**
+     * Sets the cache of segmented documents used by the structure extractor,
+     * so that the documents processed before are only classified.
+     * 
+     * @param structureCache structure cache, or null to disable caching
+     */
+    public void setStructureCache(StructureCache structureCache) {
+        structureExtractor.setStructureCache(structureCache);
+    }
+
     public void setTextExtractor(PdfNLMTextExtractor textExtractor) {
         this.textExtractor = textExtractor;
     }
@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine;
 
+import java.io.File;
 import java.io.InputStream;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.BxDocument;
@@ -39,6 +40,16 @@ public interface DocumentReferencesExtractor<T> {
      */
 	T[] extractReferences(InputStream stream) throws AnalysisException;
     
+    /**
+     * Extracts references from the document file. Only the parts of the file
+     * needed for the processed pages are read.
+     * 
+     * @param file
+     * @return an array of extracted references.
+     * @throws AnalysisException 
+     */
+    T[] extractReferences(File file) throws AnalysisException;
+    
     /**
      * Extracts references from a document.
      * 
@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine;
 
+import java.io.File;
 import java.io.InputStream;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.BxDocument;
@@ -37,4 +38,13 @@ public interface DocumentStructureExtractor {
      * @throws AnalysisException 
      */
 	BxDocument extractStructure(InputStream stream) throws AnalysisException;
+    
+    /**
+     * Extracts geometric structure from the document file.
+     * 
+     * @param file
+     * @return geometric structure of the document
+     * @throws AnalysisException 
+     */
+    BxDocument extractStructure(File file) throws AnalysisException;
 }
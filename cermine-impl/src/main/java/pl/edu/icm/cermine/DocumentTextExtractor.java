@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine;
 
+import java.io.File;
 import java.io.InputStream;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.BxDocument;
@@ -39,6 +40,16 @@ public interface DocumentTextExtractor<T> {
      */
 	T extractText(InputStream stream) throws AnalysisException;
     
+    /**
+     * Extracts text content from the document file. Only the parts of the file
+     * needed for the processed pages are read.
+     * 
+     * @param file
+     * @return text content
+     * @throws AnalysisException 
+     */
+    T extractText(File file) throws AnalysisException;
+    
     /**
      * Extracts text content from the document.
      * 
@@ -18,7 +18,11 @@
 
 package pl.edu.icm.cermine;
 
+import java.io.File;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 import pl.edu.icm.cermine.bibref.BibReferenceExtractor;
 import pl.edu.icm.cermine.bibref.BibReferenceParser;
 import pl.edu.icm.cermine.bibref.CRFBibReferenceParser;
@@ -48,14 +52,43 @@ public class PdfBibEntryReferencesExtractor implements DocumentReferencesExtract
     public PdfBibEntryReferencesExtractor() throws AnalysisException {
         strExtractor = new PdfBxStructureExtractor();
         extractor = new KMeansBibReferenceExtractor();
-        InputStream modelFile = PdfBibEntryReferencesExtractor.class.getResourceAsStream("/pl/edu/icm/cermine/bibref/acrf.ser.gz");
-        parser = new CRFBibReferenceParser(modelFile);
+        parser = CRFBibReferenceParser.getInstance();
     }
     
     public PdfBibEntryReferencesExtractor(InputStream model) throws AnalysisException {
         strExtractor = new PdfBxStructureExtractor();
         extractor = new KMeansBibReferenceExtractor();
-        parser = new CRFBibReferenceParser(model);
+        parser = CRFBibReferenceParser.getInstance(model);
+    }
+    
+    /**
+     * Creates the extractor decoding the references of a document on the given executor
+     * besides the calling thread. The executor is not shut down by the extractor.
+     * 
+     * @param executor executor for reference decoding tasks
+     * @param parallelism maximum number of threads decoding the references of a single document
+     * @throws AnalysisException 
+     */
+    public PdfBibEntryReferencesExtractor(ExecutorService executor, int parallelism) throws AnalysisException {
+        strExtractor = new PdfBxStructureExtractor();
+        extractor = new KMeansBibReferenceExtractor();
+        parser = CRFBibReferenceParser.getInstance().withExecutor(executor, parallelism);
+    }
+    
+    /**
+     * Creates the extractor decoding the references of a document on the given executor
+     * besides the calling thread. The executor is not shut down by the extractor.
+     * 
+     * @param model gzipped CRF model stream
+     * @param executor executor for reference decoding tasks
+     * @param parallelism maximum number of threads decoding the references of a single document
+     * @throws AnalysisException 
+     */
+    public PdfBibEntryReferencesExtractor(InputStream model, ExecutorService executor, int parallelism) 
+            throws AnalysisException {
+        strExtractor = new PdfBxStructureExtractor();
+        extractor = new KMeansBibReferenceExtractor();
+        parser = CRFBibReferenceParser.getInstance(model).withExecutor(executor, parallelism);
     }
 
     public PdfBibEntryReferencesExtractor(DocumentStructureExtractor strExtractor, BibReferenceExtractor extractor, BibReferenceParser<BibEntry> parser) {
@@ -77,6 +110,20 @@ public class PdfBibEntryReferencesExtractor implements DocumentReferencesExtract
         return extractReferences(doc);
     }
 
+    /**
+     * Extracts parsed bibliographic references from a PDF file and returns them as BibEntry objects.
+     * Only the parts of the file needed for the processed pages are read.
+     * 
+     * @param file
+     * @return parsed bibliographic references
+     * @throws AnalysisException 
+     */
+    @Override
+    public BibEntry[] extractReferences(File file) throws AnalysisException {
+        BxDocument doc = strExtractor.extractStructure(file);
+        return extractReferences(doc);
+    }
+
     /**
      * Extracts parsed bibliographic references from a PDF file and returns them as BibEntry objects.
      * 
@@ -87,12 +134,8 @@ public class PdfBibEntryReferencesExtractor implements DocumentReferencesExtract
     @Override
     public BibEntry[] extractReferences(BxDocument document) throws AnalysisException {
         String[] refs = extractor.extractBibReferences(document);
-        
-        BibEntry[] parsedRefs = new BibEntry[refs.length];
-        for (int i = 0; i < refs.length; i++) {
-            parsedRefs[i] = parser.parseBibReference(refs[i]);
-        }
-        return parsedRefs;
+        List<BibEntry> parsedRefs = parser.parseBibReferences(Arrays.asList(refs));
+        return parsedRefs.toArray(new BibEntry[refs.length]);
     }
 
     public void setExtractor(BibReferenceExtractor extractor) {
@@ -18,10 +18,14 @@
 
 package pl.edu.icm.cermine;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.*;
 import pl.edu.icm.cermine.structure.model.BxDocument;
@@ -34,6 +38,8 @@ import pl.edu.icm.cermine.structure.model.BxDocument;
  * @author Dominika Tkaczyk
  */
 public class PdfBxStructureExtractor implements DocumentStructureExtractor {
+    
+    private static final Logger log = LoggerFactory.getLogger(PdfBxStructureExtractor.class);
 
     /** individual character extractor */
     private CharacterExtractor characterExtractor;
@@ -46,6 +52,12 @@ public class PdfBxStructureExtractor implements DocumentStructureExtractor {
     
     /** initial zone classifier */
     private ZoneClassifier initialClassifier;
+    
+    /** cache of segmented documents, optional */
+    private StructureCache structureCache;
+    
+    /** version of the extraction configuration, part of the cache keys */
+    private String configurationVersion;
 
 
     public PdfBxStructureExtractor() throws AnalysisException {
@@ -64,12 +76,7 @@ public class PdfBxStructureExtractor implements DocumentStructureExtractor {
             characterExtractor = new ITextCharacterExtractor();
             documentSegmenter = new ParallelDocstrumSegmenter();
             roResolver = new HierarchicalReadingOrderResolver();
-            
-            InputStreamReader modelISRI = new InputStreamReader(model);
-            BufferedReader modelFileI = new BufferedReader(modelISRI);
-            InputStreamReader rangeISRI = new InputStreamReader(range);
-            BufferedReader rangeFileI = new BufferedReader(rangeISRI);
-            initialClassifier = new SVMInitialZoneClassifier(modelFileI, rangeFileI);
+            initialClassifier = SVMInitialZoneClassifier.getInstance(model, range);
         } catch (IOException ex) {
             throw new AnalysisException("Cannot create PdfBxStructureExtractor!", ex);
         }
@@ -85,6 +92,8 @@ public class PdfBxStructureExtractor implements DocumentStructureExtractor {
     
     /**
      * Extracts the geometric structure from a PDF file and stores it as BxDocument.
+     * If the structure cache is used, the stream is copied to a temporary file
+     * while its cache key is calculated, and the file is processed instead.
      * 
      * @param stream
      * @return BxDocument object storing the geometric structure
@@ -92,11 +101,92 @@ public class PdfBxStructureExtractor implements DocumentStructureExtractor {
      */
     @Override
     public BxDocument extractStructure(InputStream stream) throws AnalysisException {
-        BxDocument doc = characterExtractor.extractCharacters(stream);
-        doc = documentSegmenter.segmentDocument(doc);
-        doc = roResolver.resolve(doc);
+        if (structureCache == null) {
+            return initialClassifier.classifyZones(segment(characterExtractor.extractCharacters(stream)));
+        }
+        File file = null;
+        try {
+            file = File.createTempFile("cermine-", ".pdf");
+            String key;
+            OutputStream copy = new BufferedOutputStream(new FileOutputStream(file));
+            try {
+                key = StructureCacheKeys.forStream(stream, copy, getConfigurationVersion());
+            } finally {
+                copy.close();
+            }
+            return extractStructure(file, key);
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot read PDF document!", ex);
+        } finally {
+            if (file != null && !file.delete()) {
+                log.warn("Cannot delete temporary file {}", file);
+            }
+        }
+    }
+    
+    /**
+     * Extracts the geometric structure from a PDF file and stores it as BxDocument.
+     * Only the parts of the file needed by the character extractor are read,
+     * unless the structure cache is used.
+     * 
+     * @param file
+     * @return BxDocument object storing the geometric structure
+     * @throws AnalysisException 
+     */
+    @Override
+    public BxDocument extractStructure(File file) throws AnalysisException {
+        if (structureCache == null) {
+            return initialClassifier.classifyZones(segment(characterExtractor.extractCharacters(file)));
+        }
+        try {
+            return extractStructure(file, StructureCacheKeys.forFile(file, getConfigurationVersion()));
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot read PDF document!", ex);
+        }
+    }
+    
+    private BxDocument extractStructure(File file, String key) throws AnalysisException {
+        BxDocument doc = structureCache.get(key);
+        if (doc == null) {
+            log.debug("Structure cache miss: {}", key);
+            doc = segment(characterExtractor.extractCharacters(file));
+            structureCache.put(key, doc);
+        } else {
+            log.debug("Structure cache hit: {}", key);
+        }
         return initialClassifier.classifyZones(doc);
     }
+    
+    private BxDocument segment(BxDocument doc) throws AnalysisException {
+        doc = documentSegmenter.segmentDocument(doc);
+        return roResolver.resolve(doc);
+    }
+    
+    /**
+     * Returns the version of the extraction configuration, part of the structure cache keys.
+     * Unless set explicitly, the default version is used 
+     * (see {@link StructureCacheKeys#defaultConfigurationVersion}).
+     * 
+     * @return configuration version
+     */
+    public String getConfigurationVersion() {
+        if (configurationVersion != null) {
+            return configurationVersion;
+        }
+        return StructureCacheKeys.defaultConfigurationVersion(characterExtractor, documentSegmenter, roResolver);
+    }
+
+    public void setConfigurationVersion(String configurationVersion) {
+        this.configurationVersion = configurationVersion;
+    }
+
+    public StructureCache getStructureCache() {
+        return structureCache;
+    }
+
+    public void setStructureCache(StructureCache structureCache) {
+        this.structureCache = structureCache;
+    }
 
     public void setGlyphExtractor(CharacterExtractor glyphExtractor) {
         this.characterExtractor = glyphExtractor;
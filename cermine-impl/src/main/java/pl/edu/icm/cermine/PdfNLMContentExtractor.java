@@ -19,7 +19,6 @@
 package pl.edu.icm.cermine;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
@@ -30,6 +29,7 @@ import org.jdom.JDOMException;
 import org.jdom.output.Format;
 import org.jdom.output.XMLOutputter;
 import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.structure.DirectoryStructureCache;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 
 /**
@@ -86,6 +86,20 @@ public class PdfNLMContentExtractor implements DocumentContentExtractor<Element>
         BxDocument document = structureExtractor.extractStructure(stream);
         return extractContent(document);
     }
+    
+    /**
+     * Extracts content from PDF file and stores it in NLM format.
+     * Only the parts of the file needed for the processed pages are read.
+     * 
+     * @param file
+     * @return extracted content in NLM format
+     * @throws AnalysisException 
+     */
+    @Override
+    public Element extractContent(File file) throws AnalysisException {
+        BxDocument document = structureExtractor.extractStructure(file);
+        return extractContent(document);
+    }
 
     /**
      * Extracts content from a BxDocument and stores it in NLM format.
@@ -211,7 +225,7 @@ public class PdfNLMContentExtractor implements DocumentContentExtractor<Element>
     
     public static void main(String[] args) throws AnalysisException, XPathExpressionException, JDOMException, IOException {
     	if (args.length < 1){
-    		System.err.println("USAGE: program DIR_PATH <EXTENSION>");
+    		System.err.println("USAGE: program DIR_PATH <EXTENSION> <STRUCTURE_CACHE_DIR>");
     		System.exit(1);
         }
         
@@ -222,6 +236,12 @@ public class PdfNLMContentExtractor implements DocumentContentExtractor<Element>
         File dir = new File(args[0]);
         Collection<File> files = FileUtils.listFiles(dir, new String[]{"pdf"}, true);
     
+        PdfNLMContentExtractor extractor = new PdfNLMContentExtractor();
+        if (args.length > 2) {
+            PdfBxStructureExtractor structureExtractor = new PdfBxStructureExtractor();
+            structureExtractor.setStructureCache(new DirectoryStructureCache(new File(args[2])));
+            extractor.setStructureExtractor(structureExtractor);
+        }
         int i = 0;
         for (File file : files) {
             File xmlF = new File(file.getPath().replaceAll("pdf$", extension));
@@ -234,9 +254,7 @@ public class PdfNLMContentExtractor implements DocumentContentExtractor<Element>
             
             System.out.println(file.getName());
  
-            PdfNLMContentExtractor extractor = new PdfNLMContentExtractor();
-            InputStream in = new FileInputStream(file);
-            Element result = extractor.extractContent(in);
+            Element result = extractor.extractContent(file);
 
             long end = System.currentTimeMillis();
             float elapsed = (end - start) / 1000F;
@@ -18,10 +18,9 @@
 
 package pl.edu.icm.cermine;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import org.jdom.Element;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.metadata.EnhancerMetadataExtractor;
@@ -60,13 +59,7 @@ public class PdfNLMMetadataExtractor implements DocumentMetadataExtractor<Elemen
     public PdfNLMMetadataExtractor(InputStream metadataModel, InputStream metadataRange) throws AnalysisException {
         try {
             strExtractor = new PdfBxStructureExtractor();
-
-            BufferedReader metaModelFileReader = new BufferedReader(new InputStreamReader(metadataModel));
-            BufferedReader metaRangeFileReader = new BufferedReader(new InputStreamReader(metadataRange));
-            metadataClassifier = new SVMMetadataZoneClassifier(metaModelFileReader, metaRangeFileReader);
-            metaModelFileReader.close();
-            metaRangeFileReader.close();
-
+            metadataClassifier = SVMMetadataZoneClassifier.getInstance(metadataModel, metadataRange);
             extractor = new EnhancerMetadataExtractor();
         } catch (IOException ex) {
             throw new AnalysisException(ex);
@@ -93,6 +86,20 @@ public class PdfNLMMetadataExtractor implements DocumentMetadataExtractor<Elemen
         return extractMetadata(doc);
     }
     
+    /**
+     * Extracts metadata from PDF file and stores it in NLM format.
+     * Only the parts of the file needed for the processed pages are read.
+     * 
+     * @param file
+     * @return extracted metadata in NLM format
+     * @throws AnalysisException 
+     */
+    @Override
+    public Element extractMetadata(File file) throws AnalysisException {
+        BxDocument doc = strExtractor.extractStructure(file);
+        return extractMetadata(doc);
+    }
+    
     /**
      * Extracts metadata from PDF file and stores it in NLM format.
      * 
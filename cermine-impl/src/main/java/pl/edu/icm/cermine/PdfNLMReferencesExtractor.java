@@ -18,9 +18,11 @@
 
 package pl.edu.icm.cermine;
 
+import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import org.jdom.Element;
 import pl.edu.icm.cermine.bibref.BibReferenceExtractor;
 import pl.edu.icm.cermine.bibref.BibReferenceParser;
@@ -49,6 +51,18 @@ public class PdfNLMReferencesExtractor implements DocumentReferencesExtractor<El
         extractor = new PdfBibEntryReferencesExtractor(model);
     }
     
+    /**
+     * Creates the extractor decoding the references of a document in parallel.
+     * The executor is not shut down by the extractor.
+     * 
+     * @param executor executor for reference decoding tasks
+     * @param parallelism maximum number of threads decoding the references of a single document
+     * @throws AnalysisException 
+     */
+    public PdfNLMReferencesExtractor(ExecutorService executor, int parallelism) throws AnalysisException {
+        extractor = new PdfBibEntryReferencesExtractor(executor, parallelism);
+    }
+    
     public PdfNLMReferencesExtractor(DocumentStructureExtractor strExtractor, BibReferenceExtractor extractor, BibReferenceParser<BibEntry> parser) {
         this.extractor = new PdfBibEntryReferencesExtractor(strExtractor, extractor, parser);
     }
@@ -65,6 +79,19 @@ public class PdfNLMReferencesExtractor implements DocumentReferencesExtractor<El
         return extractReferences(extractor.extractReferences(stream));
     }
 
+    /**
+     * Extracts parsed bibliographic references from a PDF file and stores them in NLM format.
+     * Only the parts of the file needed for the processed pages are read.
+     * 
+     * @param file
+     * @return parsed bibliographic references
+     * @throws AnalysisException 
+     */
+    @Override
+    public Element[] extractReferences(File file) throws AnalysisException {
+        return extractReferences(extractor.extractReferences(file));
+    }
+
     /**
      * Extracts parsed bibliographic references from a PDF file and stores them in NLM format.
      * 
@@ -18,12 +18,14 @@
 
 package pl.edu.icm.cermine;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import org.jdom.Element;
 import pl.edu.icm.cermine.content.LogicalStructureExtractor;
 import pl.edu.icm.cermine.content.SVMLogicalStructureExtractor;
+import pl.edu.icm.cermine.content.filtering.SVMContentFilter;
+import pl.edu.icm.cermine.content.headers.SVMContentHeadersExtractor;
+import pl.edu.icm.cermine.content.headers.SVMHeaderLinesClassifier;
 import pl.edu.icm.cermine.content.model.DocumentContentStructure;
 import pl.edu.icm.cermine.content.transformers.DocContentStructToNLMElementConverter;
 import pl.edu.icm.cermine.exception.AnalysisException;
@@ -49,33 +51,16 @@ public class PdfNLMTextExtractor implements DocumentTextExtractor<Element> {
 
     public PdfNLMTextExtractor() throws AnalysisException {
         strExtractor = new PdfBxStructureExtractor();
-       
-        String filteringModel = "/pl/edu/icm/cermine/content/filtering.model";
-        String filteringRange = "/pl/edu/icm/cermine/content/filtering.range";
-        String headerModel = "/pl/edu/icm/cermine/content/header.model";
-        String headerRange = "/pl/edu/icm/cermine/content/header.range";
-        
-        BufferedReader br1 = new BufferedReader(new InputStreamReader(this.getClass().getResourceAsStream(filteringModel)));
-        BufferedReader br2 = new BufferedReader(new InputStreamReader(this.getClass().getResourceAsStream(filteringRange)));
-        BufferedReader br3 = new BufferedReader(new InputStreamReader(this.getClass().getResourceAsStream(headerModel)));
-        BufferedReader br4 = new BufferedReader(new InputStreamReader(this.getClass().getResourceAsStream(headerRange)));
-
-        logicalExtractor = new SVMLogicalStructureExtractor(br1, br2, br3, br4);
-        
+        logicalExtractor = new SVMLogicalStructureExtractor();
         converter = new DocContentStructToNLMElementConverter();
     }
 
     public PdfNLMTextExtractor(InputStream filteringModel, InputStream filteringRange, 
             InputStream headerModel, InputStream headerRange) throws AnalysisException {
         strExtractor = new PdfBxStructureExtractor();
-        
-        BufferedReader br1 = new BufferedReader(new InputStreamReader(filteringModel));
-        BufferedReader br2 = new BufferedReader(new InputStreamReader(filteringRange));
-        BufferedReader br3 = new BufferedReader(new InputStreamReader(headerModel));
-        BufferedReader br4 = new BufferedReader(new InputStreamReader(headerRange));
-
-        logicalExtractor = new SVMLogicalStructureExtractor(br1, br2, br3, br4);
-        
+        logicalExtractor = new SVMLogicalStructureExtractor(
+                SVMContentFilter.getInstance(filteringModel, filteringRange),
+                new SVMContentHeadersExtractor(SVMHeaderLinesClassifier.getInstance(headerModel, headerRange)));
         converter = new DocContentStructToNLMElementConverter();
     }
     
@@ -90,6 +75,11 @@ public class PdfNLMTextExtractor implements DocumentTextExtractor<Element> {
         return extractText(strExtractor.extractStructure(stream));
     }
 
+    @Override
+    public Element extractText(File file) throws AnalysisException {
+        return extractText(strExtractor.extractStructure(file));
+    }
+
     @Override
     public Element extractText(BxDocument document) throws AnalysisException {
         try {
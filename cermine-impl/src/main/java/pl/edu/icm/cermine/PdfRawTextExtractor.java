@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine;
 
+import java.io.File;
 import java.io.InputStream;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.*;
@@ -67,6 +68,22 @@ public class PdfRawTextExtractor implements DocumentTextExtractor<String> {
         return extractText(doc);
     }
     
+    /**
+     * Extracts content of a pdf to a plain text.
+     * Only the parts of the file needed for the processed pages are read.
+     * 
+     * @param file
+     * @return pdf's content as plain text
+     * @throws AnalysisException 
+     */
+    @Override
+    public String extractText(File file) throws AnalysisException {
+        BxDocument doc = characterExtractor.extractCharacters(file);
+        doc = documentSegmenter.segmentDocument(doc);
+        doc = roResolver.resolve(doc);
+        return extractText(doc);
+    }
+    
     /**
      * Extracts content of a pdf to a plain text.
      * 
@@ -0,0 +1,189 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.batch;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A single PDF document processed by the batch extractor, together with
+ * the location of its output file.
+ */
+public abstract class BatchDocument {
+    
+    private final String name;
+    
+    private final File outputFile;
+
+    protected BatchDocument(String name, File outputFile) {
+        this.name = name;
+        this.outputFile = outputFile;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public File getOutputFile() {
+        return outputFile;
+    }
+    
+    /**
+     * Opens a new stream with the PDF content. The caller is responsible
+     * for closing the stream.
+     * 
+     * @return PDF stream
+     * @throws IOException 
+     */
+    public abstract InputStream openStream() throws IOException;
+    
+    /**
+     * Returns the PDF file, if the document is stored in a plain file,
+     * so that it can be read partially instead of as a stream.
+     * 
+     * @return PDF file or null
+     */
+    public File getFile() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+    
+    /**
+     * Creates a document read from a file.
+     * 
+     * @param file PDF file
+     * @param outputFile output file
+     * @return document
+     */
+    public static BatchDocument fromFile(final File file, File outputFile) {
+        return new BatchDocument(file.getPath(), outputFile) {
+
+            @Override
+            public InputStream openStream() throws IOException {
+                return new BufferedInputStream(new FileInputStream(file));
+            }
+
+            @Override
+            public File getFile() {
+                return file;
+            }
+        };
+    }
+    
+    /**
+     * Lists all PDF files in the directory and its subdirectories.
+     * 
+     * @param dir input directory
+     * @param outputDir output directory, the directory structure of the input is preserved;
+     * if null, output files are stored next to the PDF files
+     * @param extension output file extension
+     * @return documents
+     */
+    public static List<BatchDocument> fromDirectory(File dir, File outputDir, String extension) {
+        Collection<File> files = FileUtils.listFiles(dir, new String[]{"pdf"}, true);
+        String dirPath = dir.getAbsolutePath();
+        List<BatchDocument> documents = new ArrayList<BatchDocument>(files.size());
+        for (File file : files) {
+            String relativePath = file.getAbsolutePath().substring(dirPath.length() + 1);
+            documents.add(fromFile(file, getOutputFile(file, outputDir, relativePath, extension)));
+        }
+        return documents;
+    }
+    
+    /**
+     * Reads the list of PDF files, one path per line. Empty lines are ignored.
+     * 
+     * @param listFile file with PDF paths
+     * @param outputDir output directory; if null, output files are stored next to the PDF files
+     * @param extension output file extension
+     * @return documents
+     * @throws IOException 
+     */
+    public static List<BatchDocument> fromFileList(File listFile, File outputDir, String extension) throws IOException {
+        List<BatchDocument> documents = new ArrayList<BatchDocument>();
+        for (String line : FileUtils.readLines(listFile, "UTF-8")) {
+            String path = line.trim();
+            if (path.isEmpty()) {
+                continue;
+            }
+            File file = new File(path);
+            documents.add(fromFile(file, getOutputFile(file, outputDir, file.getName(), extension)));
+        }
+        return documents;
+    }
+    
+    /**
+     * Lists all PDF entries of the zip file. The zip file has to stay open
+     * until the processing is finished.
+     * 
+     * @param zip zip file
+     * @param outputDir output directory, the directory structure of the archive is preserved
+     * @param extension output file extension
+     * @return documents
+     */
+    public static List<BatchDocument> fromZip(final ZipFile zip, File outputDir, String extension) {
+        List<BatchDocument> documents = new ArrayList<BatchDocument>();
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            final ZipEntry entry = entries.nextElement();
+            if (entry.isDirectory() || !entry.getName().toLowerCase().endsWith(".pdf")) {
+                continue;
+            }
+            File outputFile = new File(outputDir, replaceExtension(entry.getName(), extension));
+            documents.add(new BatchDocument(zip.getName() + "!" + entry.getName(), outputFile) {
+
+                @Override
+                public InputStream openStream() throws IOException {
+                    // the entry is read at once, so that parsing does not
+                    // hold the stream of the shared zip file
+                    InputStream is = zip.getInputStream(entry);
+                    try {
+                        return new ByteArrayInputStream(IOUtils.toByteArray(is));
+                    } finally {
+                        is.close();
+                    }
+                }
+            });
+        }
+        return documents;
+    }
+    
+    private static File getOutputFile(File file, File outputDir, String relativePath, String extension) {
+        if (outputDir == null) {
+            return new File(replaceExtension(file.getPath(), extension));
+        }
+        return new File(outputDir, replaceExtension(relativePath, extension));
+    }
+    
+    private static String replaceExtension(String path, String extension) {
+        return path.replaceAll("(?i)pdf$", extension);
+    }
+    
+}
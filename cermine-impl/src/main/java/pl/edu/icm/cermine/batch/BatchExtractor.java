@@ -0,0 +1,856 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.batch;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipFile;
+import org.apache.commons.cli.*;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jdom.Element;
+import org.jdom.output.Format;
+import org.jdom.output.XMLOutputter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.edu.icm.cermine.DocumentContentExtractor;
+import pl.edu.icm.cermine.PdfNLMContentExtractor;
+import pl.edu.icm.cermine.PdfNLMReferencesExtractor;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.structure.*;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+
+/**
+ * Batch extractor processing many PDF documents in a pipeline. Each stage
+ * has its own threads and the stages are connected with bounded queues,
+ * so a slow stage holds back the earlier ones instead of accumulating
+ * documents in memory. At most 
+ * <code>(queueCapacity + threads) * number of stages</code> documents
+ * are processed at the same time.
+ * <p>
+ * Documents whose output file already exists are skipped, and output files
+ * are created only after the document is fully processed, so an interrupted
+ * run can be simply restarted. A document whose processing time exceeds
+ * the timeout is abandoned and its stage continues with a new thread.
+ * <p>
+ * Abandoned threads are only interrupted. Character extraction and
+ * segmentation do not respond to interruption, so an abandoned thread keeps
+ * running until it finishes its document. To keep the number of running
+ * threads bounded, at most <code>maxAbandonedWorkers</code> abandoned threads
+ * of a stage are replaced at a time. Beyond that limit the replacement is
+ * started only when one of the stage's abandoned threads finishes.
+ * <p>
+ * If the structure cache is set, documents found in the cache skip
+ * character extraction, segmentation and reading order resolution, and
+ * the structures of the other documents are stored in the cache.
+ */
+public class BatchExtractor {
+    
+    private static final Logger log = LoggerFactory.getLogger(BatchExtractor.class);
+    
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+    
+    public static final int DEFAULT_MAX_ABANDONED_WORKERS = 2;
+    
+    public static final String DEFAULT_EXTENSION = "cermxml";
+    
+    private static final String PARTIAL_FILE_SUFFIX = ".part";
+    
+    private final Map<BatchStage, Integer> threads = new EnumMap<BatchStage, Integer>(BatchStage.class);
+    
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    
+    /** per-document timeout in milliseconds, 0 means no timeout */
+    private long documentTimeout = 0;
+    
+    /** maximum number of replaced abandoned threads per stage that may still be running */
+    private int maxAbandonedWorkers = DEFAULT_MAX_ABANDONED_WORKERS;
+    
+    private boolean overwrite = false;
+    
+    private StructureCache structureCache;
+    
+    /** version of the structure extraction configuration, part of the cache keys */
+    private String configurationVersion;
+    
+    /** number of threads decoding the references of a single document */
+    private int referenceThreads = 1;
+    
+    /** helper threads decoding references during the current run, null if references are decoded sequentially */
+    private volatile ExecutorService referencesExecutor;
+
+    public BatchExtractor() {
+        setThreads(Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Processes the documents and blocks until all of them are finished.
+     * Errors in individual documents are logged and counted, but do not stop
+     * the processing.
+     * 
+     * @param documents input documents
+     * @return statistics of the run
+     * @throws AnalysisException if the pipeline cannot be created or the run is interrupted
+     */
+    public BatchStatistics process(Iterable<BatchDocument> documents) throws AnalysisException {
+        if (referenceThreads > 1) {
+            ThreadFactory threadFactory = new ThreadFactory() {
+                
+                private final AtomicInteger threadCount = new AtomicInteger();
+                
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "batch-references-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+            // every content extraction thread submits at most referenceThreads - 1 helpers at a time,
+            // the helpers which do not fit are run by the submitting thread
+            int helpers = referenceThreads - 1;
+            referencesExecutor = new ThreadPoolExecutor(helpers, helpers, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(getThreads(BatchStage.CONTENT_EXTRACTION) * helpers),
+                    threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+        try {
+            return new Pipeline().run(documents);
+        } finally {
+            if (referencesExecutor != null) {
+                referencesExecutor.shutdownNow();
+                referencesExecutor = null;
+            }
+        }
+    }
+    
+    protected CharacterExtractor createCharacterExtractor() throws AnalysisException {
+        return new ITextCharacterExtractor();
+    }
+    
+    /**
+     * Creates the segmenter. Documents are processed by many threads
+     * of the stage, so pages are segmented sequentially.
+     */
+    protected DocumentSegmenter createDocumentSegmenter() throws AnalysisException {
+        return new DocstrumSegmenter();
+    }
+    
+    protected ReadingOrderResolver createReadingOrderResolver() throws AnalysisException {
+        return new HierarchicalReadingOrderResolver();
+    }
+    
+    protected ZoneClassifier createZoneClassifier() throws AnalysisException {
+        try {
+            return SVMInitialZoneClassifier.getDefaultInstance();
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot create zone classifier!", ex);
+        }
+    }
+    
+    protected DocumentContentExtractor<Element> createContentExtractor() throws AnalysisException {
+        PdfNLMContentExtractor extractor = new PdfNLMContentExtractor();
+        if (referencesExecutor != null) {
+            extractor.setReferencesExtractor(new PdfNLMReferencesExtractor(referencesExecutor, referenceThreads));
+        }
+        return extractor;
+    }
+    
+    private StageProcessor createProcessor(BatchStage stage) throws AnalysisException {
+        switch (stage) {
+            case CHARACTER_EXTRACTION:
+                final CharacterExtractor characterExtractor = createCharacterExtractor();
+                final String cacheVersion = structureCache == null ? null : getCacheConfigurationVersion(characterExtractor);
+                return new StageProcessor() {
+                    @Override
+                    public void process(Task task) throws Exception {
+                        File file = task.document.getFile();
+                        if (file != null) {
+                            if (cacheVersion != null) {
+                                task.cacheKey = StructureCacheKeys.forFile(file, cacheVersion);
+                                if (loadCached(task)) {
+                                    return;
+                                }
+                            }
+                            task.structure = characterExtractor.extractCharacters(file);
+                            return;
+                        }
+                        InputStream stream = task.document.openStream();
+                        try {
+                            if (cacheVersion == null) {
+                                task.structure = characterExtractor.extractCharacters(stream);
+                                return;
+                            }
+                            byte[] content = IOUtils.toByteArray(stream);
+                            task.cacheKey = StructureCacheKeys.forContent(content, cacheVersion);
+                            if (!loadCached(task)) {
+                                task.structure = characterExtractor.extractCharacters(new ByteArrayInputStream(content));
+                            }
+                        } finally {
+                            stream.close();
+                        }
+                    }
+                };
+            case SEGMENTATION:
+                final DocumentSegmenter segmenter = createDocumentSegmenter();
+                return new StageProcessor() {
+                    @Override
+                    public void process(Task task) throws Exception {
+                        if (!task.cached) {
+                            task.structure = segmenter.segmentDocument(task.structure);
+                        }
+                    }
+                };
+            case READING_ORDER:
+                final ReadingOrderResolver roResolver = createReadingOrderResolver();
+                return new StageProcessor() {
+                    @Override
+                    public void process(Task task) throws Exception {
+                        if (!task.cached) {
+                            task.structure = roResolver.resolve(task.structure);
+                            if (task.cacheKey != null) {
+                                structureCache.put(task.cacheKey, task.structure);
+                            }
+                        }
+                    }
+                };
+            case ZONE_CLASSIFICATION:
+                final ZoneClassifier classifier = createZoneClassifier();
+                return new StageProcessor() {
+                    @Override
+                    public void process(Task task) throws Exception {
+                        task.structure = classifier.classifyZones(task.structure);
+                    }
+                };
+            case CONTENT_EXTRACTION:
+                final DocumentContentExtractor<Element> contentExtractor = createContentExtractor();
+                return new StageProcessor() {
+                    @Override
+                    public void process(Task task) throws Exception {
+                        task.content = contentExtractor.extractContent(task.structure);
+                        task.structure = null;
+                    }
+                };
+            case OUTPUT:
+                final XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
+                return new StageProcessor() {
+                    @Override
+                    public void process(Task task) throws Exception {
+                        writeOutput(task, outputter);
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unknown stage: " + stage);
+        }
+    }
+    
+    private String getCacheConfigurationVersion(CharacterExtractor characterExtractor) throws AnalysisException {
+        if (configurationVersion != null) {
+            return configurationVersion;
+        }
+        return StructureCacheKeys.defaultConfigurationVersion(characterExtractor, 
+                createDocumentSegmenter(), createReadingOrderResolver());
+    }
+    
+    /**
+     * Looks up the structure of the task in the cache.
+     * 
+     * @return true if the structure has been found
+     */
+    private boolean loadCached(Task task) {
+        task.structure = structureCache.get(task.cacheKey);
+        task.cached = task.structure != null;
+        if (task.cached) {
+            log.debug("Structure of document " + task.document.getName() + " loaded from the cache");
+        }
+        return task.cached;
+    }
+    
+    /**
+     * Writes the content to a partial file, which is renamed to the output file
+     * only if the document has not timed out in the meantime.
+     */
+    private void writeOutput(Task task, XMLOutputter outputter) throws IOException {
+        File outputFile = task.document.getOutputFile().getAbsoluteFile();
+        File partialFile = new File(outputFile.getPath() + PARTIAL_FILE_SUFFIX);
+        FileUtils.writeStringToFile(partialFile, outputter.outputString(task.content), "UTF-8");
+        if (!task.finish()) {
+            FileUtils.deleteQuietly(partialFile);
+            return;
+        }
+        if (outputFile.exists()) {
+            FileUtils.forceDelete(outputFile);
+        }
+        if (!partialFile.renameTo(outputFile)) {
+            FileUtils.deleteQuietly(partialFile);
+            throw new IOException("Cannot create file " + outputFile);
+        }
+    }
+    
+    private interface StageProcessor {
+        void process(Task task) throws Exception;
+    }
+    
+    /**
+     * Document passed between the stages.
+     */
+    private static final class Task {
+        
+        private final BatchDocument document;
+        
+        private final AtomicBoolean finished = new AtomicBoolean();
+        
+        /** time spent in the stages so far, waiting in the queues is not included */
+        private long processingTime;
+        
+        /** highest heap usage observed after the stages of the document */
+        private long peakHeap;
+        
+        /** end of the time limit for the current stage */
+        private volatile long deadline;
+        
+        private BxDocument structure;
+        
+        /** key of the structure cache, null if the cache is not used */
+        private String cacheKey;
+        
+        /** whether the structure has been loaded from the cache */
+        private boolean cached;
+        
+        private Element content;
+
+        Task(BatchDocument document) {
+            this.document = document;
+        }
+        
+        /**
+         * Marks the document as finished. Only the first call succeeds,
+         * so that timed out documents are not reported twice.
+         */
+        boolean finish() {
+            return finished.compareAndSet(false, true);
+        }
+        
+        boolean isFinished() {
+            return finished.get();
+        }
+        
+        boolean isExpired(long now) {
+            return deadline > 0 && now > deadline;
+        }
+    }
+    
+    /** marks the end of the input */
+    private static final Task END = new Task(null);
+    
+    /**
+     * State of a single run.
+     */
+    private final class Pipeline {
+        
+        private final BatchStage[] stages = BatchStage.values();
+        
+        /** input queues of the stages */
+        private final List<BlockingQueue<Task>> queues;
+        
+        private final AtomicInteger[] activeWorkers;
+        
+        /** abandoned workers of the stages that are still running */
+        private final int[] abandonedWorkers;
+        
+        /** replacements of abandoned workers waiting for the running ones to finish */
+        private final int[] deferredReplacements;
+        
+        private final List<Worker> workers = new CopyOnWriteArrayList<Worker>();
+        
+        private final CountDownLatch finished = new CountDownLatch(1);
+        
+        private final BatchStatistics statistics = new BatchStatistics();
+        
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        Pipeline() {
+            queues = new ArrayList<BlockingQueue<Task>>(stages.length);
+            activeWorkers = new AtomicInteger[stages.length];
+            abandonedWorkers = new int[stages.length];
+            deferredReplacements = new int[stages.length];
+            for (int i = 0; i < stages.length; i++) {
+                queues.add(new ArrayBlockingQueue<Task>(queueCapacity));
+                activeWorkers[i] = new AtomicInteger();
+            }
+        }
+        
+        BatchStatistics run(Iterable<BatchDocument> documents) throws AnalysisException {
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < stages.length; i++) {
+                for (int j = 0; j < threads.get(stages[i]); j++) {
+                    workers.add(new Worker(i, createProcessor(stages[i])));
+                }
+                activeWorkers[i].set(threads.get(stages[i]));
+            }
+            for (Worker worker : workers) {
+                worker.start();
+            }
+            Thread watchdog = null;
+            if (documentTimeout > 0) {
+                watchdog = new Thread(new Watchdog(), "batch-watchdog");
+                watchdog.setDaemon(true);
+                watchdog.start();
+            }
+            
+            try {
+                for (BatchDocument document : documents) {
+                    if (!overwrite && document.getOutputFile().exists()) {
+                        statistics.documentSkipped();
+                        continue;
+                    }
+                    queues.get(0).put(new Task(document));
+                }
+                queues.get(0).put(END);
+                finished.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                for (Worker worker : workers) {
+                    worker.interrupt();
+                }
+                throw new AnalysisException("Batch extraction interrupted!", ex);
+            } finally {
+                if (watchdog != null) {
+                    watchdog.interrupt();
+                }
+            }
+            
+            statistics.setElapsedTime(System.currentTimeMillis() - start);
+            return statistics;
+        }
+        
+        /**
+         * Called when a worker leaves the stage, either after the end of the input,
+         * or after being abandoned. The last worker passes the end marker on.
+         */
+        private void leaveStage(int stageIndex) throws InterruptedException {
+            if (activeWorkers[stageIndex].decrementAndGet() == 0) {
+                if (stageIndex + 1 < stages.length) {
+                    queues.get(stageIndex + 1).put(END);
+                } else {
+                    finished.countDown();
+                }
+            }
+        }
+        
+        private void fail(Task task, Throwable error) {
+            if (task.finish()) {
+                statistics.documentFailed();
+                log.warn("Cannot process document " + task.document.getName(), error);
+            }
+        }
+        
+        /**
+         * Replaces the abandoned worker, unless too many abandoned workers
+         * of its stage are still running.
+         */
+        private void replace(Worker worker) throws InterruptedException {
+            workers.remove(worker);
+            int stageIndex = worker.stageIndex;
+            boolean deferred;
+            int running;
+            synchronized (this) {
+                running = ++abandonedWorkers[stageIndex];
+                deferred = running > maxAbandonedWorkers;
+                if (deferred) {
+                    deferredReplacements[stageIndex]++;
+                }
+            }
+            if (deferred) {
+                log.warn(running + " abandoned workers of stage " + stages[stageIndex]
+                        + " are still running, replacement deferred until one of them finishes");
+            } else {
+                startReplacement(stageIndex);
+            }
+        }
+        
+        /**
+         * Called when an abandoned worker finally finishes its document.
+         */
+        private void abandonedWorkerFinished(int stageIndex) throws InterruptedException {
+            synchronized (this) {
+                abandonedWorkers[stageIndex]--;
+                if (deferredReplacements[stageIndex] == 0) {
+                    return;
+                }
+                deferredReplacements[stageIndex]--;
+            }
+            log.info("Starting deferred replacement of abandoned worker of stage " + stages[stageIndex]);
+            startReplacement(stageIndex);
+        }
+        
+        private void startReplacement(int stageIndex) throws InterruptedException {
+            try {
+                Worker replacement = new Worker(stageIndex, createProcessor(stages[stageIndex]));
+                activeWorkers[stageIndex].incrementAndGet();
+                workers.add(replacement);
+                replacement.start();
+            } catch (AnalysisException ex) {
+                log.error("Cannot replace abandoned worker of stage " + stages[stageIndex], ex);
+            }
+            leaveStage(stageIndex);
+        }
+        
+        private void timeOut(Task task) {
+            statistics.documentTimedOut();
+            log.warn("Processing time limit exceeded for document " + task.document.getName());
+        }
+        
+        private final class Worker extends Thread {
+            
+            private final int stageIndex;
+            
+            private final StageProcessor processor;
+            
+            private Task current;
+            
+            private boolean abandoned;
+
+            Worker(int stageIndex, StageProcessor processor) {
+                super("batch-" + stages[stageIndex].name().toLowerCase() + "-" + threadCount.incrementAndGet());
+                this.stageIndex = stageIndex;
+                this.processor = processor;
+                setDaemon(true);
+            }
+
+            @Override
+            public void run() {
+                BlockingQueue<Task> queue = queues.get(stageIndex);
+                try {
+                    while (true) {
+                        Task task = queue.take();
+                        if (task == END) {
+                            // let the other workers of the stage see the marker as well
+                            queue.put(END);
+                            leaveStage(stageIndex);
+                            return;
+                        }
+                        if (!process(task)) {
+                            abandonedWorkerFinished(stageIndex);
+                            return;
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    // the run was interrupted or the worker abandoned
+                }
+            }
+            
+            /**
+             * @return false if the worker has been abandoned
+             */
+            private boolean process(Task task) throws InterruptedException {
+                if (task.isFinished()) {
+                    return true;
+                }
+                long start = System.currentTimeMillis();
+                if (documentTimeout > 0) {
+                    if (task.processingTime >= documentTimeout) {
+                        if (task.finish()) {
+                            timeOut(task);
+                        }
+                        return true;
+                    }
+                    task.deadline = start + documentTimeout - task.processingTime;
+                }
+                
+                synchronized (this) {
+                    current = task;
+                }
+                boolean succeeded = false;
+                long startNanos = System.nanoTime();
+                try {
+                    processor.process(task);
+                    succeeded = true;
+                } catch (Throwable ex) {
+                    fail(task, ex);
+                }
+                synchronized (this) {
+                    current = null;
+                    if (abandoned) {
+                        return false;
+                    }
+                }
+                task.processingTime += System.currentTimeMillis() - start;
+                statistics.addStageTime(stages[stageIndex], System.nanoTime() - startNanos);
+                Runtime runtime = Runtime.getRuntime();
+                task.peakHeap = Math.max(task.peakHeap, runtime.totalMemory() - runtime.freeMemory());
+                
+                if (succeeded) {
+                    if (stageIndex + 1 < stages.length) {
+                        queues.get(stageIndex + 1).put(task);
+                    } else {
+                        statistics.documentProcessed(task.peakHeap);
+                        log.debug("Processed document " + task.document.getName() + " in " + task.processingTime
+                                + " ms, peak heap: " + task.peakHeap / (1024 * 1024) + " MB");
+                    }
+                }
+                return true;
+            }
+            
+            /**
+             * Abandons the worker if it is still processing the expired task.
+             */
+            synchronized boolean abandon(Task task) {
+                if (current != task || !task.finish()) {
+                    return false;
+                }
+                abandoned = true;
+                interrupt();
+                return true;
+            }
+        }
+        
+        private final class Watchdog implements Runnable {
+
+            @Override
+            public void run() {
+                long period = Math.max(10L, Math.min(1000L, documentTimeout / 10));
+                try {
+                    while (!finished.await(period, TimeUnit.MILLISECONDS)) {
+                        long now = System.currentTimeMillis();
+                        for (Worker worker : workers) {
+                            Task task;
+                            synchronized (worker) {
+                                task = worker.current;
+                            }
+                            if (task != null && task.isExpired(now) && worker.abandon(task)) {
+                                timeOut(task);
+                                replace(worker);
+                            }
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    // the run is finished
+                }
+            }
+        }
+    }
+
+    public int getThreads(BatchStage stage) {
+        return threads.get(stage);
+    }
+
+    public void setThreads(BatchStage stage, int threadsNumber) {
+        if (threadsNumber < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive!");
+        }
+        threads.put(stage, threadsNumber);
+    }
+    
+    /**
+     * Sets the same number of threads for all the stages.
+     * 
+     * @param threadsNumber number of threads per stage
+     */
+    public void setThreads(int threadsNumber) {
+        for (BatchStage stage : BatchStage.values()) {
+            setThreads(stage, threadsNumber);
+        }
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive!");
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    public long getDocumentTimeout() {
+        return documentTimeout;
+    }
+
+    /**
+     * Sets the maximum processing time of a single document.
+     * 
+     * @param documentTimeout timeout in milliseconds, 0 means no timeout
+     */
+    public void setDocumentTimeout(long documentTimeout) {
+        this.documentTimeout = documentTimeout;
+    }
+
+    public int getMaxAbandonedWorkers() {
+        return maxAbandonedWorkers;
+    }
+
+    /**
+     * Sets the maximum number of abandoned threads per stage that are replaced
+     * while they are still running. Further timed out documents of the stage
+     * are replaced only when an abandoned thread finishes.
+     * 
+     * @param maxAbandonedWorkers maximum number of running abandoned threads per stage
+     */
+    public void setMaxAbandonedWorkers(int maxAbandonedWorkers) {
+        if (maxAbandonedWorkers < 0) {
+            throw new IllegalArgumentException("Number of abandoned workers cannot be negative!");
+        }
+        this.maxAbandonedWorkers = maxAbandonedWorkers;
+    }
+
+    public boolean isOverwrite() {
+        return overwrite;
+    }
+
+    /**
+     * @param overwrite whether to process documents whose output file already exists
+     */
+    public void setOverwrite(boolean overwrite) {
+        this.overwrite = overwrite;
+    }
+
+    public StructureCache getStructureCache() {
+        return structureCache;
+    }
+
+    /**
+     * @param structureCache cache of segmented documents, or null to disable caching
+     */
+    public void setStructureCache(StructureCache structureCache) {
+        this.structureCache = structureCache;
+    }
+
+    public String getConfigurationVersion() {
+        return configurationVersion;
+    }
+
+    /**
+     * Sets the version of the structure extraction configuration, part of the
+     * structure cache keys. By default the version is derived from the classes
+     * and the configuration of the components (see {@link StructureCacheKeys#defaultConfigurationVersion}).
+     * 
+     * @param configurationVersion configuration version
+     */
+    public void setConfigurationVersion(String configurationVersion) {
+        this.configurationVersion = configurationVersion;
+    }
+    
+    public int getReferenceThreads() {
+        return referenceThreads;
+    }
+
+    /**
+     * Sets the number of threads decoding the references of a single document.
+     * The threads other than the content extraction worker are shared by 
+     * all the documents of the stage.
+     * 
+     * @param referenceThreads number of threads, 1 means sequential decoding
+     */
+    public void setReferenceThreads(int referenceThreads) {
+        if (referenceThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive!");
+        }
+        this.referenceThreads = referenceThreads;
+    }
+    
+    public static void main(String[] args) throws ParseException, AnalysisException, IOException {
+        Options options = new Options();
+        options.addOption("out", true, "output directory (by default output files are stored next to the input files)");
+        options.addOption("ext", true, "output file extension (default: " + DEFAULT_EXTENSION + ")");
+        options.addOption("threads", true, "number of threads per stage (default: number of processors)");
+        options.addOption("stageThreads", true, "number of threads of the given stages, e.g. SEGMENTATION=4,OUTPUT=1");
+        options.addOption("referenceThreads", true, "number of threads decoding the references of a single document (default: 1)");
+        options.addOption("queue", true, "capacity of the queues between stages (default: " + DEFAULT_QUEUE_CAPACITY + ")");
+        options.addOption("timeout", true, "processing time limit of a single document in seconds");
+        options.addOption("maxAbandoned", true, "number of timed out threads per stage replaced while still running (default: "
+                + DEFAULT_MAX_ABANDONED_WORKERS + ")");
+        options.addOption("overwrite", false, "process documents whose output files already exist");
+        options.addOption("cache", true, "structure cache directory, cached documents are not segmented again");
+        options.addOption("cacheVersion", true, "version of the structure extraction configuration used in the cache keys");
+        options.addOption("help", false, "print this help message");
+
+        CommandLineParser parser = new GnuParser();
+        CommandLine line = parser.parse(options, args);
+        if (line.hasOption("help") || line.getArgs().length != 1) {
+            HelpFormatter formatter = new HelpFormatter();
+            formatter.printHelp("BatchExtractor [-options] (input-dir | input.zip | file-list)", options);
+            return;
+        }
+        
+        BatchExtractor extractor = new BatchExtractor();
+        if (line.hasOption("threads")) {
+            extractor.setThreads(Integer.parseInt(line.getOptionValue("threads")));
+        }
+        if (line.hasOption("stageThreads")) {
+            for (String stageThreads : line.getOptionValue("stageThreads").split(",")) {
+                String[] parts = stageThreads.split("=");
+                if (parts.length != 2) {
+                    throw new ParseException("Invalid stage threads: " + stageThreads);
+                }
+                extractor.setThreads(BatchStage.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+            }
+        }
+        if (line.hasOption("referenceThreads")) {
+            extractor.setReferenceThreads(Integer.parseInt(line.getOptionValue("referenceThreads")));
+        }
+        if (line.hasOption("queue")) {
+            extractor.setQueueCapacity(Integer.parseInt(line.getOptionValue("queue")));
+        }
+        if (line.hasOption("timeout")) {
+            extractor.setDocumentTimeout(Long.parseLong(line.getOptionValue("timeout")) * 1000L);
+        }
+        if (line.hasOption("maxAbandoned")) {
+            extractor.setMaxAbandonedWorkers(Integer.parseInt(line.getOptionValue("maxAbandoned")));
+        }
+        extractor.setOverwrite(line.hasOption("overwrite"));
+        if (line.hasOption("cache")) {
+            extractor.setStructureCache(new DirectoryStructureCache(new File(line.getOptionValue("cache"))));
+        }
+        if (line.hasOption("cacheVersion")) {
+            extractor.setConfigurationVersion(line.getOptionValue("cacheVersion"));
+        }
+        
+        String extension = line.getOptionValue("ext", DEFAULT_EXTENSION);
+        File outputDir = line.hasOption("out") ? new File(line.getOptionValue("out")) : null;
+        File input = new File(line.getArgs()[0]);
+        
+        BatchStatistics statistics;
+        if (input.isDirectory()) {
+            statistics = extractor.process(BatchDocument.fromDirectory(input, outputDir, extension));
+        } else if (input.getName().toLowerCase().endsWith(".zip")) {
+            ZipFile zip = new ZipFile(input);
+            try {
+                if (outputDir == null) {
+                    outputDir = input.getAbsoluteFile().getParentFile();
+                }
+                statistics = extractor.process(BatchDocument.fromZip(zip, outputDir, extension));
+            } finally {
+                zip.close();
+            }
+        } else {
+            statistics = extractor.process(BatchDocument.fromFileList(input, outputDir, extension));
+        }
+        System.out.println(statistics);
+    }
+    
+}
@@ -0,0 +1,44 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.batch;
+
+/**
+ * Stages of the batch extraction pipeline, in processing order.
+ */
+public enum BatchStage {
+    
+    /** reading the PDF and extracting individual characters */
+    CHARACTER_EXTRACTION,
+    
+    /** grouping characters into words, lines and zones */
+    SEGMENTATION,
+    
+    /** resolving the reading order of zones */
+    READING_ORDER,
+    
+    /** initial zone classification */
+    ZONE_CLASSIFICATION,
+    
+    /** metadata, text and references extraction */
+    CONTENT_EXTRACTION,
+    
+    /** writing the NLM output file */
+    OUTPUT;
+    
+}
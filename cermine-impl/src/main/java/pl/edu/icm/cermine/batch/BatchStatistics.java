@@ -0,0 +1,136 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.batch;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Statistics of a batch extraction run.
+ */
+public class BatchStatistics {
+    
+    private final AtomicInteger processedCount = new AtomicInteger();
+    
+    private final AtomicInteger skippedCount = new AtomicInteger();
+    
+    private final AtomicInteger failedCount = new AtomicInteger();
+    
+    private final AtomicInteger timedOutCount = new AtomicInteger();
+    
+    /** total time spent in each stage, in nanoseconds */
+    private final AtomicLongArray stageTimes = new AtomicLongArray(BatchStage.values().length);
+    
+    private final AtomicLong peakHeap = new AtomicLong();
+    
+    private volatile long elapsedTime;
+    
+    void documentProcessed(long documentPeakHeap) {
+        processedCount.incrementAndGet();
+        long current = peakHeap.get();
+        while (documentPeakHeap > current && !peakHeap.compareAndSet(current, documentPeakHeap)) {
+            current = peakHeap.get();
+        }
+    }
+    
+    void documentSkipped() {
+        skippedCount.incrementAndGet();
+    }
+    
+    void documentFailed() {
+        failedCount.incrementAndGet();
+    }
+    
+    void documentTimedOut() {
+        timedOutCount.incrementAndGet();
+    }
+    
+    void addStageTime(BatchStage stage, long nanos) {
+        stageTimes.addAndGet(stage.ordinal(), nanos);
+    }
+
+    void setElapsedTime(long elapsedTime) {
+        this.elapsedTime = elapsedTime;
+    }
+
+    /**
+     * @return number of documents successfully processed
+     */
+    public int getProcessedCount() {
+        return processedCount.get();
+    }
+
+    /**
+     * @return number of documents skipped because their output already existed
+     */
+    public int getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    public int getFailedCount() {
+        return failedCount.get();
+    }
+
+    public int getTimedOutCount() {
+        return timedOutCount.get();
+    }
+    
+    /**
+     * Returns the time spent in the stage, summed over all its threads.
+     * 
+     * @param stage stage
+     * @return time in milliseconds
+     */
+    public long getStageTime(BatchStage stage) {
+        return stageTimes.get(stage.ordinal()) / 1000000L;
+    }
+
+    /**
+     * Returns the highest heap usage observed after a stage of a processed document.
+     * 
+     * @return heap usage in bytes
+     */
+    public long getPeakHeap() {
+        return peakHeap.get();
+    }
+
+    /**
+     * @return wall-clock time of the run in milliseconds
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("processed: ").append(getProcessedCount())
+                .append(", skipped: ").append(getSkippedCount())
+                .append(", failed: ").append(getFailedCount())
+                .append(", timed out: ").append(getTimedOutCount())
+                .append(", time: ").append(getElapsedTime()).append(" ms")
+                .append(", peak heap: ").append(getPeakHeap() / (1024 * 1024)).append(" MB");
+        for (BatchStage stage : BatchStage.values()) {
+            sb.append("\n  ").append(stage).append(": ").append(getStageTime(stage)).append(" ms");
+        }
+        return sb.toString();
+    }
+    
+}
@@ -20,24 +20,40 @@ package pl.edu.icm.cermine.bibref;
 
 import edu.umass.cs.mallet.base.pipe.Pipe;
 import edu.umass.cs.mallet.base.pipe.iterator.LineGroupIterator;
+import edu.umass.cs.mallet.base.types.FeatureVectorSequence;
+import edu.umass.cs.mallet.base.types.Instance;
 import edu.umass.cs.mallet.base.types.InstanceList;
+import edu.umass.cs.mallet.base.types.Label;
+import edu.umass.cs.mallet.base.types.LabelAlphabet;
+import edu.umass.cs.mallet.base.types.Labels;
 import edu.umass.cs.mallet.base.types.LabelsSequence;
+import edu.umass.cs.mallet.grmm.inference.Inferencer;
 import edu.umass.cs.mallet.grmm.learning.ACRF;
+import edu.umass.cs.mallet.grmm.types.Variable;
 import java.io.*;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPInputStream;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.lang.StringUtils;
 import pl.edu.icm.cermine.bibref.model.BibEntry;
 import pl.edu.icm.cermine.bibref.parsing.model.Citation;
 import pl.edu.icm.cermine.bibref.parsing.model.CitationTokenLabel;
 import pl.edu.icm.cermine.bibref.parsing.tools.CitationUtils;
 import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.tools.ModelLoader;
+import pl.edu.icm.cermine.tools.ModelRegistry;
 
 /**
- * CRF-based bibiliographic reference parser.
+ * CRF-based bibiliographic reference parser. The references passed to
+ * {@link #parseBibReferences(List)} are decoded on the calling thread, unless
+ * an executor is given with {@link #withExecutor(ExecutorService, int)}.
+ * The model is only read during decoding and every thread uses its own
+ * inferencer, so a single instance can be used concurrently.
  * 
  * @author Dominika Tkaczyk
  */
@@ -45,58 +61,112 @@ public class CRFBibReferenceParser implements BibReferenceParser<BibEntry> {
     
     private static final int MAX_REFERENCE_LENGTH = 2000;
     
+    private static final Pattern GROUP_SEPARATOR = Pattern.compile("\\s*");
+    
+    /** model shared by all the threads, only its weights are read during decoding */
     private ACRF model;
     
+    /** serialized Viterbi inferencer of the model, the source of the decoders */
+    private byte[] viterbiInferencer;
+    
+    /** Viterbi inferencers not used by any thread at the moment */
+    private final Queue<Inferencer> decoders;
+    
+    /** executor for helper decoding tasks, null if the references are decoded on the calling thread */
+    private final ExecutorService executor;
+    
+    private final int parallelism;
+    
+    /** uncompressed size of the serialized model */
+    private long modelSize;
+    
+    /** checksum key of the model file */
+    private String modelKey;
+    
     private static final String defaultModelFile = "/pl/edu/icm/cermine/bibref/acrf.ser.gz";
     
     private static final String defaultWordsFile = "/pl/edu/icm/cermine/bibref/crf-train-words.txt";
     private Set<String> words;
+    
+    /** builder of instances bypassing the text format and the model's input pipe */
+    private CRFInstanceBuilder instanceBuilder;
 
     public CRFBibReferenceParser(String modelFile) throws AnalysisException {
-        System.setProperty("java.util.logging.config.file",
-            "edu/umass/cs/mallet/base/util/resources/logging.properties");
-        InputStream is;
-        ObjectInputStream ois = null;
+        this.decoders = new ConcurrentLinkedQueue<Inferencer>();
+        this.executor = null;
+        this.parallelism = 1;
         try {
-            is = new FileInputStream(new File(modelFile));
-            ois = new ObjectInputStream(new BufferedInputStream(new GZIPInputStream(is)));
-            model = (ACRF)(ois.readObject());
-        } catch (ClassNotFoundException ex) {
-            throw new AnalysisException("Cannot set model!", ex);
-        } catch (IOException ex) {
+            loadModel(new FileInputStream(new File(modelFile)));
+        } catch (FileNotFoundException ex) {
             throw new AnalysisException("Cannot set model!", ex);
-        } finally {
-            try {
-                if (ois != null) {
-                    ois.close();
-                }
-            } catch (IOException ex) {
-                throw new AnalysisException("Cannot set model!", ex);
-            }
-        }
-        
-        words = new HashSet<String>();
-        InputStream wis = CitationUtils.class.getResourceAsStream(defaultWordsFile);
-        try {
-            words.addAll(IOUtils.readLines(wis));
-        } catch (IOException ex) {
-            throw new AnalysisException("Cannot set words!", ex);
         }
+        loadWords();
+        createInstanceBuilder();
     }
     
     public CRFBibReferenceParser(InputStream modelInputStream) throws AnalysisException {
+        this.decoders = new ConcurrentLinkedQueue<Inferencer>();
+        this.executor = null;
+        this.parallelism = 1;
+        loadModel(modelInputStream);
+        loadWords();
+        createInstanceBuilder();
+    }
+    
+    private CRFBibReferenceParser(CRFBibReferenceParser parser, ExecutorService executor, int parallelism) {
+        this.model = parser.model;
+        this.viterbiInferencer = parser.viterbiInferencer;
+        this.decoders = parser.decoders;
+        this.modelSize = parser.modelSize;
+        this.modelKey = parser.modelKey;
+        this.words = parser.words;
+        this.instanceBuilder = parser.instanceBuilder;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+    
+    /**
+     * Returns the parser sharing the model and the inferencers with this one,
+     * but decoding the references on the given executor. 
+     * The executor is not shut down by the parser.
+     * 
+     * @param executor executor for reference decoding tasks
+     * @param parallelism maximum number of threads decoding the references of a single call,
+     * 1 means decoding on the calling thread only
+     * @return parser using the given executor
+     */
+    public CRFBibReferenceParser withExecutor(ExecutorService executor, int parallelism) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null!");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive!");
+        }
+        return new CRFBibReferenceParser(this, executor, parallelism);
+    }
+    
+    private void loadModel(InputStream modelInputStream) throws AnalysisException {
         System.setProperty("java.util.logging.config.file",
             "edu/umass/cs/mallet/base/util/resources/logging.properties");
         ObjectInputStream ois = null;
         try {
-            ois = new ObjectInputStream(new BufferedInputStream(new GZIPInputStream(modelInputStream)));
+            byte[] modelBytes = IOUtils.toByteArray(modelInputStream);
+            modelKey = ModelRegistry.checksumKey(CRFBibReferenceParser.class, modelBytes);
+            CountingInputStream cis = new CountingInputStream(new GZIPInputStream(new ByteArrayInputStream(modelBytes)));
+            ois = new ObjectInputStream(new BufferedInputStream(cis));
             model = (ACRF)(ois.readObject());
+            // features unknown to the model have no weights, so the alphabet is
+            // not grown by the references, and it is never modified after loading
+            model.getInputPipe().getDataAlphabet().stopGrowth();
+            modelSize = cis.getByteCount();
+            viterbiInferencer = serialize(model.getViterbiInferencer());
         } catch (IOException ex) {
             throw new AnalysisException("Cannot set model!", ex);
         } catch (ClassNotFoundException ex) {
             throw new AnalysisException("Cannot set model!", ex);
         } finally {
             try {
+                modelInputStream.close();
                 if (ois != null) {
                     ois.close();
                 }
@@ -104,13 +174,62 @@ public class CRFBibReferenceParser implements BibReferenceParser<BibEntry> {
                 throw new AnalysisException("Cannot set model!", ex);
             }
         }
+    }
+    
+    private void loadWords() throws AnalysisException {
         words = new HashSet<String>();
         InputStream wis = CitationUtils.class.getResourceAsStream(defaultWordsFile);
         try {
             words.addAll(IOUtils.readLines(wis));
         } catch (IOException ex) {
             throw new AnalysisException("Cannot set words!", ex);
+        } finally {
+            IOUtils.closeQuietly(wis);
+        }
+    }
+    
+    private void createInstanceBuilder() {
+        Pipe pipe = model.getInputPipe();
+        Label label = ((LabelAlphabet) pipe.getTargetAlphabet()).lookupLabel(CitationTokenLabel.TEXT.toString());
+        instanceBuilder = new CRFInstanceBuilder(pipe.getDataAlphabet(), new Labels(new Label[]{label}), words);
+    }
+    
+    List<Instance> toInstances(List<Citation> citations) {
+        List<Instance> instances = new ArrayList<Instance>(citations.size());
+        for (Citation citation : citations) {
+            instances.add(instanceBuilder.build(citation));
         }
+        return instances;
+    }
+    
+    /**
+     * Converts citations to instances by piping their text format through
+     * the model's input pipe. Used to check the instances of the builder.
+     */
+    List<Instance> pipe(List<Citation> citations) throws AnalysisException {
+        StringBuilder data = new StringBuilder();
+        for (Citation citation : citations) {
+            if (data.length() > 0) {
+                data.append("\n\n");
+            }
+            data.append(StringUtils.join(CitationUtils.citationToMalletInputFormat(citation, words), "\n"));
+        }
+        
+        InstanceList instanceList;
+        Pipe pipe = model.getInputPipe();
+        synchronized (pipe) {
+            instanceList = new InstanceList(pipe);
+            instanceList.add(new LineGroupIterator(new StringReader(data.toString()), GROUP_SEPARATOR, true));
+        }
+        if (instanceList.size() != citations.size()) {
+            throw new AnalysisException("Cannot parse references: " + citations.size() + " references piped into "
+                    + instanceList.size() + " instances!");
+        }
+        List<Instance> instances = new ArrayList<Instance>(instanceList.size());
+        for (int i = 0; i < instanceList.size(); i++) {
+            instances.add(instanceList.getInstance(i));
+        }
+        return instances;
     }
 
     @Override
@@ -124,22 +243,266 @@ public class CRFBibReferenceParser implements BibReferenceParser<BibEntry> {
         }
         
         Citation citation = CitationUtils.stringToCitation(text);
-        String data = StringUtils.join(CitationUtils.citationToMalletInputFormat(citation, words), "\n");
+        if (citation.getTokens().isEmpty()) {
+            return CitationUtils.citationToBibref(citation);
+        }
         
-        Pipe pipe = model.getInputPipe();
-        InstanceList instanceList = new InstanceList(pipe);
-        instanceList.add(new LineGroupIterator(new StringReader(data), Pattern.compile ("\\s*"), true)); 
-        LabelsSequence labelSequence = (LabelsSequence)model.getBestLabels(instanceList).get(0);
-           
+        Instance instance = toInstances(Collections.singletonList(citation)).get(0);
+        Inferencer decoder = borrowDecoder();
+        try {
+            return toBibEntry(citation, decode(instance, decoder));
+        } finally {
+            decoders.add(decoder);
+        }
+    }
+
+    /**
+     * Parses the texts of many references. All the references are converted to
+     * instances at once and decoded by the calling thread and by the helper tasks
+     * submitted to the executor, if any, each one using its own Viterbi inferencer.
+     * The results are the same as those of {@link #parseBibReference(String)}.
+     * 
+     * @param texts reference texts
+     * @return parsed references, in the order of the texts
+     * @throws AnalysisException 
+     */
+    @Override
+    public List<BibEntry> parseBibReferences(List<String> texts) throws AnalysisException {
+        if (model == null) {
+            throw new AnalysisException("Model object is not set!");
+        }
+        
+        BibEntry[] entries = new BibEntry[texts.size()];
+        List<Integer> indices = new ArrayList<Integer>(texts.size());
+        List<Citation> citations = new ArrayList<Citation>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            if (text.length() > MAX_REFERENCE_LENGTH) {
+                entries[i] = new BibEntry().setText(text);
+                continue;
+            }
+            Citation citation = CitationUtils.stringToCitation(text);
+            if (citation.getTokens().isEmpty()) {
+                entries[i] = CitationUtils.citationToBibref(citation);
+                continue;
+            }
+            indices.add(i);
+            citations.add(citation);
+        }
+        if (indices.isEmpty()) {
+            return Arrays.asList(entries);
+        }
+        
+        LabelsSequence[] labelSequences = decode(toInstances(citations));
+        for (int i = 0; i < indices.size(); i++) {
+            entries[indices.get(i)] = toBibEntry(citations.get(i), labelSequences[i]);
+        }
+        return Arrays.asList(entries);
+    }
+    
+    /**
+     * Decodes the instances. Instances are claimed one by one by the
+     * calling thread and by the helper tasks submitted to the executor,
+     * so a busy executor slows the call down, but never blocks it.
+     */
+    private LabelsSequence[] decode(final List<Instance> instances) throws AnalysisException {
+        final LabelsSequence[] labelSequences = new LabelsSequence[instances.size()];
+        int helpers = executor == null ? 0 : Math.min(instances.size(), parallelism) - 1;
+        if (helpers <= 0) {
+            Inferencer decoder = borrowDecoder();
+            try {
+                for (int i = 0; i < labelSequences.length; i++) {
+                    labelSequences[i] = decode(instances.get(i), decoder);
+                }
+            } finally {
+                decoders.add(decoder);
+            }
+            return labelSequences;
+        }
+        
+        final AtomicInteger nextInstance = new AtomicInteger();
+        final CountDownLatch finished = new CountDownLatch(labelSequences.length);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                Inferencer decoder = null;
+                int index;
+                while ((index = nextInstance.getAndIncrement()) < labelSequences.length) {
+                    try {
+                        if (decoder == null) {
+                            decoder = borrowDecoder();
+                        }
+                        labelSequences[index] = decode(instances.get(index), decoder);
+                    } catch (Throwable ex) {
+                        error.compareAndSet(null, ex);
+                    } finally {
+                        finished.countDown();
+                    }
+                }
+                if (decoder != null) {
+                    decoders.add(decoder);
+                }
+            }
+        };
+        for (int i = 0; i < helpers; i++) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException ex) {
+                break;
+            }
+        }
+        worker.run();
+        
+        boolean interrupted = false;
+        while (true) {
+            try {
+                finished.await();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        Throwable ex = error.get();
+        if (ex instanceof Error) {
+            throw (Error) ex;
+        } else if (ex != null) {
+            throw new AnalysisException("Cannot parse references!", ex);
+        }
+        return labelSequences;
+    }
+    
+    private BibEntry toBibEntry(Citation citation, LabelsSequence labelSequence) {
         for (int i = 0; i < labelSequence.size(); i++) {
             citation.getTokens().get(i).setLabel(CitationTokenLabel.valueOf(labelSequence.get(i).toString()));
         }
-        
         return CitationUtils.citationToBibref(citation);
     }
+    
+    /**
+     * Decodes the instance, as {@link ACRF#getBestLabels(Instance)} does, but with the given
+     * inferencer instead of the model's one. The unrolled graph and the inference state belong
+     * to the calling thread, the shared model is only read.
+     */
+    private LabelsSequence decode(Instance instance, Inferencer decoder) {
+        ACRF.UnrolledGraph unrolled = model.unroll(instance);
+        decoder.computeMarginals(unrolled);
+        Labels[] labels = new Labels[((FeatureVectorSequence) instance.getData()).size()];
+        for (int i = 0; i < labels.length; i++) {
+            Variable variable = unrolled.varOfIndex(i, 0);
+            int best = decoder.lookupMarginal(variable).argmax();
+            labels[i] = new Labels(new Label[]{variable.getLabelAlphabet().lookupLabel(best)});
+        }
+        return new LabelsSequence(labels);
+    }
+    
+    /**
+     * Returns a Viterbi inferencer for the exclusive use of the calling thread,
+     * which should give it back to the decoders queue when it is done.
+     * New inferencers are deserialized, as cloning shares their message 
+     * and termination state.
+     */
+    private Inferencer borrowDecoder() throws AnalysisException {
+        Inferencer decoder = decoders.poll();
+        if (decoder != null) {
+            return decoder;
+        }
+        try {
+            ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(viterbiInferencer));
+            try {
+                return (Inferencer) ois.readObject();
+            } finally {
+                ois.close();
+            }
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot create inferencer!", ex);
+        } catch (ClassNotFoundException ex) {
+            throw new AnalysisException("Cannot create inferencer!", ex);
+        }
+    }
+    
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        oos.writeObject(object);
+        oos.close();
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Returns the approximate size of the model, measured as the size
+     * of its uncompressed serialized form.
+     * 
+     * @return model size in bytes
+     */
+    public long getModelSize() {
+        return modelSize;
+    }
+    
+    /**
+     * Returns the key identifying the model by the checksum of its file,
+     * the same as the one used by the model registry for the model streams.
+     * 
+     * @return model checksum key
+     */
+    public String getModelKey() {
+        return modelKey;
+    }
   
+    /**
+     * Returns the parser with the default model, shared by all the extractors.
+     * 
+     * @return shared parser instance
+     * @throws AnalysisException 
+     */
     public static CRFBibReferenceParser getInstance() throws AnalysisException {
-        return new CRFBibReferenceParser(CRFBibReferenceParser.class.getResourceAsStream(defaultModelFile));
+        return ModelRegistry.getDefault().getModel(
+                ModelRegistry.resourceKey(CRFBibReferenceParser.class, defaultModelFile),
+                new CRFModelLoader() {
+
+                    @Override
+                    public CRFBibReferenceParser load() throws AnalysisException {
+                        return new CRFBibReferenceParser(CRFBibReferenceParser.class.getResourceAsStream(defaultModelFile));
+                    }
+                });
+    }
+    
+    /**
+     * Returns the parser with the model read from the given stream.
+     * Parsers are shared by all the extractors using the same model file.
+     * 
+     * @param modelInputStream gzipped model stream
+     * @return shared parser instance
+     * @throws AnalysisException 
+     */
+    public static CRFBibReferenceParser getInstance(InputStream modelInputStream) throws AnalysisException {
+        final byte[] modelBytes;
+        try {
+            modelBytes = IOUtils.toByteArray(modelInputStream);
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot set model!", ex);
+        }
+        return ModelRegistry.getDefault().getModel(
+                ModelRegistry.checksumKey(CRFBibReferenceParser.class, modelBytes),
+                new CRFModelLoader() {
+
+                    @Override
+                    public CRFBibReferenceParser load() throws AnalysisException {
+                        return new CRFBibReferenceParser(new ByteArrayInputStream(modelBytes));
+                    }
+                });
+    }
+    
+    private abstract static class CRFModelLoader implements ModelLoader<CRFBibReferenceParser> {
+
+        @Override
+        public long estimateSize(CRFBibReferenceParser parser) {
+            return parser.getModelSize();
+        }
+        
     }
     
 }
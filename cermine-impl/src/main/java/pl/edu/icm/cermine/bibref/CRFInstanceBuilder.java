@@ -0,0 +1,163 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.bibref;
+
+import edu.umass.cs.mallet.base.types.Alphabet;
+import edu.umass.cs.mallet.base.types.FeatureVector;
+import edu.umass.cs.mallet.base.types.FeatureVectorSequence;
+import edu.umass.cs.mallet.base.types.Instance;
+import edu.umass.cs.mallet.base.types.Labels;
+import edu.umass.cs.mallet.base.types.LabelsSequence;
+import java.util.*;
+import pl.edu.icm.cermine.bibref.parsing.model.Citation;
+import pl.edu.icm.cermine.bibref.parsing.model.CitationToken;
+import pl.edu.icm.cermine.bibref.parsing.tools.CitationUtils;
+import pl.edu.icm.cermine.bibref.parsing.tools.FeatureList;
+import pl.edu.icm.cermine.tools.classification.features.FeatureSchema;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
+
+/**
+ * Builds CRF input instances directly from the feature values of citation tokens.
+ * The features are named and selected by the same {@link CitationUtils} methods as
+ * in the text format of {@link CitationUtils#citationToMalletInputFormat(Citation, Set)},
+ * and the vectors are binary, as those of the model's input pipe. Alphabet indices
+ * of all the features and their windowed variants are looked up once. Features unknown
+ * to the model are skipped, as the pipe does once the growth of its alphabet is stopped.
+ */
+class CRFInstanceBuilder {
+    
+    private static final int WINDOW = CitationUtils.CRF_FEATURE_WINDOW;
+    
+    private final Alphabet alphabet;
+    
+    /** target of every token, not used by decoding */
+    private final Labels defaultLabels;
+    
+    private final Set<String> words;
+    
+    private final FeatureVectorBuilder<CitationToken, Citation> vectorBuilder = FeatureList.VECTOR_BUILDER;
+    
+    private final String[] schemaNames;
+    
+    /** alphabet indices of the schema features, for every offset within the window */
+    private final int[][] schemaIndices;
+    
+    /** alphabet indices of the word features, for every offset within the window */
+    private final Map<String, int[]> wordIndices = new HashMap<String, int[]>();
+    
+    /**
+     * @param alphabet data alphabet of the model's input pipe
+     * @param defaultLabels target labels of a single token
+     * @param words words used as features
+     */
+    CRFInstanceBuilder(Alphabet alphabet, Labels defaultLabels, Set<String> words) {
+        this.alphabet = alphabet;
+        this.defaultLabels = defaultLabels;
+        this.words = words;
+        FeatureSchema schema = vectorBuilder.getSchema();
+        schemaNames = new String[schema.size()];
+        schemaIndices = new int[schema.size()][];
+        for (int i = 0; i < schema.size(); i++) {
+            schemaNames[i] = schema.getName(i);
+            schemaIndices[i] = lookupIndices(schemaNames[i]);
+        }
+        for (String word : words) {
+            wordIndices.put(word, lookupIndices(word));
+        }
+    }
+    
+    private int[] lookupIndices(String name) {
+        int[] indices = new int[2 * WINDOW + 1];
+        for (int offset = -WINDOW; offset <= WINDOW; offset++) {
+            indices[offset + WINDOW] = alphabet.lookupIndex(CitationUtils.windowFeatureName(name, offset), false);
+        }
+        return indices;
+    }
+    
+    /**
+     * Builds the instance of a citation.
+     * 
+     * @param citation citation
+     * @return instance with a feature vector sequence as data
+     */
+    Instance build(Citation citation) {
+        List<CitationToken> tokens = citation.getTokens();
+        
+        // schema indices of the active features and alphabet indices of the word feature of every token
+        List<int[]> active = new ArrayList<int[]>(tokens.size());
+        List<int[]> tokenWords = new ArrayList<int[]>(tokens.size());
+        double[] values = null;
+        int[] buffer = new int[schemaIndices.length];
+        for (CitationToken token : tokens) {
+            values = vectorBuilder.getFeatureValues(token, citation, values);
+            int count = 0;
+            for (int i = 0; i < schemaIndices.length; i++) {
+                if (CitationUtils.isActiveFeature(schemaNames[i], values[i])) {
+                    buffer[count++] = i;
+                }
+            }
+            active.add(Arrays.copyOf(buffer, count));
+            String word = CitationUtils.wordFeatureName(token, words);
+            tokenWords.add(word == null ? null : wordIndices.get(word));
+        }
+        
+        FeatureVector[] vectors = new FeatureVector[tokens.size()];
+        Labels[] labels = new Labels[tokens.size()];
+        int[] indices = new int[16];
+        for (int i = 0; i < tokens.size(); i++) {
+            int count = 0;
+            for (int offset = -WINDOW; offset <= WINDOW; offset++) {
+                int position = i + offset;
+                if (position < 0 || position >= tokens.size()) {
+                    continue;
+                }
+                int[] tokenActive = active.get(position);
+                int[] word = tokenWords.get(position);
+                if (indices.length < count + tokenActive.length + 1) {
+                    indices = Arrays.copyOf(indices, 2 * (count + tokenActive.length + 1));
+                }
+                for (int feature : tokenActive) {
+                    int index = schemaIndices[feature][offset + WINDOW];
+                    if (index >= 0) {
+                        indices[count++] = index;
+                    }
+                }
+                if (word != null && word[offset + WINDOW] >= 0) {
+                    indices[count++] = word[offset + WINDOW];
+                }
+            }
+            vectors[i] = new FeatureVector(alphabet, distinct(indices, count));
+            labels[i] = defaultLabels;
+        }
+        
+        return new Instance(new FeatureVectorSequence(vectors), new LabelsSequence(labels), null, null);
+    }
+    
+    private static int[] distinct(int[] indices, int count) {
+        Arrays.sort(indices, 0, count);
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            if (size == 0 || indices[size - 1] != indices[i]) {
+                indices[size++] = indices[i];
+            }
+        }
+        return Arrays.copyOf(indices, size);
+    }
+    
+}
@@ -0,0 +1,459 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.bibref;
+
+import java.io.*;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.edu.icm.cermine.bibref.model.BibEntry;
+import pl.edu.icm.cermine.bibref.model.BibEntryField;
+import pl.edu.icm.cermine.exception.AnalysisException;
+
+/**
+ * Bibliographic reference parser caching the results of another parser.
+ * <p>
+ * References are looked up by their normalized text: compatibility characters
+ * such as ligatures are decomposed and whitespace is collapsed. Hyphens are kept,
+ * as the references joined from lines do not tell a hyphenated word from a hyphen
+ * followed by a space. The least recently used entries are evicted when
+ * the cache is full. Optionally the entries are appended to a file and read
+ * back when a parser is created with the same file, so that the cache survives
+ * restarts. The file starts with the fingerprint of the parser which wrote it,
+ * the entries parsed by a different parser or model are discarded.
+ * <p>
+ * The parser is not used by the extractors, it is meant to wrap the parser
+ * passed to {@link pl.edu.icm.cermine.PdfBibEntryReferencesExtractor}
+ * by the applications parsing the same references many times.
+ */
+public class CachingBibReferenceParser implements BibReferenceParser<BibEntry>, Closeable {
+    
+    private static final Logger log = LoggerFactory.getLogger(CachingBibReferenceParser.class);
+    
+    private static final int FILE_MAGIC = 0x43424331;
+    
+    private static final int MAX_STRING_LENGTH = 1 << 20;
+    
+    private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
+    
+    private final BibReferenceParser<BibEntry> parser;
+    
+    private final int maxEntries;
+    
+    private final Map<String, BibEntry> cache;
+    
+    private final File cacheFile;
+    
+    private final String fingerprint;
+    
+    /** guards the cache file, always acquired before the cache lock */
+    private final Object fileLock = new Object();
+    
+    private DataOutputStream cacheOutput;
+    
+    /** number of records in the cache file, including overwritten and evicted ones */
+    private int fileRecords;
+    
+    private final AtomicLong hits = new AtomicLong();
+    
+    private final AtomicLong misses = new AtomicLong();
+    
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates an in-memory cache.
+     * 
+     * @param parser parser of the references not found in the cache
+     * @param maxEntries maximum number of cached references
+     */
+    public CachingBibReferenceParser(BibReferenceParser<BibEntry> parser, int maxEntries) {
+        this.parser = parser;
+        this.maxEntries = maxEntries;
+        this.cacheFile = null;
+        this.fingerprint = null;
+        this.cache = createCache();
+    }
+    
+    /**
+     * Creates a cache backed by a file. The entries stored in the file are
+     * loaded if the file was written with the same fingerprint, and new entries
+     * are appended to it.
+     * 
+     * @param parser parser of the references not found in the cache
+     * @param maxEntries maximum number of cached references
+     * @param cacheFile cache file, created if it does not exist
+     * @param fingerprint identifier of the parser and its model, 
+     * such as {@link CRFBibReferenceParser#getModelKey()}
+     * @throws AnalysisException 
+     */
+    public CachingBibReferenceParser(BibReferenceParser<BibEntry> parser, int maxEntries, File cacheFile,
+            String fingerprint) throws AnalysisException {
+        this.parser = parser;
+        this.maxEntries = maxEntries;
+        this.cacheFile = cacheFile;
+        this.fingerprint = fingerprint;
+        this.cache = createCache();
+        try {
+            loadCacheFile();
+            if (fileRecords > 2 * maxEntries) {
+                compactCacheFile();
+            } else {
+                openCacheFile(true);
+            }
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot open reference cache file " + cacheFile + "!", ex);
+        }
+        evictions.set(0);
+    }
+
+    private Map<String, BibEntry> createCache() {
+        return new LinkedHashMap<String, BibEntry>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BibEntry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public BibEntry parseBibReference(String text) throws AnalysisException {
+        String key = normalize(text);
+        BibEntry cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+            return copy(cached, text);
+        }
+        misses.incrementAndGet();
+        BibEntry entry = parser.parseBibReference(text);
+        if (entry != null) {
+            put(key, entry);
+        }
+        return entry;
+    }
+
+    @Override
+    public List<BibEntry> parseBibReferences(List<String> texts) throws AnalysisException {
+        BibEntry[] entries = new BibEntry[texts.size()];
+        Map<String, List<Integer>> missing = new LinkedHashMap<String, List<Integer>>();
+        List<String> missingTexts = new ArrayList<String>();
+        synchronized (cache) {
+            for (int i = 0; i < texts.size(); i++) {
+                String key = normalize(texts.get(i));
+                BibEntry cached = cache.get(key);
+                if (cached != null) {
+                    entries[i] = copy(cached, texts.get(i));
+                    hits.incrementAndGet();
+                } else if (missing.containsKey(key)) {
+                    missing.get(key).add(i);
+                    hits.incrementAndGet();
+                } else {
+                    missing.put(key, new ArrayList<Integer>(Arrays.asList(i)));
+                    missingTexts.add(texts.get(i));
+                    misses.incrementAndGet();
+                }
+            }
+        }
+        if (missingTexts.isEmpty()) {
+            return Arrays.asList(entries);
+        }
+        
+        List<BibEntry> parsed = parser.parseBibReferences(missingTexts);
+        int index = 0;
+        for (Map.Entry<String, List<Integer>> miss : missing.entrySet()) {
+            BibEntry entry = parsed.get(index++);
+            List<Integer> positions = miss.getValue();
+            entries[positions.get(0)] = entry;
+            if (entry == null) {
+                continue;
+            }
+            for (int i = 1; i < positions.size(); i++) {
+                entries[positions.get(i)] = copy(entry, texts.get(positions.get(i)));
+            }
+            put(miss.getKey(), entry);
+        }
+        return Arrays.asList(entries);
+    }
+    
+    /**
+     * Returns the cache key of the reference text.
+     * 
+     * @param text reference text
+     * @return normalized text
+     */
+    public static String normalize(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        return WHITESPACE_PATTERN.matcher(normalized).replaceAll(" ").trim();
+    }
+    
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+    
+    public double getHitRatio() {
+        long requests = hits.get() + misses.get();
+        return requests == 0 ? 0 : (double) hits.get() / requests;
+    }
+    
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+    
+    /**
+     * Removes all the entries from the cache and truncates the cache file.
+     * 
+     * @throws IOException 
+     */
+    public void clear() throws IOException {
+        synchronized (fileLock) {
+            synchronized (cache) {
+                cache.clear();
+            }
+            if (cacheFile != null) {
+                compactCacheFile();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (fileLock) {
+            if (cacheOutput != null) {
+                cacheOutput.close();
+                cacheOutput = null;
+            }
+        }
+        log.debug("Reference cache closed: {} hits, {} misses, {} evictions",
+                new Object[]{hits.get(), misses.get(), evictions.get()});
+    }
+    
+    private void put(String key, BibEntry entry) {
+        BibEntry stored = copy(entry, entry.getText());
+        synchronized (cache) {
+            cache.put(key, stored);
+        }
+        if (cacheFile == null) {
+            return;
+        }
+        synchronized (fileLock) {
+            if (cacheOutput == null) {
+                return;
+            }
+            try {
+                writeRecord(cacheOutput, key, stored);
+                cacheOutput.flush();
+                fileRecords++;
+                if (fileRecords > 2 * maxEntries) {
+                    compactCacheFile();
+                }
+            } catch (IOException ex) {
+                log.warn("Cannot write reference cache file " + cacheFile + ", persistence disabled", ex);
+                IOUtils.closeQuietly(cacheOutput);
+                cacheOutput = null;
+            }
+        }
+    }
+    
+    /**
+     * Copies the cached entry for the given text. Field positions are looked up
+     * again if the text differs from the text the entry was parsed from.
+     */
+    private static BibEntry copy(BibEntry entry, String text) {
+        BibEntry copy = new BibEntry(entry.getType(), entry.getKey());
+        copy.setText(text);
+        boolean sameText = text == null ? entry.getText() == null : text.equals(entry.getText());
+        for (String fieldKey : entry.getFieldKeys()) {
+            int from = 0;
+            for (BibEntryField field : entry.getAllFields(fieldKey)) {
+                if (sameText) {
+                    copy.addField(fieldKey, field.getText(), field.getStartIndex(), field.getEndIndex());
+                    continue;
+                }
+                int start = text == null || field.getStartIndex() < 0 ? -1 : text.indexOf(field.getText(), from);
+                if (start < 0) {
+                    copy.addField(fieldKey, field.getText());
+                } else {
+                    copy.addField(fieldKey, field.getText(), start, start + field.getText().length());
+                    from = start + field.getText().length();
+                }
+            }
+        }
+        return copy;
+    }
+    
+    private void loadCacheFile() throws IOException {
+        if (!cacheFile.exists() || cacheFile.length() == 0) {
+            return;
+        }
+        CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+        DataInputStream input = new DataInputStream(counter);
+        long validLength = 0;
+        try {
+            if (input.readInt() != FILE_MAGIC) {
+                throw new IOException("Not a reference cache file: " + cacheFile);
+            }
+            String fileFingerprint = readString(input);
+            if (fingerprint == null ? fileFingerprint != null : !fingerprint.equals(fileFingerprint)) {
+                log.info("Reference cache file {} was written by a different parser, discarding it", cacheFile);
+                input.close();
+                if (!cacheFile.delete()) {
+                    throw new IOException("Cannot delete reference cache file " + cacheFile);
+                }
+                return;
+            }
+            validLength = counter.getByteCount();
+            while (true) {
+                String key = readString(input);
+                BibEntry entry = readEntry(input);
+                cache.put(key, entry);
+                fileRecords++;
+                validLength = counter.getByteCount();
+            }
+        } catch (EOFException ex) {
+            // the last record may be incomplete if the writing process was killed
+        } finally {
+            input.close();
+        }
+        if (validLength < cacheFile.length()) {
+            RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+            try {
+                file.setLength(validLength);
+            } finally {
+                file.close();
+            }
+        }
+    }
+    
+    private void compactCacheFile() throws IOException {
+        if (cacheOutput != null) {
+            cacheOutput.close();
+            cacheOutput = null;
+        }
+        Map<String, BibEntry> entries;
+        synchronized (cache) {
+            entries = new LinkedHashMap<String, BibEntry>(cache);
+        }
+        File tmpFile = new File(cacheFile.getPath() + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        try {
+            output.writeInt(FILE_MAGIC);
+            writeString(output, fingerprint);
+            for (Map.Entry<String, BibEntry> entry : entries.entrySet()) {
+                writeRecord(output, entry.getKey(), entry.getValue());
+            }
+        } finally {
+            output.close();
+        }
+        if (!cacheFile.delete() && cacheFile.exists() || !tmpFile.renameTo(cacheFile)) {
+            throw new IOException("Cannot replace reference cache file " + cacheFile);
+        }
+        fileRecords = entries.size();
+        openCacheFile(false);
+    }
+    
+    private void openCacheFile(boolean append) throws IOException {
+        boolean empty = !cacheFile.exists() || cacheFile.length() == 0;
+        cacheOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile, append || !empty)));
+        if (empty) {
+            cacheOutput.writeInt(FILE_MAGIC);
+            writeString(cacheOutput, fingerprint);
+            cacheOutput.flush();
+        }
+    }
+    
+    private static void writeRecord(DataOutputStream output, String key, BibEntry entry) throws IOException {
+        writeString(output, key);
+        writeString(output, entry.getType());
+        writeString(output, entry.getKey());
+        writeString(output, entry.getText());
+        int count = 0;
+        for (String fieldKey : entry.getFieldKeys()) {
+            count += entry.getAllFields(fieldKey).size();
+        }
+        output.writeInt(count);
+        for (String fieldKey : entry.getFieldKeys()) {
+            for (BibEntryField field : entry.getAllFields(fieldKey)) {
+                writeString(output, fieldKey);
+                writeString(output, field.getText());
+                output.writeInt(field.getStartIndex());
+                output.writeInt(field.getEndIndex());
+            }
+        }
+    }
+    
+    private static BibEntry readEntry(DataInputStream input) throws IOException {
+        BibEntry entry = new BibEntry(readString(input), readString(input));
+        entry.setText(readString(input));
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            String fieldKey = readString(input);
+            String value = readString(input);
+            int start = input.readInt();
+            int end = input.readInt();
+            entry.addField(fieldKey, value, start, end);
+        }
+        return entry;
+    }
+    
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        if (string == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes("UTF-8");
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+    
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_STRING_LENGTH) {
+            throw new EOFException("Corrupted reference cache record");
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+    
+}
@@ -83,6 +83,15 @@ public class HMMBibReferenceParser implements BibReferenceParser<BibEntry> {
 		return CitationUtils.citationToBibref(citation);
 	}
 
+	@Override
+	public List<BibEntry> parseBibReferences(List<String> texts) {
+		List<BibEntry> entries = new ArrayList<BibEntry>(texts.size());
+		for (String text : texts) {
+			entries.add(parseBibReference(text));
+		}
+		return entries;
+	}
+
 	public void setFeatureVectorBuilder(
 			FeatureVectorBuilder<CitationToken, Citation> featureVectorBuilder) {
 		this.featureVectorBuilder = featureVectorBuilder;
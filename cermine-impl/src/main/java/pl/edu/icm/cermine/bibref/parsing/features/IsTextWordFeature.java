@@ -18,10 +18,9 @@
 
 package pl.edu.icm.cermine.bibref.parsing.features;
 
-import java.util.Arrays;
-import java.util.List;
 import pl.edu.icm.cermine.bibref.parsing.model.Citation;
 import pl.edu.icm.cermine.bibref.parsing.model.CitationToken;
+import pl.edu.icm.cermine.bibref.parsing.tools.Gazetteer;
 import pl.edu.icm.cermine.tools.classification.features.FeatureCalculator;
 /**
  *
@@ -36,13 +35,8 @@ public class IsTextWordFeature extends FeatureCalculator<CitationToken, Citation
         return featureName;
     }
 
-    private static List<String> keywords = Arrays.asList(
-            "preprint", "preparation", "submitted", "phd", "thesis", "available", "thèse", "doctorale", "paraître",
-            "appear", "proceeding", "proceedings");
-
-
     @Override
     public double calculateFeatureValue(CitationToken object, Citation context) {
-        return (keywords.contains(object.getText().toLowerCase())) ? 1 : 0;
+        return Gazetteer.getDefault().contains(object.getText(), Gazetteer.Dictionary.TEXT_WORD) ? 1 : 0;
     }
 }
@@ -50,6 +50,9 @@ public final class CitationUtils {
         TO_BIBENTRY.put(CitationTokenLabel.ISSUE,           BibEntry.FIELD_NUMBER);
     }
 
+    /** number of neighbouring tokens on each side whose features are added to the token's features */
+    public static final int CRF_FEATURE_WINDOW = 2;
+
     private CitationUtils() {}
     
     public static Citation stringToCitation(String citation) {
@@ -218,68 +221,95 @@ public final class CitationUtils {
         return bibEntry;
     }
     
-    public static List<String> citationToMalletInputFormat(Citation citation, Set<String> words) {
-        List<String> trainingExamples = new ArrayList<String>();
-
-        FeatureVectorBuilder vectorBuilder = FeatureList.VECTOR_BUILDER;
+    /**
+     * Returns the names of the features of the citation's tokens with non-zero values.
+     * Token texts which belong to the given set of words are features as well.
+     * 
+     * @param citation citation
+     * @param words words used as features
+     * @return list of feature names of every token
+     */
+    public static List<List<String>> citationToFeatureNames(Citation citation, Set<String> words) {
+        FeatureVectorBuilder<CitationToken, Citation> vectorBuilder = FeatureList.VECTOR_BUILDER;
         
         List<CitationToken> tokens = citation.getTokens();
-        List<FeatureVector> featureVectors = new ArrayList<FeatureVector>();
+        List<List<String>> featureNames = new ArrayList<List<String>>(tokens.size());
         for (CitationToken token : tokens) {
             FeatureVector featureVector = vectorBuilder.getFeatureVector(token, citation);
-            for (String featureName : featureVector.getFeatureNames()) {
-                if (Double.isNaN(featureVector.getValue(featureName))) {
-                    throw new RuntimeException("Feature value is set to NaN: "+featureName);
+            List<String> names = featureVector.getFeatureNames();
+            List<String> tokenNames = new ArrayList<String>();
+            for (int i = 0; i < names.size(); i++) {
+                if (isActiveFeature(names.get(i), featureVector.getValue(i))) {
+                    tokenNames.add(names.get(i));
                 }
             }
-            if (words.contains(token.getText().toLowerCase())) {
-                featureVector.addFeature(token.getText().toLowerCase(), 1);
+            String word = wordFeatureName(token, words);
+            if (word != null) {
+                tokenNames.add(word);
             }
-            featureVectors.add(featureVector);
+            featureNames.add(tokenNames);
         }
+        return featureNames;
+    }
+    
+    /**
+     * Returns whether the feature with the given value is present in the CRF input.
+     * 
+     * @param name feature name
+     * @param value feature value
+     * @return true if the feature is present
+     */
+    public static boolean isActiveFeature(String name, double value) {
+        if (Double.isNaN(value)) {
+            throw new RuntimeException("Feature value is set to NaN: "+name);
+        }
+        return value > Double.MIN_VALUE;
+    }
+    
+    /**
+     * Returns the name of the word feature of the token.
+     * 
+     * @param token citation token
+     * @param words words used as features
+     * @return feature name, or null if the token's text is not one of the words
+     */
+    public static String wordFeatureName(CitationToken token, Set<String> words) {
+        String word = token.getText().toLowerCase();
+        return words.contains(word) ? word : null;
+    }
+    
+    /**
+     * Returns the name of the feature of a neighbouring token, as used
+     * in the CRF input.
+     * 
+     * @param name feature name
+     * @param offset position of the neighbouring token relative to the current one,
+     * from -{@link #CRF_FEATURE_WINDOW} to {@link #CRF_FEATURE_WINDOW}
+     * @return feature name
+     */
+    public static String windowFeatureName(String name, int offset) {
+        return offset == 0 ? name : name + "@" + offset;
+    }
+    
+    public static List<String> citationToMalletInputFormat(Citation citation, Set<String> words) {
+        List<CitationToken> tokens = citation.getTokens();
+        List<List<String>> featureNames = citationToFeatureNames(citation, words);
+        List<String> trainingExamples = new ArrayList<String>(tokens.size());
         
+        StringBuilder stringBuilder = new StringBuilder();
         for (int i = 0; i < tokens.size(); i++) {
-            StringBuilder stringBuilder = new StringBuilder();
+            stringBuilder.setLength(0);
             
             stringBuilder.append(tokens.get(i).getLabel());
             stringBuilder.append(" ---- ");
-               
-            if (i >= 2) {
-                for (String n : featureVectors.get(i-2).getFeatureNames()) {
-                    if (featureVectors.get(i-2).getValue(n) > Double.MIN_VALUE) {
-                        stringBuilder.append(n);
-                        stringBuilder.append("@-2 ");
-                    }
-                }
-            }
-            if (i >= 1) {
-                for (String n : featureVectors.get(i-1).getFeatureNames()) {
-                    if (featureVectors.get(i-1).getValue(n) > Double.MIN_VALUE) {
-                        stringBuilder.append(n);
-                        stringBuilder.append("@-1 ");
-                    }
-                }
-            }
-            for (String n : featureVectors.get(i).getFeatureNames()) {
-                if (featureVectors.get(i).getValue(n) > Double.MIN_VALUE) {
-                    stringBuilder.append(n);
-                    stringBuilder.append(" ");
-                }
-            }
-            if (i < featureVectors.size()-1) {
-                for (String n : featureVectors.get(i+1).getFeatureNames()) {
-                    if (featureVectors.get(i+1).getValue(n) > Double.MIN_VALUE) {
-                        stringBuilder.append(n);
-                        stringBuilder.append("@1 ");
-                    }
+            
+            for (int offset = -CRF_FEATURE_WINDOW; offset <= CRF_FEATURE_WINDOW; offset++) {
+                if (i + offset < 0 || i + offset >= tokens.size()) {
+                    continue;
                 }
-            }
-            if (i < featureVectors.size()-2) {
-                for (String n : featureVectors.get(i+2).getFeatureNames()) {
-                    if (featureVectors.get(i+2).getValue(n) > Double.MIN_VALUE) {
-                        stringBuilder.append(n);
-                        stringBuilder.append("@2 ");
-                    }
+                for (String n : featureNames.get(i + offset)) {
+                    stringBuilder.append(windowFeatureName(n, offset));
+                    stringBuilder.append(' ');
                 }
             }
             while (stringBuilder.length() > 0 && Character.isWhitespace(stringBuilder.charAt(stringBuilder.length() - 1))) {
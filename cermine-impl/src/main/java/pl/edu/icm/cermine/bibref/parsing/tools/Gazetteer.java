@@ -0,0 +1,235 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.bibref.parsing.tools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Dictionaries of words used as citation token features. All the dictionaries
+ * are kept in a single hash map from a word to the bit set of the dictionaries
+ * containing it, so that all the dictionary features of a token can be answered
+ * by a single lookup of its normalized text.
+ * <p>
+ * Entries consisting of many words, such as city or journal names, are split
+ * into words, as the dictionaries are matched against single tokens.
+ * Gazetteers are created by a {@link Builder} and cannot be modified,
+ * so they can be shared by all the threads.
+ * <p>
+ * The dictionary features of a token are calculated one after another,
+ * so every gazetteer remembers the memberships of the last word looked up
+ * by {@link #contains(String, Dictionary)} on each thread, and all the
+ * features of a token share a single lookup. The remembered words belong
+ * to the gazetteer and are dropped with it, so they never outlive
+ * a gazetteer replaced by {@link #setDefault(Gazetteer)}.
+ */
+public final class Gazetteer {
+    
+    /**
+     * Dictionaries, with the resources of their default entries.
+     */
+    public enum Dictionary {
+        
+        CITY                ("cities.txt"),
+        PUBLISHER_WORD      ("publisher-words.txt"),
+        SERIES_WORD         ("series-words.txt"),
+        SOURCE_WORD         ("source-words.txt"),
+        TEXT_WORD           ("text-words.txt");
+        
+        private final String resource;
+
+        private Dictionary(String resource) {
+            this.resource = "/pl/edu/icm/cermine/bibref/dictionaries/" + resource;
+        }
+        
+        private long getMask() {
+            return 1L << ordinal();
+        }
+    }
+    
+    private static volatile Gazetteer defaultGazetteer;
+    
+    private final Map<String, Long> memberships;
+    
+    private final ThreadLocal<Lookup> lastLookup = new ThreadLocal<Lookup>();
+    
+    private Gazetteer(Map<String, Long> memberships) {
+        this.memberships = Collections.unmodifiableMap(new HashMap<String, Long>(memberships));
+    }
+    
+    /**
+     * Returns the gazetteer with the default dictionaries, used by the citation token features.
+     * 
+     * @return default gazetteer
+     */
+    public static Gazetteer getDefault() {
+        Gazetteer gazetteer = defaultGazetteer;
+        if (gazetteer == null) {
+            synchronized (Gazetteer.class) {
+                gazetteer = defaultGazetteer;
+                if (gazetteer == null) {
+                    try {
+                        gazetteer = new Builder().loadDefaults().build();
+                    } catch (IOException ex) {
+                        throw new IllegalStateException("Cannot load default dictionaries!", ex);
+                    }
+                    defaultGazetteer = gazetteer;
+                }
+            }
+        }
+        return gazetteer;
+    }
+    
+    /**
+     * Sets the gazetteer used by the citation token features, for example one with
+     * larger, external dictionaries. As the features of the bundled models were
+     * computed with the default dictionaries, models should be retrained.
+     * 
+     * @param gazetteer gazetteer, or null to restore the default one
+     */
+    public static void setDefault(Gazetteer gazetteer) {
+        defaultGazetteer = gazetteer;
+    }
+    
+    /**
+     * Returns the bit set of the dictionaries containing the word,
+     * with the bit of each dictionary at the position of its ordinal.
+     * 
+     * @param word word
+     * @return dictionary memberships
+     */
+    public long getMemberships(String word) {
+        Long wordMemberships = memberships.get(normalize(word));
+        return wordMemberships == null ? 0L : wordMemberships;
+    }
+    
+    /**
+     * @param word word
+     * @param dictionary dictionary
+     * @return whether the dictionary contains the word
+     */
+    public boolean contains(String word, Dictionary dictionary) {
+        Lookup lookup = lastLookup.get();
+        if (lookup == null || !lookup.word.equals(word)) {
+            lookup = new Lookup(word, getMemberships(word));
+            lastLookup.set(lookup);
+        }
+        return contains(lookup.memberships, dictionary);
+    }
+    
+    /**
+     * @param memberships dictionary memberships returned by {@link #getMemberships(String)}
+     * @param dictionary dictionary
+     * @return whether the dictionary is one of the memberships
+     */
+    public static boolean contains(long memberships, Dictionary dictionary) {
+        return (memberships & dictionary.getMask()) != 0;
+    }
+    
+    /**
+     * Returns the normalized form of a word, as matched against the dictionaries.
+     * 
+     * @param word word
+     * @return normalized word
+     */
+    public static String normalize(String word) {
+        return word.toLowerCase();
+    }
+    
+    private static final class Lookup {
+        
+        private final String word;
+        
+        private final long memberships;
+
+        Lookup(String word, long memberships) {
+            this.word = word;
+            this.memberships = memberships;
+        }
+    }
+    
+    /**
+     * Collects the entries of the dictionaries.
+     */
+    public static final class Builder {
+        
+        private final Map<String, Long> memberships = new HashMap<String, Long>();
+        
+        /**
+         * Adds the default entries of all the dictionaries.
+         * 
+         * @return this builder
+         * @throws IOException 
+         */
+        public Builder loadDefaults() throws IOException {
+            for (Dictionary dictionary : Dictionary.values()) {
+                InputStream is = Gazetteer.class.getResourceAsStream(dictionary.resource);
+                try {
+                    addEntries(dictionary, is);
+                } finally {
+                    IOUtils.closeQuietly(is);
+                }
+            }
+            return this;
+        }
+        
+        /**
+         * Adds the entries read from a UTF-8 stream, one entry per line.
+         * 
+         * @param dictionary dictionary
+         * @param is input stream
+         * @return this builder
+         * @throws IOException 
+         */
+        public Builder addEntries(Dictionary dictionary, InputStream is) throws IOException {
+            return addEntries(dictionary, IOUtils.readLines(is, "UTF-8"));
+        }
+        
+        /**
+         * Adds the entries to a dictionary.
+         * 
+         * @param dictionary dictionary
+         * @param entries entries
+         * @return this builder
+         */
+        public Builder addEntries(Dictionary dictionary, Collection<String> entries) {
+            for (String entry : entries) {
+                for (String word : entry.split("\\s+")) {
+                    if (word.isEmpty()) {
+                        continue;
+                    }
+                    String normalized = normalize(word);
+                    Long current = memberships.get(normalized);
+                    memberships.put(normalized, (current == null ? 0L : current) | dictionary.getMask());
+                }
+            }
+            return this;
+        }
+        
+        /**
+         * @return gazetteer with the entries added so far
+         */
+        public Gazetteer build() {
+            return new Gazetteer(memberships);
+        }
+    }
+    
+}
@@ -0,0 +1,242 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.content;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.model.BxLine;
+import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.model.BxZone;
+import pl.edu.icm.cermine.tools.ThreadScope;
+
+/**
+ * Line statistics of a document used by content filtering and header feature
+ * calculators: line width and height aggregates over the document's linked
+ * list of lines and over single pages.
+ * <p>
+ * Within a scope opened by {@link #openScope(Object)} (see {@link ThreadScope}) statistics
+ * are computed once per document, which makes feature extraction linear
+ * in the number of lines.
+ * Outside a scope every call to {@link #get(BxPage)} returns new statistics,
+ * so the feature values do not depend on whether a scope is open.
+ * <p>
+ * The statistics do not depend on labels, so labels can be changed within
+ * a scope, but the lines and their bounds cannot.
+ */
+public final class DocumentStatistics {
+
+    private static final ThreadScope<Map<Object, DocumentStatistics>> SCOPE = 
+            new ThreadScope<Map<Object, DocumentStatistics>>("document statistics",
+            new ThreadScope.StateFactory<Map<Object, DocumentStatistics>>() {
+
+                @Override
+                public Map<Object, DocumentStatistics> create() {
+                    return new IdentityHashMap<Object, DocumentStatistics>();
+                }
+            });
+
+    private final Map<BxLine, LineStatistics> lineChains = new IdentityHashMap<BxLine, LineStatistics>();
+
+    private final Map<BxPage, LineStatistics> pageLines = new IdentityHashMap<BxPage, LineStatistics>();
+
+    private DocumentStatistics() {
+    }
+
+    /**
+     * Opens a scope, in which statistics are shared by the calculators
+     * running on the current thread.
+     *
+     * @param owner object opening the scope, such as a classifier
+     * @see ThreadScope#open(Object)
+     */
+    public static void openScope(Object owner) {
+        SCOPE.open(owner);
+    }
+
+    /**
+     * Closes the scope opened by {@link #openScope(Object)}.
+     *
+     * @param owner object that opened the scope
+     * @see ThreadScope#close(Object)
+     */
+    public static void closeScope(Object owner) {
+        SCOPE.close(owner);
+    }
+
+    /**
+     * Returns the statistics of the document containing the page, shared
+     * within the current scope.
+     *
+     * @param page page
+     * @return document statistics
+     */
+    public static DocumentStatistics get(BxPage page) {
+        Map<Object, DocumentStatistics> documents = SCOPE.get();
+        if (documents == null) {
+            return new DocumentStatistics();
+        }
+        BxDocument document = page.getParent();
+        Object key = document == null ? page : document;
+        DocumentStatistics statistics = documents.get(key);
+        if (statistics == null) {
+            statistics = new DocumentStatistics();
+            documents.put(key, statistics);
+        }
+        return statistics;
+    }
+
+    /**
+     * @param line line
+     * @return the number of lines in the linked list containing the line
+     */
+    public int getLineCount(BxLine line) {
+        return getLineChain(line).widths.length;
+    }
+
+    /**
+     * @param line line
+     * @return the mean width of the lines in the linked list containing the line
+     */
+    public double getMeanLineWidth(BxLine line) {
+        return getLineChain(line).meanWidth;
+    }
+
+    /**
+     * @param line line
+     * @return the median width of the lines in the linked list containing the line
+     */
+    public double getMedianLineWidth(BxLine line) {
+        return getLineChain(line).getMedianWidth();
+    }
+
+    /**
+     * @param line line
+     * @return the mean height of the lines in the linked list containing the line
+     */
+    public double getMeanLineHeight(BxLine line) {
+        return getLineChain(line).meanHeight;
+    }
+
+    /**
+     * @param page page
+     * @return the number of lines in the page's zones
+     */
+    public int getPageLineCount(BxPage page) {
+        return getPageLines(page).widths.length;
+    }
+
+    /**
+     * @param page page
+     * @return the mean width of the lines in the page's zones, or 0 if there are no lines
+     */
+    public double getPageMeanLineWidth(BxPage page) {
+        return getPageLines(page).meanWidth;
+    }
+
+    /**
+     * @param page page
+     * @return the median width of the lines in the page's zones, or 0 if there are no lines
+     */
+    public double getPageMedianLineWidth(BxPage page) {
+        return getPageLines(page).getMedianWidth();
+    }
+
+    /**
+     * @param page page
+     * @return the mean height of the lines in the page's zones, or 0 if there are no lines
+     */
+    public double getPageMeanLineHeight(BxPage page) {
+        return getPageLines(page).meanHeight;
+    }
+
+    private LineStatistics getLineChain(BxLine line) {
+        LineStatistics chain = lineChains.get(line);
+        if (chain == null) {
+            BxLine first = line;
+            while (first.hasPrev()) {
+                first = first.getPrev();
+            }
+            List<BxLine> lines = new ArrayList<BxLine>();
+            for (BxLine l = first; l != null; l = l.hasNext() ? l.getNext() : null) {
+                lines.add(l);
+            }
+            chain = new LineStatistics(lines);
+            for (BxLine l : lines) {
+                lineChains.put(l, chain);
+            }
+        }
+        return chain;
+    }
+
+    private LineStatistics getPageLines(BxPage page) {
+        LineStatistics lines = pageLines.get(page);
+        if (lines == null) {
+            List<BxLine> list = new ArrayList<BxLine>();
+            for (BxZone zone : page.getZones()) {
+                list.addAll(zone.getLines());
+            }
+            lines = new LineStatistics(list);
+            pageLines.put(page, lines);
+        }
+        return lines;
+    }
+
+    private static final class LineStatistics {
+
+        private final double[] widths;
+
+        private final double meanWidth;
+
+        private final double meanHeight;
+
+        private double medianWidth = Double.NaN;
+
+        LineStatistics(List<BxLine> lines) {
+            widths = new double[lines.size()];
+            double widthSum = 0;
+            double heightSum = 0;
+            for (int i = 0; i < widths.length; i++) {
+                widths[i] = lines.get(i).getWidth();
+                widthSum += widths[i];
+                heightSum += lines.get(i).getHeight();
+            }
+            meanWidth = widths.length == 0 ? 0 : widthSum / widths.length;
+            meanHeight = widths.length == 0 ? 0 : heightSum / widths.length;
+        }
+
+        double getMedianWidth() {
+            if (Double.isNaN(medianWidth)) {
+                if (widths.length == 0) {
+                    medianWidth = 0;
+                } else {
+                    double[] sorted = Arrays.copyOf(widths, widths.length);
+                    Arrays.sort(sorted);
+                    int middle = sorted.length / 2;
+                    medianWidth = sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+                }
+            }
+            return medianWidth;
+        }
+    }
+
+}
@@ -19,6 +19,7 @@
 package pl.edu.icm.cermine.content.filtering;
 
 import java.util.List;
+import pl.edu.icm.cermine.content.DocumentStatistics;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.*;
 import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
@@ -60,14 +61,19 @@ public class KnnContentFilter implements ContentFilter {
     public BxDocument filter(BxDocument document) throws AnalysisException {
         KnnClassifier<BxZoneLabel> classifier = new KnnClassifier<BxZoneLabel>();
         
-        for (BxPage page : document.getPages()) {
-            for (BxZone zone : page.getZones()) {
-                if (zone.getLabel().isOfCategoryOrGeneral(BxZoneLabelCategory.CAT_BODY)) {
-                    FeatureVector featureVector = vectorBuilder.getFeatureVector(zone, page);
-                    BxZoneLabel label = classifier.classify(knnModel, new FeatureVectorEuclideanMetric(), featureVector, knnVoters);
-                    zone.setLabel(label);
+        DocumentStatistics.openScope(this);
+        try {
+            for (BxPage page : document.getPages()) {
+                for (BxZone zone : page.getZones()) {
+                    if (zone.getLabel().isOfCategoryOrGeneral(BxZoneLabelCategory.CAT_BODY)) {
+                        FeatureVector featureVector = vectorBuilder.getFeatureVector(zone, page);
+                        BxZoneLabel label = classifier.classify(knnModel, new FeatureVectorEuclideanMetric(), featureVector, knnVoters);
+                        zone.setLabel(label);
+                    }
                 }
             }
+        } finally {
+            DocumentStatistics.closeScope(this);
         }
 
         return document;
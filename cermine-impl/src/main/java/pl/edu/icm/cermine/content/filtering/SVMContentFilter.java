@@ -20,7 +20,11 @@ package pl.edu.icm.cermine.content.filtering;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import pl.edu.icm.cermine.content.DocumentStatistics;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.*;
 import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
@@ -32,6 +36,10 @@ import pl.edu.icm.cermine.tools.classification.svm.SVMClassifier;
  */
 public class SVMContentFilter extends SVMClassifier<BxZone, BxPage, BxZoneLabel> implements ContentFilter {
     
+    public static final String DEFAULT_MODEL_FILE = "/pl/edu/icm/cermine/content/filtering.model";
+    
+    public static final String DEFAULT_RANGE_FILE = "/pl/edu/icm/cermine/content/filtering.range";
+    
     public SVMContentFilter() throws AnalysisException {
 		super(ContentFilterTools.VECTOR_BUILDER, BxZoneLabel.class);
 	}
@@ -75,12 +83,66 @@ public class SVMContentFilter extends SVMClassifier<BxZone, BxPage, BxZoneLabel>
     
     @Override
     public BxDocument filter(BxDocument document) throws AnalysisException {
-        for (BxZone zone: document.asZones()) {
-			if (zone.getLabel().isOfCategoryOrGeneral(BxZoneLabelCategory.CAT_BODY)) {
-                zone.setLabel(predictLabel(zone, zone.getParent()));
+        List<BxZone> zones = new ArrayList<BxZone>();
+        BxPage page = null;
+        DocumentStatistics.openScope(this);
+        try {
+            for (BxZone zone: document.asZones()) {
+                if (zone.getLabel().isOfCategoryOrGeneral(BxZoneLabelCategory.CAT_BODY)) {
+                    if (zone.getParent() != page) {
+                        classifyZones(zones, page);
+                        page = zone.getParent();
+                    }
+                    zones.add(zone);
+                }
             }
-		}
+            classifyZones(zones, page);
+        } finally {
+            DocumentStatistics.closeScope(this);
+        }
 		return document;
     }
     
+    private void classifyZones(List<BxZone> zones, BxPage page) {
+        if (zones.isEmpty()) {
+            return;
+        }
+        List<BxZoneLabel> labels = predictLabels(zones, page);
+        for (int i = 0; i < zones.size(); i++) {
+            zones.get(i).setLabel(labels.get(i));
+        }
+        zones.clear();
+    }
+    
+    private static final ClassifierFactory<SVMContentFilter> FACTORY = new ClassifierFactory<SVMContentFilter>() {
+
+        @Override
+        public SVMContentFilter create(BufferedReader modelFile, BufferedReader rangeFile) throws AnalysisException {
+            return new SVMContentFilter(modelFile, rangeFile);
+        }
+    };
+    
+    /**
+     * Returns the read-only classifier with the default model, shared by all the extractors.
+     * 
+     * @return shared classifier instance
+     * @throws AnalysisException 
+     */
+    public static SVMContentFilter getDefaultInstance() throws AnalysisException {
+        return getSharedInstance(SVMContentFilter.class, DEFAULT_MODEL_FILE, DEFAULT_RANGE_FILE, FACTORY);
+    }
+    
+    /**
+     * Returns the read-only classifier with the model read from the given streams.
+     * Classifiers are shared by all the extractors using the same model and range files.
+     * 
+     * @param model model stream
+     * @param range range stream
+     * @return shared classifier instance
+     * @throws AnalysisException 
+     */
+    public static SVMContentFilter getInstance(InputStream model, InputStream range) throws AnalysisException {
+        return getSharedInstance(SVMContentFilter.class, model, range, FACTORY);
+    }
+    
 }
@@ -18,12 +18,13 @@
 
 package pl.edu.icm.cermine.content.headers;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import pl.edu.icm.cermine.content.headers.features.*;
-import pl.edu.icm.cermine.evaluation.tools.EvaluationUtils;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.exception.TransformationException;
 import pl.edu.icm.cermine.structure.model.*;
@@ -32,6 +33,7 @@ import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
 import pl.edu.icm.cermine.tools.classification.general.BxDocsToTrainingSamplesConverter;
 import pl.edu.icm.cermine.tools.classification.general.ClassificationUtils;
 import pl.edu.icm.cermine.tools.classification.general.TrainingSample;
+import pl.edu.icm.cermine.tools.classification.general.TrainingSamplesGenerator;
 import pl.edu.icm.cermine.tools.classification.sampleselection.OversamplingSelector;
 import pl.edu.icm.cermine.tools.classification.sampleselection.SampleSelector;
 
@@ -75,24 +77,36 @@ public final class HeaderExtractingTools {
                 ));
     }
     
+    /**
+     * Generates the training samples of the documents in the directory,
+     * the documents are processed in parallel.
+     */
     public static List<TrainingSample<BxZoneLabel>> toTrainingSamples(String trainPath) throws AnalysisException, TransformationException {
-        List<BxDocument> documents = EvaluationUtils.getDocumentsFromPath(trainPath);
-        return toTrainingSamples(documents);
+        List<File> files;
+        try {
+            files = TrainingSamplesGenerator.listDocumentFiles(trainPath);
+        } catch (IOException ex) {
+            throw new TransformationException("Cannot read documents from " + trainPath, ex);
+        }
+        List<TrainingSample<BxZoneLabel>> trainingSamples = new TrainingSamplesGenerator().collect(files,
+                TrainingSamplesGenerator.lineSamples(EXTRACT_VB, getLabelMap()));
+        return selectSamples(trainingSamples);
     }
 
     public static List<TrainingSample<BxZoneLabel>> toTrainingSamples(List<BxDocument> documents) throws AnalysisException {
-        List<TrainingSample<BxZoneLabel>> trainingSamples;
-
-        SampleSelector<BxZoneLabel> selector = new OversamplingSelector<BxZoneLabel>(1.0);
-        
+        return selectSamples(BxDocsToTrainingSamplesConverter.getLineTrainingSamples(documents, EXTRACT_VB, getLabelMap()));
+    }
+    
+    private static Map<BxZoneLabel, BxZoneLabel> getLabelMap() {
         Map<BxZoneLabel, BxZoneLabel> map = new EnumMap<BxZoneLabel, BxZoneLabel>(BxZoneLabel.class);
         map.put(BxZoneLabel.BODY_JUNK, BxZoneLabel.BODY_CONTENT);
-       
-        trainingSamples = BxDocsToTrainingSamplesConverter.getLineTrainingSamples(documents, EXTRACT_VB, map);
+        return map;
+    }
+    
+    private static List<TrainingSample<BxZoneLabel>> selectSamples(List<TrainingSample<BxZoneLabel>> trainingSamples) {
+        SampleSelector<BxZoneLabel> selector = new OversamplingSelector<BxZoneLabel>(1.0);
         trainingSamples = ClassificationUtils.filterElements(trainingSamples, BxZoneLabelCategory.CAT_BODY);
-        trainingSamples = selector.pickElements(trainingSamples);
-        
-        return trainingSamples;
+        return selector.pickElements(trainingSamples);
     }
 
     private HeaderExtractingTools() {
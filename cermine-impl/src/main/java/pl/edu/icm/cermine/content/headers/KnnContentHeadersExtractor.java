@@ -19,6 +19,7 @@
 package pl.edu.icm.cermine.content.headers;
 
 import java.util.List;
+import pl.edu.icm.cermine.content.DocumentStatistics;
 import pl.edu.icm.cermine.content.model.BxDocContentStructure;
 import pl.edu.icm.cermine.content.model.DocumentContentStructure;
 import pl.edu.icm.cermine.exception.AnalysisException;
@@ -70,21 +71,26 @@ public class KnnContentHeadersExtractor implements ContentHeadersExtractor {
 
         BxDocContentStructure contentStructure = new BxDocContentStructure();
         BxLine lastHeaderLine = null;
-        for (BxPage page : document.getPages()) {
-            for (BxZone zone : page.getZones()) {
-                if (zone.getLabel().isOfCategoryOrGeneral(BxZoneLabelCategory.CAT_BODY)) {
-                    for (BxLine line : zone.getLines()) {
-                        if (isHeader(line, page)) {
-                            contentStructure.addFirstHeaderLine(page, line);
-                            lastHeaderLine = line;
-                        } else if (zone.getLabel().equals(BxZoneLabel.BODY_CONTENT) || zone.getLabel().equals(BxZoneLabel.GEN_BODY)) {
-                            contentStructure.addContentLine(lastHeaderLine, line);
+        DocumentStatistics.openScope(this);
+        try {
+            for (BxPage page : document.getPages()) {
+                for (BxZone zone : page.getZones()) {
+                    if (zone.getLabel().isOfCategoryOrGeneral(BxZoneLabelCategory.CAT_BODY)) {
+                        for (BxLine line : zone.getLines()) {
+                            if (isHeader(line, page)) {
+                                contentStructure.addFirstHeaderLine(page, line);
+                                lastHeaderLine = line;
+                            } else if (zone.getLabel().equals(BxZoneLabel.BODY_CONTENT) || zone.getLabel().equals(BxZoneLabel.GEN_BODY)) {
+                                contentStructure.addContentLine(lastHeaderLine, line);
+                            }
                         }
                     }
                 }
             }
+        } finally {
+            DocumentStatistics.closeScope(this);
         }
-        
+
         headersClusterizer.clusterHeaders(contentStructure);
         headerLinesCompletener.completeLines(contentStructure);
         
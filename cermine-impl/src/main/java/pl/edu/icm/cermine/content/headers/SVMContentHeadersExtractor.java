@@ -19,6 +19,10 @@
 package pl.edu.icm.cermine.content.headers;
 
 import java.io.BufferedReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import pl.edu.icm.cermine.content.DocumentStatistics;
 import pl.edu.icm.cermine.content.model.BxDocContentStructure;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.*;
@@ -54,9 +58,14 @@ public class SVMContentHeadersExtractor implements ContentHeadersExtractor {
 	}
     
    
-    private boolean isHeader(BxLine line, BxPage page) {
-        BxZoneLabel label = contentHeaderClassifier.predictLabel(line, page);
-        return label.equals(BxZoneLabel.BODY_HEADING);
+    private List<BxZoneLabel> predictLabels(BxPage page) {
+        List<BxLine> lines = new ArrayList<BxLine>();
+        for (BxZone zone : page.getZones()) {
+            if (zone.getLabel().isOfCategoryOrGeneral(BxZoneLabelCategory.CAT_BODY)) {
+                lines.addAll(zone.getLines());
+            }
+        }
+        return contentHeaderClassifier.predictLabels(lines, page);
     }
     
     @Override
@@ -64,25 +73,31 @@ public class SVMContentHeadersExtractor implements ContentHeadersExtractor {
 
         BxDocContentStructure contentStructure = new BxDocContentStructure();
         BxLine lastHeaderLine = null;
-        for (BxPage page : document.getPages()) {
-            for (BxZone zone : page.getZones()) {
-                if (zone.getLabel().isOfCategoryOrGeneral(BxZoneLabelCategory.CAT_BODY)) {
-                    for (BxLine line : zone.getLines()) {
-                        if (isHeader(line, page)) {
-                            contentStructure.addFirstHeaderLine(page, line);
-                            lastHeaderLine = line;
-                        } else if (zone.getLabel().equals(BxZoneLabel.BODY_CONTENT) || zone.getLabel().equals(BxZoneLabel.GEN_BODY)) {
-                            if (lastHeaderLine == null) {
-                                BxChunk chunk = new BxChunk(new BxBounds(), "--");
-                                BxWord word = new BxWord().addChunk(chunk);
-                                lastHeaderLine = new BxLine().addWord(word);
-                                contentStructure.addFirstHeaderLine(page, lastHeaderLine);
+        DocumentStatistics.openScope(this);
+        try {
+            for (BxPage page : document.getPages()) {
+                Iterator<BxZoneLabel> labels = predictLabels(page).iterator();
+                for (BxZone zone : page.getZones()) {
+                    if (zone.getLabel().isOfCategoryOrGeneral(BxZoneLabelCategory.CAT_BODY)) {
+                        for (BxLine line : zone.getLines()) {
+                            if (labels.next().equals(BxZoneLabel.BODY_HEADING)) {
+                                contentStructure.addFirstHeaderLine(page, line);
+                                lastHeaderLine = line;
+                            } else if (zone.getLabel().equals(BxZoneLabel.BODY_CONTENT) || zone.getLabel().equals(BxZoneLabel.GEN_BODY)) {
+                                if (lastHeaderLine == null) {
+                                    BxChunk chunk = new BxChunk(new BxBounds(), "--");
+                                    BxWord word = new BxWord().addChunk(chunk);
+                                    lastHeaderLine = new BxLine().addWord(word);
+                                    contentStructure.addFirstHeaderLine(page, lastHeaderLine);
+                                }
+                                contentStructure.addContentLine(lastHeaderLine, line);
                             }
-                            contentStructure.addContentLine(lastHeaderLine, line);
                         }
                     }
                 }
             }
+        } finally {
+            DocumentStatistics.closeScope(this);
         }
         
         headersClusterizer.clusterHeaders(contentStructure);
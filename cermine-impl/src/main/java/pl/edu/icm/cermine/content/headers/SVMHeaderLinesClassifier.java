@@ -20,6 +20,7 @@ package pl.edu.icm.cermine.content.headers;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.BxLine;
@@ -34,6 +35,10 @@ import pl.edu.icm.cermine.tools.classification.svm.SVMClassifier;
  */
 public class SVMHeaderLinesClassifier extends SVMClassifier<BxLine, BxPage, BxZoneLabel> {
     
+    public static final String DEFAULT_MODEL_FILE = "/pl/edu/icm/cermine/content/header.model";
+    
+    public static final String DEFAULT_RANGE_FILE = "/pl/edu/icm/cermine/content/header.range";
+    
     public SVMHeaderLinesClassifier() throws AnalysisException {
 		super(HeaderExtractingTools.EXTRACT_VB, BxZoneLabel.class);
 	}
@@ -75,4 +80,35 @@ public class SVMHeaderLinesClassifier extends SVMClassifier<BxLine, BxPage, BxZo
         }
 	}
     
+    private static final ClassifierFactory<SVMHeaderLinesClassifier> FACTORY = new ClassifierFactory<SVMHeaderLinesClassifier>() {
+
+        @Override
+        public SVMHeaderLinesClassifier create(BufferedReader modelFile, BufferedReader rangeFile) throws AnalysisException {
+            return new SVMHeaderLinesClassifier(modelFile, rangeFile);
+        }
+    };
+    
+    /**
+     * Returns the read-only classifier with the default model, shared by all the extractors.
+     * 
+     * @return shared classifier instance
+     * @throws AnalysisException 
+     */
+    public static SVMHeaderLinesClassifier getDefaultInstance() throws AnalysisException {
+        return getSharedInstance(SVMHeaderLinesClassifier.class, DEFAULT_MODEL_FILE, DEFAULT_RANGE_FILE, FACTORY);
+    }
+    
+    /**
+     * Returns the read-only classifier with the model read from the given streams.
+     * Classifiers are shared by all the extractors using the same model and range files.
+     * 
+     * @param model model stream
+     * @param range range stream
+     * @return shared classifier instance
+     * @throws AnalysisException 
+     */
+    public static SVMHeaderLinesClassifier getInstance(InputStream model, InputStream range) throws AnalysisException {
+        return getSharedInstance(SVMHeaderLinesClassifier.class, model, range, FACTORY);
+    }
+    
 }
@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine.content.headers.features;
 
+import pl.edu.icm.cermine.content.DocumentStatistics;
 import pl.edu.icm.cermine.structure.model.BxLine;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.tools.classification.features.FeatureCalculator;
@@ -30,28 +31,11 @@ public class LengthFeature extends FeatureCalculator<BxLine, BxPage> {
 
     @Override
     public double calculateFeatureValue(BxLine line, BxPage page) {
-        double avLength = line.getWidth();
-        int linesCount = 1;
-        BxLine l = line;
-        while (l.hasPrev()) {
-            l = l.getPrev();
-            avLength += l.getWidth();
-            linesCount++;
-        }
-        
-        l = line;
-        while (l.hasNext()) {
-            l = l.getNext();
-            avLength += l.getWidth();
-            linesCount++;
-        }
-        
-        if (linesCount == 0 || avLength == 0) {
+        double avLength = DocumentStatistics.get(page).getMeanLineWidth(line);
+        if (avLength == 0) {
             return 0;
         }
         
-        avLength /= linesCount;
-                
         return line.getBounds().getWidth() / avLength;
     }
     
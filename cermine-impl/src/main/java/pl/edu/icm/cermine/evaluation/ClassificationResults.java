@@ -77,6 +77,39 @@ public class ClassificationResults implements AbstractEvaluator.Results<Classifi
         badRecognitions += results.badRecognitions;
     }
 
+    /**
+     * @return fraction of correctly classified zones, NaN if there are no results
+     */
+    public double getAccuracy() {
+        return (double) goodRecognitions / (goodRecognitions + badRecognitions);
+    }
+    
+    /**
+     * Calculates the F1 score of every label and returns their mean. 
+     * The score of a label which has never been predicted correctly is 0.
+     * 
+     * @return macro-averaged F1 score, NaN if there are no results
+     */
+    public double getMacroF1() {
+        double sum = 0;
+        for (BxZoneLabel label : possibleLabels) {
+            int correct = classificationMatrix.get(new LabelPair(label, label));
+            if (correct == 0) {
+                continue;
+            }
+            int predicted = 0;
+            int expected = 0;
+            for (BxZoneLabel other : possibleLabels) {
+                predicted += classificationMatrix.get(new LabelPair(other, label));
+                expected += classificationMatrix.get(new LabelPair(label, other));
+            }
+            double precision = (double) correct / predicted;
+            double recall = (double) correct / expected;
+            sum += 2 * precision * recall / (precision + recall);
+        }
+        return sum / possibleLabels.size();
+    }
+
     public double sum(Collection<Double> collection) {
     	double sum = 0.0;
         for (Iterator<Double> it = collection.iterator(); it.hasNext();) {
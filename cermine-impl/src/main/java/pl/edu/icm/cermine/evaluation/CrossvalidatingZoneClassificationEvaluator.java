@@ -21,9 +21,11 @@ package pl.edu.icm.cermine.evaluation;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
 import org.apache.commons.cli.*;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.exception.TransformationException;
@@ -53,6 +55,7 @@ public abstract class CrossvalidatingZoneClassificationEvaluator {
     }
 
     protected int foldness;
+    protected int threads = Runtime.getRuntime().availableProcessors();
     private final Map<BxZoneLabel, BxZoneLabel> labelMap = DEFAULT_LABEL_MAP.clone();
     private TrueVizToBxDocumentReader reader = new TrueVizToBxDocumentReader();
     private BxDocumentToTrueVizWriter writer = new BxDocumentToTrueVizWriter();
@@ -66,6 +69,7 @@ public abstract class CrossvalidatingZoneClassificationEvaluator {
         options.addOption("help", false, "print this help message");
         options.addOption("minimal", false, "print only final summary");
         options.addOption("full", false, "print all possible messages");
+        options.addOption("threads", true, "number of folds evaluated concurrently, the number of processors by default");
 
         CommandLineParser parser = new GnuParser();
         CommandLine line = parser.parse(options, args);
@@ -86,6 +90,9 @@ public abstract class CrossvalidatingZoneClassificationEvaluator {
             } else {
                 evaluator.foldness = Integer.valueOf(line.getOptionValue("fold"));
             }
+            if (line.hasOption("threads")) {
+                evaluator.threads = Integer.valueOf(line.getOptionValue("threads"));
+            }
             String inputFile = remaining[0];
 
             evaluator.setLabelMap(BxZoneLabel.getLabelToGeneralMap());
@@ -100,33 +107,90 @@ public abstract class CrossvalidatingZoneClassificationEvaluator {
         ClassificationResults summary = newResults();
 
         List<TrainingSample<BxZoneLabel>> samples = getSamples(inputFile);
-        List<DividedEvaluationSet> sampleSets = DividedEvaluationSet.build(samples, foldness);
+        final List<DividedEvaluationSet> sampleSets = DividedEvaluationSet.build(samples, foldness);
         System.out.println("All training elements: " +  samples.size());
-        for (int fold = 0; fold < foldness; ++fold) {
-        	List<TrainingSample<BxZoneLabel>> trainingSamples = sampleSets.get(fold).getTrainingDocuments();
-        	List<TrainingSample<BxZoneLabel>> testSamples = sampleSets.get(fold).getTestDocuments();
-            System.out.println("Fold number " + fold);
-        	System.out.println("Training elements " + trainingSamples.size());
-            System.out.println("Test elements  " + testSamples.size());
-
-            ClassificationResults iterationResults = newResults();
-
-            SVMZoneClassifier zoneClassifier = getZoneClassifier(trainingSamples);
-
-            for (TrainingSample<BxZoneLabel> testSample : testSamples) {
-            	BxZoneLabel expectedClass = testSample.getLabel();
-                BxZoneLabel inferedClass = zoneClassifier.predictLabel(testSample);
-                ClassificationResults documentResults = compareItems(expectedClass, inferedClass);
-                iterationResults.add(documentResults);
+
+        List<Future<ClassificationResults>> foldResults = new ArrayList<Future<ClassificationResults>>(foldness);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, foldness)));
+        try {
+            for (int fold = 0; fold < foldness; ++fold) {
+                final DividedEvaluationSet sampleSet = sampleSets.get(fold);
+                foldResults.add(executor.submit(new Callable<ClassificationResults>() {
+
+                    @Override
+                    public ClassificationResults call() throws Exception {
+                        return evaluateFold(copySamples(sampleSet.getTrainingDocuments()), 
+                                copySamples(sampleSet.getTestDocuments()));
+                    }
+                }));
+            }
+            for (int fold = 0; fold < foldness; ++fold) {
+                System.out.println("Fold number " + fold);
+                System.out.println("Training elements " + sampleSets.get(fold).getTrainingDocuments().size());
+                System.out.println("Test elements  " + sampleSets.get(fold).getTestDocuments().size());
+
+                ClassificationResults iterationResults = getFoldResults(foldResults.get(fold));
+                summary.add(iterationResults);
+                System.out.println("=== Single iteration summary (" + (fold + 1) + "/" + this.foldness + ")");
+                printFinalResults(iterationResults);
             }
-            summary.add(iterationResults);
-            System.out.println("=== Single iteration summary (" + (fold + 1) + "/" + this.foldness + ")");
-            printFinalResults(iterationResults);
+        } finally {
+            executor.shutdownNow();
         }
         System.out.println("=== General summary (" + this.foldness + " iterations)");
         printFinalResults(summary);
     }
 
+    private ClassificationResults evaluateFold(List<TrainingSample<BxZoneLabel>> trainingSamples,
+            List<TrainingSample<BxZoneLabel>> testSamples) throws AnalysisException, IOException, CloneNotSupportedException {
+        ClassificationResults iterationResults = newResults();
+
+        SVMZoneClassifier zoneClassifier = getZoneClassifier(trainingSamples);
+
+        for (TrainingSample<BxZoneLabel> testSample : testSamples) {
+            BxZoneLabel expectedClass = testSample.getLabel();
+            BxZoneLabel inferedClass = zoneClassifier.predictLabel(testSample);
+            ClassificationResults documentResults = compareItems(expectedClass, inferedClass);
+            iterationResults.add(documentResults);
+        }
+        return iterationResults;
+    }
+
+    private ClassificationResults getFoldResults(Future<ClassificationResults> future)
+            throws AnalysisException, IOException, CloneNotSupportedException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisException("Cross-validation interrupted!", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof AnalysisException) {
+                throw (AnalysisException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof CloneNotSupportedException) {
+                throw (CloneNotSupportedException) cause;
+            }
+            throw new AnalysisException("Cannot evaluate fold!", cause);
+        }
+    }
+
+    /**
+     * Folds are evaluated concurrently and classifiers may relabel their
+     * training samples, so every fold gets its own samples sharing
+     * the read-only feature vectors.
+     */
+    private static List<TrainingSample<BxZoneLabel>> copySamples(List<TrainingSample<BxZoneLabel>> samples) {
+        List<TrainingSample<BxZoneLabel>> copies = new ArrayList<TrainingSample<BxZoneLabel>>(samples.size());
+        for (TrainingSample<BxZoneLabel> sample : samples) {
+            copies.add(new TrainingSample<BxZoneLabel>(sample.getFeatureVector(), sample.getLabel()));
+        }
+        return copies;
+    }
+
     protected ClassificationResults newResults() {
         return new ClassificationResults();
     }
@@ -108,8 +108,13 @@ public class EnhancerMetadataExtractor implements MetadataExtractor<Element> {
         Element refList = new Element("ref-list");
         back.addContent(refList);
         
-        for (Enhancer enhancer : enhancers) {
-            enhancer.enhanceMetadata(document, metadata, enhancedFields);
+        ZoneLabelIndex.openScope(this);
+        try {
+            for (Enhancer enhancer : enhancers) {
+                enhancer.enhanceMetadata(document, metadata, enhancedFields);
+            }
+        } finally {
+            ZoneLabelIndex.closeScope(this);
         }
         return metadata;
     }
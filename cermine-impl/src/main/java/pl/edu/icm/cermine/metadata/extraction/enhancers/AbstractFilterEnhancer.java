@@ -49,6 +49,10 @@ public abstract class AbstractFilterEnhancer implements Enhancer {
     }
 
     protected Iterable<BxZone> filterZones(BxPage page) {
+        ZoneLabelIndex index = ZoneLabelIndex.get(page);
+        if (index != null) {
+            return index.getZones(searchedZoneLabels);
+        }
         return new FilterIterable<BxZone>(page.getZones()) {
 
             @Override
@@ -58,6 +62,14 @@ public abstract class AbstractFilterEnhancer implements Enhancer {
         };
     }
 
+    /**
+     * @param document document
+     * @return false if the searched pages of the document certainly contain no searched zones
+     */
+    protected boolean hasSearchedZones(BxDocument document) {
+        return ZoneLabelIndex.containsAny(document, searchedZoneLabels, searchedFirstPageOnly);
+    }
+
     protected Iterable<BxPage> filterPages(BxDocument document) {
         return new FilterIterable<BxPage>(document.getPages()) {
 
@@ -70,7 +70,7 @@ public abstract class AbstractSimpleEnhancer extends AbstractFilterEnhancer {
     public void enhanceMetadata(BxDocument document, Element metadata, Set<EnhancedField> enhancedFields) {
         Set<EnhancedField> fieldsToEnhance = getEnhancedFields();
         if (!CollectionUtils.containsAny(enhancedFields, fieldsToEnhance) 
-                && enhanceMetadata(document, metadata)) {
+                && hasSearchedZones(document) && enhanceMetadata(document, metadata)) {
             enhancedFields.addAll(fieldsToEnhance);
         }
     }
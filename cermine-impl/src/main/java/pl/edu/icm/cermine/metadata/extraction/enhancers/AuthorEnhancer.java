@@ -38,6 +38,14 @@ import pl.edu.icm.cermine.structure.model.*;
  */
 public class AuthorEnhancer extends AbstractSimpleEnhancer {
 
+    private static final Pattern WHITE = Pattern.compile("(\\s+)(.*)");
+    private static final Pattern SIMPLE_REF = Pattern.compile("(\\d+|\\*|∗|⁎|†|‡|§|\\(..?\\)|\\{|¶|\\[..?\\]|\\+|\\||⊥|\\^|#|α|β|λ|ξ|ψ)(.*)");
+    private static final Pattern TITLE = Pattern.compile("(MD|Prof.|MS|PhD|Phd|MPH|RD|LD|MB|BCh|BAO|PharmD|BSc|FRCP|PA-C|RAC|MBA|DrPH|MBChB|BM|RGN|BA|FCCP)([^a-zA-Z].*)");
+    private static final Pattern TITLE_END = Pattern.compile("(MD|Prof.|MS|PhD|Phd|MPH|RD|LD|MB|BCh|BAO|PharmD|BSc|FRCP|PA-C|RAC|MBA|DrPH|MBChB|BM|RGN|BA|FCCP)");
+    private static final Pattern SEPARATOR = Pattern.compile("(,|;|&|•|·|Æ)(.*)");
+    private static final Pattern AND_SEPARATOR = Pattern.compile("(and|AND)\\b(.*)");
+    private static final Pattern AND_END_SEPARATOR = Pattern.compile("(and|AND)");
+
     public AuthorEnhancer() {
         setSearchedZoneLabels(EnumSet.of(BxZoneLabel.MET_AUTHOR));
     }
@@ -57,14 +65,6 @@ public class AuthorEnhancer extends AbstractSimpleEnhancer {
                     }
                 }
                 
-                Pattern white = Pattern.compile("(\\s+)(.*)");
-                Pattern simpleRef = Pattern.compile("(\\d+|\\*|∗|⁎|†|‡|§|\\(..?\\)|\\{|¶|\\[..?\\]|\\+|\\||⊥|\\^|#|α|β|λ|ξ|ψ)(.*)");
-                Pattern title = Pattern.compile("(MD|Prof.|MS|PhD|Phd|MPH|RD|LD|MB|BCh|BAO|PharmD|BSc|FRCP|PA-C|RAC|MBA|DrPH|MBChB|BM|RGN|BA|FCCP)([^a-zA-Z].*)");
-                Pattern titleEnd = Pattern.compile("(MD|Prof.|MS|PhD|Phd|MPH|RD|LD|MB|BCh|BAO|PharmD|BSc|FRCP|PA-C|RAC|MBA|DrPH|MBChB|BM|RGN|BA|FCCP)");
-                Pattern separator = Pattern.compile("(,|;|&|•|·|Æ)(.*)");
-                Pattern andSeparator = Pattern.compile("(and|AND)\\b(.*)");
-                Pattern andEndSeparator = Pattern.compile("(and|AND)");
-                
                 boolean afterSep = true;
                 int index = 0;
                 String text = zone.toText().replaceAll("\n", " ");
@@ -73,13 +73,13 @@ public class AuthorEnhancer extends AbstractSimpleEnhancer {
                 boolean auth = false;
                 
                 while (!text.isEmpty()) {
-                    Matcher whiteMatcher = white.matcher(text);
-                    Matcher simpleRefMatcher = simpleRef.matcher(text);
-                    Matcher titleMatcher = title.matcher(text);
-                    Matcher titleEndMatcher = titleEnd.matcher(text);
-                    Matcher separatorMatcher = separator.matcher(text);
-                    Matcher andSeparatorMatcher = andSeparator.matcher(text);
-                    Matcher andEndSeparatorMatcher = andEndSeparator.matcher(text);
+                    Matcher whiteMatcher = WHITE.matcher(text);
+                    Matcher simpleRefMatcher = SIMPLE_REF.matcher(text);
+                    Matcher titleMatcher = TITLE.matcher(text);
+                    Matcher titleEndMatcher = TITLE_END.matcher(text);
+                    Matcher separatorMatcher = SEPARATOR.matcher(text);
+                    Matcher andSeparatorMatcher = AND_SEPARATOR.matcher(text);
+                    Matcher andEndSeparatorMatcher = AND_END_SEPARATOR.matcher(text);
                     if (whiteMatcher.matches()) {
                         index += whiteMatcher.group(1).length();
                         text = whiteMatcher.group(2);
@@ -35,6 +35,13 @@ public class Enhancers {
     
     private static final int MAX_JUNK_AFF_LENGTH = 5;
     
+    private static final String HYPHEN_LIST = "\u002D\u00AD\u2010\u2011\u2012\u2013\u2014\u2015\u207B\u208B\u2212-";
+    
+    private static final Pattern HYPHENATION_PATTERN = 
+            Pattern.compile("([^" + HYPHEN_LIST + "]*\\S+)[" + HYPHEN_LIST + "]\n", Pattern.DOTALL);
+    
+    private static final Pattern HYPHENATED_LINE_END_PATTERN = Pattern.compile("[" + HYPHEN_LIST + "]\n");
+    
     //getters
     
     //author names
@@ -326,33 +333,40 @@ public class Enhancers {
     }
 
     private static String cleanOther(String str) {
-        return str.replaceAll("[’‘]", "'")
-                  .replaceAll("[–]", "-");
+        return str.replace('’', '\'')
+                  .replace('‘', '\'')
+                  .replace('–', '-');
     }
     
     private static String cleanLigatures(String str) {
-        return str.replaceAll("\uFB00", "ff")
-                  .replaceAll("\uFB01", "fi")
-                  .replaceAll("\uFB02", "fl")
-                  .replaceAll("\uFB03", "ffi")
-                  .replaceAll("\uFB04", "ffl")
-                  .replaceAll("\uFB05", "ft")
-                  .replaceAll("\uFB06", "st")
-                  .replaceAll("\u00E6", "ae");
+        return str.replace("\uFB00", "ff")
+                  .replace("\uFB01", "fi")
+                  .replace("\uFB02", "fl")
+                  .replace("\uFB03", "ffi")
+                  .replace("\uFB04", "ffl")
+                  .replace("\uFB05", "ft")
+                  .replace("\uFB06", "st")
+                  .replace("\u00E6", "ae");
     }
     
     private static String cleanHyphenation(String str) {
         str = str.replace("$", "\\$");
         
-        String hyphenList = "\u002D\u00AD\u2010\u2011\u2012\u2013\u2014\u2015\u207B\u208B\u2212-";
-        Pattern p = Pattern.compile("([^" + hyphenList + "]*\\S+)[" + hyphenList + "]\n", Pattern.DOTALL);
-        Matcher m = p.matcher(str);
+        Matcher m = HYPHENATION_PATTERN.matcher(str);
+        // every match ends with a hyphen and a line break, searching beyond the last one
+        // would only try (and fail) to match the rest of the text from every position
+        Matcher end = HYPHENATED_LINE_END_PATTERN.matcher(str);
+        int regionEnd = 0;
+        while (end.find()) {
+            regionEnd = end.end();
+        }
+        m.region(0, regionEnd);
         StringBuffer sb = new StringBuffer();
         while (m.find()) {
             m.appendReplacement(sb, m.group(1));
         }
         m.appendTail(sb);
-        return sb.toString().replaceAll("\n", " ").replace("\\$", "$");
+        return sb.toString().replace('\n', ' ').replace("\\$", "$");
     }
     
     private static String clean(String str) {
@@ -23,8 +23,10 @@ import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jdom.Element;
+import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.structure.model.BxZoneLabel;
 
 /**
@@ -38,6 +40,9 @@ public class JournalVolumeIssueEnhancer extends AbstractMultiPatternEnhancer {
             Pattern.compile("([A-Z][^0-9]*).*[^0-9](\\d{1,3})[,: ]*\\((\\d+)\\)")
             );
     
+    /** found at the end of every text matched by the second pattern, much faster to search for */
+    private static final Pattern ISSUE_IN_PARENTHESES = Pattern.compile("\\(\\d+\\)");
+    
     private static final Set<BxZoneLabel> SEARCHED_ZONE_LABELS = EnumSet.of(BxZoneLabel.MET_BIB_INFO);
 
     public JournalVolumeIssueEnhancer() {
@@ -49,6 +54,29 @@ public class JournalVolumeIssueEnhancer extends AbstractMultiPatternEnhancer {
         return EnumSet.of(EnhancedField.JOURNAL, EnhancedField.VOLUME, EnhancedField.ISSUE);
     }
 
+    @Override
+    protected boolean enhanceMetadata(BxZone zone, Pattern pattern, Element metadata) {
+        if (pattern != PATTERNS.get(1)) {
+            return super.enhanceMetadata(zone, pattern, metadata);
+        }
+        // the pattern cannot match beyond the last issue number in parentheses
+        Matcher issueMatcher = ISSUE_IN_PARENTHESES.matcher(zone.toText());
+        int end = -1;
+        while (issueMatcher.find()) {
+            end = issueMatcher.end();
+        }
+        if (end < 0) {
+            return false;
+        }
+        Matcher matcher = pattern.matcher(zone.toText()).region(0, end);
+        while (matcher.find()) {
+            if (enhanceMetadata(matcher.toMatchResult(), metadata)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     protected boolean enhanceMetadata(MatchResult result, Element metadata) {
         Enhancers.setJournal(metadata, result.group(1).trim()
@@ -0,0 +1,185 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.metadata.extraction.enhancers;
+
+import java.util.*;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.model.BxZone;
+import pl.edu.icm.cermine.structure.model.BxZoneLabel;
+import pl.edu.icm.cermine.tools.ThreadScope;
+
+/**
+ * Zones of a page indexed by their labels, so that enhancers visit only
+ * the zones they search, instead of filtering all the zones of the page.
+ * <p>
+ * Within a scope opened by {@link #openScope(Object)} (see {@link ThreadScope})
+ * the index of a page is built once and shared by all the enhancers.
+ * Outside a scope there is no index and enhancers filter the zones themselves.
+ * Zone labels must not change within a scope.
+ */
+public final class ZoneLabelIndex {
+    
+    private static final ThreadScope<Map<BxPage, ZoneLabelIndex>> SCOPE = 
+            new ThreadScope<Map<BxPage, ZoneLabelIndex>>("zone index",
+            new ThreadScope.StateFactory<Map<BxPage, ZoneLabelIndex>>() {
+
+                @Override
+                public Map<BxPage, ZoneLabelIndex> create() {
+                    return new IdentityHashMap<BxPage, ZoneLabelIndex>();
+                }
+            });
+    
+    private final List<BxZone> zones;
+    
+    /** positions of the zones of every label, in page order */
+    private final Map<BxZoneLabel, int[]> positions = new EnumMap<BxZoneLabel, int[]>(BxZoneLabel.class);
+    
+    private ZoneLabelIndex(BxPage page) {
+        zones = page.getZones();
+        Map<BxZoneLabel, int[]> counts = new EnumMap<BxZoneLabel, int[]>(BxZoneLabel.class);
+        for (BxZone zone : zones) {
+            // unlabelled zones are never searched by the enhancers
+            if (zone.getLabel() == null) {
+                continue;
+            }
+            int[] count = counts.get(zone.getLabel());
+            if (count == null) {
+                counts.put(zone.getLabel(), new int[]{1});
+            } else {
+                count[0]++;
+            }
+        }
+        for (Map.Entry<BxZoneLabel, int[]> entry : counts.entrySet()) {
+            positions.put(entry.getKey(), new int[entry.getValue()[0]]);
+            entry.getValue()[0] = 0;
+        }
+        for (int i = 0; i < zones.size(); i++) {
+            BxZoneLabel label = zones.get(i).getLabel();
+            if (label == null) {
+                continue;
+            }
+            positions.get(label)[counts.get(label)[0]++] = i;
+        }
+    }
+    
+    /**
+     * Opens a scope, in which page indices are shared by the enhancers
+     * running on the current thread.
+     * 
+     * @param owner object opening the scope, such as a metadata extractor
+     * @see ThreadScope#open(Object)
+     */
+    public static void openScope(Object owner) {
+        SCOPE.open(owner);
+    }
+    
+    /**
+     * Closes the scope opened by {@link #openScope(Object)}.
+     * 
+     * @param owner object that opened the scope
+     * @see ThreadScope#close(Object)
+     */
+    public static void closeScope(Object owner) {
+        SCOPE.close(owner);
+    }
+    
+    /**
+     * @param page page
+     * @return the index of the page shared within the current scope, or null if no scope is open
+     */
+    static ZoneLabelIndex get(BxPage page) {
+        Map<BxPage, ZoneLabelIndex> pages = SCOPE.get();
+        if (pages == null) {
+            return null;
+        }
+        ZoneLabelIndex index = pages.get(page);
+        if (index == null) {
+            index = new ZoneLabelIndex(page);
+            pages.put(page, index);
+        }
+        return index;
+    }
+    
+    /**
+     * @param labels zone labels
+     * @return whether the page contains zones with any of the labels
+     */
+    boolean containsAny(Set<BxZoneLabel> labels) {
+        for (BxZoneLabel label : positions.keySet()) {
+            if (labels.contains(label)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * @param labels zone labels
+     * @return the zones with any of the labels, in page order
+     */
+    List<BxZone> getZones(Set<BxZoneLabel> labels) {
+        int[] selected = null;
+        int count = 0;
+        for (Map.Entry<BxZoneLabel, int[]> entry : positions.entrySet()) {
+            if (!labels.contains(entry.getKey())) {
+                continue;
+            }
+            int[] labelPositions = entry.getValue();
+            if (selected == null) {
+                selected = labelPositions;
+                count = labelPositions.length;
+            } else {
+                int[] merged = Arrays.copyOf(selected, count + labelPositions.length);
+                System.arraycopy(labelPositions, 0, merged, count, labelPositions.length);
+                count = merged.length;
+                Arrays.sort(merged);
+                selected = merged;
+            }
+        }
+        if (selected == null) {
+            return Collections.emptyList();
+        }
+        List<BxZone> selectedZones = new ArrayList<BxZone>(count);
+        for (int i = 0; i < count; i++) {
+            selectedZones.add(zones.get(selected[i]));
+        }
+        return selectedZones;
+    }
+    
+    /**
+     * @param document document
+     * @param labels zone labels
+     * @param firstPageOnly whether only the first page is taken into account
+     * @return whether the document contains zones with any of the labels
+     */
+    static boolean containsAny(BxDocument document, Set<BxZoneLabel> labels, boolean firstPageOnly) {
+        for (BxPage page : document.getPages()) {
+            ZoneLabelIndex index = get(page);
+            if (index == null || index.containsAny(labels)) {
+                return true;
+            }
+            if (firstPageOnly) {
+                break;
+            }
+        }
+        return false;
+    }
+    
+}
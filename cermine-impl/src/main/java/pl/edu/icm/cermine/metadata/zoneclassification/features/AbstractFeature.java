@@ -30,10 +30,11 @@ public class AbstractFeature extends FeatureCalculator<BxZone, BxPage> {
 
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
+        String text = PageFeatureContext.get(page).getLowerCaseText(zone);
         String[] keywords = {"abstract", "keywords", "key words"};
 
         for (String keyword : keywords) {
-            if (zone.toText().toLowerCase().startsWith(keyword)) {
+            if (text.startsWith(keyword)) {
                 return 1;
             }
         }
@@ -30,10 +30,11 @@ public class AcknowledgementFeature extends FeatureCalculator<BxZone, BxPage> {
 
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
+        String text = PageFeatureContext.get(page).getLowerCaseText(zone);
         String[] keywords = {"acknowledge", "acknowledgement", "acknowledgment"};
 
         for (String keyword : keywords) {
-            if (zone.toText().toLowerCase().contains(keyword)) {
+            if (text.contains(keyword)) {
             	return 1;
             }
         }
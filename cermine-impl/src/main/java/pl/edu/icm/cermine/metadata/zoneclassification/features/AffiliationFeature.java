@@ -30,11 +30,12 @@ public class AffiliationFeature extends FeatureCalculator<BxZone, BxPage> {
 
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
+        String text = PageFeatureContext.get(page).getLowerCaseText(zone);
         String[] keywords = {"author details", "university", "department", "school", "institute", "affiliation"};
 
         int count = 0;
         for (String keyword : keywords) {
-            if (zone.toText().toLowerCase().contains(keyword)) {
+            if (text.contains(keyword)) {
                 count++;
             }
         }
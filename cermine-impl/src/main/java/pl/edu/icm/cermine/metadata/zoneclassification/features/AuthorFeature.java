@@ -29,11 +29,12 @@ public class AuthorFeature extends FeatureCalculator<BxZone, BxPage> {
 
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
+        String text = PageFeatureContext.get(page).getLowerCaseText(zone);
         String[] keywords = {"author"};
 
         int count = 0;
         for (String keyword : keywords) {
-            if (zone.toText().toLowerCase().startsWith(keyword)) {
+            if (text.startsWith(keyword)) {
                 count++;
             }
         }
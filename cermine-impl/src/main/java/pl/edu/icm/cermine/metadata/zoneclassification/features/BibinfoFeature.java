@@ -31,12 +31,14 @@ public class BibinfoFeature extends FeatureCalculator<BxZone, BxPage> {
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
 
+        String text = PageFeatureContext.get(page).getLowerCaseText(zone);
+
         String[] keywords = {"cite", "pages", "article", "volume", "publishing", "journal", "doi", "cite this article",
                              "citation", "issue", "issn"};
 
         int count = 0;
         for (String keyword : keywords) {
-            if (zone.toText().toLowerCase().contains(keyword)) {
+            if (text.contains(keyword)) {
                 count++;
             }
         }
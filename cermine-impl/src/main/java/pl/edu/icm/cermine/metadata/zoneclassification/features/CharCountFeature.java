@@ -18,7 +18,9 @@
 
 package pl.edu.icm.cermine.metadata.zoneclassification.features;
 
-import pl.edu.icm.cermine.structure.model.*;
+import pl.edu.icm.cermine.metadata.zoneclassification.features.PageFeatureContext.CharClass;
+import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.tools.classification.features.FeatureCalculator;
 
 /**
@@ -29,16 +31,7 @@ public class CharCountFeature extends FeatureCalculator<BxZone, BxPage> {
 
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
-        int count = 0;
-        for (BxLine line : zone.getLines()) {
-            for (BxWord word : line.getWords()) {
-                for (BxChunk chunk : word.getChunks()) {
-                    count += chunk.toText().length();
-                }
-            }
-        }
-
-        return (double) count;
+        PageFeatureContext context = PageFeatureContext.get(page);
+        return (double) context.getCharCount(zone, CharClass.ALL);
     }
-
 }
@@ -35,7 +35,7 @@ public class ContainsCuePhrasesFeature extends FeatureCalculator<BxZone, BxPage>
 
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
-        String zoneText = zone.toText().toLowerCase();
+        String zoneText = PageFeatureContext.get(page).getLowerCaseText(zone);
 
         for (String cuePhrase : cuePhrases) {
             if (!zoneText.contains(cuePhrase)) {
@@ -25,11 +25,12 @@ public class ContributionFeature extends AbstractFeatureCalculator<BxZone, BxPag
 
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
+        String text = PageFeatureContext.get(page).getLowerCaseText(zone);
         String[] keywords = {"contribution",
                              };
 
         for (String keyword : keywords) {
-            if (zone.toText().toLowerCase().contains(keyword)) {
+            if (text.contains(keyword)) {
                 return 1;
             }
         }
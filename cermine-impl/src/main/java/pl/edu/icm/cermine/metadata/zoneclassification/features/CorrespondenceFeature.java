@@ -30,11 +30,12 @@ public class CorrespondenceFeature extends FeatureCalculator<BxZone, BxPage> {
 
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
+        String text = PageFeatureContext.get(page).getLowerCaseText(zone);
         String[] keywords = {"addressed", "correspondence", "email", "address"};
 
         int count = 0;
         for (String keyword : keywords) {
-            if (zone.toText().toLowerCase().contains(keyword)) {
+            if (text.contains(keyword)) {
                 count++;
             }
         }
@@ -44,20 +44,22 @@ public class DateFeature extends AbstractFeatureCalculator<BxZone, BxPage> {
 			++idx;
 		}
 	}
+
+	private static final Pattern[] PATTERNS = new Pattern[MONTH_REGEXPS.length + DIGIT_REGEXPS.length];
+
+	static {
+		for (int i = 0; i < MONTH_REGEXPS.length; i++) {
+			PATTERNS[i] = Pattern.compile(MONTH_REGEXPS[i]);
+		}
+		for (int i = 0; i < DIGIT_REGEXPS.length; i++) {
+			PATTERNS[MONTH_REGEXPS.length + i] = Pattern.compile(DIGIT_REGEXPS[i]);
+		}
+	}
 	
 	@Override
 	public double calculateFeatureValue(BxZone zone, BxPage page) {
-		String text = zone.toText().toLowerCase();
-		for(String regex: MONTH_REGEXPS) {
-			Pattern pattern = Pattern.compile(regex);
-			Matcher matcher = pattern.matcher(text);
-			if (matcher.find()) {
-				return 1.0;
-            }
-		}
-
-		for(String regex: DIGIT_REGEXPS) {
-			Pattern pattern = Pattern.compile(regex);
+		String text = PageFeatureContext.get(page).getLowerCaseText(zone);
+		for(Pattern pattern: PATTERNS) {
 			Matcher matcher = pattern.matcher(text);
 			if (matcher.find()) {
 				return 1.0;
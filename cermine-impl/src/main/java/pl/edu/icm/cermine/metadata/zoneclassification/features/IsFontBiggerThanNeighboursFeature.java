@@ -46,28 +46,19 @@ public class IsFontBiggerThanNeighboursFeature extends FeatureCalculator<BxZone,
             }
         }
         assert thisZoneIdx != null : "No zone in zone's context found";
+        PageFeatureContext context = PageFeatureContext.get(page);
         if (thisZoneIdx == 0) {
-            FeatureCalculator<BxZone, BxPage> fontHeight = new FontHeightMeanFeature();
-            double nextZoneFont = fontHeight.calculateFeatureValue(
-                    pageZones.get(thisZoneIdx + 1), page);
-            double thisZoneFont = fontHeight.calculateFeatureValue(
-                    pageZones.get(thisZoneIdx), page);
+            double nextZoneFont = context.getFontHeightMean(pageZones.get(thisZoneIdx + 1));
+            double thisZoneFont = context.getFontHeightMean(pageZones.get(thisZoneIdx));
             return thisZoneFont > nextZoneFont ? 1.0 : 0.0;
         } else if (thisZoneIdx == pageZones.size() - 1) {
-            FeatureCalculator<BxZone, BxPage> fontHeight = new FontHeightMeanFeature();
-            double prevZoneFont = fontHeight.calculateFeatureValue(
-                    pageZones.get(thisZoneIdx - 1), page);
-            double thisZoneFont = fontHeight.calculateFeatureValue(
-                    pageZones.get(thisZoneIdx), page);
+            double prevZoneFont = context.getFontHeightMean(pageZones.get(thisZoneIdx - 1));
+            double thisZoneFont = context.getFontHeightMean(pageZones.get(thisZoneIdx));
             return thisZoneFont > prevZoneFont ? 1.0 : 0.0;
         } else {
-            FeatureCalculator<BxZone, BxPage> fontHeight = new FontHeightMeanFeature();
-            double prevZoneFont = fontHeight.calculateFeatureValue(
-                    pageZones.get(thisZoneIdx - 1), page);
-            double thisZoneFont = fontHeight.calculateFeatureValue(
-                    pageZones.get(thisZoneIdx), page);
-            double nextZoneFont = fontHeight.calculateFeatureValue(
-                    pageZones.get(thisZoneIdx + 1), page);
+            double prevZoneFont = context.getFontHeightMean(pageZones.get(thisZoneIdx - 1));
+            double thisZoneFont = context.getFontHeightMean(pageZones.get(thisZoneIdx));
+            double nextZoneFont = context.getFontHeightMean(pageZones.get(thisZoneIdx + 1));
 
             return (thisZoneFont > prevZoneFont && thisZoneFont > nextZoneFont) ? 1.0
                     : 0.0;
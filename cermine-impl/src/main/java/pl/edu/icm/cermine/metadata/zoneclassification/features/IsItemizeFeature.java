@@ -26,24 +26,22 @@ import pl.edu.icm.cermine.tools.classification.features.FeatureCalculator;
 
 public class IsItemizeFeature extends FeatureCalculator<BxZone, BxPage> {
 
+	private static final Pattern ITEMIZE_PATTERN = Pattern.compile(
+			"|^\\d+\\.\\d+\\.\\s+\\p{Upper}.+"
+			+ "|^\\d+\\.\\s+\\p{Upper}.+"
+			+ "|^\\p{Upper}\\.\\s[^\\.]+"
+			+ "|^\\p{Lower}\\)\\s+.+");
+
+	private static final Pattern SUBPOINTS_PATTERN = Pattern.compile(
+			"^\\d\\.\\d\\.\\s+\\p{Upper}.+"
+			+ "|^\\d\\.\\d\\.\\d\\.\\s+\\p{Upper}.+", Pattern.DOTALL); //for multiline matching
+
 	@Override
 	public double calculateFeatureValue(BxZone zone, BxPage page) {
 		String text = zone.toText();
 
-		String itemizeString = "";
-		itemizeString += "|^\\d+\\.\\d+\\.\\s+\\p{Upper}.+";
-		itemizeString += "|^\\d+\\.\\s+\\p{Upper}.+";
-		itemizeString += "|^\\p{Upper}\\.\\s[^\\.]+";
-		itemizeString += "|^\\p{Lower}\\)\\s+.+";
-		Pattern itemizePattern = Pattern.compile(itemizeString);
-
-		String subpointsString = "";
-		subpointsString += "^\\d\\.\\d\\.\\s+\\p{Upper}.+";
-		subpointsString += "|^\\d\\.\\d\\.\\d\\.\\s+\\p{Upper}.+";
-		Pattern subpointsPattern = Pattern.compile(subpointsString, Pattern.DOTALL); //for multiline matching
-
-		Matcher matcher1 = itemizePattern.matcher(text);
-		Matcher matcher2 = subpointsPattern.matcher(text);
+		Matcher matcher1 = ITEMIZE_PATTERN.matcher(text);
+		Matcher matcher2 = SUBPOINTS_PATTERN.matcher(text);
 
 		return (matcher1.matches() || matcher2.matches()) ? 1.0 : 0.0;
 	}
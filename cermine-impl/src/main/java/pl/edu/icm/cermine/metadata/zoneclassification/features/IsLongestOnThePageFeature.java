@@ -26,11 +26,6 @@ public class IsLongestOnThePageFeature extends FeatureCalculator<BxZone, BxPage>
 
     @Override
     public double calculateFeatureValue(BxZone object, BxPage context) {
-        for (BxZone zone : context.getZones()) {
-            if (zone.toText().length() > object.toText().length()) {
-                return 0.0;
-            }
-        }
-        return 1.0;
+        return PageFeatureContext.get(context).getMaxTextLength() > object.toText().length() ? 0.0 : 1.0;
     }
 }
@@ -28,23 +28,14 @@ public class IsOnSurroundingPagesFeature extends FeatureCalculator<BxZone, BxPag
     public double calculateFeatureValue(BxZone object, BxPage context) {
         BxPage nextPage = context.getNext();
         BxPage prevPage = context.getPrev();
+        String text = object.toText();
 
-        if (nextPage != null) {
-            for (BxZone zone : nextPage.getZones()) {
-                if (zone.toText().equals(object.toText())) {
-                    return 1.0;
-                }
-            }
+        if (nextPage != null && PageFeatureContext.get(nextPage).containsText(text)) {
+            return 1.0;
         }
-
-        if (prevPage != null) {
-            for (BxZone zone : prevPage.getZones()) {
-                if (zone.toText().equals(object.toText())) {
-                    return 1.0;
-                }
-            }
+        if (prevPage != null && PageFeatureContext.get(prevPage).containsText(text)) {
+            return 1.0;
         }
-
         return 0.0;
     }
 }
@@ -26,11 +26,6 @@ public class IsWidestOnThePageFeature extends FeatureCalculator<BxZone, BxPage>
 
     @Override
     public double calculateFeatureValue(BxZone object, BxPage context) {
-        for (BxZone zone : context.getZones()) {
-            if (zone.getWidth() > object.getWidth()) {
-                return 0.0;
-            }
-        }
-        return 1.0;
+        return PageFeatureContext.get(context).getMaxWidth() > object.getWidth() ? 0.0 : 1.0;
     }
 }
@@ -30,10 +30,11 @@ public class KeywordsFeature extends FeatureCalculator<BxZone, BxPage> {
 
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
+        String text = PageFeatureContext.get(page).getLowerCaseText(zone);
         String[] keywords = {"keywords", "key words"};
 
         for (String keyword : keywords) {
-            if (zone.toText().toLowerCase().startsWith(keyword)) {
+            if (text.startsWith(keyword)) {
             	return 1.0;
             }
         }
@@ -30,12 +30,13 @@ public class LicenseFeature extends FeatureCalculator<BxZone, BxPage> {
 
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
+        String text = PageFeatureContext.get(page).getLowerCaseText(zone);
         String[] keywords = {"terms", "distributed", "reproduction", "open", "commons",
             "license", "©", "creative", "copyright", "cited", "distribution", "access"};
 
         int count = 0;
         for (String keyword : keywords) {
-            if (zone.toText().toLowerCase().contains(keyword)) {
+            if (text.contains(keyword)) {
                 count++;
             }
         }
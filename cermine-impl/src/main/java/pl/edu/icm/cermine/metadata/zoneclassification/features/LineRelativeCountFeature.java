@@ -30,11 +30,7 @@ public class LineRelativeCountFeature extends FeatureCalculator<BxZone, BxPage>
 
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
-        int allLines = 0;
-        for (BxZone pZone : page.getZones()) {
-            allLines += pZone.getLines().size();
-        }
-        
+        int allLines = PageFeatureContext.get(page).getPageLineCount();
         return (double) zone.getLines().size() / (double) allLines;
     }
 
@@ -0,0 +1,577 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.metadata.zoneclassification.features;
+
+import java.util.*;
+import pl.edu.icm.cermine.structure.model.*;
+import pl.edu.icm.cermine.tools.ThreadScope;
+
+/**
+ * Page-wide facts used by zone feature calculators: lower-cased zone texts,
+ * character class counts, font and line height means, extreme zones and zone
+ * texts present on other pages.
+ * <p>
+ * Within a scope opened by {@link #openScope(Object)} (see {@link ThreadScope}) contexts
+ * are created once per page, and facts spanning linked zones or pages are computed
+ * once per document. This makes feature extraction linear in the number of zones.
+ * Outside a scope every call to {@link #get(BxPage)} returns a new context, so the
+ * feature values do not depend on whether a scope is open.
+ * <p>
+ * Cached facts do not depend on zone labels, so labels can be changed within
+ * a scope, but the pages and zones cannot.
+ */
+public final class PageFeatureContext {
+
+    /**
+     * Character classes counted over zone chunks.
+     */
+    public enum CharClass {
+        ALL, LETTER, DIGIT, LOWERCASE, UPPERCASE, DOT, COMMA, AT
+    }
+
+    private static final ThreadScope<Scope> SCOPE = new ThreadScope<Scope>("feature context",
+            new ThreadScope.StateFactory<Scope>() {
+
+                @Override
+                public Scope create() {
+                    return new Scope();
+                }
+            });
+
+    private final BxPage page;
+
+    private final Scope scope;
+
+    private final Map<BxZone, Integer> zoneIndices = new IdentityHashMap<BxZone, Integer>();
+
+    private final String[] lowerCaseTexts;
+
+    private final int[][] charCounts;
+
+    private final Double[] fontHeightMeans;
+
+    private final Double[] lineHeightMeans;
+
+    private List<BxZone> zonesByBottom;
+
+    private Set<String> texts;
+
+    private int pageCharCount = -1;
+
+    private int pageWordCount = -1;
+
+    private int pageLineCount = -1;
+
+    private double maxWidth = Double.NaN;
+
+    private int maxTextLength = -1;
+
+    private int lineHeightMaxIndex = -2;
+
+    private double lineHeightMax;
+
+    private double lineHeightSecondMax;
+
+    private PageFeatureContext(BxPage page, Scope scope) {
+        this.page = page;
+        this.scope = scope;
+        int size = scope == null ? 0 : page.getZones().size();
+        if (scope != null) {
+            List<BxZone> zones = page.getZones();
+            for (int i = 0; i < zones.size(); i++) {
+                if (!zoneIndices.containsKey(zones.get(i))) {
+                    zoneIndices.put(zones.get(i), i);
+                }
+            }
+        }
+        lowerCaseTexts = new String[size];
+        charCounts = new int[size][];
+        fontHeightMeans = new Double[size];
+        lineHeightMeans = new Double[size];
+    }
+
+    /**
+     * Opens a scope, in which page contexts are shared by the calculators
+     * running on the current thread.
+     *
+     * @param owner object opening the scope, such as a classifier
+     * @see ThreadScope#open(Object)
+     */
+    public static void openScope(Object owner) {
+        SCOPE.open(owner);
+    }
+
+    /**
+     * Closes the scope opened by {@link #openScope(Object)}.
+     *
+     * @param owner object that opened the scope
+     * @see ThreadScope#close(Object)
+     */
+    public static void closeScope(Object owner) {
+        SCOPE.close(owner);
+    }
+
+    /**
+     * Returns the context of the page, shared within the current scope.
+     *
+     * @param page page
+     * @return page context
+     */
+    public static PageFeatureContext get(BxPage page) {
+        Scope scope = SCOPE.get();
+        if (scope == null) {
+            return new PageFeatureContext(page, null);
+        }
+        PageFeatureContext context = scope.pages.get(page);
+        if (context == null) {
+            context = new PageFeatureContext(page, scope);
+            scope.pages.put(page, context);
+        }
+        return context;
+    }
+
+    public BxPage getPage() {
+        return page;
+    }
+
+    /**
+     * Per-zone facts are cached only within a scope, so that a context
+     * created for a single feature value costs no more than the value itself.
+     */
+    private int indexOf(BxZone zone) {
+        Integer index = zoneIndices.get(zone);
+        return index == null ? -1 : index;
+    }
+
+    public String getLowerCaseText(BxZone zone) {
+        int index = indexOf(zone);
+        if (index < 0) {
+            return zone.toText().toLowerCase();
+        }
+        if (lowerCaseTexts[index] == null) {
+            lowerCaseTexts[index] = zone.toText().toLowerCase();
+        }
+        return lowerCaseTexts[index];
+    }
+
+    /**
+     * @param zone zone
+     * @param charClass character class
+     * @return the number of characters of the given class in the zone's chunks
+     */
+    public int getCharCount(BxZone zone, CharClass charClass) {
+        int index = indexOf(zone);
+        if (index < 0) {
+            return charClass == CharClass.ALL ? countAllChars(zone) : countChars(zone)[charClass.ordinal()];
+        }
+        if (charCounts[index] == null) {
+            charCounts[index] = countChars(zone);
+        }
+        return charCounts[index][charClass.ordinal()];
+    }
+
+    /**
+     * @return the number of characters in the chunks of all the page's zones
+     */
+    public int getPageCharCount() {
+        if (pageCharCount < 0) {
+            int count = 0;
+            for (BxZone zone : page.getZones()) {
+                count += getCharCount(zone, CharClass.ALL);
+            }
+            pageCharCount = count;
+        }
+        return pageCharCount;
+    }
+
+    /**
+     * @return the number of words in all the page's zones
+     */
+    public int getPageWordCount() {
+        if (pageWordCount < 0) {
+            int count = 0;
+            for (BxZone zone : page.getZones()) {
+                for (BxLine line : zone.getLines()) {
+                    count += line.getWords().size();
+                }
+            }
+            pageWordCount = count;
+        }
+        return pageWordCount;
+    }
+
+    /**
+     * @return the number of lines in all the page's zones
+     */
+    public int getPageLineCount() {
+        if (pageLineCount < 0) {
+            int count = 0;
+            for (BxZone zone : page.getZones()) {
+                count += zone.getLines().size();
+            }
+            pageLineCount = count;
+        }
+        return pageLineCount;
+    }
+
+    /**
+     * @param zone zone
+     * @return the mean height of the zone's chunks
+     */
+    public double getFontHeightMean(BxZone zone) {
+        int index = indexOf(zone);
+        if (index < 0) {
+            return computeFontHeightMean(zone);
+        }
+        if (fontHeightMeans[index] == null) {
+            fontHeightMeans[index] = computeFontHeightMean(zone);
+        }
+        return fontHeightMeans[index];
+    }
+
+    /**
+     * @param zone zone
+     * @return the mean height of the zone's lines
+     */
+    public double getLineHeightMean(BxZone zone) {
+        int index = indexOf(zone);
+        if (index < 0) {
+            return computeLineHeightMean(zone);
+        }
+        if (lineHeightMeans[index] == null) {
+            lineHeightMeans[index] = computeLineHeightMean(zone);
+        }
+        return lineHeightMeans[index];
+    }
+
+    /**
+     * @param zone zone
+     * @return the greatest line height mean of the page's zones other than the given one,
+     * or negative infinity if there are no such zones
+     */
+    public double getMaxOtherLineHeightMean(BxZone zone) {
+        if (lineHeightMaxIndex == -2) {
+            lineHeightMaxIndex = -1;
+            lineHeightMax = Double.NEGATIVE_INFINITY;
+            lineHeightSecondMax = Double.NEGATIVE_INFINITY;
+            List<BxZone> zones = page.getZones();
+            for (int i = 0; i < zones.size(); i++) {
+                double mean = getLineHeightMean(zones.get(i));
+                if (mean > lineHeightMax) {
+                    lineHeightSecondMax = lineHeightMax;
+                    lineHeightMax = mean;
+                    lineHeightMaxIndex = i;
+                } else if (mean > lineHeightSecondMax) {
+                    lineHeightSecondMax = mean;
+                }
+            }
+        }
+        if (lineHeightMaxIndex >= 0 && page.getZones().get(lineHeightMaxIndex) == zone) {
+            return lineHeightSecondMax;
+        }
+        return lineHeightMax;
+    }
+
+    /**
+     * @return the greatest width of the page's zones, or negative infinity if there are no zones
+     */
+    public double getMaxWidth() {
+        if (Double.isNaN(maxWidth)) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (BxZone zone : page.getZones()) {
+                if (zone.getWidth() > max) {
+                    max = zone.getWidth();
+                }
+            }
+            maxWidth = max;
+        }
+        return maxWidth;
+    }
+
+    /**
+     * @return the length of the longest text of the page's zones
+     */
+    public int getMaxTextLength() {
+        if (maxTextLength < 0) {
+            int max = 0;
+            for (BxZone zone : page.getZones()) {
+                max = Math.max(max, zone.toText().length());
+            }
+            maxTextLength = max;
+        }
+        return maxTextLength;
+    }
+
+    /**
+     * @return the page's zones sorted by their bottom coordinate
+     */
+    public List<BxZone> getZonesByBottom() {
+        if (zonesByBottom == null) {
+            List<BxZone> zones = new ArrayList<BxZone>(page.getZones());
+            Collections.sort(zones, BOTTOM_COMPARATOR);
+            zonesByBottom = Collections.unmodifiableList(zones);
+        }
+        return zonesByBottom;
+    }
+
+    /**
+     * @param text text
+     * @return true if the text of any of the page's zones is equal to the given text
+     */
+    public boolean containsText(String text) {
+        if (scope == null) {
+            return hasZoneWithText(page, text);
+        }
+        if (texts == null) {
+            texts = new HashSet<String>();
+            for (BxZone zone : page.getZones()) {
+                texts.add(zone.toText());
+            }
+        }
+        return texts.contains(text);
+    }
+
+    /**
+     * @param text text
+     * @return true if the text of any zone on the pages linked with this page,
+     * other than this page, is equal to the given text
+     */
+    public boolean isTextOnOtherPages(String text) {
+        if (scope == null) {
+            for (BxPage p = page.getPrev(); p != null; p = p.getPrev()) {
+                if (hasZoneWithText(p, text)) {
+                    return true;
+                }
+            }
+            for (BxPage p = page.getNext(); p != null; p = p.getNext()) {
+                if (hasZoneWithText(p, text)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        PageChain chain = scope.pageChains.get(page);
+        if (chain == null) {
+            chain = new PageChain(page);
+            for (BxPage p : chain.pages) {
+                scope.pageChains.put(p, chain);
+            }
+        }
+        Integer count = chain.pageCounts.get(text);
+        if (count == null) {
+            return false;
+        }
+        return count - (containsText(text) ? 1 : 0) > 0;
+    }
+
+    /**
+     * @param zone zone
+     * @return true if none of the zones linked with the given zone has a greater
+     * font height mean than the zone itself
+     */
+    public boolean hasGreatestLinkedFontHeightMean(BxZone zone) {
+        double fontHeight = getFontHeightMean(zone);
+        if (scope == null) {
+            for (BxZone z = zone.getPrev(); z != null; z = z.getPrev()) {
+                if (computeFontHeightMean(z) > fontHeight) {
+                    return false;
+                }
+            }
+            for (BxZone z = zone.getNext(); z != null; z = z.getNext()) {
+                if (computeFontHeightMean(z) > fontHeight) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        ZoneChain chain = scope.zoneChains.get(zone);
+        if (chain == null) {
+            chain = new ZoneChain(zone);
+            for (BxZone z : chain.zones) {
+                scope.zoneChains.put(z, chain);
+            }
+        }
+        double maxOther = zone == chain.maxZone ? chain.secondMax : chain.max;
+        return !(maxOther > fontHeight);
+    }
+
+    private static boolean hasZoneWithText(BxPage page, String text) {
+        for (BxZone zone : page.getZones()) {
+            if (zone.toText().equals(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static int countAllChars(BxZone zone) {
+        int count = 0;
+        for (BxLine line : zone.getLines()) {
+            for (BxWord word : line.getWords()) {
+                for (BxChunk chunk : word.getChunks()) {
+                    count += chunk.toText().length();
+                }
+            }
+        }
+        return count;
+    }
+
+    static int[] countChars(BxZone zone) {
+        int[] counts = new int[CharClass.values().length];
+        for (BxLine line : zone.getLines()) {
+            for (BxWord word : line.getWords()) {
+                for (BxChunk chunk : word.getChunks()) {
+                    String text = chunk.toText();
+                    for (int i = 0; i < text.length(); i++) {
+                        char c = text.charAt(i);
+                        counts[CharClass.ALL.ordinal()]++;
+                        if (Character.isLetter(c)) {
+                            counts[CharClass.LETTER.ordinal()]++;
+                        }
+                        if (Character.isDigit(c)) {
+                            counts[CharClass.DIGIT.ordinal()]++;
+                        }
+                        if (Character.isLowerCase(c)) {
+                            counts[CharClass.LOWERCASE.ordinal()]++;
+                        }
+                        if (Character.isUpperCase(c)) {
+                            counts[CharClass.UPPERCASE.ordinal()]++;
+                        }
+                        if (c == '.') {
+                            counts[CharClass.DOT.ordinal()]++;
+                        } else if (c == ',') {
+                            counts[CharClass.COMMA.ordinal()]++;
+                        } else if (c == '@') {
+                            counts[CharClass.AT.ordinal()]++;
+                        }
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    static double computeFontHeightMean(BxZone zone) {
+        double heightSum = 0.0;
+        int heightNumber = 0;
+        for (BxLine line : zone.getLines()) {
+            for (BxWord word : line.getWords()) {
+                for (BxChunk chunk : word.getChunks()) {
+                    heightSum += chunk.getBounds().getHeight();
+                    ++heightNumber;
+                }
+            }
+        }
+        return heightSum / heightNumber;
+    }
+
+    static double computeLineHeightMean(BxZone zone) {
+        double mean = 0;
+        for (BxLine line : zone.getLines()) {
+            mean += line.getBounds().getHeight();
+        }
+        return mean / (double) zone.getLines().size();
+    }
+
+    private static final Comparator<BxZone> BOTTOM_COMPARATOR = new Comparator<BxZone>() {
+
+        @Override
+        public int compare(BxZone z1, BxZone z2) {
+            if (z1.getY() + z1.getHeight() > z2.getY() + z2.getHeight()) {
+                return 1;
+            } else if (Math.abs((z1.getY() + z1.getHeight()) - (z2.getY() + z2.getHeight())) < 0.1) {
+                return 0;
+            } else {
+                return -1;
+            }
+        }
+    };
+
+    private static final class Scope {
+
+        private final Map<BxPage, PageFeatureContext> pages = new IdentityHashMap<BxPage, PageFeatureContext>();
+
+        private final Map<BxZone, ZoneChain> zoneChains = new IdentityHashMap<BxZone, ZoneChain>();
+
+        private final Map<BxPage, PageChain> pageChains = new IdentityHashMap<BxPage, PageChain>();
+    }
+
+    /**
+     * Zones linked by their previous and next references, usually all the
+     * zones of a document, with the two greatest font height means.
+     */
+    private static final class ZoneChain {
+
+        private final List<BxZone> zones = new ArrayList<BxZone>();
+
+        private BxZone maxZone;
+
+        private double max = Double.NEGATIVE_INFINITY;
+
+        private double secondMax = Double.NEGATIVE_INFINITY;
+
+        ZoneChain(BxZone zone) {
+            BxZone first = zone;
+            while (first.getPrev() != null) {
+                first = first.getPrev();
+            }
+            for (BxZone z = first; z != null; z = z.getNext()) {
+                zones.add(z);
+                double mean = computeFontHeightMean(z);
+                if (mean > max) {
+                    secondMax = max;
+                    max = mean;
+                    maxZone = z;
+                } else if (mean > secondMax) {
+                    secondMax = mean;
+                }
+            }
+        }
+    }
+
+    /**
+     * Pages linked by their previous and next references, with the number of
+     * pages containing a zone of a given text.
+     */
+    private static final class PageChain {
+
+        private final List<BxPage> pages = new ArrayList<BxPage>();
+
+        private final Map<String, Integer> pageCounts = new HashMap<String, Integer>();
+
+        PageChain(BxPage page) {
+            BxPage first = page;
+            while (first.getPrev() != null) {
+                first = first.getPrev();
+            }
+            for (BxPage p = first; p != null; p = p.getNext()) {
+                pages.add(p);
+                Set<String> pageTexts = new HashSet<String>();
+                for (BxZone zone : p.getZones()) {
+                    pageTexts.add(zone.toText());
+                }
+                for (String text : pageTexts) {
+                    Integer count = pageCounts.get(text);
+                    pageCounts.put(text, count == null ? 1 : count + 1);
+                }
+            }
+        }
+    }
+
+}
@@ -28,26 +28,24 @@ import pl.edu.icm.cermine.tools.classification.features.FeatureCalculator;
 
 public class StartsWithHeaderFeature extends FeatureCalculator<BxZone, BxPage> {
 
+	private static final Pattern ITEMIZE_PATTERN = Pattern.compile(
+			"|^\\d+\\.\\d+\\.\\s+\\p{Upper}.+"
+			+ "|^\\d+\\.\\s+\\p{Upper}.+"
+			+ "|^\\p{Upper}\\.\\s[^\\.]+"
+			+ "|^\\p{Lower}\\)\\s+.+");
+
+	private static final Pattern SUBPOINTS_PATTERN = Pattern.compile(
+			"^\\d\\.\\d\\.\\s+\\p{Upper}.+"
+			+ "|^\\d\\.\\d\\.\\d\\.\\s+\\p{Upper}.+", Pattern.DOTALL); //for multiline matching
+
 	@Override
 	public double calculateFeatureValue(BxZone object, BxPage context) {
 		BxLine firstLine = object.getLines().get(0);
 		String lineText = firstLine.toText();
 		String text = object.toText();
 		
-		String itemizeString = "";
-		itemizeString += "|^\\d+\\.\\d+\\.\\s+\\p{Upper}.+";
-		itemizeString += "|^\\d+\\.\\s+\\p{Upper}.+";
-		itemizeString += "|^\\p{Upper}\\.\\s[^\\.]+";
-		itemizeString += "|^\\p{Lower}\\)\\s+.+";
-		Pattern itemizePattern = Pattern.compile(itemizeString);
-
-		String subpointsString = "";
-		subpointsString += "^\\d\\.\\d\\.\\s+\\p{Upper}.+";
-		subpointsString += "|^\\d\\.\\d\\.\\d\\.\\s+\\p{Upper}.+";
-		Pattern subpointsPattern = Pattern.compile(subpointsString, Pattern.DOTALL); //for multiline matching
-
-		Matcher matcher1 = itemizePattern.matcher(text);
-		Matcher matcher2 = subpointsPattern.matcher(text);
+		Matcher matcher1 = ITEMIZE_PATTERN.matcher(text);
+		Matcher matcher2 = SUBPOINTS_PATTERN.matcher(text);
 
 		if(matcher1.matches() || matcher2.matches()) {
 			return 1.0;
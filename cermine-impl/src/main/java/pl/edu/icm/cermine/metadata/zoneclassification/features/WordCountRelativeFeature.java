@@ -36,14 +36,7 @@ public class WordCountRelativeFeature extends FeatureCalculator<BxZone, BxPage>
             count += line.getWords().size();
         }
 
-        int pCount = 0;
-        for (BxZone pZone: page.getZones()) {
-            for (BxLine line : pZone.getLines()) {
-                pCount += line.getWords().size();
-            }
-        }
-
-        return (double) count / (double) pCount;
+        return (double) count / (double) PageFeatureContext.get(page).getPageWordCount();
     }
 
 }
@@ -33,6 +33,10 @@ public class YearFeature extends FeatureCalculator<BxZone, BxPage> {
 
     private static final int MIN_YEAR = 1800;
     private static final int MAX_YEAR = 2100;
+
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("^\\D*(\\d+)(.*)$");
+
+    private static final Pattern DIGIT_PATTERN = Pattern.compile("^.*\\d.*");
     
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
@@ -41,9 +45,8 @@ public class YearFeature extends FeatureCalculator<BxZone, BxPage> {
         for (BxLine line : zone.getLines()) {
             
             String toMatch = line.toText();
-            Pattern pattern = Pattern.compile("^\\D*(\\d+)(.*)$");
-            while (Pattern.matches("^.*\\d.*", toMatch)) {
-                Matcher matcher = pattern.matcher(toMatch);
+            while (DIGIT_PATTERN.matcher(toMatch).matches()) {
+                Matcher matcher = NUMBER_PATTERN.matcher(toMatch);
                 if (!matcher.matches()) {
                     break;
                 }
@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.metadata.zoneclassification.features.PageFeatureContext;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
@@ -60,19 +61,24 @@ public class BxDocsToHMMConverter {
                 ZoneClassificationUtils.mapZoneLabels(doc, labelMap);
             }
 
-            HMMTrainingSample<BxZoneLabel> prev = null;
-            for (BxPage page : doc.getPages()) {
-                for (BxZone zone : page.getZones()) {
-                    FeatureVector featureVector = featureVectorBuilder.getFeatureVector(zone, page);
-                    HMMTrainingSample<BxZoneLabel> element =
-                            new HMMTrainingSample<BxZoneLabel>(featureVector, zone.getLabel(), prev == null);
-                    trainingList.add(element);
+            PageFeatureContext.openScope(this);
+            try {
+                HMMTrainingSample<BxZoneLabel> prev = null;
+                for (BxPage page : doc.getPages()) {
+                    for (BxZone zone : page.getZones()) {
+                        FeatureVector featureVector = featureVectorBuilder.getFeatureVector(zone, page);
+                        HMMTrainingSample<BxZoneLabel> element =
+                                new HMMTrainingSample<BxZoneLabel>(featureVector, zone.getLabel(), prev == null);
+                        trainingList.add(element);
 
-                    if (prev != null) {
-                        prev.setNextLabel(zone.getLabel());
+                        if (prev != null) {
+                            prev.setNextLabel(zone.getLabel());
+                        }
+                        prev = element;
                     }
-                    prev = element;
                 }
+            } finally {
+                PageFeatureContext.closeScope(this);
             }
         }
         return trainingList;
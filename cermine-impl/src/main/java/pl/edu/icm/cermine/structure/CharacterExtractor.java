@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine.structure;
 
+import java.io.File;
 import java.io.InputStream;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.BxDocument;
@@ -37,4 +38,14 @@ public interface CharacterExtractor {
      * @throws AnalysisException 
      */
 	BxDocument extractCharacters(InputStream stream) throws AnalysisException;
+    
+    /**
+     * Extracts characters from the file. Implementations may read only
+     * the parts of the file they need.
+     * 
+     * @param file
+     * @return a document containing pages with individual characters.
+     * @throws AnalysisException 
+     */
+    BxDocument extractCharacters(File file) throws AnalysisException;
 }
@@ -0,0 +1,126 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure;
+
+import java.io.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.transformers.BinaryToBxDocumentReader;
+import pl.edu.icm.cermine.structure.transformers.BxDocumentToBinaryWriter;
+
+/**
+ * Structure cache storing the documents in a local directory in the binary
+ * format (see {@link BxDocumentToBinaryWriter}), one file per document.
+ * The files are spread over subdirectories named after the first two
+ * characters of their keys. The cache can be shared by several processes,
+ * as the files are written to temporary files first and then renamed.
+ */
+public class DirectoryStructureCache implements StructureCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectoryStructureCache.class);
+    
+    private static final String EXTENSION = ".bxd";
+    
+    private final File directory;
+    
+    private boolean compress = true;
+
+    public DirectoryStructureCache(File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public BxDocument get(String key) {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            InputStream stream = new FileInputStream(file);
+            try {
+                return new BinaryToBxDocumentReader().read(stream);
+            } finally {
+                stream.close();
+            }
+        } catch (IOException ex) {
+            log.warn("Cannot read cached structure " + file, ex);
+        } catch (TransformationException ex) {
+            log.warn("Removing corrupted cached structure " + file, ex);
+            if (!file.delete()) {
+                log.warn("Cannot remove " + file);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void put(String key, BxDocument document) {
+        File file = getFile(key);
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            log.warn("Cannot create cache directory " + parent);
+            return;
+        }
+        File temp = null;
+        try {
+            temp = File.createTempFile(key, ".tmp", parent);
+            OutputStream stream = new BufferedOutputStream(new FileOutputStream(temp));
+            try {
+                if (compress) {
+                    new BxDocumentToBinaryWriter().write(stream, document, BxDocumentToBinaryWriter.COMPRESS);
+                } else {
+                    new BxDocumentToBinaryWriter().write(stream, document);
+                }
+            } finally {
+                stream.close();
+            }
+            if (!temp.renameTo(file) && !file.isFile()) {
+                log.warn("Cannot store cached structure " + file);
+            }
+        } catch (IOException ex) {
+            log.warn("Cannot store cached structure " + file, ex);
+        } catch (TransformationException ex) {
+            log.warn("Cannot store cached structure " + file, ex);
+        } finally {
+            if (temp != null && temp.exists() && !temp.delete()) {
+                log.warn("Cannot remove " + temp);
+            }
+        }
+    }
+    
+    private File getFile(String key) {
+        String prefix = key.length() > 2 ? key.substring(0, 2) : "_";
+        return new File(new File(directory, prefix), key + EXTENSION);
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public boolean isCompress() {
+        return compress;
+    }
+
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+    
+}
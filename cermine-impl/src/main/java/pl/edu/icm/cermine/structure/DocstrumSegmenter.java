@@ -19,35 +19,37 @@
 package pl.edu.icm.cermine.structure;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.*;
 import pl.edu.icm.cermine.structure.tools.BxBoundsBuilder;
 import pl.edu.icm.cermine.structure.tools.BxModelUtils;
 import pl.edu.icm.cermine.structure.tools.DisjointSets;
 import pl.edu.icm.cermine.structure.tools.Histogram;
+import pl.edu.icm.cermine.structure.tools.SpatialIndex;
 
 /**
  * Page segmenter using Docstrum algorithm.
  * 
  * @author krusek
  */
-public class DocstrumSegmenter implements DocumentSegmenter {
+public class DocstrumSegmenter implements DocumentSegmenter, ConfigurableComponent {
 
     public static final int MAX_ZONES_PER_PAGE = 300;
     public static final int PAGE_MARGIN = 2;
     public static final double ORIENTATION_MARGIN = 0.2;
     public static final int LINES_PER_PAGE_MARGIN = 100;
     
-    private double docOrientation = Double.NaN;
-    
-    private Map<BxPage, List<Component>> componentMap = new HashMap<BxPage, List<Component>>();
-    
     @Override
     public BxDocument segmentDocument(BxDocument document) throws AnalysisException {
-        computeDocumentOrientation(document);
+        DocumentContext context = new DocumentContext(document);
+        for (BxPage page : context.getPages()) {
+            computeComponents(page, context);
+        }
+        computeDocumentOrientation(context);
         BxDocument output = new BxDocument();
-        for (BxPage page: document.getPages()) {
-        	BxPage segmentedPage = segmentPage(page);
+        for (BxPage page: context.getPages()) {
+        	BxPage segmentedPage = segmentPage(page, context);
         	if (segmentedPage.getBounds() != null) {
         		output.addPage(segmentedPage);
         	}
@@ -55,20 +57,44 @@ public class DocstrumSegmenter implements DocumentSegmenter {
         return output;
     }
     
-    protected void computeDocumentOrientation(BxDocument document) throws AnalysisException {
+    /**
+     * Builds page's components together with their nearest neighbors
+     * and stores them in the document context. Pages can be processed
+     * concurrently.
+     * 
+     * @param page page
+     * @param context document context
+     * @throws AnalysisException 
+     */
+    protected void computeComponents(BxPage page, DocumentContext context) throws AnalysisException {
+        context.putComponents(page, createComponents(page));
+    }
+    
+    /**
+     * Computes document orientation. Requires the components of all the pages
+     * to be already computed.
+     * 
+     * @param context document context
+     */
+    protected void computeDocumentOrientation(DocumentContext context) {
         List<Component> components = new ArrayList<Component>();
-        for (BxPage page : document.asPages()) {
-            List<Component> pageComponents = createComponents(page);
-            componentMap.put(page, pageComponents);
-            components.addAll(pageComponents);
+        for (BxPage page : context.getPages()) {
+            components.addAll(context.getComponents(page));
         }
-        
-        docOrientation = computeInitialOrientation(components);
+        context.setOrientation(computeInitialOrientation(components));
     }
     
-    protected BxPage segmentPage(BxPage page) throws AnalysisException {
-        List<Component> components = componentMap.get(page);
-        double orientation = docOrientation;
+    /**
+     * Segments a single page. Pages can be processed concurrently.
+     * 
+     * @param page page
+     * @param context document context
+     * @return segmented page
+     * @throws AnalysisException 
+     */
+    protected BxPage segmentPage(BxPage page, DocumentContext context) throws AnalysisException {
+        List<Component> components = context.getComponents(page);
+        double orientation = context.getOrientation();
         if (Double.isNaN(orientation)) {
             orientation = computeInitialOrientation(components);
         }
@@ -132,8 +158,7 @@ public class DocstrumSegmenter implements DocumentSegmenter {
      * result in component's neighbors attribute.
      *
      * @param components array of components
-     * @throws AnalysisException if the number of components is less than or
-     * equal to the number of nearest-neighbors per component.
+     * @throws AnalysisException if the coordinates of a component are not finite
      */
     private void findNeighbors(Component[] components) throws AnalysisException {
         if (components.length == 0) {
@@ -148,35 +173,57 @@ public class DocstrumSegmenter implements DocumentSegmenter {
             pageNeighborCount = components.length - 1;
         }
 
-        List<Neighbor> candidates = new ArrayList<Neighbor>();
+        double[] xs = new double[components.length];
+        double[] ys = new double[components.length];
+        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < components.length; i++) {
+            xs[i] = components[i].getX();
+            ys[i] = components[i].getY();
+            if (Double.isNaN(xs[i]) || Double.isInfinite(xs[i]) || Double.isNaN(ys[i]) || Double.isInfinite(ys[i])) {
+                throw new AnalysisException("Cannot find neighbors of a component with invalid coordinates!");
+            }
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        // A search square of this radius holds all the components of the page
+        double maxRadius = Math.max(xs[xs.length - 1] - xs[0], maxY - minY);
+        SpatialIndex<Component> index = new SpatialIndex<Component>(Arrays.asList(components), xs, ys, xs, ys);
         for (int i = 0; i < components.length; i++) {
-            int start = i, end = i + 1;
-            // Contains components from components array
-            // from ranges [start, i) and [i+1, end)
-            double dist = Double.POSITIVE_INFINITY;
-            for (double searchDist = 0; searchDist < dist; ) {
-                searchDist += DISTANCE_STEP;
-                boolean newCandidatesFound = false;
-                
-                while (start > 0 && components[i].getX() - components[start - 1].getX() < searchDist) {
-                    start--;
-                    candidates.add(new Neighbor(components[start], components[i]));
-                    newCandidatesFound = true;
+            // Grow the search square until it holds enough components,
+            // then collect all the components not farther than the k-th of them
+            double radius = DISTANCE_STEP;
+            int[] found = index.findIndices(xs[i] - radius, ys[i] - radius, xs[i] + radius, ys[i] + radius);
+            while (found.length <= pageNeighborCount) {
+                if (radius > maxRadius) {
+                    throw new AnalysisException("Cannot find neighbors of a component!");
                 }
-                while (end < components.length && components[end].getX() - components[i].getX() < searchDist) {
-                    candidates.add(new Neighbor(components[end], components[i]));
-                    end++;
-                    newCandidatesFound = true;
+                radius *= 2;
+                found = index.findIndices(xs[i] - radius, ys[i] - radius, xs[i] + radius, ys[i] + radius);
+            }
+            double[] distances = new double[found.length - 1];
+            int count = 0;
+            for (int j : found) {
+                if (j != i) {
+                    distances[count++] = components[i].distance(components[j]);
                 }
-                
-                if (newCandidatesFound && candidates.size() >= pageNeighborCount) {
-                    Collections.sort(candidates, NeighborDistanceComparator.getInstance());
-                    dist = candidates.get(pageNeighborCount - 1).getDistance();
+            }
+            Arrays.sort(distances);
+            radius = distances[pageNeighborCount - 1] * (1 + 1e-9) + 1e-6;
+            found = index.findIndices(xs[i] - radius, ys[i] - radius, xs[i] + radius, ys[i] + radius);
+
+            Integer[] candidates = new Integer[found.length - 1];
+            count = 0;
+            for (int j : found) {
+                if (j != i) {
+                    candidates[count++] = j;
                 }
             }
-            candidates.subList(pageNeighborCount, candidates.size()).clear();
-            components[i].setNeighbors(new ArrayList<Neighbor>(candidates));
-            candidates.clear();
+            Arrays.sort(candidates, new NeighborOrderComparator(components, i));
+            List<Neighbor> neighbors = new ArrayList<Neighbor>(pageNeighborCount);
+            for (int j = 0; j < pageNeighborCount; j++) {
+                neighbors.add(new Neighbor(components[candidates[j]], components[i]));
+            }
+            components[i].setNeighbors(neighbors);
         }
     }
 
@@ -320,9 +367,19 @@ public class DocstrumSegmenter implements DocumentSegmenter {
         }
         meanHeight /= weights;
 
+        // Distances are divided by a scale from [minLineSizeScale, maxLineSizeScale],
+        // so the pairs that can be joined are within the distances scaled by the maximum
+        double maxScale = Math.max(minLineSizeScale, maxLineSizeScale);
+        double maxGap = Double.POSITIVE_INFINITY;
+        double maxVertical = Double.POSITIVE_INFINITY;
+        if (minLineSizeScale > 0) {
+            maxGap = Math.max(0, Math.max(-minHorizontalDistance, -minHorizontalMergeDistance)) * maxScale;
+            maxVertical = Math.max(0, Math.max(maxVerticalDistance, maxVerticalMergeDistance)) * maxScale;
+        }
+        LineIndex index = new LineIndex(lines, orientation);
         for (int i = 0; i < lines.size(); i++) {
             ComponentLine li = lines.get(i);
-            for (int j = i + 1; j < lines.size(); j++) {
+            for (int j : index.findCandidates(i, maxGap, maxVertical)) {
                 ComponentLine lj = lines.get(j);
                 double scale = Math.min(li.getHeight(), lj.getHeight()) / meanHeight;
                 scale = Math.max(minLineSizeScale, Math.min(scale, maxLineSizeScale));
@@ -363,9 +420,14 @@ public class DocstrumSegmenter implements DocumentSegmenter {
             bounds.add(builder.getBounds());
         }
 
+        SpatialIndex<List<ComponentLine>> index = new SpatialIndex<List<ComponentLine>>(zones, bounds);
         List<List<ComponentLine>> outputZones = new ArrayList<List<ComponentLine>>();
         mainFor: for (int i = 0; i < zones.size(); i++) {
-            for (int j = 0; j < zones.size(); j++) {
+            // A zone containing the i-th zone intersects its bounds extended by the tolerance
+            BxBounds b = bounds.get(i);
+            int[] candidates = index.findIndices(b.getX() - tolerance, b.getY() - tolerance,
+                    b.getX() + b.getWidth() + tolerance, b.getY() + b.getHeight() + tolerance);
+            for (int j : candidates) {
                 if (i == j || bounds.get(j) == null || bounds.get(i) == null) {
                     continue;
                 }
@@ -396,9 +458,11 @@ public class DocstrumSegmenter implements DocumentSegmenter {
             double minHorizontalDistance, double maxHorizontalDistance,
             double minVerticalDistance, double maxVerticalDistance) {
         DisjointSets<ComponentLine> sets = new DisjointSets<ComponentLine>(lines);
+        LineIndex index = new LineIndex(lines, orientation);
+        double maxGap = Math.max(0, -minHorizontalDistance);
         for (int i = 0; i < lines.size(); i++) {
             ComponentLine li = lines.get(i);
-            for (int j = i + 1; j < lines.size(); j++) {
+            for (int j : index.findCandidates(i, maxGap, Math.max(0, maxVerticalDistance))) {
                 ComponentLine lj = lines.get(j);
                 double hDist = li.horizontalDistance(lj, orientation);
                 double vDist = li.verticalDistance(lj, orientation);
@@ -469,6 +533,44 @@ public class DocstrumSegmenter implements DocumentSegmenter {
         return page;
     }
 
+    /**
+     * Per-document state of the segmentation, so that a single segmenter
+     * can process many documents concurrently.
+     */
+    protected static final class DocumentContext {
+        
+        private final List<BxPage> pages;
+        
+        private final Map<BxPage, List<Component>> componentMap = new ConcurrentHashMap<BxPage, List<Component>>();
+        
+        private volatile double orientation = Double.NaN;
+
+        public DocumentContext(BxDocument document) {
+            this.pages = new ArrayList<BxPage>(document.asPages());
+        }
+
+        public List<BxPage> getPages() {
+            return pages;
+        }
+
+        private List<Component> getComponents(BxPage page) {
+            return componentMap.get(page);
+        }
+
+        private void putComponents(BxPage page, List<Component> components) {
+            componentMap.put(page, components);
+        }
+
+        public double getOrientation() {
+            return orientation;
+        }
+
+        private void setOrientation(double orientation) {
+            this.orientation = orientation;
+        }
+        
+    }
+
     /**
      * Internal representation of character.
      */
@@ -624,24 +726,55 @@ public class DocstrumSegmenter implements DocumentSegmenter {
     }
 
     /**
-     * Neighbor distance comparator based on the distance.
-     *
-     * The ordering is not consistent with equals.
+     * Orders the candidate neighbors of a component by the distance. Ties are
+     * resolved in the order in which the components are reached by searching
+     * the x-sorted array in steps of DISTANCE_STEP, left side first, going
+     * outwards from the component.
      */
-    private static final class NeighborDistanceComparator implements Comparator<Neighbor> {
+    private static final class NeighborOrderComparator implements Comparator<Integer> {
+
+        private final Component[] components;
+        private final int origin;
 
-        private NeighborDistanceComparator() {
+        private NeighborOrderComparator(Component[] components, int origin) {
+            this.components = components;
+            this.origin = origin;
         }
 
         @Override
-        public int compare(Neighbor o1, Neighbor o2) {
-            return Double.compare(o1.getDistance(), o2.getDistance());
+        public int compare(Integer o1, Integer o2) {
+            Component c = components[origin];
+            int result = Double.compare(components[o1].distance(c), components[o2].distance(c));
+            if (result == 0) {
+                result = Double.compare(step(o1), step(o2));
+            }
+            if (result == 0) {
+                boolean left1 = o1 < origin, left2 = o2 < origin;
+                if (left1 != left2) {
+                    result = left1 ? -1 : 1;
+                } else {
+                    result = left1 ? o2.compareTo(o1) : o1.compareTo(o2);
+                }
+            }
+            return result;
         }
 
-        private static NeighborDistanceComparator instance = new NeighborDistanceComparator();
-
-        public static NeighborDistanceComparator getInstance() {
-            return instance;
+        /**
+         * Returns the number of the search step reaching the component, that is
+         * the smallest s such that the x distance is less than s * DISTANCE_STEP.
+         * DISTANCE_STEP is a power of two, so s * DISTANCE_STEP is exactly
+         * the search distance accumulated by adding DISTANCE_STEP s times.
+         */
+        private double step(int index) {
+            double dx = Math.abs(components[index].getX() - components[origin].getX());
+            double step = Math.floor(dx / DISTANCE_STEP);
+            while (step > 0 && dx < step * DISTANCE_STEP) {
+                step--;
+            }
+            while (dx >= (step + 1) * DISTANCE_STEP) {
+                step++;
+            }
+            return step + 1;
         }
     }
 
@@ -776,6 +909,81 @@ public class DocstrumSegmenter implements DocumentSegmenter {
         }
     }
 
+    /**
+     * Index of component lines in the coordinate system rotated by the text
+     * orientation. A line is indexed as the range of its end points along
+     * the text direction and the position of its middle point across it,
+     * which are the quantities ComponentLine's distances are computed from.
+     */
+    private static final class LineIndex {
+
+        private final double[] minU;
+        private final double[] maxU;
+        private final double[] w;
+
+        private final SpatialIndex<ComponentLine> index;
+
+        /** Margin covering the rounding differences from the distance formulas */
+        private final double margin;
+
+        public LineIndex(List<ComponentLine> lines, double orientation) {
+            minU = new double[lines.size()];
+            maxU = new double[lines.size()];
+            w = new double[lines.size()];
+            double s = Math.sin(-orientation), c = Math.cos(-orientation);
+            double a = Math.tan(orientation);
+            double norm = Math.sqrt(a * a + 1);
+            double magnitude = 0;
+            for (int i = 0; i < lines.size(); i++) {
+                ComponentLine line = lines.get(i);
+                double u0 = c * line.x0 - s * line.y0;
+                double u1 = c * line.x1 - s * line.y1;
+                minU[i] = Math.min(u0, u1);
+                maxU[i] = Math.max(u0, u1);
+                double xm = (line.x0 + line.x1) / 2, ym = (line.y0 + line.y1) / 2;
+                w[i] = (a * xm - ym) / norm;
+                if (!Double.isNaN(w[i])) {
+                    magnitude = Math.max(magnitude, Math.abs(a * xm) + Math.abs(ym));
+                }
+            }
+            margin = 1e-6 + 1e-9 * magnitude / norm;
+            if (Double.isNaN(orientation) || Double.isInfinite(margin)) {
+                index = null;
+            } else {
+                index = new SpatialIndex<ComponentLine>(lines, minU, w, maxU, w);
+            }
+        }
+
+        /**
+         * Finds the lines following the i-th line that may be within
+         * the given distances from it.
+         *
+         * @param i line index
+         * @param maxGap maximum horizontal gap between the lines
+         * @param maxVerticalDistance maximum vertical distance between the lines
+         * @return candidate line indices in ascending order
+         */
+        public int[] findCandidates(int i, double maxGap, double maxVerticalDistance) {
+            int[] candidates;
+            if (index == null) {
+                candidates = new int[w.length];
+                for (int j = 0; j < candidates.length; j++) {
+                    candidates[j] = j;
+                }
+            } else {
+                double gap = Double.isNaN(maxGap) ? Double.POSITIVE_INFINITY : maxGap + margin;
+                double vertical = Double.isNaN(maxVerticalDistance)
+                        ? Double.POSITIVE_INFINITY : maxVerticalDistance + margin;
+                candidates = index.findIndices(minU[i] - gap, w[i] - vertical, maxU[i] + gap, w[i] + vertical);
+            }
+            int first = 0;
+            while (first < candidates.length && candidates[first] <= i) {
+                first++;
+            }
+            return Arrays.copyOfRange(candidates, first, candidates.length);
+        }
+    }
+
     /**
      * Filter class for neighbor objects that checks if the angle of the
      * neighbor is within specified range.
@@ -1059,4 +1267,26 @@ public class DocstrumSegmenter implements DocumentSegmenter {
         angleTolerance = value;
     }
 
+    @Override
+    public String getConfiguration() {
+        return "angleHistogramResolution=" + angleHistogramResolution
+                + ",angleHistogramSmoothingWindowLength=" + angleHistogramSmoothingWindowLength
+                + ",angleHistogramSmoothingWindowStdDeviation=" + angleHistogramSmoothingWindowStdDeviation
+                + ",spacingHistogramResolution=" + spacingHistogramResolution
+                + ",spacingHistogramSmoothingWindowLength=" + spacingHistogramSmoothingWindowLength
+                + ",spacingHistogramSmoothingWindowStdDeviation=" + spacingHistogramSmoothingWindowStdDeviation
+                + ",maxVerticalComponentDistanceMultiplier=" + maxVerticalComponentDistanceMultiplier
+                + ",minLineSizeScale=" + minLineSizeScale
+                + ",maxLineSizeScale=" + maxLineSizeScale
+                + ",minHorizontalDistanceMultiplier=" + minHorizontalDistanceMultiplier
+                + ",minVerticalDistanceMultiplier=" + minVerticalDistanceMultiplier
+                + ",maxVerticalDistanceMultiplier=" + maxVerticalDistanceMultiplier
+                + ",componentDistanceCharacterMultiplier=" + componentDistanceCharacterMultiplier
+                + ",wordDistanceMultiplier=" + wordDistanceMultiplier
+                + ",minHorizontalMergeDistanceMultiplier=" + minHorizontalMergeDistanceMultiplier
+                + ",maxVerticalMergeDistanceMultiplier=" + maxVerticalMergeDistanceMultiplier
+                + ",angleTolerance=" + angleTolerance
+                + ",neighborCount=" + neighborCount;
+    }
+
 }
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.metadata.zoneclassification.features.PageFeatureContext;
 import pl.edu.icm.cermine.metadata.zoneclassification.tools.ZoneClassificationUtils;
 import pl.edu.icm.cermine.structure.model.*;
 import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
@@ -76,10 +77,15 @@ public class HMMZoneClassifier implements ZoneClassifier {
         ZoneClassificationUtils.correctPagesBounds(document);
         
         List<FeatureVector> featureVectors = new ArrayList<FeatureVector>();
-        for (BxPage page : document.getPages()) {
-            for (BxZone zone : page.getZones()) {
-                featureVectors.add(featureVectorBuilder.getFeatureVector(zone, page));
+        PageFeatureContext.openScope(this);
+        try {
+            for (BxPage page : document.getPages()) {
+                for (BxZone zone : page.getZones()) {
+                    featureVectors.add(featureVectorBuilder.getFeatureVector(zone, page));
+                }
             }
+        } finally {
+            PageFeatureContext.closeScope(this);
         }
 
         List<BxZoneLabel> labels = hmmService.viterbiMostProbableStates(labelProbabilities,
@@ -21,7 +21,6 @@ package pl.edu.icm.cermine.structure;
 import java.util.*;
 import pl.edu.icm.cermine.structure.model.*;
 import pl.edu.icm.cermine.structure.readingorder.BxZoneGroup;
-import pl.edu.icm.cermine.structure.readingorder.DistElem;
 import pl.edu.icm.cermine.structure.readingorder.DocumentPlane;
 import pl.edu.icm.cermine.structure.readingorder.TreeToListConverter;
 
@@ -187,42 +186,86 @@ public class HierarchicalReadingOrderResolver implements ReadingOrderResolver {
     /**
      * Builds a binary tree of zones and groups of zones from a list of unordered zones. This is done in hierarchical
      * clustering by joining two least distant nodes. Distance is calculated in the distance() method.
+     * 
+     * A pair with other objects placed between its elements is postponed. Postponed pairs are joined first after
+     * the next join, or when there are no other pairs left. Distance tuples are kept in priority queues, tuples
+     * containing already joined objects are skipped when polled.
      *
      * @param zones is a list of unordered zones
      * @return root of the zones clustered in a tree
      */
     private BxZoneGroup groupZonesHierarchically(List<BxZone> zones) {
         /*
-         * Distance tuples are stored sorted by ascending distance value
+         * Objects are identified by their indices in the objects list, groups are appended to the list
          */
-        List<DistElem<BxObject>> dists = new ArrayList<DistElem<BxObject>>(zones.size()*zones.size()/2);
+        List<BxObject> objects = new ArrayList<BxObject>(2 * zones.size() - 1);
+        Map<BxObject, Integer> indices = new IdentityHashMap<BxObject, Integer>();
+        boolean[] joined = new boolean[2 * zones.size() - 1];
+        for (BxZone zone : zones) {
+            indices.put(zone, objects.size());
+            objects.add(zone);
+        }
+        
+        int sequence = 0;
+        PairHeap pairs = new PairHeap(zones.size() * zones.size());
         for (int idx1 = 0; idx1 < zones.size(); ++idx1) {
             for (int idx2 = idx1 + 1; idx2 < zones.size(); ++idx2) {
-                BxZone zone1 = zones.get(idx1);
-                BxZone zone2 = zones.get(idx2);
-                dists.add(new DistElem<BxObject>(false, distance(zone1, zone2),
-                        zone1, zone2));
+                pairs.addUnordered(distance(zones.get(idx1), zones.get(idx2)), sequence++, idx1, idx2);
             }
         }
-        Collections.sort(dists);
+        pairs.heapify();
+        /*
+         * Tuples containing joined objects are removed lazily, or all at once if they make up most of the heap
+         */
+        int[] pairCounts = new int[joined.length];
+        Arrays.fill(pairCounts, 0, zones.size(), zones.size() - 1);
+        int staleCount = 0;
+        PairHeap postponedPairs = new PairHeap(zones.size());
+        
         DocumentPlane plane = new DocumentPlane(zones, GRIDSIZE);
-        while (!dists.isEmpty()) {
-            DistElem<BxObject> distElem = dists.get(0);
-            dists.remove(0);
-            if (!distElem.isC() && plane.anyObjectsBetween(distElem.getObj1(), distElem.getObj2())) {
-                dists.add(new DistElem<BxObject>(true, distElem.getDist(), distElem.getObj1(), distElem.getObj2()));
-                continue;
+        while (plane.getObjects().size() > 1) {
+            removeJoined(postponedPairs, joined);
+            PairHeap source = postponedPairs;
+            if (postponedPairs.isEmpty()) {
+                source = null;
+                while (source == null) {
+                    removeJoined(pairs, joined);
+                    if (pairs.isEmpty()) {
+                        // all the remaining pairs are postponed
+                        source = postponedPairs;
+                    } else if (plane.anyObjectsBetween(objects.get(pairs.first()), objects.get(pairs.second()))) {
+                        postponedPairs.add(pairs.dist(), pairs.sequence(), pairs.first(), pairs.second());
+                        pairCounts[pairs.first()]--;
+                        pairCounts[pairs.second()]--;
+                        pairs.removeFirst();
+                    } else {
+                        source = pairs;
+                    }
+                }
+            }
+            
+            BxObject obj1 = objects.get(source.first());
+            BxObject obj2 = objects.get(source.second());
+            joined[source.first()] = true;
+            joined[source.second()] = true;
+            staleCount += pairCounts[source.first()] + pairCounts[source.second()];
+            source.removeFirst();
+            if (staleCount > pairs.size() / 2) {
+                pairs.removeAll(joined);
+                staleCount = 0;
             }
 
-            BxZoneGroup newGroup = new BxZoneGroup(distElem.getObj1(), distElem.getObj2());
-            plane.remove(distElem.getObj1()).remove(distElem.getObj2());
-            dists = removeDistElementsContainingObject(dists, distElem.getObj1());
-            dists = removeDistElementsContainingObject(dists, distElem.getObj2());
+            BxZoneGroup newGroup = new BxZoneGroup(obj1, obj2);
+            plane.remove(obj1).remove(obj2);
+            int newIndex = objects.size();
+            indices.put(newGroup, newIndex);
+            objects.add(newGroup);
             for (BxObject other : plane.getObjects()) {
-                dists.add(new DistElem<BxObject>(false, distance(other,
-                        newGroup), newGroup, other));
+                int otherIndex = indices.get(other);
+                pairs.add(distance(other, newGroup), sequence++, newIndex, otherIndex);
+                pairCounts[newIndex]++;
+                pairCounts[otherIndex]++;
             }
-            Collections.sort(dists);
             plane.add(newGroup);
         }
         
@@ -231,16 +274,169 @@ public class HierarchicalReadingOrderResolver implements ReadingOrderResolver {
     }
 
     /**
-     * Removes all distance tuples containing obj
+     * Removes tuples containing already joined objects from the head of the heap.
      */
-    private List<DistElem<BxObject>> removeDistElementsContainingObject(Collection<DistElem<BxObject>> list, BxObject obj) {
-        List<DistElem<BxObject>> ret = new ArrayList<DistElem<BxObject>>();
-        for (DistElem<BxObject> distElem : list) {
-            if (distElem.getObj1() != obj && distElem.getObj2() != obj) {
-                ret.add(distElem);
+    private void removeJoined(PairHeap pairs, boolean[] joined) {
+        while (!pairs.isEmpty() && (joined[pairs.first()] || joined[pairs.second()])) {
+            pairs.removeFirst();
+        }
+    }
+
+    /**
+     * Binary heap of distance tuples stored in parallel arrays. Distances closer than DIST_EPS are considered equal
+     * and such tuples are ordered by their creation sequence, which gives the same order as a stable sort
+     * of the tuple list. Undefined distances (objects with the same left-center point) are placed last.
+     */
+    private static final class PairHeap {
+        
+        private static final double DIST_EPS = 1E-6;
+        
+        private double[] dists;
+        private int[] sequences;
+        private int[] firsts;
+        private int[] seconds;
+        private int size = 0;
+
+        PairHeap(int capacity) {
+            capacity = Math.max(capacity, 1);
+            dists = new double[capacity];
+            sequences = new int[capacity];
+            firsts = new int[capacity];
+            seconds = new int[capacity];
+        }
+        
+        boolean isEmpty() {
+            return size == 0;
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        double dist() {
+            return dists[0];
+        }
+        
+        int sequence() {
+            return sequences[0];
+        }
+        
+        int first() {
+            return firsts[0];
+        }
+        
+        int second() {
+            return seconds[0];
+        }
+        
+        /**
+         * Appends a tuple without restoring the heap order, heapify() has to be called afterwards.
+         */
+        void addUnordered(double dist, int sequence, int first, int second) {
+            if (size == dists.length) {
+                int capacity = 2 * size;
+                dists = Arrays.copyOf(dists, capacity);
+                sequences = Arrays.copyOf(sequences, capacity);
+                firsts = Arrays.copyOf(firsts, capacity);
+                seconds = Arrays.copyOf(seconds, capacity);
+            }
+            dists[size] = dist;
+            sequences[size] = sequence;
+            firsts[size] = first;
+            seconds[size] = second;
+            size++;
+        }
+        
+        void add(double dist, int sequence, int first, int second) {
+            addUnordered(dist, sequence, first, second);
+            int idx = size - 1;
+            while (idx > 0) {
+                int parent = (idx - 1) / 2;
+                if (!less(idx, parent)) {
+                    break;
+                }
+                swap(idx, parent);
+                idx = parent;
             }
         }
-        return ret;
+        
+        /**
+         * Removes all tuples containing joined objects.
+         */
+        void removeAll(boolean[] joined) {
+            int newSize = 0;
+            for (int idx = 0; idx < size; idx++) {
+                if (!joined[firsts[idx]] && !joined[seconds[idx]]) {
+                    dists[newSize] = dists[idx];
+                    sequences[newSize] = sequences[idx];
+                    firsts[newSize] = firsts[idx];
+                    seconds[newSize] = seconds[idx];
+                    newSize++;
+                }
+            }
+            size = newSize;
+            heapify();
+        }
+        
+        void heapify() {
+            for (int idx = size / 2 - 1; idx >= 0; idx--) {
+                siftDown(idx);
+            }
+        }
+        
+        void removeFirst() {
+            size--;
+            if (size > 0) {
+                swap(0, size);
+                siftDown(0);
+            }
+        }
+        
+        private void siftDown(int idx) {
+            while (true) {
+                int child = 2 * idx + 1;
+                if (child >= size) {
+                    return;
+                }
+                if (child + 1 < size && less(child + 1, child)) {
+                    child++;
+                }
+                if (!less(child, idx)) {
+                    return;
+                }
+                swap(idx, child);
+                idx = child;
+            }
+        }
+        
+        private boolean less(int idx1, int idx2) {
+            double dist1 = dists[idx1];
+            double dist2 = dists[idx2];
+            boolean nan1 = Double.isNaN(dist1);
+            boolean nan2 = Double.isNaN(dist2);
+            if (nan1 != nan2) {
+                return nan2;
+            }
+            if (nan1 || Math.abs(dist1 - dist2) < DIST_EPS) {
+                return sequences[idx1] < sequences[idx2];
+            }
+            return dist1 < dist2;
+        }
+        
+        private void swap(int idx1, int idx2) {
+            double dist = dists[idx1];
+            dists[idx1] = dists[idx2];
+            dists[idx2] = dist;
+            int tmp = sequences[idx1];
+            sequences[idx1] = sequences[idx2];
+            sequences[idx2] = tmp;
+            tmp = firsts[idx1];
+            firsts[idx1] = firsts[idx2];
+            firsts[idx2] = tmp;
+            tmp = seconds[idx1];
+            seconds[idx1] = seconds[idx2];
+            seconds[idx2] = tmp;
+        }
     }
 
     /**
@@ -20,15 +20,20 @@ package pl.edu.icm.cermine.structure;
 
 import com.itextpdf.text.Rectangle;
 import com.itextpdf.text.exceptions.InvalidPdfException;
+import com.itextpdf.text.io.RandomAccessSourceFactory;
 import com.itextpdf.text.pdf.PRIndirectReference;
 import com.itextpdf.text.pdf.PdfDictionary;
 import com.itextpdf.text.pdf.PdfName;
 import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.RandomAccessFileOrArray;
 import com.itextpdf.text.pdf.parser.*;
 import com.itextpdf.text.pdf.parser.Vector;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.BxBounds;
 import pl.edu.icm.cermine.structure.model.BxChunk;
@@ -42,7 +47,9 @@ import pl.edu.icm.cermine.structure.tools.BxBoundsBuilder;
  *
  * @author Dominika Tkaczyk (dtkaczyk@icm.edu.pl)
  */
-public class ITextCharacterExtractor implements CharacterExtractor {
+public class ITextCharacterExtractor implements CharacterExtractor, ConfigurableComponent {
+    
+    private static final Logger log = LoggerFactory.getLogger(ITextCharacterExtractor.class);
     
     public static final int DEFAULT_FRONT_PAGES_LIMIT = 20;
     
@@ -82,26 +89,47 @@ public class ITextCharacterExtractor implements CharacterExtractor {
     @Override
     public BxDocument extractCharacters(InputStream stream) throws AnalysisException {
         try {
-            BxDocumentCreator documentCreator = new BxDocumentCreator();
-
             PdfReader reader = new PdfReader(stream);
-            PdfContentStreamProcessor processor = new PdfContentStreamProcessor(documentCreator);
-            
-            for (int pageNumber = 1; pageNumber <= reader.getNumberOfPages(); pageNumber++) {
-                if (frontPagesLimit > 0 && backPagesLimit > 0 && pageNumber > frontPagesLimit 
-                        && pageNumber < reader.getNumberOfPages() - 1 - backPagesLimit) {
-                    continue;
-                }
-                documentCreator.processNewBxPage(reader.getPageSize(pageNumber));
-
-                PdfDictionary resources = reader.getPageN(pageNumber).getAsDict(PdfName.RESOURCES);
-                processAlternativeFontNames(resources);
-
-                processor.reset();
-                processor.processContent(ContentByteUtils.getContentBytesForPage(reader, pageNumber), resources);
+            try {
+                return extractCharacters(reader, "input stream");
+            } finally {
+                reader.close();
+            }
+        } catch (InvalidPdfException ex) {
+            throw new AnalysisException("Invalid PDF file", ex);
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot extract characters from PDF file", ex);
+        }
+    }
+    
+    /**
+     * Extracts text chunks from a PDF file. The file is memory-mapped and read
+     * partially: only the cross-reference table is parsed up front, and objects
+     * are read when the processed pages need them. Pages skipped because of
+     * the pages limits are never read, and processed pages are released,
+     * so the heap does not have to hold the whole PDF.
+     * 
+     * @param file PDF file
+     * @return BxDocument containing pages with extracted chunks stored as BxChunk lists
+     * @throws AnalysisException 
+     */
+    @Override
+    public BxDocument extractCharacters(File file) throws AnalysisException {
+        try {
+            RandomAccessFileOrArray input = new RandomAccessFileOrArray(
+                    new RandomAccessSourceFactory().createBestSource(file.getPath()));
+            PdfReader reader;
+            try {
+                reader = new PdfReader(input, null);
+            } catch (IOException ex) {
+                input.close();
+                throw ex;
+            }
+            try {
+                return extractCharacters(reader, file.getPath());
+            } finally {
+                reader.close();
             }
-
-            return removeDuplicateChunks(documentCreator.document);
         } catch (InvalidPdfException ex) {
             throw new AnalysisException("Invalid PDF file", ex);
         } catch (IOException ex) {
@@ -109,6 +137,38 @@ public class ITextCharacterExtractor implements CharacterExtractor {
         }
     }
     
+    private BxDocument extractCharacters(PdfReader reader, String source) throws IOException {
+        long start = System.currentTimeMillis();
+        int processedPages = 0;
+        
+        BxDocumentCreator documentCreator = new BxDocumentCreator();
+        PdfContentStreamProcessor processor = new PdfContentStreamProcessor(documentCreator);
+        
+        for (int pageNumber = 1; pageNumber <= reader.getNumberOfPages(); pageNumber++) {
+            if (frontPagesLimit > 0 && backPagesLimit > 0 && pageNumber > frontPagesLimit 
+                    && pageNumber < reader.getNumberOfPages() - 1 - backPagesLimit) {
+                continue;
+            }
+            documentCreator.processNewBxPage(reader.getPageSize(pageNumber));
+
+            PdfDictionary resources = reader.getPageN(pageNumber).getAsDict(PdfName.RESOURCES);
+            processAlternativeFontNames(resources);
+
+            processor.reset();
+            processor.processContent(ContentByteUtils.getContentBytesForPage(reader, pageNumber), resources);
+            reader.releasePage(pageNumber);
+            
+            processedPages++;
+        }
+        
+        BxDocument document = documentCreator.finishDocument();
+        if (log.isDebugEnabled()) {
+            log.debug("Extracted characters from " + processedPages + " of " + reader.getNumberOfPages()
+                    + " pages of " + source + " in " + (System.currentTimeMillis() - start) + " ms");
+        }
+        return document;
+    }
+    
     /**
      * Processes PDF's fonts dictionary. During the process alternative names
      * of Standard 14 Fonts are changed to the standard ones, provided that
@@ -141,47 +201,6 @@ public class ITextCharacterExtractor implements CharacterExtractor {
         }
     }
 
-    private BxDocument removeDuplicateChunks(BxDocument document) {
-        for (BxPage page : document.getPages()) {
-            List<BxChunk> chunks = page.getChunks();
-            List<BxChunk> filteredChunks = new ArrayList<BxChunk>();
-            Map<Integer, Map<Integer, Set<BxChunk>>> chunkMap = new HashMap<Integer, Map<Integer, Set<BxChunk>>>();
-            for (BxChunk chunk : chunks) {
-                int x = (int) chunk.getX();
-                int y = (int) chunk.getY();
-                boolean duplicate = false;
-                duplicateSearch:
-                for (int i = x-1; i <= x+1; i++) {
-                    for (int j = y-1; j <= y+1; j++) {
-                        if (chunkMap.get(i) == null || chunkMap.get(i).get(j) == null) {
-                            continue;
-                        }
-                        for (BxChunk ch : chunkMap.get(i).get(j)) {
-                            if (chunk.toText().equals(ch.toText()) && chunk.getBounds().isSimilarTo(ch.getBounds(), 1)) {
-                                duplicate = true;
-                                break duplicateSearch;
-                            }
-                        }
-                    }
-                }
-                if (!duplicate) {
-                    filteredChunks.add(chunk);
-                    x = (int) chunk.getX();
-                    y = (int) chunk.getY();
-                    if (chunkMap.get(x) == null) {
-                        chunkMap.put(x, new HashMap<Integer, Set<BxChunk>>());
-                    }
-                    if (chunkMap.get(x).get(y) == null) {
-                        chunkMap.get(x).put(y, new HashSet<BxChunk>());
-                    }
-                    chunkMap.get(x).get(y).add(chunk);
-                }
-            }
-            page.setChunks(filteredChunks);
-        }
-        return document;
-    }
-
     /**
      * Listener class receives information of text chunks and their render info
      * from PDF content processor. Listener uses this to construct a BxDocument object
@@ -194,17 +213,35 @@ public class ITextCharacterExtractor implements CharacterExtractor {
 
         private BxBoundsBuilder boundsBuilder = new BxBoundsBuilder();
 
-        private Rectangle pageRectangle;
+        private PageGlyphs glyphs = new PageGlyphs();
+
+        private float pageLeft;
+        private float pageBottom;
+        private float pageRight;
+        private float pageTop;
+        private float pageHeight;
 
         private void processNewBxPage(Rectangle pageRectangle) {
             if (actPage != null) {
+                actPage.setChunks(glyphs.toChunks());
                 actPage.setBounds(boundsBuilder.getBounds());
                 boundsBuilder.clear();
             }
             actPage = new BxPage();
             document.addPage(actPage);
 
-            this.pageRectangle = pageRectangle;
+            pageLeft = pageRectangle.getLeft();
+            pageBottom = pageRectangle.getBottom();
+            pageRight = pageRectangle.getRight();
+            pageTop = pageRectangle.getTop();
+            pageHeight = pageRectangle.getHeight();
+        }
+
+        private BxDocument finishDocument() {
+            if (actPage != null) {
+                actPage.setChunks(glyphs.toChunks());
+            }
+            return document;
         }
 
         @Override
@@ -215,22 +252,21 @@ public class ITextCharacterExtractor implements CharacterExtractor {
         public void renderText(TextRenderInfo tri) {
             for (TextRenderInfo charTri : tri.getCharacterRenderInfos()) {
                 String text = charTri.getText();
-                char ch = charTri.getText().charAt(0);
-                if (ch <= ' ' || text.matches("^[\uD800-\uD8FF]$")
-                        || text.matches("^[\uDC00-\uDFFF]$")
-                        || text.matches("^[\uFFF0-\uFFFF]$")) {
+                char ch = text.charAt(0);
+                if (ch <= ' ' || (text.length() == 1 && isIgnored(ch))) {
                     continue;
                 }
                 
-                float absoluteCharLeft = charTri.getDescentLine().getStartPoint().get(Vector.I1);
-                float absoluteCharBottom = charTri.getDescentLine().getStartPoint().get(Vector.I2);
+                LineSegment descentLine = charTri.getDescentLine();
+                Vector descentStart = descentLine.getStartPoint();
+                float absoluteCharLeft = descentStart.get(Vector.I1);
+                float absoluteCharBottom = descentStart.get(Vector.I2);
                 
-                float charLeft = absoluteCharLeft - pageRectangle.getLeft();
-                float charBottom = absoluteCharBottom - pageRectangle.getBottom();
+                float charLeft = absoluteCharLeft - pageLeft;
+                float charBottom = absoluteCharBottom - pageBottom;
                 
-                float charHeight = charTri.getAscentLine().getStartPoint().get(Vector.I2) 
-                        - charTri.getDescentLine().getStartPoint().get(Vector.I2);
-                float charWidth = charTri.getDescentLine().getLength();
+                float charHeight = charTri.getAscentLine().getStartPoint().get(Vector.I2) - absoluteCharBottom;
+                float charWidth = descentLine.getLength();
                 
                 if (Float.isNaN(charHeight) || Float.isInfinite(charHeight)) {
                     charHeight = 0;
@@ -240,28 +276,34 @@ public class ITextCharacterExtractor implements CharacterExtractor {
                     charWidth = 0;
                 } 
                 
-                if (absoluteCharLeft < pageRectangle.getLeft() 
-                        || absoluteCharLeft + charWidth > pageRectangle.getRight()
-                        || absoluteCharBottom < pageRectangle.getBottom() 
-                        || absoluteCharBottom + charHeight > pageRectangle.getTop()) {
+                if (absoluteCharLeft < pageLeft 
+                        || absoluteCharLeft + charWidth > pageRight
+                        || absoluteCharBottom < pageBottom 
+                        || absoluteCharBottom + charHeight > pageTop) {
                     continue;
                 }
                 
-                BxBounds bounds = new BxBounds(charLeft, pageRectangle.getHeight() - charBottom - charHeight,
-                                               charWidth, charHeight);
+                float charTop = pageHeight - charBottom - charHeight;
                 
-                if (Double.isNaN(bounds.getX()) || Double.isInfinite(bounds.getX())
-                        || Double.isNaN(bounds.getY()) || Double.isInfinite(bounds.getY())
-                        || Double.isNaN(bounds.getHeight()) || Double.isInfinite(bounds.getHeight())
-                        || Double.isNaN(bounds.getWidth()) || Double.isInfinite(bounds.getWidth())) {
+                if (Float.isNaN(charLeft) || Float.isInfinite(charLeft)
+                        || Float.isNaN(charTop) || Float.isInfinite(charTop)) {
                     continue;
                 }
                 
-                actPage.addChunk(new BxChunk(bounds, text));
-                boundsBuilder.expand(bounds);
+                glyphs.add(charLeft, charTop, charWidth, charHeight, text);
+                boundsBuilder.expand(charLeft, charTop, charWidth, charHeight);
             }
         }
 
+        /**
+         * Checks if a single-character glyph is a lone surrogate or a specials block character.
+         */
+        private static boolean isIgnored(char ch) {
+            return (ch >= '\uD800' && ch <= '\uD8FF')
+                    || (ch >= '\uDC00' && ch <= '\uDFFF')
+                    || ch >= '\uFFF0';
+        }
+
         @Override
         public void endTextBlock() {
         }
@@ -272,6 +314,127 @@ public class ITextCharacterExtractor implements CharacterExtractor {
 
     }
 
+    /**
+     * Glyphs of a single page stored in primitive arrays. Chunks are created
+     * only for the glyphs that are not duplicates of earlier glyphs, i.e. glyphs
+     * with the same text and bounds similar up to 1 unit. Candidate duplicates
+     * are looked up in a hash of integer glyph positions.
+     */
+    static final class PageGlyphs {
+
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private static final double DUPLICATE_TOLERANCE = 1;
+
+        private float[] xs = new float[INITIAL_CAPACITY];
+        private float[] ys = new float[INITIAL_CAPACITY];
+        private float[] widths = new float[INITIAL_CAPACITY];
+        private float[] heights = new float[INITIAL_CAPACITY];
+        private String[] texts = new String[INITIAL_CAPACITY];
+        private int size;
+
+        /** Cell keys and the most recently kept glyph of each cell, open addressing */
+        private long[] cellKeys = new long[0];
+        private int[] cellHeads = new int[0];
+        /** Previously kept glyph of the same cell */
+        private int[] nextInCell = new int[0];
+
+        void add(float x, float y, float width, float height, String text) {
+            if (size == xs.length) {
+                int capacity = 2 * size;
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+                widths = Arrays.copyOf(widths, capacity);
+                heights = Arrays.copyOf(heights, capacity);
+                texts = Arrays.copyOf(texts, capacity);
+            }
+            xs[size] = x;
+            ys[size] = y;
+            widths[size] = width;
+            heights[size] = height;
+            texts[size] = text;
+            size++;
+        }
+
+        /**
+         * Creates chunks from the glyphs which are not duplicates and clears the buffer.
+         *
+         * @return chunks in the order of glyphs
+         */
+        List<BxChunk> toChunks() {
+            List<BxChunk> chunks = new ArrayList<BxChunk>(size);
+            int cellCapacity = Integer.highestOneBit(Math.max(size, 8) * 2 - 1) * 2;
+            if (cellKeys.length < cellCapacity || cellKeys.length > 4 * cellCapacity) {
+                cellKeys = new long[cellCapacity];
+                cellHeads = new int[cellCapacity];
+            }
+            Arrays.fill(cellHeads, -1);
+            if (nextInCell.length < size) {
+                nextInCell = new int[xs.length];
+            }
+            for (int i = 0; i < size; i++) {
+                int cellX = (int) xs[i];
+                int cellY = (int) ys[i];
+                if (!hasDuplicate(i, cellX, cellY)) {
+                    int slot = findSlot(cellX, cellY);
+                    cellKeys[slot] = cellKey(cellX, cellY);
+                    nextInCell[i] = cellHeads[slot];
+                    cellHeads[slot] = i;
+                    chunks.add(new BxChunk(new BxBounds(xs[i], ys[i], widths[i], heights[i]), texts[i]));
+                }
+            }
+            Arrays.fill(texts, 0, size, null);
+            size = 0;
+            return chunks;
+        }
+
+        private boolean hasDuplicate(int index, int cellX, int cellY) {
+            for (int i = cellX - 1; i <= cellX + 1; i++) {
+                for (int j = cellY - 1; j <= cellY + 1; j++) {
+                    int slot = findSlot(i, j);
+                    if (cellHeads[slot] == -1) {
+                        continue;
+                    }
+                    for (int kept = cellHeads[slot]; kept != -1; kept = nextInCell[kept]) {
+                        if (texts[index].equals(texts[kept]) && areSimilar(index, kept)) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Compares glyph bounds in the same way as BxBounds.isSimilarTo.
+         */
+        private boolean areSimilar(int i, int j) {
+            double xi = xs[i], yi = ys[i], wi = widths[i], hi = heights[i];
+            double xj = xs[j], yj = ys[j], wj = widths[j], hj = heights[j];
+            return Math.abs(xi - xj) <= DUPLICATE_TOLERANCE
+                    && Math.abs(xi + wi - xj - wj) <= DUPLICATE_TOLERANCE
+                    && Math.abs(yi - yj) <= DUPLICATE_TOLERANCE
+                    && Math.abs(yi + hi - yj - hj) <= DUPLICATE_TOLERANCE;
+        }
+
+        /**
+         * Returns the slot of the cell, or the empty slot where it should be inserted.
+         */
+        private int findSlot(int cellX, int cellY) {
+            long key = cellKey(cellX, cellY);
+            int mask = cellKeys.length - 1;
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+            while (cellHeads[slot] != -1 && cellKeys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static long cellKey(int cellX, int cellY) {
+            return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+        }
+    }
+
     public int getBackPagesLimit() {
         return backPagesLimit;
     }
@@ -289,5 +452,10 @@ public class ITextCharacterExtractor implements CharacterExtractor {
         this.frontPagesLimit = frontPagesLimit;
         this.backPagesLimit = backPagesLimit;
     }
+
+    @Override
+    public String getConfiguration() {
+        return "frontPagesLimit=" + frontPagesLimit + ",backPagesLimit=" + backPagesLimit;
+    }
     
 }
@@ -18,85 +18,206 @@
 
 package pl.edu.icm.cermine.structure;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxPage;
 
 /**
- * Page segmenter using Docstrum algorithm.
+ * Page segmenter using Docstrum algorithm. Pages are processed in parallel
+ * on the given executor or on a long-lived executor shared by all the documents.
+ * The shared executor has a bounded queue and runs the rejected page tasks
+ * on the calling thread, so a busy executor never piles up tasks. The segmenter
+ * keeps no per-document state, so a single instance can be used concurrently.
  * 
  * @author krusek
  */
 public class ParallelDocstrumSegmenter extends DocstrumSegmenter {
     
-    private static int threadsNumber = Runtime.getRuntime().availableProcessors();
+    private static volatile int threadsNumber = Runtime.getRuntime().availableProcessors();
     
-    class NumBxPage {
-        BxPage page;
-        int number;
+    private static ThreadPoolExecutor sharedExecutor;
+    
+    private final ExecutorService executor;
+    
+    private final int parallelism;
 
-        public NumBxPage(BxPage page, int number) {
-            this.page = page;
-            this.number = number;
-        }
-        
+    /**
+     * Creates the segmenter using the executor shared by all the segmenters.
+     */
+    public ParallelDocstrumSegmenter() {
+        this(null, 0);
     }
-    
-    class SingleSegmenter implements Callable<NumBxPage> {
-        NumBxPage page;
 
-        public SingleSegmenter(BxPage page, int number) {
-            this.page = new NumBxPage(page, number);
-        }
-       
-        @Override
-        public NumBxPage call() throws AnalysisException{
-            return new NumBxPage(segmentPage(page.page), page.number);
-        }
+    /**
+     * Creates the segmenter using the given executor. The executor is not
+     * shut down by the segmenter.
+     * 
+     * @param executor executor for page tasks
+     */
+    public ParallelDocstrumSegmenter(ExecutorService executor) {
+        this(executor, 0);
+    }
+
+    /**
+     * Creates the segmenter using the given executor. The executor is not
+     * shut down by the segmenter.
+     * 
+     * @param executor executor for page tasks
+     * @param parallelism maximum number of executor threads used by a single document
+     */
+    public ParallelDocstrumSegmenter(ExecutorService executor, int parallelism) {
+        this.executor = executor;
+        this.parallelism = parallelism;
     }
 
     @Override
     public BxDocument segmentDocument(BxDocument document) throws AnalysisException {
-        computeDocumentOrientation(document);
-        
-        BxDocument output = new BxDocument();
+        final DocumentContext context = new DocumentContext(document);
+        final List<BxPage> pages = context.getPages();
 
-        BxPage[] pages = new BxPage[document.getPages().size()];
+        forEachPage(pages, new PageTask() {
+            @Override
+            public void process(int index) throws AnalysisException {
+                computeComponents(pages.get(index), context);
+            }
+        });
+        computeDocumentOrientation(context);
+
+        final BxPage[] segmented = new BxPage[pages.size()];
+        forEachPage(pages, new PageTask() {
+            @Override
+            public void process(int index) throws AnalysisException {
+                segmented[index] = segmentPage(pages.get(index), context);
+            }
+        });
+
+        BxDocument output = new BxDocument();
+        for (BxPage p : segmented) {
+            if (p.getBounds() != null) {
+                output.addPage(p);
+            }
+        }
+        return output;
+    }
+    
+    private interface PageTask {
+        void process(int index) throws AnalysisException;
+    }
+    
+    /**
+     * Runs the task for every page. Pages are claimed one by one by the
+     * calling thread and by the helper tasks submitted to the executor,
+     * so a busy executor slows the document down, but never blocks it.
+     */
+    private void forEachPage(final List<BxPage> pages, final PageTask task) throws AnalysisException {
+        final int pageCount = pages.size();
+        final AtomicInteger nextPage = new AtomicInteger();
+        final CountDownLatch finished = new CountDownLatch(pageCount);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
         
-        ExecutorService exec = Executors.newFixedThreadPool(threadsNumber);
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                int index;
+                while ((index = nextPage.getAndIncrement()) < pageCount) {
+                    try {
+                        if (error.get() == null) {
+                            task.process(index);
+                        }
+                    } catch (Throwable ex) {
+                        error.compareAndSet(null, ex);
+                    } finally {
+                        finished.countDown();
+                    }
+                }
+            }
+        };
         
-        ArrayList<Callable<NumBxPage>> tasks = new ArrayList<Callable<NumBxPage>>();
-        int i = 0;
-        for (BxPage page : document.getPages()) {
-           tasks.add(new SingleSegmenter(page, i++));
+        ExecutorService exec = getExecutor();
+        int helpers = Math.min(pageCount, getParallelism()) - 1;
+        for (int i = 0; i < helpers; i++) {
+            try {
+                exec.execute(worker);
+            } catch (RejectedExecutionException ex) {
+                break;
+            }
         }
+        worker.run();
         
-        List<Future<NumBxPage>> results;
         try {
-            results = exec.invokeAll(tasks);
-            exec.shutdown();
-            
-            for (Future<NumBxPage> result : results) {
-                NumBxPage p = result.get();
-                pages[p.number] = p.page;
-            }
-            for (BxPage p : pages) {
-                if (p.getBounds() != null) {
-                    output.addPage(p);
-                }
-            }
-            return output;
-        } catch (ExecutionException ex) {
-            throw new AnalysisException("Cannot segment pages!", ex);
+            finished.await();
         } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
             throw new AnalysisException("Cannot segment pages!", ex);
         }
+        
+        Throwable ex = error.get();
+        if (ex instanceof AnalysisException) {
+            throw (AnalysisException) ex;
+        } else if (ex instanceof RuntimeException) {
+            throw (RuntimeException) ex;
+        } else if (ex instanceof Error) {
+            throw (Error) ex;
+        } else if (ex != null) {
+            throw new AnalysisException("Cannot segment pages!", ex);
+        }
+    }
+    
+    private ExecutorService getExecutor() {
+        return executor == null ? getSharedExecutor() : executor;
+    }
+    
+    private int getParallelism() {
+        if (executor == null || parallelism <= 0) {
+            return threadsNumber;
+        }
+        return parallelism;
     }
 
-    public static void setThreadsNumber(int threadsNumber) {
+    private static synchronized ThreadPoolExecutor getSharedExecutor() {
+        if (sharedExecutor == null) {
+            ThreadFactory threadFactory = new ThreadFactory() {
+                
+                private final AtomicInteger threadCount = new AtomicInteger();
+                
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "docstrum-segmenter-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+            sharedExecutor = new ThreadPoolExecutor(threadsNumber, threadsNumber, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(threadsNumber), threadFactory,
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            sharedExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sharedExecutor;
+    }
+
+    /**
+     * Sets the size of the executor shared by the segmenters created
+     * without an explicit executor.
+     * 
+     * @param threadsNumber number of threads
+     */
+    public static synchronized void setThreadsNumber(int threadsNumber) {
+        if (threadsNumber < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive!");
+        }
+        if (sharedExecutor != null) {
+            if (threadsNumber > sharedExecutor.getMaximumPoolSize()) {
+                sharedExecutor.setMaximumPoolSize(threadsNumber);
+                sharedExecutor.setCorePoolSize(threadsNumber);
+            } else {
+                sharedExecutor.setCorePoolSize(threadsNumber);
+                sharedExecutor.setMaximumPoolSize(threadsNumber);
+            }
+        }
         ParallelDocstrumSegmenter.threadsNumber = threadsNumber;
     }
 
@@ -20,6 +20,7 @@ package pl.edu.icm.cermine.structure;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.metadata.zoneclassification.features.*;
@@ -40,8 +41,6 @@ public class SVMInitialZoneClassifier extends SVMZoneClassifier {
 	private static final String MODEL_FILE_PATH = "/pl/edu/icm/cermine/structure/initial_classification_svm_model";
 	private static final String RANGE_FILE_PATH = "/pl/edu/icm/cermine/structure/initial_classification_svm_model.range";
 
-    private static SVMInitialZoneClassifier defaultInstance;
-    
 	public SVMInitialZoneClassifier() throws AnalysisException, IOException {
 		super(getFeatureVectorBuilder());
 		loadModelFromResources(MODEL_FILE_PATH, RANGE_FILE_PATH);
@@ -147,20 +146,51 @@ public class SVMInitialZoneClassifier extends SVMZoneClassifier {
         return vectorBuilder;
 	}
 	
-    public static SVMInitialZoneClassifier getDefaultInstance() throws AnalysisException, IOException {
-        if (defaultInstance == null) {
-            defaultInstance = new SVMInitialZoneClassifier();
+    private static final ClassifierFactory<SVMInitialZoneClassifier> FACTORY = new ClassifierFactory<SVMInitialZoneClassifier>() {
+
+        @Override
+        public SVMInitialZoneClassifier create(BufferedReader modelFile, BufferedReader rangeFile) throws AnalysisException, IOException {
+            return new SVMInitialZoneClassifier(modelFile, rangeFile);
         }
-        return defaultInstance;
+    };
+    
+    /**
+     * Returns the read-only classifier with the default model, shared by all the extractors.
+     * 
+     * @return shared classifier instance
+     * @throws AnalysisException
+     * @throws IOException 
+     */
+    public static SVMInitialZoneClassifier getDefaultInstance() throws AnalysisException, IOException {
+        return getSharedInstance(SVMInitialZoneClassifier.class, MODEL_FILE_PATH, RANGE_FILE_PATH, FACTORY);
+    }
+    
+    /**
+     * Returns the read-only classifier with the model read from the given streams.
+     * Classifiers are shared by all the extractors using the same model and range files.
+     * 
+     * @param model model stream
+     * @param range range stream
+     * @return shared classifier instance
+     * @throws AnalysisException
+     * @throws IOException 
+     */
+    public static SVMInitialZoneClassifier getInstance(InputStream model, InputStream range) throws AnalysisException, IOException {
+        return getSharedInstance(SVMInitialZoneClassifier.class, model, range, FACTORY);
     }
     
     @Override
 	public BxDocument classifyZones(BxDocument document) throws AnalysisException {
-        for (BxZone zone : document.asZones()) {
-            if (zone.getLabel() == null) {
-                BxZoneLabel predicted = predictLabel(zone, zone.getParent());
-                zone.setLabel(predicted);
+        PageFeatureContext.openScope(this);
+        try {
+            for (BxZone zone : document.asZones()) {
+                if (zone.getLabel() == null) {
+                    BxZoneLabel predicted = predictLabel(zone, zone.getParent());
+                    zone.setLabel(predicted);
+                }
             }
+        } finally {
+            PageFeatureContext.closeScope(this);
         }
         return document;
 	}
@@ -20,6 +20,7 @@ package pl.edu.icm.cermine.structure;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.metadata.zoneclassification.features.*;
@@ -40,8 +41,6 @@ public class SVMMetadataZoneClassifier extends SVMZoneClassifier {
 	private static final String MODEL_FILE_PATH = "/pl/edu/icm/cermine/structure/meta_classification_svm_model";
 	private static final String RANGE_FILE_PATH = "/pl/edu/icm/cermine/structure/meta_classification_svm_model.range";
 	
-    private static SVMMetadataZoneClassifier defaultInstance;
-    
 	public SVMMetadataZoneClassifier() throws AnalysisException {
 		super(getFeatureVectorBuilder());
         try {
@@ -136,11 +135,37 @@ public class SVMMetadataZoneClassifier extends SVMZoneClassifier {
 		return vectorBuilder;
 	}
     
-    public static SVMMetadataZoneClassifier getDefaultInstance() throws AnalysisException, IOException {
-        if (defaultInstance == null) {
-            defaultInstance = new SVMMetadataZoneClassifier();
+    private static final ClassifierFactory<SVMMetadataZoneClassifier> FACTORY = new ClassifierFactory<SVMMetadataZoneClassifier>() {
+
+        @Override
+        public SVMMetadataZoneClassifier create(BufferedReader modelFile, BufferedReader rangeFile) throws AnalysisException, IOException {
+            return new SVMMetadataZoneClassifier(modelFile, rangeFile);
         }
-        return defaultInstance;
+    };
+    
+    /**
+     * Returns the read-only classifier with the default model, shared by all the extractors.
+     * 
+     * @return shared classifier instance
+     * @throws AnalysisException
+     * @throws IOException 
+     */
+    public static SVMMetadataZoneClassifier getDefaultInstance() throws AnalysisException, IOException {
+        return getSharedInstance(SVMMetadataZoneClassifier.class, MODEL_FILE_PATH, RANGE_FILE_PATH, FACTORY);
+    }
+    
+    /**
+     * Returns the read-only classifier with the model read from the given streams.
+     * Classifiers are shared by all the extractors using the same model and range files.
+     * 
+     * @param model model stream
+     * @param range range stream
+     * @return shared classifier instance
+     * @throws AnalysisException
+     * @throws IOException 
+     */
+    public static SVMMetadataZoneClassifier getInstance(InputStream model, InputStream range) throws AnalysisException, IOException {
+        return getSharedInstance(SVMMetadataZoneClassifier.class, model, range, FACTORY);
     }
     
     @Override
@@ -150,11 +175,16 @@ public class SVMMetadataZoneClassifier extends SVMZoneClassifier {
                 zone.setParent(page);
             }
         }
-        for (BxZone zone: document.asZones()) {
-            if (zone.getLabel().isOfCategoryOrGeneral(BxZoneLabelCategory.CAT_METADATA)) {
-                zone.setLabel(predictLabel(zone, zone.getParent()));
+        PageFeatureContext.openScope(this);
+        try {
+            for (BxZone zone: document.asZones()) {
+                if (zone.getLabel().isOfCategoryOrGeneral(BxZoneLabelCategory.CAT_METADATA)) {
+                    zone.setLabel(predictLabel(zone, zone.getParent()));
+                }
             }
-		}
+        } finally {
+            PageFeatureContext.closeScope(this);
+        }
         return document;
     }
 
@@ -0,0 +1,51 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure;
+
+import pl.edu.icm.cermine.structure.model.BxDocument;
+
+/**
+ * Cache of segmented documents with resolved reading order, used by
+ * {@link pl.edu.icm.cermine.PdfBxStructureExtractor} to skip character
+ * extraction, segmentation and reading order resolution for the documents
+ * processed before.
+ * <p>
+ * Keys consist of hexadecimal digits and dashes only. Failures of the
+ * underlying storage should be treated as cache misses rather than reported
+ * to the caller.
+ */
+public interface StructureCache {
+
+    /**
+     * Returns the document stored under the given key.
+     *
+     * @param key cache key
+     * @return stored document or null, if there is none
+     */
+    BxDocument get(String key);
+
+    /**
+     * Stores the document under the given key.
+     *
+     * @param key cache key
+     * @param document document to store
+     */
+    void put(String key, BxDocument document);
+
+}
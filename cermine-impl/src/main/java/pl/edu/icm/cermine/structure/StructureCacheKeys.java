@@ -0,0 +1,114 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Builds the keys of {@link StructureCache}. A key consists of the SHA-1 hash
+ * of the PDF content and the SHA-1 hash of the version of the configuration
+ * of the structure extraction, so that the cached structures are not used
+ * after the extraction algorithms or their parameters change.
+ */
+public final class StructureCacheKeys {
+    
+    /** 
+     * Version of the structure extraction algorithms, part of the default configuration version.
+     * Should be changed whenever the changes in the algorithms invalidate the cached structures.
+     */
+    public static final String STRUCTURE_VERSION = "1";
+    
+    public static String forContent(byte[] content, String configurationVersion) {
+        return create(Hashing.sha1().hashBytes(content), configurationVersion);
+    }
+
+    public static String forFile(File file, String configurationVersion) throws IOException {
+        InputStream stream = new FileInputStream(file);
+        try {
+            return forStream(stream, null, configurationVersion);
+        } finally {
+            stream.close();
+        }
+    }
+    
+    /**
+     * Reads the stream to the end and returns the key of its content.
+     * The stream is not closed.
+     * 
+     * @param stream PDF content
+     * @param copy output receiving a copy of the content, can be null
+     * @param configurationVersion configuration version
+     * @return cache key
+     * @throws IOException 
+     */
+    public static String forStream(InputStream stream, OutputStream copy, String configurationVersion) 
+            throws IOException {
+        Hasher hasher = Hashing.sha1().newHasher();
+        byte[] buffer = new byte[1 << 16];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            hasher.putBytes(buffer, 0, read);
+            if (copy != null) {
+                copy.write(buffer, 0, read);
+            }
+        }
+        return create(hasher.hash(), configurationVersion);
+    }
+    
+    /**
+     * Returns the default configuration version, derived from {@link #STRUCTURE_VERSION},
+     * the classes of the components and the configuration of the components implementing
+     * {@link ConfigurableComponent}. The version is calculated from the current parameters
+     * of the components, so it changes when they are reconfigured.
+     * 
+     * @param characterExtractor character extractor
+     * @param segmenter document segmenter
+     * @param roResolver reading order resolver
+     * @return configuration version
+     */
+    public static String defaultConfigurationVersion(CharacterExtractor characterExtractor, 
+            DocumentSegmenter segmenter, ReadingOrderResolver roResolver) {
+        return STRUCTURE_VERSION + ":" + describe(characterExtractor)
+                + ":" + describe(segmenter) + ":" + describe(roResolver);
+    }
+    
+    private static String describe(Object component) {
+        if (component instanceof ConfigurableComponent) {
+            return component.getClass().getName() + "(" + ((ConfigurableComponent) component).getConfiguration() + ")";
+        }
+        return component.getClass().getName();
+    }
+    
+    private static String create(HashCode contentHash, String configurationVersion) {
+        return contentHash.toString() + "-" 
+                + Hashing.sha1().hashString(configurationVersion, Charsets.UTF_8).toString();
+    }
+    
+    private StructureCacheKeys() {
+    }
+    
+}
@@ -18,10 +18,7 @@
 
 package pl.edu.icm.cermine.structure.readingorder;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import pl.edu.icm.cermine.structure.model.BxBounds;
 import pl.edu.icm.cermine.structure.model.BxObject;
 import pl.edu.icm.cermine.structure.model.BxZone;
@@ -66,7 +63,7 @@ public class DocumentPlane {
 
         @Override
         public int hashCode() {
-            return x * y;
+            return 31 * x + y;
         }
 
         @Override
@@ -121,11 +118,32 @@ public class DocumentPlane {
     }
 
     /**
-     * Checks if there is any object placed between obj1 and obj2
+     * Checks if there is any object placed between obj1 and obj2. Stops at the first object found.
      */
     public boolean anyObjectsBetween(BxObject obj1, BxObject obj2) {
-        List<BxObject> lObjs = findObjectsBetween(obj1, obj2);
-        return !(lObjs.isEmpty());
+        double x0 = Math.min(obj1.getX(), obj2.getX());
+        double y0 = Math.min(obj1.getY(), obj2.getY());
+        double x1 = Math.max(obj1.getX() + obj1.getWidth(), obj2.getX() + obj2.getWidth());
+        double y1 = Math.max(obj1.getY() + obj1.getHeight(), obj2.getY() + obj2.getHeight());
+        for (int y = (int)y0 / gridSize; y < ((int) (y1 + gridSize - 1)) / gridSize; ++y) {
+            for (int x = (int)x0 / gridSize; x < ((int) (x1 + gridSize - 1)) / gridSize; ++x) {
+                List<BxObject> square = grid.get(new GridXY(x, y));
+                if (square == null) {
+                    continue;
+                }
+                for (BxObject obj : square) {
+                    if (obj != obj1 && obj != obj2 && overlaps(obj, x0, y0, x1, y1)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+    
+    private static boolean overlaps(BxObject obj, double x0, double y0, double x1, double y1) {
+        return !(obj.getX() + obj.getWidth() <= x0 || x1 <= obj.getX()
+                || obj.getY() + obj.getHeight() <= y0 || y1 <= obj.getY());
     }
 
     /**
@@ -139,16 +157,15 @@ public class DocumentPlane {
         for (int y = ((int) obj.getY()) / gridSize; y < ((int) (obj.getY() + obj.getHeight() + gridSize - 1)) / gridSize; ++y) {
             for (int x = ((int) obj.getX()) / gridSize; x < ((int) (obj.getX() + obj.getWidth() + gridSize - 1)) / gridSize; ++x) {
                 GridXY xy = new GridXY(x, y);
-                if (!grid.keySet().contains(xy)) {
+                List<BxObject> square = grid.get(xy);
+                if (square == null) {
                     /*
                      * add the non-existing key
                      */
-                    grid.put(xy, new ArrayList<BxObject>());
-                    grid.get(xy).add(obj);
-                    assert grid.get(xy).size() == 1;
-                } else {
-                    grid.get(xy).add(obj);
+                    square = new ArrayList<BxObject>();
+                    grid.put(xy, square);
                 }
+                square.add(obj);
             }
         }
         objs.add(obj);
@@ -169,10 +186,7 @@ public class DocumentPlane {
          */
         for (int y = ((int) obj.getY()) / gridSize; y < ((int) (obj.getY() + obj.getHeight() + gridSize - 1)) / gridSize; ++y) {
             for (int x = ((int) obj.getX()) / gridSize; x < ((int) (obj.getX() + obj.getWidth() + gridSize - 1)) / gridSize; ++x) {
-                GridXY xy = new GridXY(x, y);
-                if (grid.get(xy).contains(obj)) {
-                    grid.get(xy).remove(obj);
-                }
+                grid.get(new GridXY(x, y)).remove(obj);
             }
         }
         objs.remove(obj);
@@ -187,7 +201,7 @@ public class DocumentPlane {
      * @return list of objects in!side search rectangle
      */
     public List<BxObject> find(BxBounds searchBounds) {
-        List<BxObject> done = new ArrayList<BxObject>(); //contains already considered objects (wrt. optimization)
+        Set<BxObject> done = Collections.newSetFromMap(new IdentityHashMap<BxObject, Boolean>()); //contains already considered objects (wrt. optimization)
         List<BxObject> ret = new ArrayList<BxObject>();
         double x0 = searchBounds.getX();
         double y0 = searchBounds.getY();
@@ -215,8 +229,7 @@ public class DocumentPlane {
                     /*
                      * check if two objects overlap
                      */
-                    if (obj.getX() + obj.getWidth() <= x0 || x1 <= obj.getX()
-                            || obj.getY() + obj.getHeight() <= y0 || y1 <= obj.getY()) {
+                    if (!overlaps(obj, x0, y0, x1, y1)) {
                         continue;
                     }
                     ret.add(obj);
@@ -230,13 +243,9 @@ public class DocumentPlane {
      * Count objects stored in objects dictionary
      */
     protected int elementsInGrid() {
-        List<BxObject> objs_ = new ArrayList<BxObject>();
-        for (GridXY coord : grid.keySet()) {
-            for (BxObject obj : grid.get(coord)) {
-                if (!objs_.contains(obj)) {
-                    objs_.add(obj);
-                }
-            }
+        Set<BxObject> objs_ = Collections.newSetFromMap(new IdentityHashMap<BxObject, Boolean>());
+        for (List<BxObject> square : grid.values()) {
+            objs_.addAll(square);
         }
         return objs_.size();
     }
@@ -106,13 +106,25 @@ public class BxBoundsBuilder {
      */
     public void expand(BxBounds bounds) {
         if (bounds != null) {
-            minX = Math.min(minX, bounds.getX());
-            minY = Math.min(minY, bounds.getY());
-            maxX = Math.max(maxX, bounds.getX() + bounds.getWidth());
-            maxY = Math.max(maxY, bounds.getY() + bounds.getHeight());
+            expand(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
         }
     }
 
+    /**
+     * Expands current bounding box so that it contains given rectangle.
+     *
+     * @param x x coordinate of the rectangle
+     * @param y y coordinate of the rectangle
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     */
+    public void expand(double x, double y, double width, double height) {
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        maxX = Math.max(maxX, x + width);
+        maxY = Math.max(maxY, y + height);
+    }
+
     /**
      * Returns current bounding box or null if current bounding box is empty.
      *
@@ -0,0 +1,315 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure.tools;
+
+import java.util.*;
+import pl.edu.icm.cermine.structure.model.BxBounds;
+
+/**
+ * Static two-dimensional index of axis-aligned rectangles, bulk-loaded
+ * as an R-tree using the Sort-Tile-Recursive packing. Rectangles and queries
+ * are closed, so touching rectangles intersect. Elements with NaN coordinates
+ * are never returned.
+ *
+ * @param <E> type of indexed elements
+ */
+public class SpatialIndex<E> {
+
+    private static final int NODE_CAPACITY = 16;
+
+    private final List<E> elements;
+
+    private final double[] minX;
+    private final double[] minY;
+    private final double[] maxX;
+    private final double[] maxY;
+
+    private final Node root;
+
+    /**
+     * Constructs the index of the elements with the given bounds.
+     *
+     * @param elements indexed elements
+     * @param bounds bounds of the elements, in the same order
+     */
+    public SpatialIndex(List<E> elements, List<BxBounds> bounds) {
+        this(elements, coordinates(bounds, false, false), coordinates(bounds, true, false),
+                coordinates(bounds, false, true), coordinates(bounds, true, true));
+    }
+
+    /**
+     * Constructs the index of the elements with the given rectangles.
+     * The arrays are not copied.
+     *
+     * @param elements indexed elements
+     * @param minX minimum x coordinates of the elements
+     * @param minY minimum y coordinates of the elements
+     * @param maxX maximum x coordinates of the elements
+     * @param maxY maximum y coordinates of the elements
+     */
+    public SpatialIndex(List<E> elements, double[] minX, double[] minY, double[] maxX, double[] maxY) {
+        if (minX.length != elements.size() || minY.length != elements.size()
+                || maxX.length != elements.size() || maxY.length != elements.size()) {
+            throw new IllegalArgumentException("Coordinates do not match the elements!");
+        }
+        this.elements = elements;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.root = new Node();
+        build();
+    }
+
+    public int size() {
+        return elements.size();
+    }
+
+    public E get(int index) {
+        return elements.get(index);
+    }
+
+    /**
+     * Finds the indices of the elements intersecting the given rectangle.
+     *
+     * @param x0 minimum x coordinate
+     * @param y0 minimum y coordinate
+     * @param x1 maximum x coordinate
+     * @param y1 maximum y coordinate
+     * @return indices of the elements in ascending order
+     */
+    public int[] findIndices(double x0, double y0, double x1, double y1) {
+        int[] found = new int[16];
+        int count = 0;
+        Node[] stack = new Node[16];
+        int depth = 0;
+        if (root.intersects(x0, y0, x1, y1)) {
+            stack[depth++] = root;
+        }
+        while (depth > 0) {
+            Node node = stack[--depth];
+            if (node.children != null) {
+                for (Node child : node.children) {
+                    if (child.intersects(x0, y0, x1, y1)) {
+                        if (depth == stack.length) {
+                            stack = Arrays.copyOf(stack, 2 * depth);
+                        }
+                        stack[depth++] = child;
+                    }
+                }
+            } else {
+                for (int index : node.entries) {
+                    if (minX[index] <= x1 && x0 <= maxX[index] && minY[index] <= y1 && y0 <= maxY[index]) {
+                        if (count == found.length) {
+                            found = Arrays.copyOf(found, 2 * count);
+                        }
+                        found[count++] = index;
+                    }
+                }
+            }
+        }
+        found = Arrays.copyOf(found, count);
+        Arrays.sort(found);
+        return found;
+    }
+
+    /**
+     * Finds the elements intersecting the given rectangle.
+     *
+     * @param x0 minimum x coordinate
+     * @param y0 minimum y coordinate
+     * @param x1 maximum x coordinate
+     * @param y1 maximum y coordinate
+     * @return elements in the order of the index
+     */
+    public List<E> find(double x0, double y0, double x1, double y1) {
+        int[] indices = findIndices(x0, y0, x1, y1);
+        List<E> found = new ArrayList<E>(indices.length);
+        for (int index : indices) {
+            found.add(elements.get(index));
+        }
+        return found;
+    }
+
+    /**
+     * Finds the elements intersecting the given bounds.
+     *
+     * @param bounds bounds
+     * @return elements in the order of the index
+     */
+    public List<E> find(BxBounds bounds) {
+        return find(bounds.getX(), bounds.getY(),
+                bounds.getX() + bounds.getWidth(), bounds.getY() + bounds.getHeight());
+    }
+
+    private void build() {
+        if (elements.isEmpty()) {
+            return;
+        }
+        List<Node> nodes = new ArrayList<Node>();
+        Integer[] indices = new Integer[elements.size()];
+        int count = 0;
+        for (int i = 0; i < indices.length; i++) {
+            if (!Double.isNaN(minX[i]) && !Double.isNaN(minY[i])
+                    && !Double.isNaN(maxX[i]) && !Double.isNaN(maxY[i])) {
+                indices[count++] = i;
+            }
+        }
+        Integer[] sorted = Arrays.copyOf(indices, count);
+        for (List<Integer> tile : tiles(Arrays.asList(sorted), new CenterComparator<Integer>() {
+
+                    @Override
+                    protected double x(Integer index) {
+                        return minX[index] + maxX[index];
+                    }
+
+                    @Override
+                    protected double y(Integer index) {
+                        return minY[index] + maxY[index];
+                    }
+                })) {
+            Node leaf = new Node();
+            leaf.entries = new int[tile.size()];
+            for (int i = 0; i < leaf.entries.length; i++) {
+                int index = tile.get(i);
+                leaf.entries[i] = index;
+                leaf.expand(minX[index], minY[index], maxX[index], maxY[index]);
+            }
+            nodes.add(leaf);
+        }
+        CenterComparator<Node> nodeCenters = new CenterComparator<Node>() {
+
+            @Override
+            protected double x(Node node) {
+                return node.minX + node.maxX;
+            }
+
+            @Override
+            protected double y(Node node) {
+                return node.minY + node.maxY;
+            }
+        };
+        while (nodes.size() > NODE_CAPACITY) {
+            List<Node> parents = new ArrayList<Node>();
+            for (List<Node> tile : tiles(nodes, nodeCenters)) {
+                Node parent = new Node();
+                parent.setChildren(tile);
+                parents.add(parent);
+            }
+            nodes = parents;
+        }
+        if (nodes.size() == 1 && nodes.get(0).entries != null) {
+            root.entries = nodes.get(0).entries;
+            root.expand(nodes.get(0).minX, nodes.get(0).minY, nodes.get(0).maxX, nodes.get(0).maxY);
+        } else {
+            root.setChildren(nodes);
+        }
+    }
+
+    private static double[] coordinates(List<BxBounds> bounds, boolean vertical, boolean max) {
+        double[] coordinates = new double[bounds.size()];
+        for (int i = 0; i < coordinates.length; i++) {
+            BxBounds b = bounds.get(i);
+            coordinates[i] = vertical ? b.getY() : b.getX();
+            if (max) {
+                coordinates[i] += vertical ? b.getHeight() : b.getWidth();
+            }
+        }
+        return coordinates;
+    }
+
+    /**
+     * Partitions the items into groups of at most NODE_CAPACITY items:
+     * the items are sorted by x into vertical slices, and each slice
+     * is sorted by y and cut into groups.
+     */
+    private static <T> List<List<T>> tiles(List<T> items, CenterComparator<T> comparator) {
+        List<T> byX = new ArrayList<T>(items);
+        Collections.sort(byX, comparator.byX());
+        int groupCount = (byX.size() + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int sliceCount = (int) Math.ceil(Math.sqrt(groupCount));
+        int sliceSize = sliceCount == 0 ? 0 : ((groupCount + sliceCount - 1) / sliceCount) * NODE_CAPACITY;
+        List<List<T>> tiles = new ArrayList<List<T>>(groupCount);
+        for (int start = 0; start < byX.size(); start += sliceSize) {
+            List<T> slice = new ArrayList<T>(byX.subList(start, Math.min(start + sliceSize, byX.size())));
+            Collections.sort(slice, comparator.byY());
+            for (int groupStart = 0; groupStart < slice.size(); groupStart += NODE_CAPACITY) {
+                tiles.add(slice.subList(groupStart, Math.min(groupStart + NODE_CAPACITY, slice.size())));
+            }
+        }
+        return tiles;
+    }
+
+    private abstract static class CenterComparator<T> {
+
+        protected abstract double x(T item);
+
+        protected abstract double y(T item);
+
+        Comparator<T> byX() {
+            return new Comparator<T>() {
+
+                @Override
+                public int compare(T o1, T o2) {
+                    return Double.compare(x(o1), x(o2));
+                }
+            };
+        }
+
+        Comparator<T> byY() {
+            return new Comparator<T>() {
+
+                @Override
+                public int compare(T o1, T o2) {
+                    return Double.compare(y(o1), y(o2));
+                }
+            };
+        }
+    }
+
+    private static final class Node {
+
+        private double minX = Double.POSITIVE_INFINITY;
+        private double minY = Double.POSITIVE_INFINITY;
+        private double maxX = Double.NEGATIVE_INFINITY;
+        private double maxY = Double.NEGATIVE_INFINITY;
+
+        private Node[] children;
+
+        private int[] entries;
+
+        void expand(double x0, double y0, double x1, double y1) {
+            minX = Math.min(minX, x0);
+            minY = Math.min(minY, y0);
+            maxX = Math.max(maxX, x1);
+            maxY = Math.max(maxY, y1);
+        }
+
+        void setChildren(List<Node> nodes) {
+            children = nodes.toArray(new Node[nodes.size()]);
+            for (Node child : children) {
+                expand(child.minX, child.minY, child.maxX, child.maxY);
+            }
+        }
+
+        boolean intersects(double x0, double y0, double x1, double y1) {
+            return minX <= x1 && x0 <= maxX && minY <= y1 && y0 <= maxY;
+        }
+    }
+}
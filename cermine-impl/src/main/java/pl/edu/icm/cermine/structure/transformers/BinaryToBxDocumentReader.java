@@ -0,0 +1,282 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure.transformers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.InflaterInputStream;
+import org.apache.commons.io.IOUtils;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.model.*;
+
+/**
+ * Reads BxDocument model from the binary format written by
+ * {@link BxDocumentToBinaryWriter}.
+ */
+public class BinaryToBxDocumentReader {
+
+    public BxDocument read(InputStream stream) throws TransformationException {
+        try {
+            return read(IOUtils.toByteArray(stream));
+        } catch (IOException ex) {
+            throw new TransformationException("Cannot read binary document", ex);
+        }
+    }
+    
+    public BxDocument read(byte[] bytes) throws TransformationException {
+        if (bytes.length < 6) {
+            throw new TransformationException("Not a binary document: data too short");
+        }
+        int magic = ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) 
+                | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+        if (magic != BxDocumentToBinaryWriter.MAGIC) {
+            throw new TransformationException("Not a binary document: wrong magic number");
+        }
+        int version = bytes[4] & 0xFF;
+        if (version != BxDocumentToBinaryWriter.VERSION) {
+            throw new TransformationException("Unsupported binary document version: " + version);
+        }
+        byte[] payload;
+        int offset = 6;
+        if ((bytes[5] & BxDocumentToBinaryWriter.FLAG_COMPRESSED) != 0) {
+            try {
+                payload = IOUtils.toByteArray(new InflaterInputStream(
+                        new ByteArrayInputStream(bytes, offset, bytes.length - offset)));
+            } catch (IOException ex) {
+                throw new TransformationException("Cannot decompress binary document", ex);
+            }
+            offset = 0;
+        } else {
+            payload = bytes;
+        }
+        try {
+            return new Input(payload, offset).readDocument();
+        } catch (IndexOutOfBoundsException ex) {
+            throw new TransformationException("Truncated binary document", ex);
+        } catch (IllegalArgumentException ex) {
+            throw new TransformationException("Corrupted binary document", ex);
+        }
+    }
+    
+    private static final class Input {
+        
+        private final byte[] data;
+        
+        private int position;
+        
+        private final List<String> strings = new ArrayList<String>();
+        
+        private final List<BxPage> pages = new ArrayList<BxPage>();
+        private final List<BxZone> zones = new ArrayList<BxZone>();
+        private final List<BxLine> lines = new ArrayList<BxLine>();
+        private final List<BxWord> words = new ArrayList<BxWord>();
+        private final List<BxChunk> chunks = new ArrayList<BxChunk>();
+        
+        private long lastX;
+        private long lastY;
+
+        Input(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+        
+        BxDocument readDocument() {
+            BxDocument document = new BxDocument();
+            document.setFilename(readString());
+            int pageCount = readVarInt();
+            for (int i = 0; i < pageCount; i++) {
+                BxPage page = new BxPage();
+                readObject(page);
+                int zoneCount = readVarInt();
+                for (int j = 0; j < zoneCount; j++) {
+                    page.addZone(readZone());
+                }
+                for (BxChunk chunk : readChunks()) {
+                    page.addChunk(chunk);
+                }
+                pages.add(page);
+                document.addPage(page);
+            }
+            readLinks(pages);
+            readLinks(zones);
+            readLinks(lines);
+            readLinks(words);
+            readLinks(chunks);
+            if (position != data.length) {
+                throw new IllegalArgumentException("Unexpected data after the document");
+            }
+            return document;
+        }
+        
+        private BxZone readZone() {
+            BxZone zone = new BxZone();
+            zones.add(zone);
+            readObject(zone);
+            String label = readString();
+            if (label != null) {
+                zone.setLabel(BxZoneLabel.valueOf(label));
+            }
+            int lineCount = readVarInt();
+            for (int i = 0; i < lineCount; i++) {
+                BxLine line = new BxLine();
+                lines.add(line);
+                readObject(line);
+                int wordCount = readVarInt();
+                for (int j = 0; j < wordCount; j++) {
+                    BxWord word = new BxWord();
+                    words.add(word);
+                    readObject(word);
+                    for (BxChunk chunk : readChunks()) {
+                        word.addChunk(chunk);
+                    }
+                    line.addWord(word);
+                }
+                zone.addLine(line);
+            }
+            for (BxChunk chunk : readChunks()) {
+                zone.addChunk(chunk);
+            }
+            return zone;
+        }
+        
+        private List<BxChunk> readChunks() {
+            int count = readVarInt();
+            List<BxChunk> list = new ArrayList<BxChunk>(count);
+            for (int i = 0; i < count; i++) {
+                int reference = readVarInt();
+                if (reference > 0) {
+                    list.add(chunks.get(reference - 1));
+                } else {
+                    String id = readString();
+                    String nextId = readString();
+                    BxBounds bounds = readBounds();
+                    BxChunk chunk = new BxChunk(bounds, readString());
+                    chunk.setId(id);
+                    chunk.setNextId(nextId);
+                    chunks.add(chunk);
+                    list.add(chunk);
+                }
+            }
+            return list;
+        }
+        
+        private void readObject(BxObject<?, ?> object) {
+            object.setId(readString());
+            object.setNextId(readString());
+            object.setBounds(readBounds());
+        }
+        
+        private <T extends BxObject<T, ?>> void readLinks(List<T> objects) {
+            for (T object : objects) {
+                int next = readVarInt();
+                int prev = readVarInt();
+                if (next > 0) {
+                    object.setNext(objects.get(next - 1));
+                }
+                if (prev > 0) {
+                    object.setPrev(objects.get(prev - 1));
+                }
+            }
+        }
+        
+        private BxBounds readBounds() {
+            int type = data[position++];
+            switch (type) {
+                case BxDocumentToBinaryWriter.BOUNDS_NULL:
+                    return null;
+                case BxDocumentToBinaryWriter.BOUNDS_FIXED:
+                    lastX += unZigZag(readVarLong());
+                    lastY += unZigZag(readVarLong());
+                    long width = unZigZag(readVarLong());
+                    long height = unZigZag(readVarLong());
+                    return new BxBounds(lastX / BxDocumentToBinaryWriter.FIXED_SCALE, 
+                            lastY / BxDocumentToBinaryWriter.FIXED_SCALE,
+                            width / BxDocumentToBinaryWriter.FIXED_SCALE, 
+                            height / BxDocumentToBinaryWriter.FIXED_SCALE);
+                case BxDocumentToBinaryWriter.BOUNDS_FLOAT:
+                    return new BxBounds(Float.intBitsToFloat(readFixed32()), Float.intBitsToFloat(readFixed32()),
+                            Float.intBitsToFloat(readFixed32()), Float.intBitsToFloat(readFixed32()));
+                case BxDocumentToBinaryWriter.BOUNDS_DOUBLE:
+                    return new BxBounds(Double.longBitsToDouble(readFixed64()), Double.longBitsToDouble(readFixed64()),
+                            Double.longBitsToDouble(readFixed64()), Double.longBitsToDouble(readFixed64()));
+                default:
+                    throw new IllegalArgumentException("Unknown bounds type: " + type);
+            }
+        }
+        
+        private static long unZigZag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+        
+        private String readString() {
+            int reference = readVarInt();
+            if (reference == 0) {
+                return null;
+            }
+            if (reference > 1) {
+                return strings.get(reference - 2);
+            }
+            int length = readVarInt();
+            if (length < 0 || length > data.length - position) {
+                throw new IllegalArgumentException("Wrong string length: " + length);
+            }
+            String string = new String(data, position, length, BxDocumentToBinaryWriter.UTF_8);
+            position += length;
+            strings.add(string);
+            return string;
+        }
+        
+        private int readVarInt() {
+            long value = readVarLong();
+            if (value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Number too large: " + value);
+            }
+            return (int) value;
+        }
+        
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed variable-length number");
+        }
+        
+        private int readFixed32() {
+            int value = ((data[position] & 0xFF) << 24) | ((data[position + 1] & 0xFF) << 16)
+                    | ((data[position + 2] & 0xFF) << 8) | (data[position + 3] & 0xFF);
+            position += 4;
+            return value;
+        }
+        
+        private long readFixed64() {
+            long high = readFixed32() & 0xFFFFFFFFL;
+            return (high << 32) | (readFixed32() & 0xFFFFFFFFL);
+        }
+        
+    }
+    
+}
@@ -0,0 +1,285 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure.transformers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.model.*;
+
+/**
+ * Writes BxDocument model to a compact binary format, which can be read
+ * back with {@link BinaryToBxDocumentReader} much faster than TrueViz.
+ * <p>
+ * The format stores the whole hierarchy together with zone labels, bounds,
+ * ids, next ids and next/previous links. Strings are interned, coordinates
+ * are delta-encoded when this is lossless and the payload can optionally be
+ * compressed.
+ */
+public class BxDocumentToBinaryWriter {
+
+    /** Hint enabling the compression of the payload. */
+    public static final String COMPRESS = "COMPRESS";
+    
+    static final int MAGIC = 0x42584442;
+    
+    static final int VERSION = 1;
+    
+    static final int FLAG_COMPRESSED = 1;
+    
+    static final int BOUNDS_NULL = 0;
+    static final int BOUNDS_FIXED = 1;
+    static final int BOUNDS_FLOAT = 2;
+    static final int BOUNDS_DOUBLE = 3;
+    
+    /** Coordinates stored as fixed-point numbers are multiplied by this value. */
+    static final double FIXED_SCALE = 1000.0;
+    
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+    
+    public void write(OutputStream stream, BxDocument document, Object... hints) throws TransformationException {
+        boolean compress = Arrays.asList(hints).contains(COMPRESS);
+        Output out = new Output();
+        out.writeDocument(document);
+        try {
+            stream.write(new byte[]{
+                (byte) (MAGIC >>> 24), (byte) (MAGIC >>> 16), (byte) (MAGIC >>> 8), (byte) MAGIC,
+                (byte) VERSION, (byte) (compress ? FLAG_COMPRESSED : 0)});
+            if (compress) {
+                Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                try {
+                    DeflaterOutputStream dos = new DeflaterOutputStream(stream, deflater);
+                    out.writeTo(dos);
+                    dos.finish();
+                } finally {
+                    deflater.end();
+                }
+            } else {
+                out.writeTo(stream);
+            }
+            stream.flush();
+        } catch (IOException ex) {
+            throw new TransformationException("Cannot write binary document", ex);
+        }
+    }
+    
+    public byte[] write(BxDocument document, Object... hints) throws TransformationException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        write(stream, document, hints);
+        return stream.toByteArray();
+    }
+    
+    private static final class Output extends ByteArrayOutputStream {
+        
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+        
+        private final Map<BxChunk, Integer> chunkIndices = new IdentityHashMap<BxChunk, Integer>();
+        
+        private final List<BxPage> pages = new ArrayList<BxPage>();
+        private final List<BxZone> zones = new ArrayList<BxZone>();
+        private final List<BxLine> lines = new ArrayList<BxLine>();
+        private final List<BxWord> words = new ArrayList<BxWord>();
+        private final List<BxChunk> chunks = new ArrayList<BxChunk>();
+        
+        private long lastX;
+        private long lastY;
+        
+        Output() {
+            super(1 << 16);
+        }
+
+        void writeDocument(BxDocument document) {
+            writeString(document.getFilename());
+            writeVarInt(document.getPages().size());
+            for (BxPage page : document.getPages()) {
+                pages.add(page);
+                writeObject(page);
+                writeVarInt(page.getZones().size());
+                for (BxZone zone : page.getZones()) {
+                    writeZone(zone);
+                }
+                writeChunks(page.getChunks());
+            }
+            writeLinks(pages);
+            writeLinks(zones);
+            writeLinks(lines);
+            writeLinks(words);
+            writeLinks(chunks);
+        }
+        
+        private void writeZone(BxZone zone) {
+            zones.add(zone);
+            writeObject(zone);
+            writeString(zone.getLabel() == null ? null : zone.getLabel().name());
+            writeVarInt(zone.getLines().size());
+            for (BxLine line : zone.getLines()) {
+                lines.add(line);
+                writeObject(line);
+                writeVarInt(line.getWords().size());
+                for (BxWord word : line.getWords()) {
+                    words.add(word);
+                    writeObject(word);
+                    writeChunks(word.getChunks());
+                }
+            }
+            writeChunks(zone.getChunks());
+        }
+        
+        private void writeChunks(List<BxChunk> list) {
+            writeVarInt(list.size());
+            for (BxChunk chunk : list) {
+                Integer index = chunkIndices.get(chunk);
+                if (index != null) {
+                    writeVarInt(index + 1);
+                } else {
+                    writeVarInt(0);
+                    chunkIndices.put(chunk, chunks.size());
+                    chunks.add(chunk);
+                    writeObject(chunk);
+                    writeString(chunk.toText());
+                }
+            }
+        }
+        
+        private void writeObject(BxObject<?, ?> object) {
+            writeString(object.getId());
+            writeString(object.getNextId());
+            writeBounds(object.getBounds());
+        }
+        
+        private <T extends BxObject<T, ?>> void writeLinks(List<T> objects) {
+            Map<T, Integer> indices = new IdentityHashMap<T, Integer>(objects.size());
+            for (int i = 0; i < objects.size(); i++) {
+                indices.put(objects.get(i), i);
+            }
+            for (T object : objects) {
+                writeLink(indices, object.getNext());
+                writeLink(indices, object.getPrev());
+            }
+        }
+        
+        private <T> void writeLink(Map<T, Integer> indices, T target) {
+            Integer index = target == null ? null : indices.get(target);
+            writeVarInt(index == null ? 0 : index + 1);
+        }
+        
+        private void writeBounds(BxBounds bounds) {
+            if (bounds == null) {
+                write(BOUNDS_NULL);
+                return;
+            }
+            double x = bounds.getX();
+            double y = bounds.getY();
+            double width = bounds.getWidth();
+            double height = bounds.getHeight();
+            if (isFixed(x) && isFixed(y) && isFixed(width) && isFixed(height)) {
+                long fx = Math.round(x * FIXED_SCALE);
+                long fy = Math.round(y * FIXED_SCALE);
+                write(BOUNDS_FIXED);
+                writeVarLong(zigZag(fx - lastX));
+                writeVarLong(zigZag(fy - lastY));
+                writeVarLong(zigZag(Math.round(width * FIXED_SCALE)));
+                writeVarLong(zigZag(Math.round(height * FIXED_SCALE)));
+                lastX = fx;
+                lastY = fy;
+            } else if (isFloat(x) && isFloat(y) && isFloat(width) && isFloat(height)) {
+                write(BOUNDS_FLOAT);
+                writeFixed32(Float.floatToIntBits((float) x));
+                writeFixed32(Float.floatToIntBits((float) y));
+                writeFixed32(Float.floatToIntBits((float) width));
+                writeFixed32(Float.floatToIntBits((float) height));
+            } else {
+                write(BOUNDS_DOUBLE);
+                writeFixed64(Double.doubleToLongBits(x));
+                writeFixed64(Double.doubleToLongBits(y));
+                writeFixed64(Double.doubleToLongBits(width));
+                writeFixed64(Double.doubleToLongBits(height));
+            }
+        }
+        
+        private static boolean isFixed(double value) {
+            if (Math.abs(value) > 1e12) {
+                return false;
+            }
+            return Double.doubleToLongBits(Math.round(value * FIXED_SCALE) / FIXED_SCALE) 
+                    == Double.doubleToLongBits(value);
+        }
+        
+        private static boolean isFloat(double value) {
+            return Double.doubleToLongBits((float) value) == Double.doubleToLongBits(value);
+        }
+        
+        private static long zigZag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+
+        /**
+         * Writes a string as a reference to the table of strings written so far:
+         * 0 stands for null, 1 for a new string following the reference
+         * and n &gt; 1 for the (n-2)-th string.
+         */
+        private void writeString(String string) {
+            if (string == null) {
+                writeVarInt(0);
+                return;
+            }
+            Integer index = strings.get(string);
+            if (index != null) {
+                writeVarInt(index + 2);
+                return;
+            }
+            strings.put(string, strings.size());
+            writeVarInt(1);
+            byte[] bytes = string.getBytes(UTF_8);
+            writeVarInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+        
+        private void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+        
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+        
+        private void writeFixed32(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+        
+        private void writeFixed64(long value) {
+            writeFixed32((int) (value >>> 32));
+            writeFixed32((int) value);
+        }
+
+    }
+
+}
@@ -18,25 +18,18 @@
 
 package pl.edu.icm.cermine.structure.transformers;
 
+import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.*;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 import pl.edu.icm.cermine.exception.TransformationException;
 import pl.edu.icm.cermine.structure.model.*;
 
 /**
- * Writes BxDocument model pages to TrueViz format.
+ * Writes BxDocument model pages to TrueViz format. The XML is streamed to
+ * the output without building a DOM tree.
  *
  * @author krusek
  */
@@ -44,12 +37,7 @@ public class BxDocumentToTrueVizWriter {
 
     public static final String MINIMAL_OUTPUT_SIZE = "MINIMAL_OUTPUT_SIZE";
     
-    private static final Properties OUTPUT_PROPERTIES = new Properties();
-
-    static {
-        OUTPUT_PROPERTIES.setProperty(OutputKeys.DOCTYPE_SYSTEM, "Trueviz.dtd");
-        OUTPUT_PROPERTIES.setProperty(OutputKeys.INDENT, "yes");
-    }
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
 
     public static final Map<BxZoneLabel, String> ZONE_LABEL_MAP = new EnumMap<BxZoneLabel, String>(BxZoneLabel.class);
     static {
@@ -90,175 +78,145 @@ public class BxDocumentToTrueVizWriter {
         ZONE_LABEL_MAP.put(BxZoneLabel.REFERENCES,            "references");
     }
 
-    private void appendProperty(Document doc, Element parent, String name, String value) {
-        Element node = doc.createElement(name);
-        node.setAttribute("Value", value);
-        parent.appendChild(node);
+    private void appendProperty(Output out, String name, String value) throws IOException {
+        out.emptyElement(name, "Value", value);
     }
     
-    private void appendPropertyIfNotNull(Document doc, Element parent, String name, String value) {
+    private void appendPropertyIfNotNull(Output out, String name, String value) throws IOException {
         if(value == null) {
-        	appendProperty(doc, parent, name, "");
+        	appendProperty(out, name, "");
         } else {
-        	appendProperty(doc, parent, name, value);
+        	appendProperty(out, name, value);
         }
     }
     
-    private void appendVertex(Document doc, Element parent, double x, double y, Object... hints) {
-        DecimalFormat format = new DecimalFormat("0.000", new DecimalFormatSymbols(Locale.US));
-        if (Arrays.asList(hints).contains(MINIMAL_OUTPUT_SIZE)) {
-            format = new DecimalFormat("0.0", new DecimalFormatSymbols(Locale.US));
-        }
-        Element node = doc.createElement("Vertex");
-        node.setAttribute("x", format.format(x));
-        node.setAttribute("y", format.format(y));
-        parent.appendChild(node);
+    private void appendVertex(Output out, double x, double y) throws IOException {
+        out.emptyElement("Vertex", "x", out.format.format(x), "y", out.format.format(y));
     }
 
-    private void appendBounds(Document doc, Element parent, String name, BxBounds bounds, Object... hints) {
+    private void appendBounds(Output out, String name, BxBounds bounds) throws IOException {
         if (bounds == null) {
             bounds = new BxBounds();
         }
-        Element node = doc.createElement(name);
-        appendVertex(doc, node, bounds.getX(), bounds.getY(), hints);
-        if (!Arrays.asList(hints).contains(MINIMAL_OUTPUT_SIZE)) {
-            appendVertex(doc, node, bounds.getX() + bounds.getWidth(), bounds.getY(), hints);
+        out.startElement(name);
+        appendVertex(out, bounds.getX(), bounds.getY());
+        if (!out.minimal) {
+            appendVertex(out, bounds.getX() + bounds.getWidth(), bounds.getY());
         }
-        appendVertex(doc, node, bounds.getX() + bounds.getWidth(), bounds.getY() + bounds.getHeight(), hints);
-        if (!Arrays.asList(hints).contains(MINIMAL_OUTPUT_SIZE)) {
-            appendVertex(doc, node, bounds.getX(), bounds.getY() + bounds.getHeight(), hints);
+        appendVertex(out, bounds.getX() + bounds.getWidth(), bounds.getY() + bounds.getHeight());
+        if (!out.minimal) {
+            appendVertex(out, bounds.getX(), bounds.getY() + bounds.getHeight());
         }
-        parent.appendChild(node);
+        out.endElement(name);
     }
 
-    private void appendCharacter(Document doc, Element parent, BxChunk chunk, Object... hints) {
-        Element node = doc.createElement("Character");
-        appendPropertyIfNotNull(doc, node, "CharacterID", chunk.getId());
-        appendBounds(doc, node, "CharacterCorners", chunk.getBounds(), hints);
-        appendPropertyIfNotNull(doc, node, "CharacterNext", chunk.getNextId());
-        appendProperty(doc, node, "GT_Text", chunk.toText());
-        parent.appendChild(node);
+    private void appendCharacter(Output out, BxChunk chunk) throws IOException {
+        out.startElement("Character");
+        appendPropertyIfNotNull(out, "CharacterID", chunk.getId());
+        appendBounds(out, "CharacterCorners", chunk.getBounds());
+        appendPropertyIfNotNull(out, "CharacterNext", chunk.getNextId());
+        appendProperty(out, "GT_Text", chunk.toText());
+        out.endElement("Character");
     }
 
-    private void appendWord(Document doc, Element parent, BxWord word, Object... hints) {
-        Element node = doc.createElement("Word");
-        appendPropertyIfNotNull(doc, node, "WordID", word.getId());
-        appendBounds(doc, node, "WordCorners", word.getBounds(), hints);
-        appendPropertyIfNotNull(doc, node, "WordNext", word.getNextId());
-        appendProperty(doc, node, "WordNumChars", "");
+    private void appendWord(Output out, BxWord word) throws IOException {
+        out.startElement("Word");
+        appendPropertyIfNotNull(out, "WordID", word.getId());
+        appendBounds(out, "WordCorners", word.getBounds());
+        appendPropertyIfNotNull(out, "WordNext", word.getNextId());
+        appendProperty(out, "WordNumChars", "");
         for (BxChunk chunk: word.getChunks()) {
-            appendCharacter(doc, node, chunk, hints);
+            appendCharacter(out, chunk);
         }
-        parent.appendChild(node);
+        out.endElement("Word");
     }
 
-    private void appendLine(Document doc, Element parent, BxLine line, Object... hints) {
-        Element node = doc.createElement("Line");
-        appendPropertyIfNotNull(doc, node, "LineID", line.getId());
-        appendBounds(doc, node, "LineCorners", line.getBounds(), hints);
-        appendPropertyIfNotNull(doc, node, "LineNext", line.getNextId());
-        appendProperty(doc, node, "LineNumChars", "");
+    private void appendLine(Output out, BxLine line) throws IOException {
+        out.startElement("Line");
+        appendPropertyIfNotNull(out, "LineID", line.getId());
+        appendBounds(out, "LineCorners", line.getBounds());
+        appendPropertyIfNotNull(out, "LineNext", line.getNextId());
+        appendProperty(out, "LineNumChars", "");
         for (BxWord word: line.getWords()) {
-            appendWord(doc, node, word, hints);
+            appendWord(out, word);
         }
-        parent.appendChild(node);
+        out.endElement("Line");
     }
 
-    private void appendClassification(Document doc, Element parent, String category, String type) {
-        Element node = doc.createElement("Classification");
-        appendProperty(doc, node, "Category", category);
-        appendProperty(doc, node, "Type", type);
-        parent.appendChild(node);
+    private void appendClassification(Output out, String category, String type) throws IOException {
+        out.startElement("Classification");
+        appendProperty(out, "Category", category);
+        appendProperty(out, "Type", type);
+        out.endElement("Classification");
     }
 
-    private void appendZone(Document doc, Element parent, BxZone zone, Object... hints) throws TransformationException {
-        Element node = doc.createElement("Zone");
-        appendPropertyIfNotNull(doc, node, "ZoneID", zone.getId());
-        appendBounds(doc, node, "ZoneCorners", zone.getBounds(), hints);
-        appendPropertyIfNotNull(doc, node, "ZoneNext", zone.getNextId());
-        Element insetsNode = doc.createElement("ZoneInsets");
-        insetsNode.setAttribute("Top", "");
-        insetsNode.setAttribute("Bottom", "");
-        insetsNode.setAttribute("Left", "");
-        insetsNode.setAttribute("Right", "");
-        node.appendChild(insetsNode);
-        appendProperty(doc, node, "ZoneLines", "");
+    private void appendZone(Output out, BxZone zone) throws IOException, TransformationException {
+        out.startElement("Zone");
+        appendPropertyIfNotNull(out, "ZoneID", zone.getId());
+        appendBounds(out, "ZoneCorners", zone.getBounds());
+        appendPropertyIfNotNull(out, "ZoneNext", zone.getNextId());
+        out.emptyElement("ZoneInsets", "Bottom", "", "Left", "", "Right", "", "Top", "");
+        appendProperty(out, "ZoneLines", "");
         if (zone.getLabel() != null) {
             if (ZONE_LABEL_MAP.get(zone.getLabel()) != null && !ZONE_LABEL_MAP.get(zone.getLabel()).isEmpty()) {
-                appendClassification(doc, node, ZONE_LABEL_MAP.get(zone.getLabel()).toUpperCase(), "");
+                appendClassification(out, ZONE_LABEL_MAP.get(zone.getLabel()).toUpperCase(), "");
             } else {
             	throw new TransformationException("Writing down an unknown zone label: " + zone.getLabel());
             }
         }
         for (BxLine line: zone.getLines()) {
-            appendLine(doc, node, line, hints);
+            appendLine(out, line);
         }
-        parent.appendChild(node);
+        out.endElement("Zone");
     }
 
-    private void appendPage(Document doc, Element parent, BxPage page, Object... hints) throws TransformationException {
-        Element node = doc.createElement("Page");
-        appendPropertyIfNotNull(doc, node, "PageID", page.getId());
-        appendProperty(doc, node, "PageType", "");
-        appendProperty(doc, node, "PageNumber", "");
-        appendProperty(doc, node, "PageColumns", "");
-        appendPropertyIfNotNull(doc, node, "PageNext", page.getNextId());
-        appendProperty(doc, node, "PageZones", "");
+    private void appendPage(Output out, BxPage page) throws IOException, TransformationException {
+        out.startElement("Page");
+        appendPropertyIfNotNull(out, "PageID", page.getId());
+        appendProperty(out, "PageType", "");
+        appendProperty(out, "PageNumber", "");
+        appendProperty(out, "PageColumns", "");
+        appendPropertyIfNotNull(out, "PageNext", page.getNextId());
+        appendProperty(out, "PageZones", "");
         for (BxZone zone: page.getZones()) {
-            appendZone(doc, node, zone, hints);
+            appendZone(out, zone);
         }
-        parent.appendChild(node);
-    }
-
-    private void appendLanguage(Document doc, Element parent, String type, String script, String codeset) {
-        Element node = doc.createElement("Language");
-        node.setAttribute("Type", type);
-        node.setAttribute("Script", script);
-        node.setAttribute("Codeset", codeset);
-        parent.appendChild(node);
+        out.endElement("Page");
     }
 
-    private void appendFont(Document doc, Element parent, String type, String style, String spacing, String size) {
-        Element node = doc.createElement("Font");
-        node.setAttribute("Type", type);
-        node.setAttribute("Style", style);
-        node.setAttribute("Spacing", spacing);
-        node.setAttribute("Size", size);
-        parent.appendChild(node);
-    }
-
-    private Document createDocument(List<BxPage> pages, Object... hints) throws ParserConfigurationException, TransformationException {
-        Document doc = TrueVizUtils.newDocumentBuilder().newDocument();
-        Element root = doc.createElement("Document");
-        appendProperty(doc, root, "DocID", "");
-        appendProperty(doc, root, "DocTitle", "");
-        appendProperty(doc, root, "DocPubName", "");
-        appendProperty(doc, root, "DocVolNum", "");
-        appendProperty(doc, root, "DocIssueNum", "");
-        appendProperty(doc, root, "DocMargins", "");
-        appendProperty(doc, root, "DocDate", "");
-        appendProperty(doc, root, "DocPages", "");
-        Element imageNode = doc.createElement("DocImage");
-        appendProperty(doc, imageNode, "Name", "");
-        appendProperty(doc, imageNode, "Format", "");
-        appendProperty(doc, imageNode, "Depth", "");
-        appendProperty(doc, imageNode, "Compression", "");
-        appendProperty(doc, imageNode, "Capture", "");
-        appendProperty(doc, imageNode, "Quality", "");
-        root.appendChild(imageNode);
-        appendLanguage(doc, root, "", "", "");
-        appendFont(doc, root, "", "", "", "");
-        appendProperty(doc, root, "ReadingDir", "");
-        appendProperty(doc, root, "CharOrient", "");
-        appendClassification(doc, root, "", "");
-        appendProperty(doc, root, "GT_Text", "");
+    private void appendDocument(Output out, List<BxPage> pages) throws IOException, TransformationException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        out.write(LINE_SEPARATOR);
+        out.write("<!DOCTYPE Document SYSTEM \"Trueviz.dtd\">");
+        out.write(LINE_SEPARATOR);
+        out.startElement("Document");
+        appendProperty(out, "DocID", "");
+        appendProperty(out, "DocTitle", "");
+        appendProperty(out, "DocPubName", "");
+        appendProperty(out, "DocVolNum", "");
+        appendProperty(out, "DocIssueNum", "");
+        appendProperty(out, "DocMargins", "");
+        appendProperty(out, "DocDate", "");
+        appendProperty(out, "DocPages", "");
+        out.startElement("DocImage");
+        appendProperty(out, "Name", "");
+        appendProperty(out, "Format", "");
+        appendProperty(out, "Depth", "");
+        appendProperty(out, "Compression", "");
+        appendProperty(out, "Capture", "");
+        appendProperty(out, "Quality", "");
+        out.endElement("DocImage");
+        out.emptyElement("Language", "Codeset", "", "Script", "", "Type", "");
+        out.emptyElement("Font", "Size", "", "Spacing", "", "Style", "", "Type", "");
+        appendProperty(out, "ReadingDir", "");
+        appendProperty(out, "CharOrient", "");
+        appendClassification(out, "", "");
+        appendProperty(out, "GT_Text", "");
 
         for (BxPage page: pages) {
-            appendPage(doc, root, page, hints);
+            appendPage(out, page);
         }
-        doc.appendChild(root);
-
-        return doc;
+        out.endElement("Document");
     }
 
     public String write(List<BxPage> objects, Object... hints) throws TransformationException {
@@ -270,14 +228,102 @@ public class BxDocumentToTrueVizWriter {
 
     public void write(Writer writer, List<BxPage> objects, Object... hints) throws TransformationException {
         try {
-            Document doc = createDocument(objects, hints);
-            Transformer t = TransformerFactory.newInstance().newTransformer();
-            t.setOutputProperties(OUTPUT_PROPERTIES);
-            t.transform(new DOMSource(doc), new StreamResult(writer));
-        } catch (TransformerException ex) {
-            throw new TransformationException(ex);
-        } catch (ParserConfigurationException ex) {
+            Output out = new Output(writer, Arrays.asList(hints).contains(MINIMAL_OUTPUT_SIZE));
+            appendDocument(out, objects);
+            out.flush();
+        } catch (IOException ex) {
             throw new TransformationException(ex);
         }
     }
+    
+    /**
+     * Buffered XML output. Elements are written one per line and attribute
+     * values are escaped in the same way as by the JAXP serializer used before,
+     * so that the output is unchanged.
+     */
+    private static final class Output {
+        
+        private final Writer writer;
+        
+        private final boolean minimal;
+        
+        private final DecimalFormat format;
+        
+        private final StringBuilder buffer = new StringBuilder(8192);
+
+        Output(Writer writer, boolean minimal) {
+            this.writer = writer;
+            this.minimal = minimal;
+            this.format = new DecimalFormat(minimal ? "0.0" : "0.000", new DecimalFormatSymbols(Locale.US));
+        }
+        
+        void startElement(String name) throws IOException {
+            buffer.append('<').append(name).append('>');
+            newLine();
+        }
+        
+        void endElement(String name) throws IOException {
+            buffer.append("</").append(name).append('>');
+            newLine();
+        }
+        
+        /**
+         * @param name element name
+         * @param attributes attribute names and values, in the alphabetical order of the names
+         */
+        void emptyElement(String name, String... attributes) throws IOException {
+            buffer.append('<').append(name);
+            for (int i = 0; i < attributes.length; i += 2) {
+                buffer.append(' ').append(attributes[i]).append("=\"");
+                appendEscaped(attributes[i + 1]);
+                buffer.append('"');
+            }
+            buffer.append("/>");
+            newLine();
+        }
+        
+        void write(String string) throws IOException {
+            buffer.append(string);
+        }
+        
+        private void appendEscaped(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '&':
+                        buffer.append("&amp;");
+                        break;
+                    case '<':
+                        buffer.append("&lt;");
+                        break;
+                    case '>':
+                        buffer.append("&gt;");
+                        break;
+                    case '"':
+                        buffer.append("&quot;");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            buffer.append("&#").append((int) c).append(';');
+                        } else {
+                            buffer.append(c);
+                        }
+                }
+            }
+        }
+        
+        private void newLine() throws IOException {
+            buffer.append(LINE_SEPARATOR);
+            if (buffer.length() >= 8192) {
+                writer.write(buffer.toString());
+                buffer.setLength(0);
+            }
+        }
+        
+        void flush() throws IOException {
+            writer.write(buffer.toString());
+            buffer.setLength(0);
+            writer.flush();
+        }
+    }
 }
@@ -0,0 +1,224 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure.transformers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.model.*;
+import pl.edu.icm.cermine.structure.tools.BxModelUtils;
+
+/**
+ * Reads BxDocument model pages from TrueViz format one page at a time, so that
+ * a page can be processed before the rest of the file is parsed.
+ * <p>
+ * Pages are linked and their elements are ordered as by
+ * {@link TrueVizToBxDocumentReader}, with two differences following from
+ * the fact that the following pages are not known yet. The elements of a page
+ * are linked if all the elements of this page have their ids set, and the
+ * missing page ids are assigned from the page indices. Links to the pages and
+ * elements of the following pages are set when these pages are read. 
+ * The links back to the earlier pages and their elements are not set, 
+ * so a page and its elements do not keep the pages returned before them
+ * reachable, and the reader itself keeps only the last page.
+ */
+public class TrueVizPageReader implements Closeable {
+
+    private final TrueVizToBxDocumentReader parser = new TrueVizToBxDocumentReader();
+    
+    private final XMLStreamReader xml;
+    
+    private final Reader reader;
+    
+    private boolean started;
+    
+    private boolean pageRoot;
+    
+    private boolean hasNext;
+    
+    private int pageIndex;
+    
+    private BxPage previousPage;
+    
+    private final List<BxZone> pendingZones = new ArrayList<BxZone>();
+    private final List<BxLine> pendingLines = new ArrayList<BxLine>();
+    private final List<BxWord> pendingWords = new ArrayList<BxWord>();
+    private final List<BxChunk> pendingChunks = new ArrayList<BxChunk>();
+    
+    public TrueVizPageReader(Reader reader) throws TransformationException {
+        this.reader = reader;
+        try {
+            this.xml = TrueVizUtils.newXMLInputFactory().createXMLStreamReader(reader);
+        } catch (XMLStreamException ex) {
+            throw new TransformationException(ex);
+        }
+    }
+
+    /**
+     * Reads the next page.
+     * 
+     * @return the next page, or null if there are no more pages
+     * @throws TransformationException 
+     */
+    public BxPage readPage() throws TransformationException {
+        try {
+            if (!started) {
+                started = true;
+                String root = TrueVizToBxDocumentReader.nextChild(xml) ? TrueVizToBxDocumentReader.getName(xml) : null;
+                if ("Page".equalsIgnoreCase(root)) {
+                    pageRoot = true;
+                    hasNext = true;
+                } else if ("Document".equalsIgnoreCase(root)) {
+                    hasNext = nextPage();
+                }
+            }
+            if (!hasNext) {
+                return null;
+            }
+            
+            parser.resetIdsSet();
+            BxPage page = parser.parsePageNode(xml);
+            hasNext = !pageRoot && nextPage();
+            if (!hasNext) {
+                while (xml.hasNext()) {
+                    xml.next();
+                }
+            }
+            
+            linkPage(page);
+            if (parser.areIdsSet()) {
+                linkAndReorderElements(page);
+            }
+            BxModelUtils.setParents(page);
+            pageIndex++;
+            return page;
+        } catch (XMLStreamException ex) {
+            throw new TransformationException(ex);
+        }
+    }
+
+    /**
+     * Moves the reader to the start of the next page element.
+     * 
+     * @return true if there is a next page, false if the reader is at the end of the document
+     */
+    private boolean nextPage() throws XMLStreamException {
+        while (TrueVizToBxDocumentReader.nextChild(xml)) {
+            if ("Page".equalsIgnoreCase(TrueVizToBxDocumentReader.getName(xml))) {
+                return true;
+            }
+            TrueVizToBxDocumentReader.skipElement(xml);
+        }
+        return false;
+    }
+
+    private void linkPage(BxPage page) {
+        if (pageIndex == 0 && !hasNext) {
+            page.setId("0");
+            page.setNextId("-1");
+        } else if (page.getId() == null || page.getNextId() == null) {
+            page.setId(Integer.toString(pageIndex));
+            page.setNextId(hasNext ? Integer.toString(pageIndex + 1) : "-1");
+        }
+        if (previousPage != null && page.getId().equals(previousPage.getNextId())) {
+            previousPage.setNext(page);
+        }
+        previousPage = page;
+    }
+
+    private void linkAndReorderElements(BxPage page) throws TransformationException {
+        List<BxZone> zones = page.getZones();
+        List<BxLine> lines = new ArrayList<BxLine>();
+        List<BxWord> words = new ArrayList<BxWord>();
+        List<BxChunk> chunks = new ArrayList<BxChunk>();
+        for (BxZone zone : zones) {
+            lines.addAll(zone.getLines());
+            for (BxLine line : zone.getLines()) {
+                words.addAll(line.getWords());
+                for (BxWord word : line.getWords()) {
+                    chunks.addAll(word.getChunks());
+                }
+            }
+        }
+        link(zones, pendingZones);
+        link(lines, pendingLines);
+        link(words, pendingWords);
+        link(chunks, pendingChunks);
+        
+        for (BxZone zone : zones) {
+            for (BxLine line : zone.getLines()) {
+                for (BxWord word : line.getWords()) {
+                    word.setChunks(parser.reorderList(word.getChunks()));
+                }
+                line.setWords(parser.reorderList(line.getWords()));
+            }
+            zone.setLines(parser.reorderList(zone.getLines()));
+        }
+        page.setZones(parser.reorderList(page.getZones()));
+    }
+
+    /**
+     * Links the elements with their next elements. Next elements that are
+     * not found are looked for on the following pages. Only the forward link
+     * is set between the elements of different pages.
+     */
+    private <A extends Indexable<A>> void link(List<A> elements, List<A> pending) throws TransformationException {
+        Map<String, A> indicesMap = new HashMap<String, A>();
+        for (A elem : elements) {
+            indicesMap.put(elem.getId(), elem);
+        }
+        Iterator<A> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            A elem = iterator.next();
+            A next = indicesMap.get(elem.getNextId());
+            if (next != null) {
+                elem.setNext(next);
+                iterator.remove();
+            }
+        }
+        for (A elem : elements) {
+            String nextId = elem.getNextId();
+            if (nextId.equals("-1")) {
+                elem.setNext(null);
+            } else {
+                A next = indicesMap.get(nextId);
+                if (next == null) {
+                    pending.add(elem);
+                } else {
+                    elem.setNext(next);
+                    next.setPrev(elem);
+                }
+            }
+        }
+        if (!hasNext && !pending.isEmpty()) {
+            throw new TransformationException("No matching element found for \"" + pending.get(0).getNextId() + "\"");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        TrueVizToBxDocumentReader.closeQuietly(xml);
+        reader.close();
+    }
+    
+}
@@ -18,27 +18,24 @@
 
 package pl.edu.icm.cermine.structure.transformers;
 
-import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import javax.xml.parsers.ParserConfigurationException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import pl.edu.icm.cermine.exception.TransformationException;
 import pl.edu.icm.cermine.structure.model.*;
 import pl.edu.icm.cermine.structure.tools.BxBoundsBuilder;
 import pl.edu.icm.cermine.structure.tools.BxModelUtils;
 
 /**
- * Reads BxDocument model pages from TrueViz format.
+ * Reads BxDocument model pages from TrueViz format. The input is parsed with
+ * StAX, without building a DOM tree. {@link TrueVizPageReader} reads the pages
+ * one at a time.
  *
  * @author kura
  * @author krusek
@@ -88,19 +85,28 @@ public class TrueVizToBxDocumentReader {
     }
 
     public List<BxPage> read(Reader reader, Object... hints) throws TransformationException {
+        XMLStreamReader xml = null;
         try {
             areIdsSet = true;
-            Document doc = TrueVizUtils.newDocumentBuilder().parse(new InputSource(reader));
+            xml = TrueVizUtils.newXMLInputFactory().createXMLStreamReader(reader);
             List<BxPage> pages = new ArrayList<BxPage>();
 
-            if ("Page".equalsIgnoreCase(doc.getDocumentElement().getTagName())) {
-                pages.add(parsePageNode(doc.getDocumentElement()));
-            } else if ("Document".equalsIgnoreCase(doc.getDocumentElement().getTagName())) {
-                for (Element pageElement : getChildren("Page", doc.getDocumentElement())) {
-                    BxPage page = parsePageNode(pageElement);
-                    pages.add(page);
+            String root = nextChild(xml) ? getName(xml) : null;
+            if ("Page".equalsIgnoreCase(root)) {
+                pages.add(parsePageNode(xml));
+            } else if ("Document".equalsIgnoreCase(root)) {
+                while (nextChild(xml)) {
+                    if ("Page".equalsIgnoreCase(getName(xml))) {
+                        pages.add(parsePageNode(xml));
+                    } else {
+                        skipElement(xml);
+                    }
                 }
             }
+            // the rest of the input is read so that malformed documents are reported
+            while (xml.hasNext()) {
+                xml.next();
+            }
             setIdsAndLinkPages(pages);
             if (areIdsSet) {
                 linkAndReorderOtherElements(pages);
@@ -109,15 +115,11 @@ public class TrueVizToBxDocumentReader {
                 BxModelUtils.setParents(page);
             }
             return pages;
-        } catch (IOException ex) {
-        	System.err.println(ex.getMessage());
-            throw new TransformationException(ex);
-        } catch (ParserConfigurationException ex) {
-        	System.err.println(ex.getMessage());
-            throw new TransformationException(ex);
-        } catch (SAXException ex) {
+        } catch (XMLStreamException ex) {
         	System.err.println(ex.getMessage());
             throw new TransformationException(ex);
+        } finally {
+            closeQuietly(xml);
         }
     }
 
@@ -259,67 +261,136 @@ public class TrueVizToBxDocumentReader {
         }
     }
 
-    private List<Element> getChildren(String name, Element el) {
-        ArrayList<Element> list = new ArrayList<Element>();
-        NodeList nl = el.getChildNodes();
-        for (int i = 0; i < nl.getLength(); i++) {
-            Node n = nl.item(i);
-            if (n instanceof Element) {
-                Element e = (Element) n;
-                if (e.getTagName().equalsIgnoreCase(name)) {
-                    list.add(e);
-                }
+    /**
+     * @return true if ids and next ids were set for all the elements parsed since the last reset
+     */
+    boolean areIdsSet() {
+        return areIdsSet;
+    }
+
+    void resetIdsSet() {
+        areIdsSet = true;
+    }
+
+    static String getName(XMLStreamReader xml) {
+        String prefix = xml.getPrefix();
+        if (prefix == null || prefix.isEmpty()) {
+            return xml.getLocalName();
+        }
+        return prefix + ":" + xml.getLocalName();
+    }
+
+    /**
+     * Moves the reader from the current element start or the previous child's end
+     * to the start of the next child element.
+     *
+     * @return true if the reader is at the start of a child, false if it is at the end of the parent
+     */
+    static boolean nextChild(XMLStreamReader xml) throws XMLStreamException {
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
             }
         }
-        return list;
+        return false;
+    }
+
+    /**
+     * Moves the reader from the start of an element to its end.
+     */
+    static void skipElement(XMLStreamReader xml) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    static void closeQuietly(XMLStreamReader xml) {
+        if (xml != null) {
+            try {
+                xml.close();
+            } catch (XMLStreamException ex) {
+                // ignore
+            }
+        }
+    }
+
+    private String getAttribute(XMLStreamReader xml, String name) {
+        String value = xml.getAttributeValue(null, name);
+        return value == null ? "" : value;
     }
 
     /**
      * Function for obtaining value for optional children (that can appear in the XML, but doesn't have to).
+     * Leaves the reader at the end of the child.
      *
-     * @param name is a name of the node
-     * @param el is the root node for the child
-     * @return value of the child, if present and not empty. Otherwise equals to null
+     * @param xml is the reader at the start of the child
+     * @return value of the child, if not empty. Otherwise equals to null
      */
-    private String getOptionalChildValue(String name, Element el) {
-        List<Element> children = getChildren(name, el);
-        if (!children.isEmpty()) {
-            String val = children.get(0).getAttribute("Value");
-            if (val.equals("")) {
-                return null;
-            } else {
-                return val;
-            }
-        } else {
+    private String parseOptionalValue(XMLStreamReader xml) throws XMLStreamException {
+        String val = getAttribute(xml, "Value");
+        skipElement(xml);
+        if (val.equals("")) {
             return null;
+        } else {
+            return val;
         }
-
     }
 
-    private BxBounds parseElementContainingVertexes(Element el) {
-        List<Element> vs = getChildren("Vertex", el);
+    private BxBounds parseElementContainingVertexes(XMLStreamReader xml) throws XMLStreamException {
         BxBoundsBuilder builder = new BxBoundsBuilder();
-        for (Element v : vs) {
-            double x = Double.parseDouble(v.getAttribute("x"));
-            double y = Double.parseDouble(v.getAttribute("y"));
-            builder.expand(x, y);
+        while (nextChild(xml)) {
+            if ("Vertex".equalsIgnoreCase(getName(xml))) {
+                double x = Double.parseDouble(getAttribute(xml, "x"));
+                double y = Double.parseDouble(getAttribute(xml, "y"));
+                builder.expand(x, y);
+            }
+            skipElement(xml);
         }
         return builder.getBounds();
     }
 
-    private BxChunk parseCharacterElement(Element charE) {
+    private BxChunk parseCharacterElement(XMLStreamReader xml) throws XMLStreamException {
         BxBounds bou = null;
         String text = null;
-        if (!getChildren("CharacterCorners", charE).isEmpty()) {
-            bou = (parseElementContainingVertexes(getChildren("CharacterCorners", charE).get(0)));
-        }
-        if (!(getChildren("GT_Text", charE).isEmpty())) {
-            text = getChildren("GT_Text", charE).get(0).getAttribute("Value");
+        String id = null;
+        String nextId = null;
+        boolean corners = false;
+        boolean gtText = false;
+        boolean idFound = false;
+        boolean nextIdFound = false;
+        while (nextChild(xml)) {
+            String name = getName(xml);
+            if (!corners && "CharacterCorners".equalsIgnoreCase(name)) {
+                corners = true;
+                bou = parseElementContainingVertexes(xml);
+            } else if (!gtText && "GT_Text".equalsIgnoreCase(name)) {
+                gtText = true;
+                text = getAttribute(xml, "Value");
+                skipElement(xml);
+            } else if (!idFound && "CharacterId".equalsIgnoreCase(name)) {
+                idFound = true;
+                id = parseOptionalValue(xml);
+            } else if (!nextIdFound && "CharacterNext".equalsIgnoreCase(name)) {
+                nextIdFound = true;
+                nextId = parseOptionalValue(xml);
+            } else {
+                skipElement(xml);
+            }
         }
 
         BxChunk chunk = new BxChunk(bou, text);
-        chunk.setId(getOptionalChildValue("CharacterId", charE));
-        chunk.setNextId(getOptionalChildValue("CharacterNext", charE));
+        chunk.setId(id);
+        chunk.setNextId(nextId);
 
         if (areIdsSet && (chunk.getId() == null || chunk.getNextId() == null)) {
             areIdsSet = false;
@@ -328,61 +399,93 @@ public class TrueVizToBxDocumentReader {
         return chunk;
     }
 
-    private BxWord parseWordElement(Element wordE) {
+    private BxWord parseWordElement(XMLStreamReader xml) throws XMLStreamException {
         BxWord word = new BxWord();
-        if (!(getChildren("WordCorners", wordE).isEmpty())) {
-            word.setBounds(parseElementContainingVertexes(getChildren("WordCorners", wordE).get(0)));
+        String id = null;
+        String nextId = null;
+        boolean corners = false;
+        boolean idFound = false;
+        boolean nextIdFound = false;
+        while (nextChild(xml)) {
+            String name = getName(xml);
+            if ("Character".equalsIgnoreCase(name)) {
+                BxChunk ch = parseCharacterElement(xml);
+                ch.setParent(word);
+                word.addChunk(ch);
+            } else if (!corners && "WordCorners".equalsIgnoreCase(name)) {
+                corners = true;
+                word.setBounds(parseElementContainingVertexes(xml));
+            } else if (!idFound && "WordId".equalsIgnoreCase(name)) {
+                idFound = true;
+                id = parseOptionalValue(xml);
+            } else if (!nextIdFound && "WordNext".equalsIgnoreCase(name)) {
+                nextIdFound = true;
+                nextId = parseOptionalValue(xml);
+            } else {
+                skipElement(xml);
+            }
         }
 
-        word.setId(getOptionalChildValue("WordId", wordE));
-        word.setNextId(getOptionalChildValue("WordNext", wordE));
+        word.setId(id);
+        word.setNextId(nextId);
 
         if (areIdsSet && (word.getId() == null || word.getNextId() == null)) {
             areIdsSet = false;
         }
 
-        List<Element> e = getChildren("Character", wordE);
-        for (Element caE : e) {
-            BxChunk ch = parseCharacterElement(caE);
-            ch.setParent(word);
-            word.addChunk(ch);
-        }
         return word;
     }
 
-    private BxLine parseLineElement(Element lineE) {
+    private BxLine parseLineElement(XMLStreamReader xml) throws XMLStreamException {
         BxLine line = new BxLine();
-        if (!(getChildren("LineCorners", lineE).isEmpty())) {
-            line.setBounds(parseElementContainingVertexes(getChildren("LineCorners", lineE).get(0)));
+        String id = null;
+        String nextId = null;
+        boolean corners = false;
+        boolean idFound = false;
+        boolean nextIdFound = false;
+        while (nextChild(xml)) {
+            String name = getName(xml);
+            if ("Word".equalsIgnoreCase(name)) {
+                BxWord wo = parseWordElement(xml);
+                wo.setParent(line);
+                line.addWord(wo);
+            } else if (!corners && "LineCorners".equalsIgnoreCase(name)) {
+                corners = true;
+                line.setBounds(parseElementContainingVertexes(xml));
+            } else if (!idFound && "LineId".equalsIgnoreCase(name)) {
+                idFound = true;
+                id = parseOptionalValue(xml);
+            } else if (!nextIdFound && "LineNext".equalsIgnoreCase(name)) {
+                nextIdFound = true;
+                nextId = parseOptionalValue(xml);
+            } else {
+                skipElement(xml);
+            }
         }
 
-        line.setId(getOptionalChildValue("LineId", lineE));
-        line.setNextId(getOptionalChildValue("LineNext", lineE));
+        line.setId(id);
+        line.setNextId(nextId);
 
         if (areIdsSet && (line.getId() == null || line.getNextId() == null)) {
             areIdsSet = false;
         }
 
-        List<Element> e = getChildren("Word", lineE);
-        for (Element we : e) {
-            BxWord wo = parseWordElement(we);
-            wo.setParent(line);
-            line.addWord(wo);
-        }
         return line;
     }
 
-    private BxZoneLabel parseClassification(Element elClassicfication) throws TransformationException {
-        List<Element> eli = getChildren("Category", elClassicfication);
-        Element catEl = eli.isEmpty() ? null : eli.get(0);
-        if (catEl == null) {
-            eli = getChildren("Type", elClassicfication);
-            catEl = eli.isEmpty() ? null : eli.get(0);
-        }
-        if (catEl == null) {
-            return null;
+    private BxZoneLabel parseClassification(XMLStreamReader xml) throws XMLStreamException {
+        String category = null;
+        String type = null;
+        while (nextChild(xml)) {
+            String name = getName(xml);
+            if (category == null && "Category".equalsIgnoreCase(name)) {
+                category = getAttribute(xml, "Value");
+            } else if (type == null && "Type".equalsIgnoreCase(name)) {
+                type = getAttribute(xml, "Value");
+            }
+            skipElement(xml);
         }
-        String val = catEl.getAttribute("Value");
+        String val = category == null ? type : category;
         if (val == null) {
             return null;
         }
@@ -397,48 +500,86 @@ public class TrueVizToBxDocumentReader {
         }
     }
 
-    private BxZone parseZoneNode(Element zoneE) throws TransformationException {
+    private BxZone parseZoneNode(XMLStreamReader xml) throws XMLStreamException {
         BxZone zone = new BxZone();
         zone.setLabel(BxZoneLabel.OTH_UNKNOWN);
-        if (!getChildren("Classification", zoneE).isEmpty()) {
-            zone.setLabel(parseClassification(getChildren("Classification", zoneE).get(0)));
-        }
-        if (!getChildren("ZoneCorners", zoneE).isEmpty()) {
-            zone.setBounds(parseElementContainingVertexes(getChildren("ZoneCorners", zoneE).get(0)));
+        String id = null;
+        String nextId = null;
+        boolean classification = false;
+        boolean corners = false;
+        boolean idFound = false;
+        boolean nextIdFound = false;
+        while (nextChild(xml)) {
+            String name = getName(xml);
+            if ("Line".equalsIgnoreCase(name)) {
+                BxLine li = parseLineElement(xml);
+                li.setParent(zone);
+                zone.addLine(li);
+            } else if (!classification && "Classification".equalsIgnoreCase(name)) {
+                classification = true;
+                zone.setLabel(parseClassification(xml));
+            } else if (!corners && "ZoneCorners".equalsIgnoreCase(name)) {
+                corners = true;
+                zone.setBounds(parseElementContainingVertexes(xml));
+            } else if (!idFound && "ZoneId".equalsIgnoreCase(name)) {
+                idFound = true;
+                id = parseOptionalValue(xml);
+            } else if (!nextIdFound && "ZoneNext".equalsIgnoreCase(name)) {
+                nextIdFound = true;
+                nextId = parseOptionalValue(xml);
+            } else {
+                skipElement(xml);
+            }
         }
 
-        zone.setId(getOptionalChildValue("ZoneId", zoneE));
-        zone.setNextId(getOptionalChildValue("ZoneNext", zoneE));
+        zone.setId(id);
+        zone.setNextId(nextId);
 
         if (areIdsSet && (zone.getId() == null || zone.getNextId() == null)) {
             areIdsSet = false;
         }
 
-        List<Element> e = getChildren("Line", zoneE);
-        for (Element lin : e) {
-            BxLine li = parseLineElement(lin);
-            li.setParent(zone);
-            zone.addLine(li);
-        }
         return zone;
-
     }
 
-    private BxPage parsePageNode(Element elem) throws TransformationException {
+    /**
+     * Parses the page element, leaving the reader at its end. The elements
+     * of the page are not linked.
+     * 
+     * @param xml reader at the start of the page element
+     * @return page
+     * @throws XMLStreamException 
+     */
+    BxPage parsePageNode(XMLStreamReader xml) throws XMLStreamException {
         BxPage page = new BxPage();
-        page.setId(getOptionalChildValue("PageId", elem));
-        page.setNextId(getOptionalChildValue("PageNext", elem));
+        String id = null;
+        String nextId = null;
+        boolean idFound = false;
+        boolean nextIdFound = false;
+        while (nextChild(xml)) {
+            String name = getName(xml);
+            if ("Zone".equalsIgnoreCase(name)) {
+                BxZone zon = parseZoneNode(xml);
+                zon.setParent(page);
+                page.addZone(zon);
+            } else if (!idFound && "PageId".equalsIgnoreCase(name)) {
+                idFound = true;
+                id = parseOptionalValue(xml);
+            } else if (!nextIdFound && "PageNext".equalsIgnoreCase(name)) {
+                nextIdFound = true;
+                nextId = parseOptionalValue(xml);
+            } else {
+                skipElement(xml);
+            }
+        }
+
+        page.setId(id);
+        page.setNextId(nextId);
 
         if (areIdsSet && (page.getId() == null || page.getNextId() == null)) {
             areIdsSet = false;
         }
 
-        List<Element> e = getChildren("Zone", elem);
-        for (Element zo : e) {
-            BxZone zon = parseZoneNode(zo);
-            zon.setParent(page);
-            page.addZone(zon);
-        }
         BxBoundsBuilder.setBounds(page);
 
         return page;
@@ -21,6 +21,7 @@ package pl.edu.icm.cermine.structure.transformers;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -64,6 +65,18 @@ public final class TrueVizUtils {
         return builder;
     }
 
+    /**
+     * Returns new StAX input factory for parsing TrueViz documents. The DTD is
+     * not read, as it declares neither entities nor default attribute values.
+     */
+    public static XMLInputFactory newXMLInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+
     private TrueVizUtils() {}
     
 }
@@ -0,0 +1,46 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools;
+
+import pl.edu.icm.cermine.exception.AnalysisException;
+
+/**
+ * Loads a single model object for the model registry.
+ *
+ * @param <T> type of the loaded model
+ */
+public interface ModelLoader<T> {
+
+    /**
+     * Loads the model. Called at most once per registry key.
+     *
+     * @return loaded model
+     * @throws AnalysisException 
+     */
+    T load() throws AnalysisException;
+
+    /**
+     * Estimates the number of bytes the loaded model occupies on the heap.
+     *
+     * @param model loaded model
+     * @return approximate size in bytes, or -1 if unknown
+     */
+    long estimateSize(T model);
+
+}
@@ -0,0 +1,217 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools;
+
+import com.google.common.hash.Hashing;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import pl.edu.icm.cermine.exception.AnalysisException;
+
+/**
+ * Process-wide registry of loaded models (SVM classifiers, CRF parsers etc.).
+ * Every model is loaded once per key and then shared read-only between all
+ * extractor instances and threads.
+ * <p>
+ * Models read from classpath resources are keyed by the resource path
+ * (see {@link #resourceKey}), models read from arbitrary streams
+ * are keyed by the checksum of their content (see {@link #checksumKey}).
+ */
+public final class ModelRegistry {
+
+    private static final ModelRegistry DEFAULT_REGISTRY = new ModelRegistry();
+    
+    private final ConcurrentMap<String, ModelHolder<?>> models = new ConcurrentHashMap<String, ModelHolder<?>>();
+
+    public static ModelRegistry getDefault() {
+        return DEFAULT_REGISTRY;
+    }
+    
+    /**
+     * Returns the model registered under the given key. If the model is not
+     * loaded yet, it is loaded using the loader. Concurrent requests for the same
+     * key wait for a single load, requests for different keys do not block each other.
+     * 
+     * @param <T> model type
+     * @param key registry key
+     * @param loader model loader
+     * @return shared model
+     * @throws AnalysisException 
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getModel(String key, ModelLoader<T> loader) throws AnalysisException {
+        ModelHolder<?> holder = models.get(key);
+        if (holder == null) {
+            ModelHolder<?> newHolder = new ModelHolder<T>(key);
+            holder = models.putIfAbsent(key, newHolder);
+            if (holder == null) {
+                holder = newHolder;
+            }
+        }
+        return ((ModelHolder<T>) holder).get(loader);
+    }
+    
+    public boolean isLoaded(String key) {
+        ModelHolder<?> holder = models.get(key);
+        return holder != null && holder.isLoaded();
+    }
+    
+    /**
+     * Removes the model from the registry. Extractors already holding
+     * the model keep using it.
+     * 
+     * @param key registry key
+     */
+    public void evict(String key) {
+        models.remove(key);
+    }
+    
+    public void clear() {
+        models.clear();
+    }
+    
+    /**
+     * Returns load statistics of all models loaded so far.
+     * 
+     * @return list of model statistics
+     */
+    public List<ModelStats> getStats() {
+        List<ModelStats> stats = new ArrayList<ModelStats>();
+        for (ModelHolder<?> holder : models.values()) {
+            if (holder.isLoaded()) {
+                stats.add(holder.getStats());
+            }
+        }
+        return stats;
+    }
+    
+    public long getTotalEstimatedSize() {
+        long total = 0;
+        for (ModelStats stat : getStats()) {
+            if (stat.getEstimatedSize() > 0) {
+                total += stat.getEstimatedSize();
+            }
+        }
+        return total;
+    }
+
+    public static String resourceKey(Class<?> modelClass, String... resourcePaths) {
+        StringBuilder sb = new StringBuilder(modelClass.getName());
+        sb.append(":resource");
+        for (String path : resourcePaths) {
+            sb.append(':').append(path);
+        }
+        return sb.toString();
+    }
+    
+    public static String checksumKey(Class<?> modelClass, byte[]... contents) {
+        StringBuilder sb = new StringBuilder(modelClass.getName());
+        sb.append(":sha1");
+        for (byte[] content : contents) {
+            sb.append(':').append(content == null ? "null" : Hashing.sha1().hashBytes(content).toString());
+        }
+        return sb.toString();
+    }
+    
+    
+    private static final class ModelHolder<T> {
+        
+        private final String key;
+        
+        private volatile T model;
+        
+        private long loadTime;
+        
+        private long estimatedSize;
+
+        public ModelHolder(String key) {
+            this.key = key;
+        }
+        
+        public T get(ModelLoader<T> loader) throws AnalysisException {
+            T result = model;
+            if (result == null) {
+                synchronized (this) {
+                    result = model;
+                    if (result == null) {
+                        long start = System.currentTimeMillis();
+                        result = loader.load();
+                        if (result == null) {
+                            throw new AnalysisException("Model loader returned null for " + key);
+                        }
+                        loadTime = System.currentTimeMillis() - start;
+                        estimatedSize = loader.estimateSize(result);
+                        model = result;
+                    }
+                }
+            }
+            return result;
+        }
+        
+        public boolean isLoaded() {
+            return model != null;
+        }
+        
+        public synchronized ModelStats getStats() {
+            return new ModelStats(key, loadTime, estimatedSize);
+        }
+        
+    }
+    
+    public static final class ModelStats {
+        
+        private final String key;
+        
+        private final long loadTime;
+        
+        private final long estimatedSize;
+
+        public ModelStats(String key, long loadTime, long estimatedSize) {
+            this.key = key;
+            this.loadTime = loadTime;
+            this.estimatedSize = estimatedSize;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return model load time in milliseconds
+         */
+        public long getLoadTime() {
+            return loadTime;
+        }
+
+        /**
+         * @return approximate heap size of the model in bytes, or -1 if unknown
+         */
+        public long getEstimatedSize() {
+            return estimatedSize;
+        }
+
+        @Override
+        public String toString() {
+            return key + " (loaded in " + loadTime + " ms, ~" + (estimatedSize < 0 ? "?" : estimatedSize / 1024) + " KB)";
+        }
+        
+    }
+    
+}
@@ -0,0 +1,126 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools;
+
+/**
+ * State shared by the code running on a single thread between the calls
+ * to {@link #open(Object)} and {@link #close(Object)}, such as the caches
+ * of document-wide facts used by feature calculators.
+ * <p>
+ * Every scope belongs to the object that opened it, such as a classifier,
+ * and every call to {@link #open(Object)} has to be followed by a call to
+ * {@link #close(Object)} with the same owner in a finally block. Scopes
+ * opened again by the same owner are nested and share its state, while
+ * a scope opened by another owner gets a new state, which hides the outer
+ * one until it is closed. The state of an owner is dropped when its outermost
+ * scope is closed, so it is never seen by other owners, such as a classifier
+ * created with a reloaded model, and nothing is left in the thread once
+ * the work is done.
+ *
+ * @param <S> type of the state
+ */
+public final class ThreadScope<S> {
+
+    /**
+     * Creates the state of a new scope.
+     *
+     * @param <S> type of the state
+     */
+    public interface StateFactory<S> {
+        S create();
+    }
+
+    private final ThreadLocal<Entry<S>> entries = new ThreadLocal<Entry<S>>();
+
+    private final String name;
+
+    private final StateFactory<S> factory;
+
+    /**
+     * @param name name of the scope used in error messages
+     * @param factory factory of the scope state
+     */
+    public ThreadScope(String name, StateFactory<S> factory) {
+        this.name = name;
+        this.factory = factory;
+    }
+
+    /**
+     * Opens a scope on the current thread.
+     *
+     * @param owner object opening the scope
+     */
+    public void open(Object owner) {
+        if (owner == null) {
+            throw new IllegalArgumentException("Scope owner cannot be null!");
+        }
+        Entry<S> entry = entries.get();
+        if (entry == null || entry.owner != owner) {
+            entry = new Entry<S>(owner, factory.create(), entry);
+            entries.set(entry);
+        }
+        entry.depth++;
+    }
+
+    /**
+     * Closes the scope opened by {@link #open(Object)}. The state of the owner
+     * is dropped when its outermost scope is closed.
+     *
+     * @param owner object that opened the scope
+     */
+    public void close(Object owner) {
+        Entry<S> entry = entries.get();
+        if (entry == null || entry.owner != owner) {
+            throw new IllegalStateException("No " + name + " scope of " + owner + " is open!");
+        }
+        if (--entry.depth == 0) {
+            if (entry.outer == null) {
+                entries.remove();
+            } else {
+                entries.set(entry.outer);
+            }
+        }
+    }
+
+    /**
+     * @return the state of the innermost scope open on the current thread, or null if no scope is open
+     */
+    public S get() {
+        Entry<S> entry = entries.get();
+        return entry == null ? null : entry.state;
+    }
+
+    private static final class Entry<S> {
+
+        private final Object owner;
+
+        private final S state;
+
+        private final Entry<S> outer;
+
+        private int depth;
+
+        Entry(Object owner, S state, Entry<S> outer) {
+            this.owner = owner;
+            this.state = state;
+            this.outer = outer;
+        }
+    }
+
+}
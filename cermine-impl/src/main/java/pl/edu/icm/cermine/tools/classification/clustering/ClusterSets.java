@@ -0,0 +1,56 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.clustering;
+
+/**
+ * Disjoint sets of object indices stored in a parent array. The root of every
+ * set is its smallest element, so that roots can be used as cluster ids.
+ */
+final class ClusterSets {
+
+    private ClusterSets() {
+    }
+    
+    static int find(int[] parent, int element) {
+        int root = element;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        while (parent[element] != root) {
+            int next = parent[element];
+            parent[element] = root;
+            element = next;
+        }
+        return root;
+    }
+    
+    /**
+     * Joins the sets of the elements, the smaller root becomes the root of the union.
+     */
+    static void union(int[] parent, int element1, int element2) {
+        int root1 = find(parent, element1);
+        int root2 = find(parent, element2);
+        if (root1 < root2) {
+            parent[root2] = root1;
+        } else if (root2 < root1) {
+            parent[root1] = root2;
+        }
+    }
+
+}
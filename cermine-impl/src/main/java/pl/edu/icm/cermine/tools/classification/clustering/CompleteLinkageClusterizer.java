@@ -18,12 +18,20 @@
 
 package pl.edu.icm.cermine.tools.classification.clustering;
 
-import com.google.common.collect.Sets;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
 
 /**
- * Complete linkage clusterizer.
+ * Complete linkage clusterizer. Clusters are merged in the order of increasing
+ * complete linkage distance, as long as the distance is less than the maximum
+ * distance or the evaluator does not accept the current clustering.
+ * <p>
+ * The merges are found with the nearest-neighbour chain algorithm in O(n^2)
+ * time and memory, and then applied in the order of their distances.
+ * The id of a cluster is the smallest index of its members.
+ * <p>
+ * The distance matrix does not have to be symmetric. The linkage of clusters
+ * A and B is the smaller of the largest distances from A to B and from B to A.
+ * NaN distances are ignored.
  * 
  * @author Dominika Tkaczyk
  */
@@ -40,61 +48,143 @@ public class CompleteLinkageClusterizer implements Clusterizer {
     
     @Override
     public int[] clusterize(double distanceMatrix[][], double maxDistance) {
-        Set<Set<Integer>> clusters = new HashSet<Set<Integer>>();
-        for (int i = 0; i < distanceMatrix.length; i++) {
-            clusters.add(Sets.newHashSet(i));
+        int n = distanceMatrix.length;
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+        if (n < 2) {
+            return parent;
         }
         
-        while (true) {
-            double mind = Double.POSITIVE_INFINITY;
-            Set<Integer> minClust1 = null;
-            Set<Integer> minClust2 = null;
-            for (Set<Integer> clust1 : clusters) {
-                for (Set<Integer> clust2 : clusters) {
-                    if (clust1.equals(clust2)) {
-                        continue;
-                    }
-                    double maxd = Double.NEGATIVE_INFINITY;
-                    for (int i : clust1) {
-                        for (int j : clust2) {
-                            if (distanceMatrix[i][j] > maxd) {
-                                maxd = distanceMatrix[i][j];
-                            }
-                        }
-                    }
-                    if (maxd < mind) {
-                        mind = maxd;
-                        minClust1 = clust1;
-                        minClust2 = clust2;
-                    }
+        int[] merged1 = new int[n - 1];
+        int[] merged2 = new int[n - 1];
+        double[] heights = new double[n - 1];
+        findMerges(distanceMatrix, merged1, merged2, heights);
+        
+        for (int merge : sortByHeight(heights)) {
+            if (heights[merge] >= maxDistance 
+                    && (evaluator == null || evaluator.isAcceptable(createClusterArray(parent)))) {
+                break;
+            }
+            ClusterSets.union(parent, merged1[merge], merged2[merge]);
+        }
+        
+        return createClusterArray(parent);
+    }
+    
+    /**
+     * Finds the complete linkage dendrogram with the nearest-neighbour chain
+     * algorithm. Every cluster is represented by one of its members.
+     */
+    private void findMerges(double distanceMatrix[][], int[] merged1, int[] merged2, double[] heights) {
+        int n = distanceMatrix.length;
+        
+        /* distances[i][j] is the largest distance from the members of cluster i
+         * to the members of cluster j */
+        double[][] distances = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double distance = distanceMatrix[i][j];
+                distances[i][j] = Double.isNaN(distance) ? Double.NEGATIVE_INFINITY : distance;
+            }
+        }
+        
+        boolean[] active = new boolean[n];
+        Arrays.fill(active, true);
+        int[] chain = new int[n];
+        int chainLength = 0;
+        int merges = 0;
+        int firstActive = 0;
+        while (merges < n - 1) {
+            if (chainLength == 0) {
+                while (!active[firstActive]) {
+                    firstActive++;
+                }
+                chain[chainLength++] = firstActive;
+            }
+            int current = chain[chainLength - 1];
+            int previous = chainLength > 1 ? chain[chainLength - 2] : -1;
+            
+            /* the previous cluster in the chain is preferred in case of ties,
+             * which guarantees that the chain ends with a pair of reciprocal
+             * nearest neighbours */
+            int nearest = previous;
+            double minDistance = previous < 0 ? Double.POSITIVE_INFINITY : distance(distances, current, previous);
+            for (int i = 0; i < n; i++) {
+                if (i == current || !active[i]) {
+                    continue;
+                }
+                double distance = distance(distances, current, i);
+                if (distance < minDistance || nearest < 0) {
+                    minDistance = distance;
+                    nearest = i;
                 }
             }
             
-            int[] clusterArray = createClusterArray(distanceMatrix.length, clusters);
+            if (nearest != previous) {
+                chain[chainLength++] = nearest;
+                continue;
+            }
             
-            if (mind < maxDistance || (evaluator != null && !evaluator.isAcceptable(clusterArray))) {
-                clusters.remove(minClust1);
-                clusters.remove(minClust2);
-                minClust1.addAll(minClust2);
-                clusters.add(minClust1);
-            } else {
-                break;
+            chainLength -= 2;
+            merged1[merges] = current;
+            merged2[merges] = previous;
+            heights[merges] = minDistance;
+            merges++;
+            
+            /* the merged cluster takes the place of the current one */
+            active[previous] = false;
+            for (int i = 0; i < n; i++) {
+                if (i == current || !active[i]) {
+                    continue;
+                }
+                distances[current][i] = Math.max(distances[current][i], distances[previous][i]);
+                distances[i][current] = Math.max(distances[i][current], distances[i][previous]);
             }
         }
-        
-        return createClusterArray(distanceMatrix.length, clusters);
     }
     
-    private int[] createClusterArray(int length, Set<Set<Integer>> clusters) {
-        int[] clusterArray = new int[length];
-        int clusterIndex = 0;
-        for (Set<Integer> cluster : clusters) {
-            for (int element : cluster) {
-                clusterArray[element] = clusterIndex;
+    private static double distance(double[][] distances, int i, int j) {
+        return Math.min(distances[i][j], distances[j][i]);
+    }
+    
+    /**
+     * Returns the indices of the merges in the order of increasing heights,
+     * merges of equal heights are kept in the order in which they were found.
+     */
+    private static int[] sortByHeight(double[] heights) {
+        int[] order = new int[heights.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        int[] buffer = new int[order.length];
+        for (int width = 1; width < order.length; width *= 2) {
+            for (int start = 0; start < order.length; start += 2 * width) {
+                int middle = Math.min(start + width, order.length);
+                int end = Math.min(start + 2 * width, order.length);
+                int i = start;
+                int j = middle;
+                for (int k = start; k < end; k++) {
+                    if (j >= end || i < middle && Double.compare(heights[order[i]], heights[order[j]]) <= 0) {
+                        buffer[k] = order[i++];
+                    } else {
+                        buffer[k] = order[j++];
+                    }
+                }
             }
-            clusterIndex++;
+            int[] sorted = buffer;
+            buffer = order;
+            order = sorted;
+        }
+        return order;
+    }
+    
+    private int[] createClusterArray(int[] parent) {
+        int[] clusterArray = new int[parent.length];
+        for (int i = 0; i < parent.length; i++) {
+            clusterArray[i] = ClusterSets.find(parent, i);
         }
-        
         return clusterArray;
     }
 
@@ -107,4 +197,3 @@ public class CompleteLinkageClusterizer implements Clusterizer {
     }
     
 }
-
@@ -37,9 +37,10 @@ public class FeatureVectorClusterizer {
         }
         double distanceMatrix[][] = new double[vectors.length][vectors.length];
         for (int i = 0; i < vectors.length; i++) {
-            for (int j = 0; j < vectors.length; j++) {
-                distanceMatrix[i][j] = metric.getDistance(vectors[i], vectors[j]);
-                distanceMatrix[j][i] = metric.getDistance(vectors[i], vectors[j]);
+            for (int j = i; j < vectors.length; j++) {
+                double distance = metric.getDistance(vectors[j], vectors[i]);
+                distanceMatrix[i][j] = distance;
+                distanceMatrix[j][i] = distance;
             }
         }
         
@@ -18,8 +18,16 @@
 
 package pl.edu.icm.cermine.tools.classification.clustering;
 
+import java.util.Arrays;
+
 /**
- * Single linkage clusterizer.
+ * Single linkage clusterizer. Two objects are in the same cluster if they are
+ * connected by a chain of objects, in which the distances between the neighbours
+ * are less than the maximum distance. The clusters are found by cutting the
+ * minimum spanning tree of the distance graph, built with Prim's algorithm
+ * in O(n^2) time.
+ * <p>
+ * The id of a cluster is the smallest index of its members.
  *
  * @author Dominika Tkaczyk
  */
@@ -27,36 +35,50 @@ public class SingleLinkageClusterizer implements Clusterizer {
     
     @Override
     public int[] clusterize(double distanceMatrix[][], double maxDistance) {
-        int[] clusters = new int[distanceMatrix.length];
-        for (int i = 0; i < clusters.length; i++) {
-            clusters[i] = i;
+        int n = distanceMatrix.length;
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+        if (n == 0) {
+            return parent;
         }
         
-        while (true) {
-            int mini = -1;
-            int minj = -1;
-            for (int k = 0; k < distanceMatrix.length; k++) {
-                for (int l = 0; l < distanceMatrix.length; l++) {
-                    if (distanceMatrix[k][l] < maxDistance && clusters[k] != clusters[l]) {
-                        mini = k;
-                        minj = l;
-                    }
-                }
+        /* Prim's algorithm: key[i] is the length of the shortest edge connecting
+         * i to the tree, nearest[i] the tree vertex at its other end.
+         */
+        boolean[] inTree = new boolean[n];
+        double[] key = new double[n];
+        int[] nearest = new int[n];
+        Arrays.fill(key, Double.POSITIVE_INFINITY);
+        Arrays.fill(nearest, -1);
+        int vertex = 0;
+        for (int added = 0; added < n; added++) {
+            inTree[vertex] = true;
+            if (nearest[vertex] >= 0 && key[vertex] < maxDistance) {
+                ClusterSets.union(parent, vertex, nearest[vertex]);
             }
-            
-            if (mini == -1) {
-                return clusters;
-            }
-            
-            int old = clusters[mini];
-
-            for (int i = 0; i < clusters.length; i++) {
-                if (clusters[i] == old) {
-                    clusters[i] = clusters[minj];
+            int next = -1;
+            for (int i = 0; i < n; i++) {
+                if (inTree[i]) {
+                    continue;
+                }
+                double distance = Math.min(distanceMatrix[vertex][i], distanceMatrix[i][vertex]);
+                if (distance < key[i]) {
+                    key[i] = distance;
+                    nearest[i] = vertex;
+                }
+                if (next < 0 || key[i] < key[next]) {
+                    next = i;
                 }
             }
+            vertex = next;
         }
+        
+        for (int i = 0; i < n; i++) {
+            parent[i] = ClusterSets.find(parent, i);
+        }
+        return parent;
     }
 
 }
-
@@ -0,0 +1,99 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.features;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable list of feature names with constant-time name to index lookup.
+ * A schema is shared by all the feature vectors calculated by one builder.
+ * If a name occurs more than once, it is mapped to its first occurrence.
+ */
+public final class FeatureSchema {
+
+    public static final FeatureSchema EMPTY = new FeatureSchema(Collections.<String>emptyList());
+
+    private final List<String> names;
+    private final Map<String, Integer> indices;
+    private final boolean unique;
+
+    public FeatureSchema(List<String> names) {
+        this.names = Collections.unmodifiableList(new ArrayList<String>(names));
+        this.indices = new HashMap<String, Integer>();
+        for (int i = 0; i < names.size(); i++) {
+            if (!indices.containsKey(names.get(i))) {
+                indices.put(names.get(i), i);
+            }
+        }
+        this.unique = indices.size() == names.size();
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    public String getName(int index) {
+        return names.get(index);
+    }
+
+    /**
+     * @param name feature name
+     * @return index of the first feature with the given name, or -1 if there is no such feature
+     */
+    public int indexOf(String name) {
+        Integer index = indices.get(name);
+        return index == null ? -1 : index;
+    }
+
+    public boolean contains(String name) {
+        return indices.containsKey(name);
+    }
+
+    /**
+     * @return true if no feature name occurs more than once
+     */
+    public boolean hasUniqueNames() {
+        return unique;
+    }
+
+    public List<String> getFeatureNames() {
+        return names;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof FeatureSchema)) {
+            return false;
+        }
+        return names.equals(((FeatureSchema) obj).names);
+    }
+
+    @Override
+    public int hashCode() {
+        return names.hashCode();
+    }
+
+}
@@ -18,98 +18,179 @@
 
 package pl.edu.icm.cermine.tools.classification.features;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
- * Simple feature vector.
+ * Simple feature vector. Values are stored in a primitive array, names are
+ * taken from a feature schema shared by all the vectors of the same builder.
+ * Features added to a vector after its creation are kept by the vector itself.
  *
  * @author Dominika Tkaczyk (d.tkaczyk@icm.edu.pl)
  * @author Pawel Szostek (p.szostek@icm.edu.pl)
  */
 public class FeatureVector {
 
-    private List<String> names = new ArrayList<String>();
-    private List<Double> values = new ArrayList<Double>();
+    private static final int INITIAL_CAPACITY = 16;
+
+    private FeatureSchema schema;
+    private List<String> extraNames;
+    private Map<String, Integer> extraIndices;
+    private double[] values;
+    private int size;
+
+    private List<String> allNames;
+    private FeatureSchema allSchema;
+
+    public FeatureVector() {
+        this(FeatureSchema.EMPTY, new double[INITIAL_CAPACITY], 0);
+    }
+
+    /**
+     * Creates a vector of the features from the given schema, with all the values set to zero.
+     *
+     * @param schema feature schema
+     */
+    public FeatureVector(FeatureSchema schema) {
+        this(schema, new double[schema.size()], schema.size());
+    }
+
+    /**
+     * Creates a vector with the given values, which are not copied.
+     */
+    FeatureVector(FeatureSchema schema, double[] values) {
+        this(schema, values, schema.size());
+        if (values.length != schema.size()) {
+            throw new IllegalArgumentException("This feature vector has " + schema.size() + " features!");
+        }
+    }
+
+    private FeatureVector(FeatureSchema schema, double[] values, int size) {
+        this.schema = schema;
+        this.values = values;
+        this.size = size;
+    }
 
-    
     public int size() {
-    	return values.size();
+    	return size;
     }
-    
+
     public List<String> getFeatureNames() {
-		return names;
+        if (extraNames == null) {
+            return schema.getFeatureNames();
+        }
+        if (allNames == null) {
+            List<String> names = new ArrayList<String>(size);
+            names.addAll(schema.getFeatureNames());
+            names.addAll(extraNames);
+            allNames = Collections.unmodifiableList(names);
+        }
+		return allNames;
+    }
+
+    /**
+     * @return schema describing all the features of this vector
+     */
+    public FeatureSchema getSchema() {
+        if (extraNames == null) {
+            return schema;
+        }
+        if (allSchema == null) {
+            allSchema = new FeatureSchema(getFeatureNames());
+        }
+        return allSchema;
     }
-    
+
+    /**
+     * @param name feature name
+     * @return index of the first feature with the given name, or -1 if there is no such feature
+     */
+    public int indexOf(String name) {
+        int index = schema.indexOf(name);
+        if (index < 0 && extraIndices != null) {
+            Integer extraIndex = extraIndices.get(name);
+            if (extraIndex != null) {
+                index = extraIndex;
+            }
+        }
+        return index;
+    }
+
     public double getValue(String name) {
-        if (!names.contains(name)) {
+        int index = indexOf(name);
+        if (index < 0) {
             throw new IllegalArgumentException("Feature vector does not contain feature '" + name + "'!");
         }
-        return values.get(names.indexOf(name));
+        return values[index];
     }
-    
+
     public double getValue(int index) {
-        if (index < 0 || index >= values.size()) {
+        if (index < 0 || index >= size) {
             throw new IllegalArgumentException("Feature vector contains only " + size()+ " features!");
         }
-        return values.get(index);
+        return values[index];
     }
-    
+
     public double[] getValues() {
-        double[] ret = new double[size()];
-        for (int i = 0; i < size(); i++) {
-            ret[i] = values.get(i);
-        }
-		return ret;
+		return Arrays.copyOf(values, size);
 	}
-    
 
     public void addFeature(String name, double value) {
-    	names.add(name);
-    	values.add(value);
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(INITIAL_CAPACITY, 2 * size));
+        }
+        if (extraNames == null) {
+            extraNames = new ArrayList<String>();
+            extraIndices = new HashMap<String, Integer>();
+        }
+        extraNames.add(name);
+        if (!extraIndices.containsKey(name)) {
+            extraIndices.put(name, size);
+        }
+        values[size++] = value;
+        allNames = null;
+        allSchema = null;
     }
-    
+
     public void setValue(String name, double value) {
-        if (!names.contains(name)) {
+        int index = indexOf(name);
+        if (index < 0) {
             throw new IllegalArgumentException("Feature vector does not contain feature '" + name + "'!");
         }
-        values.add(names.indexOf(name), value);
-        values.remove(names.indexOf(name) + 1);
+        values[index] = value;
 	}
-    
+
     public void setValue(int index, double value) {
-        if (index < 0 || index >= values.size()) {
+        if (index < 0 || index >= size) {
             throw new IllegalArgumentException("Feature vector contains only " + size()+ " features!");
         }
-        values.add(index, value);
-        values.remove(index + 1);
+        values[index] = value;
 	}
-    
+
     public void setValues(double[] values) {
-        if (names.size() != values.length) {
-            throw new IllegalArgumentException("This feature vector has " + names.size() + " features!");
-        }
-        this.values.clear();
-        for (double value: values) {
-            this.values.add(value);
+        if (size != values.length) {
+            throw new IllegalArgumentException("This feature vector has " + size + " features!");
         }
+        System.arraycopy(values, 0, this.values, 0, size);
 	}
-    
+
     public String dump() {
     	StringBuilder ret = new StringBuilder();
+        List<String> names = getFeatureNames();
     	for(int idx=0; idx<size(); ++idx) {
     		String name = names.get(idx);
     		String shortName = (name.length() > 18 ? name.substring(0, 18) : name);
-    		ret.append(String.format("%18s: %5.2f%n", shortName, values.get(idx)));
+    		ret.append(String.format("%18s: %5.2f%n", shortName, values[idx]));
     	}
     	return ret.toString();
     }
 
     public FeatureVector copy() {
-        FeatureVector ret = new FeatureVector();
-        ret.names = new ArrayList<String>(names);
-        ret.values = new ArrayList<Double>(values);
+        FeatureVector ret = new FeatureVector(schema, Arrays.copyOf(values, values.length), size);
+        if (extraNames != null) {
+            ret.extraNames = new ArrayList<String>(extraNames);
+            ret.extraIndices = new HashMap<String, Integer>(extraIndices);
+        }
         return ret;
 	}
-	
+
 }
@@ -19,6 +19,7 @@
 package pl.edu.icm.cermine.tools.classification.features;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -35,15 +36,40 @@ import java.util.List;
  */
 public class FeatureVectorBuilder<S, T> {
 
-	private List<FeatureCalculator<S, T>> featureCalculators = new ArrayList<FeatureCalculator<S, T>>();
+	private volatile List<FeatureCalculator<S, T>> featureCalculators = Collections.emptyList();
+
+	private volatile FeatureSchema schema = FeatureSchema.EMPTY;
 
 	public FeatureVector getFeatureVector(S object, T context) {
-		FeatureVector featureVector = new FeatureVector();
+		FeatureSchema featureSchema = getSchema();
+		return new FeatureVector(featureSchema, getFeatureValues(object, context, new double[featureSchema.size()]));
+	}
+
+	/**
+	 * Calculates feature values into the given buffer, so that the buffer can
+	 * be reused for many objects. The values are in the order of the schema.
+	 *
+	 * @param object object
+	 * @param context context
+	 * @param buffer buffer, a new array is allocated if it is null or too short
+	 * @return the buffer filled with the values
+	 */
+	public double[] getFeatureValues(S object, T context, double[] buffer) {
+		if (buffer == null || buffer.length < featureCalculators.size()) {
+			buffer = new double[featureCalculators.size()];
+		}
+		int index = 0;
 		for (FeatureCalculator<S, T> fc : featureCalculators) {
-			featureVector.addFeature(fc.getFeatureName(),
-					fc.calculateFeatureValue(object, context));
+			buffer[index++] = fc.calculateFeatureValue(object, context);
 		}
-		return featureVector;
+		return buffer;
+	}
+
+	/**
+	 * @return schema of the vectors calculated by this builder
+	 */
+	public FeatureSchema getSchema() {
+		return schema;
 	}
 
 	public List<String> getFeatureNames() {
@@ -58,13 +84,29 @@ public class FeatureVectorBuilder<S, T> {
 		return featureCalculators.size();
 	}
 
+	/**
+	 * @return unmodifiable list of the feature calculators
+	 */
 	public List<FeatureCalculator<S, T>> getFeatureCalculators() {
 		return featureCalculators;
 	}
 
+	/**
+	 * Sets the feature calculators. The list is copied, so that the schema
+	 * always matches the calculators.
+	 *
+	 * @param featureCalculators feature calculators
+	 */
 	public void setFeatureCalculators(
 			List<FeatureCalculator<S, T>> featureCalculators) {
-		this.featureCalculators = featureCalculators;
+		List<FeatureCalculator<S, T>> calculators = Collections.unmodifiableList(
+				new ArrayList<FeatureCalculator<S, T>>(featureCalculators));
+		List<String> names = new ArrayList<String>();
+		for (FeatureCalculator<S, T> fc : calculators) {
+			names.add(fc.getFeatureName());
+		}
+		this.schema = new FeatureSchema(names);
+		this.featureCalculators = calculators;
 	}
 
 }
@@ -0,0 +1,120 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.general;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import pl.edu.icm.cermine.tools.classification.features.FeatureSchema;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
+
+/**
+ * Reads training samples written by {@link BinarySampleWriter}.
+ *
+ * @param <S> label type
+ */
+public class BinarySampleReader<S extends Enum<S>> implements Closeable {
+
+    private final DataInputStream stream;
+    
+    private final S[] labels;
+    
+    private final FeatureSchema schema;
+    
+    private double[] values;
+
+    /**
+     * @param stream input stream
+     * @param labelClass label type
+     * @param schema schema of the stored feature vectors
+     * @throws IOException if the stream does not contain binary samples
+     */
+    public BinarySampleReader(InputStream stream, Class<S> labelClass, FeatureSchema schema) throws IOException {
+        this.stream = new DataInputStream(stream);
+        this.labels = labelClass.getEnumConstants();
+        this.schema = schema;
+        this.values = new double[schema.size()];
+        if (this.stream.readInt() != BinarySampleWriter.MAGIC) {
+            throw new IOException("Not a binary sample file: wrong magic number");
+        }
+        int version = this.stream.readUnsignedByte();
+        if (version != BinarySampleWriter.VERSION) {
+            throw new IOException("Unsupported binary sample file version: " + version);
+        }
+    }
+    
+    /**
+     * @return the next sample, or null at the end of the stream
+     * @throws IOException 
+     */
+    public TrainingSample<S> read() throws IOException {
+        int ordinal;
+        try {
+            ordinal = stream.readInt();
+        } catch (EOFException ex) {
+            return null;
+        }
+        if (ordinal < 0 || ordinal >= labels.length) {
+            throw new IOException("Invalid label: " + ordinal);
+        }
+        int size = stream.readInt();
+        if (size != schema.size()) {
+            throw new IOException("Sample has " + size + " features, expected " + schema.size());
+        }
+        for (int i = 0; i < size; i++) {
+            values[i] = stream.readDouble();
+        }
+        FeatureVector vector = new FeatureVector(schema);
+        vector.setValues(values);
+        return new TrainingSample<S>(vector, labels[ordinal]);
+    }
+    
+    public List<TrainingSample<S>> readAll() throws IOException {
+        List<TrainingSample<S>> samples = new ArrayList<TrainingSample<S>>();
+        TrainingSample<S> sample;
+        while ((sample = read()) != null) {
+            samples.add(sample);
+        }
+        return samples;
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+    
+    /**
+     * Checks whether the file starts with the magic number of the binary samples.
+     * 
+     * @param file file
+     * @return true if the file contains binary samples
+     * @throws IOException 
+     */
+    public static boolean isBinarySampleFile(File file) throws IOException {
+        DataInputStream stream = new DataInputStream(new FileInputStream(file));
+        try {
+            return stream.readInt() == BinarySampleWriter.MAGIC;
+        } catch (EOFException ex) {
+            return false;
+        } finally {
+            stream.close();
+        }
+    }
+    
+}
@@ -0,0 +1,67 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.general;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes training samples in a binary format, which can be read back
+ * with {@link BinarySampleReader} without parsing any text. The values
+ * are stored exactly.
+ * <p>
+ * The stream starts with a magic number and a version byte, followed by
+ * the samples: label ordinal, number of features and the feature values.
+ *
+ * @param <S> label type
+ */
+public class BinarySampleWriter<S extends Enum<S>> implements TrainingSampleWriter<S> {
+
+    static final int MAGIC = 0x4258534D;
+    
+    static final int VERSION = 1;
+    
+    private final DataOutputStream stream;
+
+    public BinarySampleWriter(OutputStream stream) throws IOException {
+        this.stream = new DataOutputStream(stream);
+        this.stream.writeInt(MAGIC);
+        this.stream.writeByte(VERSION);
+    }
+    
+    @Override
+    public void write(TrainingSample<S> sample) throws IOException {
+        if (sample.getLabel() == null) {
+            return;
+        }
+        stream.writeInt(sample.getLabel().ordinal());
+        int size = sample.getFeatureVector().size();
+        stream.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            stream.writeDouble(sample.getFeatureVector().getValue(i));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+    
+}
@@ -19,7 +19,9 @@
 package pl.edu.icm.cermine.tools.classification.general;
 
 import java.util.*;
+import pl.edu.icm.cermine.content.DocumentStatistics;
 import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.metadata.zoneclassification.features.PageFeatureContext;
 import pl.edu.icm.cermine.metadata.zoneclassification.tools.ZoneClassificationUtils;
 import pl.edu.icm.cermine.structure.model.*;
 import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
@@ -43,12 +45,19 @@ public abstract class BxDocsToTrainingSamplesConverter {
                 ZoneClassificationUtils.mapZoneLabels(doc, labelMap);
             }
 
-            for (BxPage page : doc.getPages()) {
-                for (BxZone zone : page.getZones()) {
-                    FeatureVector featureVector = vectorBuilder.getFeatureVector(zone, page);
-                    TrainingSample<BxZoneLabel> element = new TrainingSample<BxZoneLabel>(featureVector, zone.getLabel());
-                    trainingList.add(element);
+            PageFeatureContext.openScope(vectorBuilder);
+            DocumentStatistics.openScope(vectorBuilder);
+            try {
+                for (BxPage page : doc.getPages()) {
+                    for (BxZone zone : page.getZones()) {
+                        FeatureVector featureVector = vectorBuilder.getFeatureVector(zone, page);
+                        TrainingSample<BxZoneLabel> element = new TrainingSample<BxZoneLabel>(featureVector, zone.getLabel());
+                        trainingList.add(element);
+                    }
                 }
+            } finally {
+                DocumentStatistics.closeScope(vectorBuilder);
+                PageFeatureContext.closeScope(vectorBuilder);
             }
         }
         return trainingList;
@@ -63,12 +72,19 @@ public abstract class BxDocsToTrainingSamplesConverter {
                 ZoneClassificationUtils.mapZoneLabels(doc, labelMap);
             }
 
-            for (BxPage page : doc.getPages()) {
-                for (BxZone zone : page.getZones()) {
-                    FeatureVector featureVector = vectorBuilder.getFeatureVector(zone, page);
-                    TrainingSample<BxZoneLabel> element = new TrainingSample<BxZoneLabel>(featureVector, zone.getLabel());
-                    trainingList.add(element);
+            PageFeatureContext.openScope(vectorBuilder);
+            DocumentStatistics.openScope(vectorBuilder);
+            try {
+                for (BxPage page : doc.getPages()) {
+                    for (BxZone zone : page.getZones()) {
+                        FeatureVector featureVector = vectorBuilder.getFeatureVector(zone, page);
+                        TrainingSample<BxZoneLabel> element = new TrainingSample<BxZoneLabel>(featureVector, zone.getLabel());
+                        trainingList.add(element);
+                    }
                 }
+            } finally {
+                DocumentStatistics.closeScope(vectorBuilder);
+                PageFeatureContext.closeScope(vectorBuilder);
             }
         }
         return trainingList;
@@ -98,14 +114,19 @@ public abstract class BxDocsToTrainingSamplesConverter {
                 ZoneClassificationUtils.mapZoneLabels(doc, labelMap);
             }
 
-            for (BxPage page : doc.getPages()) {
-                for (BxZone zone : page.getZones()) {
-                    for (BxLine line : zone.getLines()) {
-                        FeatureVector featureVector = vectorBuilder.getFeatureVector(line, page);
-                        TrainingSample<BxZoneLabel> element = new TrainingSample<BxZoneLabel>(featureVector, zone.getLabel());
-                        trainingList.add(element);
+            DocumentStatistics.openScope(vectorBuilder);
+            try {
+                for (BxPage page : doc.getPages()) {
+                    for (BxZone zone : page.getZones()) {
+                        for (BxLine line : zone.getLines()) {
+                            FeatureVector featureVector = vectorBuilder.getFeatureVector(line, page);
+                            TrainingSample<BxZoneLabel> element = new TrainingSample<BxZoneLabel>(featureVector, zone.getLabel());
+                            trainingList.add(element);
+                        }
                     }
                 }
+            } finally {
+                DocumentStatistics.closeScope(vectorBuilder);
             }
         }
         return trainingList;
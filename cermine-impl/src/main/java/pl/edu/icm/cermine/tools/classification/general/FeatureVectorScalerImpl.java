@@ -66,18 +66,14 @@ public class FeatureVectorScalerImpl implements FeatureVectorScaler {
 	public <A extends Enum<A>> void calculateFeatureLimits(List<TrainingSample<A>> trainingElements) {
 		for(TrainingSample<A> trainingElem: trainingElements) {
 			FeatureVector fv = trainingElem.getFeatureVector();
-			List<String> names = fv.getFeatureNames();
-
-			int featureIdx = 0;
-			for(String name: names) {
-				double val = fv.getValue(name);
+			for(int featureIdx=0; featureIdx<fv.size(); ++featureIdx) {
+				double val = fv.getValue(featureIdx);
 				if(val > limits[featureIdx].max) {
 					limits[featureIdx].setMax(val);
 				}
 				if(val < limits[featureIdx].min){
 					limits[featureIdx].setMin(val);
 				}
-				++featureIdx;
 			}
         }
 		for(FeatureLimits limit: limits) {
@@ -0,0 +1,188 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.general;
+
+import java.io.IOException;
+import java.io.Writer;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
+
+/**
+ * Writes training samples in libsvm format, one sample per line:
+ * label ordinal followed by <code>index:value</code> pairs, with indices
+ * starting from 1 and values printed with five decimal places. The values
+ * are formatted as by <code>String.format(Locale.US, "%.5f", value)</code>,
+ * but without creating a formatter and boxing every number.
+ *
+ * @param <S> label type
+ */
+public class LibSVMSampleWriter<S extends Enum<S>> implements TrainingSampleWriter<S> {
+
+    private static final int DECIMAL_PLACES = 5;
+    
+    private static final String ZERO_FRACTION = ".00000";
+    
+    private static final long SCALE = 100000;
+    
+    /** integral values below this bound are printed directly */
+    private static final double MAX_EXACT_INTEGRAL = 1e15;
+    
+    /** 
+     * scaled values below this bound are computed with an error much smaller
+     * than the tie margin, so they can be rounded directly
+     */
+    private static final double MAX_SCALED = 1e10;
+    
+    private static final double TIE_MARGIN = 1e-3;
+    
+    private final Writer writer;
+    
+    private final StringBuilder buffer = new StringBuilder();
+    
+    public LibSVMSampleWriter(Writer writer) {
+        this.writer = writer;
+    }
+    
+    @Override
+    public void write(TrainingSample<S> sample) throws IOException {
+        if (sample.getLabel() == null) {
+            return;
+        }
+        buffer.setLength(0);
+        appendSample(buffer, sample);
+        writer.append(buffer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+    
+    /**
+     * Appends a libsvm line of the sample, including the line separator.
+     * 
+     * @param <S> label type
+     * @param sb string builder
+     * @param sample labelled training sample
+     */
+    public static <S extends Enum<S>> void appendSample(StringBuilder sb, TrainingSample<S> sample) {
+        sb.append(sample.getLabel().ordinal()).append(' ');
+        FeatureVector vector = sample.getFeatureVector();
+        for (int i = 0; i < vector.size(); i++) {
+            sb.append(i + 1).append(':');
+            appendValue(sb, vector.getValue(i));
+            sb.append(' ');
+        }
+        sb.append('\n');
+    }
+    
+    /**
+     * Appends the value with five decimal places, rounding half up.
+     * 
+     * @param sb string builder
+     * @param value number
+     */
+    public static void appendValue(StringBuilder sb, double value) {
+        if (Double.isNaN(value)) {
+            sb.append("NaN");
+            return;
+        }
+        if (Double.isInfinite(value)) {
+            sb.append(value > 0 ? "Infinity" : "-Infinity");
+            return;
+        }
+        if (value < 0 || (value == 0 && 1 / value < 0)) {
+            sb.append('-');
+            value = -value;
+        }
+        if (value < MAX_EXACT_INTEGRAL && value == Math.rint(value)) {
+            sb.append((long) value).append(ZERO_FRACTION);
+            return;
+        }
+        double scaled = value * SCALE;
+        if (scaled < MAX_SCALED && Math.abs(scaled - Math.floor(scaled) - 0.5) > TIE_MARGIN) {
+            long rounded = Math.round(scaled);
+            sb.append(rounded / SCALE).append('.');
+            long fraction = rounded % SCALE;
+            for (long bound = SCALE / 10; bound > 1 && fraction < bound; bound /= 10) {
+                sb.append('0');
+            }
+            sb.append(fraction);
+            return;
+        }
+        appendDigits(sb, Double.toString(value));
+    }
+    
+    /**
+     * Rounds the shortest decimal representation of a positive number,
+     * as the formatter does. Used for large numbers and for the numbers
+     * close to the rounding tie.
+     */
+    private static void appendDigits(StringBuilder sb, String repr) {
+        int exponentStart = repr.indexOf('E');
+        int mantissaEnd = exponentStart < 0 ? repr.length() : exponentStart;
+        int exponent = exponentStart < 0 ? 0 : Integer.parseInt(repr.substring(exponentStart + 1));
+        
+        int digitCount = 0;
+        char[] digits = new char[mantissaEnd];
+        int pointPosition = -1;
+        for (int i = 0; i < mantissaEnd; i++) {
+            char c = repr.charAt(i);
+            if (c == '.') {
+                pointPosition = digitCount;
+            } else {
+                digits[digitCount++] = c;
+            }
+        }
+        if (pointPosition < 0) {
+            pointPosition = digitCount;
+        }
+        pointPosition += exponent;
+        
+        // digits of the result: the integral part (at least one digit), 
+        // the fractional part and a leading place for the carry
+        int integralLength = Math.max(pointPosition, 1);
+        int first = pointPosition - integralLength;
+        int[] result = new int[integralLength + DECIMAL_PLACES + 1];
+        for (int i = 1; i < result.length; i++) {
+            int index = first + i - 1;
+            result[i] = index >= 0 && index < digitCount ? digits[index] - '0' : 0;
+        }
+        int roundingIndex = pointPosition + DECIMAL_PLACES;
+        if (roundingIndex >= 0 && roundingIndex < digitCount && digits[roundingIndex] >= '5') {
+            int i = result.length - 1;
+            while (result[i] == 9) {
+                result[i--] = 0;
+            }
+            result[i]++;
+        }
+        
+        int start = result[0] == 0 ? 1 : 0;
+        int pointIndex = integralLength + 1;
+        while (start < pointIndex - 1 && result[start] == 0) {
+            start++;
+        }
+        for (int i = start; i < result.length; i++) {
+            if (i == pointIndex) {
+                sb.append('.');
+            }
+            sb.append((char) ('0' + result[i]));
+        }
+    }
+
+}
@@ -26,28 +26,26 @@ public class LinearScaling implements ScalingStrategy {
 	public FeatureVector scaleFeatureVector(double scaledLowerBound,
 			double scaledUpperBound, FeatureLimits[] limits, FeatureVector fv) {
 		final double EPS = 0.00001;
-		FeatureVector newVector = new FeatureVector();
+		FeatureVector newVector = fv.copy();
 		
-		int featureIdx = 0;
-		for(String name: fv.getFeatureNames()) {
+		for(int featureIdx=0; featureIdx<fv.size(); ++featureIdx) {
 			//scaling function: y = a*x+b
 			// featureLower = a*v_min + b
 			// featureUpper = a*v_max + b
 			if(Math.abs(limits[featureIdx].getMax()-limits[featureIdx].getMin()) < EPS) {
-				newVector.addFeature(name, 1.0);
+				newVector.setValue(featureIdx, 1.0);
 			} else {
-				Double featureValue = fv.getValue(name);
+				double featureValue = fv.getValue(featureIdx);
 				double a = (scaledUpperBound-scaledLowerBound)/(limits[featureIdx].getMax()-limits[featureIdx].getMin());
 				double b = scaledLowerBound-a*limits[featureIdx].getMin();
 				
 				featureValue = a*featureValue+b; 
 
-				if (featureValue.isNaN()) {
-					throw new RuntimeException("Feature value is set to NaN: "+name);
+				if (Double.isNaN(featureValue)) {
+					throw new RuntimeException("Feature value is set to NaN: "+fv.getFeatureNames().get(featureIdx));
 				}
-				newVector.addFeature(name, featureValue);
+				newVector.setValue(featureIdx, featureValue);
 			}
-			++featureIdx;
 		}
 		return newVector;
 	}
@@ -0,0 +1,421 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.general;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.edu.icm.cermine.evaluation.tools.EvaluationUtils;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.model.*;
+import pl.edu.icm.cermine.structure.transformers.BinaryToBxDocumentReader;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
+
+/**
+ * Generates training samples from many documents in parallel. Documents are
+ * read and their feature vectors are calculated by a pool of worker threads,
+ * while the samples are written by the calling thread, so the writers do not
+ * have to be thread-safe. At most <code>maxPendingDocuments</code> documents
+ * are processed or waiting to be written at the same time, and the samples
+ * are passed to the writers document by document, so the training set
+ * does not have to fit in memory.
+ * <p>
+ * In the ordered mode the samples are written in the order of the input
+ * files, exactly as they would be written by a single thread. In the unordered
+ * mode the documents are written as soon as they are ready.
+ * <p>
+ * Documents that cannot be read or processed are logged and skipped.
+ */
+public class TrainingSamplesGenerator {
+    
+    private static final Logger log = LoggerFactory.getLogger(TrainingSamplesGenerator.class);
+    
+    public static final String TRUEVIZ_EXTENSION = ".xml";
+    
+    public static final String BINARY_EXTENSION = ".bxd";
+    
+    /**
+     * Calculates the training samples of a single document. Extractors are
+     * called by many threads at the same time.
+     */
+    public interface SampleExtractor {
+        
+        List<TrainingSample<BxZoneLabel>> getSamples(BxDocument document) throws AnalysisException;
+        
+    }
+    
+    private final List<SampleExtractor> extractors = new ArrayList<SampleExtractor>();
+    
+    private final List<TrainingSampleWriter<BxZoneLabel>> writers = new ArrayList<TrainingSampleWriter<BxZoneLabel>>();
+    
+    private int threads;
+    
+    private int maxPendingDocuments;
+    
+    private boolean ordered = true;
+    
+    private int failedDocuments;
+
+    public TrainingSamplesGenerator() {
+        setThreads(Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Adds an output. The samples of each document are calculated by the extractors
+     * in the order in which the outputs were added.
+     * 
+     * @param extractor samples extractor
+     * @param writer writer of the extracted samples
+     * @return this generator
+     */
+    public TrainingSamplesGenerator addOutput(SampleExtractor extractor, TrainingSampleWriter<BxZoneLabel> writer) {
+        extractors.add(extractor);
+        writers.add(writer);
+        return this;
+    }
+
+    /**
+     * Generates the samples of the documents and passes them to the writers
+     * of the outputs. The writers are not closed.
+     * 
+     * @param files TrueViz or binary document files
+     * @return the number of documents processed successfully
+     * @throws IOException if the samples cannot be written
+     * @throws AnalysisException if the generation is interrupted
+     */
+    public int generate(Iterable<File> files) throws IOException, AnalysisException {
+        return run(files, extractors, new ResultHandler() {
+
+            @Override
+            public void handle(List<List<TrainingSample<BxZoneLabel>>> samples) throws IOException {
+                for (int i = 0; i < samples.size(); i++) {
+                    TrainingSampleWriter<BxZoneLabel> writer = writers.get(i);
+                    for (TrainingSample<BxZoneLabel> sample : samples.get(i)) {
+                        writer.write(sample);
+                    }
+                }
+            }
+        });
+    }
+    
+    /**
+     * Generates the samples of the documents and returns them in the order
+     * of the input files, regardless of the ordered mode.
+     * 
+     * @param files TrueViz or binary document files
+     * @param extractor samples extractor
+     * @return training samples
+     * @throws AnalysisException if the generation is interrupted
+     */
+    public List<TrainingSample<BxZoneLabel>> collect(Iterable<File> files, SampleExtractor extractor) throws AnalysisException {
+        List<TrainingSample<BxZoneLabel>> samples = new ArrayList<TrainingSample<BxZoneLabel>>();
+        for (List<TrainingSample<BxZoneLabel>> documentSamples : collectDocuments(files, extractor)) {
+            samples.addAll(documentSamples);
+        }
+        return samples;
+    }
+    
+    /**
+     * Generates the samples of the documents and returns them grouped by document,
+     * in the order of the input files, regardless of the ordered mode. 
+     * Documents that cannot be processed are skipped.
+     * 
+     * @param files TrueViz or binary document files
+     * @param extractor samples extractor
+     * @return training samples of the documents
+     * @throws AnalysisException if the generation is interrupted
+     */
+    public List<List<TrainingSample<BxZoneLabel>>> collectDocuments(Iterable<File> files, SampleExtractor extractor) 
+            throws AnalysisException {
+        final List<List<TrainingSample<BxZoneLabel>>> samples = new ArrayList<List<TrainingSample<BxZoneLabel>>>();
+        boolean wasOrdered = ordered;
+        ordered = true;
+        try {
+            run(files, Collections.singletonList(extractor), new ResultHandler() {
+
+                @Override
+                public void handle(List<List<TrainingSample<BxZoneLabel>>> documentSamples) {
+                    samples.add(documentSamples.get(0));
+                }
+            });
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot collect training samples!", ex);
+        } finally {
+            ordered = wasOrdered;
+        }
+        return samples;
+    }
+    
+    /**
+     * Reads the document from the file. Files with the binary extension are read 
+     * as binary documents, all the others as TrueViz.
+     */
+    protected BxDocument loadDocument(File file) throws IOException, TransformationException {
+        if (!file.getName().endsWith(BINARY_EXTENSION)) {
+            return EvaluationUtils.getDocument(file);
+        }
+        InputStream stream = new FileInputStream(file);
+        try {
+            BxDocument document = new BinaryToBxDocumentReader().read(stream);
+            document.setFilename(file.getName());
+            return document;
+        } finally {
+            stream.close();
+        }
+    }
+    
+    /**
+     * Prepares the document before the samples are extracted. 
+     * Called by the worker threads.
+     */
+    protected BxDocument prepareDocument(BxDocument document) throws AnalysisException {
+        return document;
+    }
+    
+    private int run(Iterable<File> files, List<SampleExtractor> documentExtractors, ResultHandler handler) 
+            throws IOException, AnalysisException {
+        failedDocuments = 0;
+        int processed = 0;
+        if (threads == 1) {
+            for (File file : files) {
+                processed += handle(new DocumentTask(file, documentExtractors).call(), handler);
+            }
+            logFinished(processed);
+            return processed;
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CompletionService<Result> completionService = new ExecutorCompletionService<Result>(executor);
+        Queue<Future<Result>> pending = new LinkedList<Future<Result>>();
+        int pendingCount = 0;
+        try {
+            for (File file : files) {
+                if (pendingCount == maxPendingDocuments) {
+                    processed += handle(next(completionService, pending), handler);
+                    pendingCount--;
+                }
+                DocumentTask task = new DocumentTask(file, documentExtractors);
+                if (ordered) {
+                    pending.add(executor.submit(task));
+                } else {
+                    completionService.submit(task);
+                }
+                pendingCount++;
+            }
+            for (; pendingCount > 0; pendingCount--) {
+                processed += handle(next(completionService, pending), handler);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisException("Training samples generation interrupted!", ex);
+        } catch (ExecutionException ex) {
+            throw new AnalysisException("Training samples generation failed!", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        logFinished(processed);
+        return processed;
+    }
+    
+    /**
+     * Returns the next result to be written. In the ordered mode the results are 
+     * taken in the order of submission, otherwise in the order of completion.
+     */
+    private Result next(CompletionService<Result> completionService, Queue<Future<Result>> pending) 
+            throws InterruptedException, ExecutionException {
+        if (ordered) {
+            return pending.remove().get();
+        }
+        return completionService.take().get();
+    }
+    
+    private int handle(Result result, ResultHandler handler) throws IOException {
+        if (result.error != null) {
+            failedDocuments++;
+            log.warn("Cannot generate training samples of " + result.file, result.error);
+            return 0;
+        }
+        handler.handle(result.samples);
+        return 1;
+    }
+    
+    private void logFinished(int processed) {
+        log.info("Training samples generated from " + processed + " documents, " + failedDocuments + " documents failed");
+    }
+    
+    private interface ResultHandler {
+        void handle(List<List<TrainingSample<BxZoneLabel>>> samples) throws IOException;
+    }
+    
+    /**
+     * Samples of a single document, or the error that prevented calculating them.
+     */
+    private static final class Result {
+        
+        private final File file;
+        
+        /** samples of the outputs */
+        private List<List<TrainingSample<BxZoneLabel>>> samples;
+        
+        private Exception error;
+
+        Result(File file) {
+            this.file = file;
+        }
+    }
+    
+    private final class DocumentTask implements Callable<Result> {
+        
+        private final File file;
+        
+        private final List<SampleExtractor> documentExtractors;
+
+        DocumentTask(File file, List<SampleExtractor> documentExtractors) {
+            this.file = file;
+            this.documentExtractors = documentExtractors;
+        }
+
+        @Override
+        public Result call() {
+            Result result = new Result(file);
+            try {
+                BxDocument document = prepareDocument(loadDocument(file));
+                result.samples = new ArrayList<List<TrainingSample<BxZoneLabel>>>(documentExtractors.size());
+                for (SampleExtractor extractor : documentExtractors) {
+                    result.samples.add(extractor.getSamples(document));
+                }
+            } catch (Exception ex) {
+                result.samples = null;
+                result.error = ex;
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * Creates an extractor of zone samples.
+     * 
+     * @param vectorBuilder feature vector builder
+     * @param labelMap map applied to zone labels before the extraction, can be null
+     * @return samples extractor
+     */
+    public static SampleExtractor zoneSamples(final FeatureVectorBuilder<BxZone, BxPage> vectorBuilder, 
+            final Map<BxZoneLabel, BxZoneLabel> labelMap) {
+        return new SampleExtractor() {
+
+            @Override
+            public List<TrainingSample<BxZoneLabel>> getSamples(BxDocument document) throws AnalysisException {
+                return BxDocsToTrainingSamplesConverter.getZoneTrainingSamples(document, vectorBuilder, labelMap);
+            }
+        };
+    }
+    
+    /**
+     * Creates an extractor of line samples.
+     * 
+     * @param vectorBuilder feature vector builder
+     * @param labelMap map applied to zone labels before the extraction, can be null
+     * @return samples extractor
+     */
+    public static SampleExtractor lineSamples(final FeatureVectorBuilder<BxLine, BxPage> vectorBuilder, 
+            final Map<BxZoneLabel, BxZoneLabel> labelMap) {
+        return new SampleExtractor() {
+
+            @Override
+            public List<TrainingSample<BxZoneLabel>> getSamples(BxDocument document) throws AnalysisException {
+                return BxDocsToTrainingSamplesConverter.getLineTrainingSamples(document, vectorBuilder, labelMap);
+            }
+        };
+    }
+    
+    /**
+     * Lists TrueViz and binary documents in the directory, sorted by name.
+     * 
+     * @param dirPath directory path
+     * @return document files
+     * @throws IOException if the directory cannot be listed
+     */
+    public static List<File> listDocumentFiles(String dirPath) throws IOException {
+        File[] files = new File(dirPath).listFiles(new FilenameFilter() {
+
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(TRUEVIZ_EXTENSION) || name.endsWith(BINARY_EXTENSION);
+            }
+        });
+        if (files == null) {
+            throw new IOException("Cannot list directory " + dirPath);
+        }
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+    
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of worker threads. With a single thread the documents 
+     * are processed by the calling thread. Resets the pending documents limit
+     * to twice the number of threads.
+     * 
+     * @param threads number of threads
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive!");
+        }
+        this.threads = threads;
+        this.maxPendingDocuments = 2 * threads;
+    }
+
+    public int getMaxPendingDocuments() {
+        return maxPendingDocuments;
+    }
+
+    public void setMaxPendingDocuments(int maxPendingDocuments) {
+        if (maxPendingDocuments < 1) {
+            throw new IllegalArgumentException("Pending documents limit must be positive!");
+        }
+        this.maxPendingDocuments = maxPendingDocuments;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public void setOrdered(boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    /**
+     * @return the number of documents skipped in the last run because of errors
+     */
+    public int getFailedDocuments() {
+        return failedDocuments;
+    }
+    
+}
@@ -52,134 +52,84 @@ public class HMMServiceImpl implements HMMService {
      */
     @Override
     public <S> List<S> viterbiMostProbableStates(HMMProbabilityInfo<S> probabilityInfo, Collection<S> states, List<FeatureVector> messages) {
+        List<S> stateList = new ArrayList<S>(states);
+        int stateCount = stateList.size();
+        int length = messages.size();
+        if (length == 0 || stateCount == 0) {
+            return new ArrayList<S>();
+        }
         
-        /* A matrix that keeps track of the most probable state paths and their 
-         probabilities. viterbiMatrix(i, s) is a matrix node that stores three
-         pieces of information:
-         * - the probability of the most optimal path of length i that ends
-         in state s,
-         * - the ending state,
-         * - previous matrix node of the most optimal path.
+        /* The algorithm works on logarithms of probabilities, so that long
+         * sequences do not underflow. Initial and transition probabilities are
+         * looked up once per state (pair), emission probabilities once per
+         * message.
          */
-        Map<Integer, Map<S, MatrixNode<S>>> viterbiMatrix = new HashMap<Integer, Map<S, MatrixNode<S>>>();
-
-        /* Calculating viterbiMatrix(1, s) for all states.
-         * viterbiMatrix(1, s).probability = ip(s) * ep(s, m[1])
+        double[] logInitial = new double[stateCount];
+        double[][] logTransition = new double[stateCount][stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            logInitial[s] = Math.log(probabilityInfo.getInitialProbability(stateList.get(s)));
+            for (int t = 0; t < stateCount; t++) {
+                logTransition[s][t] = Math.log(probabilityInfo.getTransitionProbability(stateList.get(s), stateList.get(t)));
+            }
+        }
+        
+        /* score[s] is the log-probability of the most probable path of length i
+         * that ends in state s, backPointers[i][s] is the previous state on
+         * that path.
          */
-        Map<S, MatrixNode<S>> initialProb = new HashMap<S, MatrixNode<S>>();
-        for (S state : states) {
-            double iProb = probabilityInfo.getInitialProbability(state);
-            double eProb = probabilityInfo.getEmissionProbability(state, messages.get(0));
-            MatrixNode<S> probNode = new MatrixNode<S>(iProb * eProb, state, null);
-            initialProb.put(state, probNode);
+        double[] score = new double[stateCount];
+        double[] nextScore = new double[stateCount];
+        int[][] backPointers = new int[length][stateCount];
+        
+        double[] emission = probabilityInfo.getEmissionProbabilities(stateList, messages.get(0));
+        for (int s = 0; s < stateCount; s++) {
+            score[s] = logInitial[s] + Math.log(emission[s]);
         }
-        viterbiMatrix.put(1, initialProb);
-
-        /* Filling viterbiMtrix starting from shorter paths. */
-        for (int i = 2; i <= messages.size(); i++) {
-            /* Calculating viterbiMatrix(i, s) for all states. */
 
-            Map<S, MatrixNode<S>> probabilities = new HashMap<S, MatrixNode<S>>();
-            Map<S, MatrixNode<S>> prevProb = viterbiMatrix.get(i - 1);
-
-            for (S state : states) {
-                /* Calculating viterbiMatrix(i, state) */
-
-                double maxProbability = -1;
-                MatrixNode<S> bestPrevNode = null;
-
-                /* For a given state s, we need to choose its previous state, 
-                 * so that the result path is the most optimal (has the highest
-                 * probability).
-                 *
-                 * viterbiMatrix(i, s).probability = ep(s, m[i]) *
-                 *      max{viterbiMatrix(i-1, sPrev).probability * tp(sPrev, s)}
+        for (int i = 1; i < length; i++) {
+            emission = probabilityInfo.getEmissionProbabilities(stateList, messages.get(i));
+            int[] back = backPointers[i];
+            for (int s = 0; s < stateCount; s++) {
+                /* score(i, s) = log ep(s, m[i]) + max{score(i-1, sPrev) + log tp(sPrev, s)},
+                 * ties are resolved in favour of the first state.
                  */
-                for (S prevState : states) {
-                    MatrixNode<S> prevNode = prevProb.get(prevState);
-                    double trProbability = probabilityInfo.getTransitionProbability(prevState, state);
-
-                    double prob = prevNode.probability * trProbability;
-                    if (prob > maxProbability) {
-                        maxProbability = prob;
-                        bestPrevNode = prevNode;
+                int bestPrev = 0;
+                double maxScore = score[0] + logTransition[0][s];
+                for (int prev = 1; prev < stateCount; prev++) {
+                    double prevScore = score[prev] + logTransition[prev][s];
+                    if (prevScore > maxScore) {
+                        maxScore = prevScore;
+                        bestPrev = prev;
                     }
                 }
-
-                double emissionProbability = probabilityInfo.getEmissionProbability(state, messages.get(i - 1));
-                MatrixNode<S> node = new MatrixNode<S>(maxProbability * emissionProbability, state, bestPrevNode);
-                probabilities.put(state, node);
-            }
-            
-            /*
-             * It is important to keep positive probability values in the 
-             * Viterbi matrix, no matter how small. If the HMM sequence is long
-             * enough, probability values can become very small and eventually
-             * turn into 0. We try to prevent it by detecting if probabilities
-             * are too small and multiplying them by a certain number.
-             *
-             * TODO: Use a custom class instead of double. (Unfortunately using
-             * BigDecimal causes Viterbi algorithm to be very slow.)
-             */
-            double max = 0;
-            double min = Double.POSITIVE_INFINITY;
-            for (S state : states) {
-                if (probabilities.get(state).probability > max) {
-                    max = probabilities.get(state).probability;
-                }
-                if (probabilities.get(state).probability != 0 && probabilities.get(state).probability < min) {
-                    min = probabilities.get(state).probability;
-                }
-            }
-            if (Math.log10(max) < 0 && Math.log10(min) < 0) {
-                int exponent = (int) ((Math.log10(max) - Math.log10(min)) / 2);
-                for (S state : states) {
-                    probabilities.get(state).probability *= Math.pow(10, exponent);
-                }
+                back[s] = bestPrev;
+                nextScore[s] = maxScore + Math.log(emission[s]);
             }
-            if (Math.log10(max) < -100 && Math.log10(min) < -100) {
-                for (S state : states) {
-                    probabilities.get(state).probability *= Math.pow(10, 10);
-                }
-            }
-                
-            viterbiMatrix.put(i, probabilities);
+            double[] tmp = score;
+            score = nextScore;
+            nextScore = tmp;
         }
 
-        List<S> labels = new ArrayList<S>();
-
         /* Checking which last state in the sequence has the highest 
          * probability. This will be the last state of the most optimal path.
          */
-        MatrixNode<S> node = null;
-        for (S st : states) {
-            MatrixNode<S> actNode = viterbiMatrix.get(messages.size()).get(st);
-            if (node == null || actNode.probability > node.probability) {
-                node = actNode;
+        int state = 0;
+        for (int s = 1; s < stateCount; s++) {
+            if (score[s] > score[state]) {
+                state = s;
             }
         }
 
-        /* Getting the most optimal path using additional label and prevNode 
-         * fields.
-         */
-        while (node != null) {
-            labels.add(0, node.label);
-            node = node.prevNode;
+        /* Getting the most optimal path by following the back pointers. */
+        int[] path = new int[length];
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = state;
+            state = backPointers[i][state];
         }
-
-        return labels;
-    }
-
-    private static class MatrixNode<S> {
-
-        private double probability;
-        private S label;
-        private MatrixNode<S> prevNode;
-
-        public MatrixNode(double probability, S label, MatrixNode<S> prevNode) {
-            this.probability = probability;
-            this.label = label;
-            this.prevNode = prevNode;
+        List<S> result = new ArrayList<S>(length);
+        for (int s : path) {
+            result.add(stateList.get(s));
         }
+        return result;
     }
 }
@@ -0,0 +1,126 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.hmm.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import pl.edu.icm.cermine.tools.classification.features.FeatureSchema;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
+
+/**
+ * Decision tree flattened into arrays, with the feature names of the nodes
+ * resolved to feature indices of the classified vectors' schema.
+ *
+ * @param <T> A type of labels.
+ */
+public class CompiledDecisionTree<T> {
+
+    /** tree nodes, in depth-first order */
+    private final List<DecisionTree<T>> nodes;
+    
+    /** indices of the left children, -1 for leaves */
+    private final int[] left;
+    
+    private final int[] right;
+    
+    private final String[] featureNames;
+    
+    private final double[] featureCuts;
+    
+    private volatile SchemaIndices schemaIndices;
+
+    public CompiledDecisionTree(DecisionTree<T> tree) {
+        nodes = new ArrayList<DecisionTree<T>>();
+        collect(tree);
+        left = new int[nodes.size()];
+        right = new int[nodes.size()];
+        featureNames = new String[nodes.size()];
+        featureCuts = new double[nodes.size()];
+        link(0);
+    }
+    
+    private void collect(DecisionTree<T> node) {
+        nodes.add(node);
+        if (!node.isLeaf()) {
+            collect(node.getLeft());
+            collect(node.getRight());
+        }
+    }
+    
+    /**
+     * Fills the arrays for the subtree rooted at the given index.
+     * 
+     * @return index following the last node of the subtree
+     */
+    private int link(int index) {
+        DecisionTree<T> node = nodes.get(index);
+        featureNames[index] = node.getFeatureName();
+        featureCuts[index] = node.getFeatureCut();
+        if (node.isLeaf()) {
+            left[index] = -1;
+            right[index] = -1;
+            return index + 1;
+        }
+        left[index] = index + 1;
+        right[index] = link(index + 1);
+        return link(right[index]);
+    }
+
+    /**
+     * Finds the leaf the feature vector is classified to.
+     * 
+     * @param features feature vector
+     * @return leaf node
+     */
+    public DecisionTree<T> classify(FeatureVector features) {
+        int[] indices = getFeatureIndices(features.getSchema());
+        int node = 0;
+        while (left[node] >= 0) {
+            double value = indices[node] >= 0 ? features.getValue(indices[node]) : features.getValue(featureNames[node]);
+            node = value <= featureCuts[node] ? left[node] : right[node];
+        }
+        return nodes.get(node);
+    }
+    
+    private int[] getFeatureIndices(FeatureSchema schema) {
+        SchemaIndices current = schemaIndices;
+        if (current == null || current.schema != schema) {
+            int[] indices = new int[featureNames.length];
+            for (int i = 0; i < featureNames.length; i++) {
+                indices[i] = featureNames[i] == null ? -1 : schema.indexOf(featureNames[i]);
+            }
+            current = new SchemaIndices(schema, indices);
+            schemaIndices = current;
+        }
+        return current.indices;
+    }
+
+    private static class SchemaIndices {
+        
+        private final FeatureSchema schema;
+        
+        private final int[] indices;
+
+        SchemaIndices(FeatureSchema schema, int[] indices) {
+            this.schema = schema;
+            this.indices = indices;
+        }
+    }
+
+}
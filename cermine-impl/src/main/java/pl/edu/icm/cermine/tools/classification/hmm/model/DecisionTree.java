@@ -57,6 +57,14 @@ public class DecisionTree<T> {
         return right;
     }
 
+    public String getFeatureName() {
+        return featureName;
+    }
+
+    public double getFeatureCut() {
+        return featureCut;
+    }
+
     public boolean isLeaf() {
         return (left == null && right == null);
     }
@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine.tools.classification.hmm.model;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
@@ -34,6 +35,9 @@ public class DecisionTreeHMMEmissionProbability<S extends Comparable<S>> impleme
 
     private double zeroProbabilityValue;
 
+    /** tree in the feature index form, built on first use and not serialized */
+    private transient volatile CompiledDecisionTree<S> compiledTree;
+
     public DecisionTreeHMMEmissionProbability(List<HMMTrainingSample<S>> trainingElements,
                                               List<String> featureNames) {
         this(trainingElements, featureNames, 0.0);
@@ -61,19 +65,40 @@ public class DecisionTreeHMMEmissionProbability<S extends Comparable<S>> impleme
     
     @Override
     public double getProbability(S label, FeatureVector featureVector) {
-        DecisionTree<S> node = decisionTree;
-        while (node != null && !node.isLeaf()) {
-            if (node.isClassifiedLeft(featureVector)) {
-                node = node.getLeft();
-            } else {
-                node = node.getRight();
-            }
+        if (decisionTree == null) {
+            return zeroProbabilityValue;
         }
+        return getProbability(label, getCompiledTree().classify(featureVector));
+    }
 
-        if (node == null || decisionTree.getLabelCount(label) == 0 || node.getLabelCount(label) == 0) {
+    @Override
+    public double[] getProbabilities(List<S> labels, FeatureVector featureVector) {
+        double[] probabilities = new double[labels.size()];
+        if (decisionTree == null) {
+            Arrays.fill(probabilities, zeroProbabilityValue);
+            return probabilities;
+        }
+        DecisionTree<S> leaf = getCompiledTree().classify(featureVector);
+        for (int i = 0; i < probabilities.length; i++) {
+            probabilities[i] = getProbability(labels.get(i), leaf);
+        }
+        return probabilities;
+    }
+    
+    private double getProbability(S label, DecisionTree<S> leaf) {
+        if (decisionTree.getLabelCount(label) == 0 || leaf.getLabelCount(label) == 0) {
             return zeroProbabilityValue;
         }
-        return (double) node.getLabelCount(label) / (double) decisionTree.getLabelCount(label);
+        return (double) leaf.getLabelCount(label) / (double) decisionTree.getLabelCount(label);
+    }
+    
+    private CompiledDecisionTree<S> getCompiledTree() {
+        CompiledDecisionTree<S> compiled = compiledTree;
+        if (compiled == null) {
+            compiled = new CompiledDecisionTree<S>(decisionTree);
+            compiledTree = compiled;
+        }
+        return compiled;
     }
 
 }
@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine.tools.classification.hmm.model;
 
+import java.util.List;
 import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
 
 /**
@@ -36,4 +37,13 @@ public interface HMMEmissionProbability<S> {
      * @return HMM emission probability.
      */
     double getProbability(S label, FeatureVector observation);
+
+    /**
+     * Returns HMM's emission probabilities of a message for all the labels.
+     *
+     * @param labels Labels of an object.
+     * @param observation An observation emitted by an object.
+     * @return HMM emission probabilities, in the order of the labels.
+     */
+    double[] getProbabilities(List<S> labels, FeatureVector observation);
 }
@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine.tools.classification.hmm.model;
 
+import java.util.List;
 import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
 
 /**
@@ -77,4 +78,13 @@ public interface HMMProbabilityInfo<S> {
      * @return HMM's emission probability.
      */
     double getEmissionProbability(S label, FeatureVector observation);
+
+    /**
+     * Gets HMM's emission probabilities of an observation for all the labels.
+     *
+     * @param labels Labels of an object.
+     * @param observation Emitted message.
+     * @return HMM's emission probabilities, in the order of the labels.
+     */
+    double[] getEmissionProbabilities(List<S> labels, FeatureVector observation);
 }
@@ -19,6 +19,7 @@
 package pl.edu.icm.cermine.tools.classification.hmm.model;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import pl.edu.icm.cermine.structure.tools.ProbabilityDistribution;
 import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
@@ -64,4 +65,13 @@ public class SimpleHMMEmissionProbability<S> implements HMMEmissionProbability<S
         return prob;
     }
 
+    @Override
+    public double[] getProbabilities(List<S> labels, FeatureVector observation) {
+        double[] probabilities = new double[labels.size()];
+        for (int i = 0; i < probabilities.length; i++) {
+            probabilities[i] = getProbability(labels.get(i), observation);
+        }
+        return probabilities;
+    }
+
 }
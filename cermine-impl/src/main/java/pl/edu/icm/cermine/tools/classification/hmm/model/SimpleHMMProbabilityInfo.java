@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine.tools.classification.hmm.model;
 
+import java.util.List;
 import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
 
 /**
@@ -71,4 +72,9 @@ public class SimpleHMMProbabilityInfo<S> implements HMMProbabilityInfo<S> {
         return emissionProbability.getProbability(label, observation);
     }
 
+    @Override
+    public double[] getEmissionProbabilities(List<S> labels, FeatureVector observation) {
+        return emissionProbability.getProbabilities(labels, observation);
+    }
+
 }
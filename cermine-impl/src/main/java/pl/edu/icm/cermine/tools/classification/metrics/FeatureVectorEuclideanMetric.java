@@ -20,6 +20,7 @@ package pl.edu.icm.cermine.tools.classification.metrics;
 
 import com.google.common.collect.Sets;
 import java.util.List;
+import pl.edu.icm.cermine.tools.classification.features.FeatureSchema;
 import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
 
 /**
@@ -31,6 +32,14 @@ public class FeatureVectorEuclideanMetric implements FeatureVectorDistanceMetric
     @Override
     public double getDistance(FeatureVector vector1, FeatureVector vector2) {
         double sum = 0;
+        FeatureSchema schema = vector1.getSchema();
+        if (schema.hasUniqueNames() && schema.equals(vector2.getSchema())) {
+            for (int i = 0; i < vector1.size(); i++) {
+                sum += Math.pow(vector1.getValue(i) - vector2.getValue(i), 2);
+            }
+            return Math.sqrt(sum);
+        }
+
         List<String> featureNames1 = vector1.getFeatureNames();
         List<String> featureNames2 = vector2.getFeatureNames();
         
@@ -19,17 +19,22 @@
 package pl.edu.icm.cermine.tools.classification.svm;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
 import libsvm.*;
 import org.apache.commons.collections.iterators.ArrayIterator;
+import org.apache.commons.io.IOUtils;
+import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
+import pl.edu.icm.cermine.tools.ModelLoader;
+import pl.edu.icm.cermine.tools.ModelRegistry;
 import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
 import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
 import pl.edu.icm.cermine.tools.classification.general.*;
@@ -75,6 +80,13 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
 	protected svm_model model;
 	
 	protected Class<E> enumClassObj;
+
+	private volatile SVMInferenceEngine engine;
+
+	private volatile SVMCompiledModel compiledModel;
+
+	/** set for the classifiers shared through the model registry */
+	private volatile boolean readOnly;
 	
 	public SVMClassifier(FeatureVectorBuilder<S, T> featureVectorBuilder, Class<E> enumClassObj) {
 		this.featureVectorBuilder = featureVectorBuilder;
@@ -118,24 +130,145 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
 	}
 	
 	public void buildClassifier(List<TrainingSample<E>> trainingElements) {
+		checkModifiable();
 		assert trainingElements.size() > 0;
 		scaler.calculateFeatureLimits(trainingElements);
 		problem = buildDatasetForTraining(trainingElements);
 		model = libsvm.svm.svm_train(problem, param);
+		engine = SVMInferenceEngine.create(model, featureVectorBuilder.size());
+		compiledModel = null;
 	}
 	
 	public E predictLabel(S object, T context) {
-		svm_node[] instance = buildDatasetForClassification(object, context);
-		int predictedVal = (int)svm.svm_predict(model, instance);
-		return enumClassObj.getEnumConstants()[predictedVal];
+		return predictLabel(featureVectorBuilder.getFeatureVector(object, context));
 	}
 	
 	public E predictLabel(TrainingSample<E> sample) {
-		svm_node[] instance = buildDatasetForClassification(sample.getFeatureVector());
-		int predictedVal = (int)svm.svm_predict(model, instance);
+		return predictLabel(sample.getFeatureVector());
+	}
+
+	private E predictLabel(FeatureVector fv) {
+		FeatureVector scaled = scaler.scaleFeatureVector(fv);
+		SVMCompiledModel currentCompiled = getCompiledModel(scaled);
+		SVMInferenceEngine currentEngine = getEngine(scaled);
+		int predictedVal;
+		if (currentCompiled != null) {
+			predictedVal = currentCompiled.predict(scaled.getValues());
+		} else if (currentEngine != null) {
+			predictedVal = currentEngine.predict(scaled.getValues());
+		} else {
+			predictedVal = (int)svm.svm_predict(model, toNodes(scaled));
+		}
 		return enumClassObj.getEnumConstants()[predictedVal];
 	}
 
+	/**
+	 * Predicts the labels of objects sharing the context. The results are
+	 * the same as those of {@link #predictLabel(Object, Object)} called for every
+	 * object, but the kernel values are computed for blocks of objects.
+	 * Feature values of an object cannot depend on the labels predicted
+	 * for the other objects.
+	 * 
+	 * @param objects classified objects
+	 * @param context context
+	 * @return predicted labels, in the order of the objects
+	 */
+	public List<E> predictLabels(List<S> objects, T context) {
+		return predictLabels(objects, context, null, 1);
+	}
+
+	/**
+	 * Predicts the labels of objects sharing the context, computing the kernel
+	 * values in parallel on the given executor. The executor is not shut down
+	 * by the classifier.
+	 * 
+	 * @param objects classified objects
+	 * @param context context
+	 * @param executor executor for helper tasks, or null to use the calling thread only
+	 * @param parallelism maximum number of threads used by the call
+	 * @return predicted labels, in the order of the objects
+	 * @see #predictLabels(List, Object)
+	 */
+	public List<E> predictLabels(List<S> objects, T context, ExecutorService executor, int parallelism) {
+		FeatureVector[] scaled = new FeatureVector[objects.size()];
+		boolean engineUsable = true;
+		boolean compiledUsable = true;
+		for (int i = 0; i < scaled.length; i++) {
+			scaled[i] = scaler.scaleFeatureVector(featureVectorBuilder.getFeatureVector(objects.get(i), context));
+			engineUsable = engineUsable && getEngine(scaled[i]) != null;
+			compiledUsable = compiledUsable && getCompiledModel(scaled[i]) != null;
+		}
+		E[] constants = enumClassObj.getEnumConstants();
+		List<E> labels = new ArrayList<E>(scaled.length);
+		SVMInferenceEngine currentEngine = engine;
+		SVMCompiledModel currentCompiled = compiledModel;
+		if (compiledUsable && currentCompiled != null) {
+			for (FeatureVector fv : scaled) {
+				labels.add(constants[currentCompiled.predict(fv.getValues())]);
+			}
+		} else if (engineUsable && currentEngine != null) {
+			double[][] instances = new double[scaled.length][];
+			for (int i = 0; i < scaled.length; i++) {
+				instances[i] = scaled[i].getValues();
+			}
+			for (int predictedVal : currentEngine.predict(instances, executor, parallelism)) {
+				labels.add(constants[predictedVal]);
+			}
+		} else {
+			for (FeatureVector fv : scaled) {
+				labels.add(constants[(int)svm.svm_predict(model, toNodes(fv))]);
+			}
+		}
+		return labels;
+	}
+
+	/**
+	 * Switches the classifier to the compiled mode, in which the labels are
+	 * predicted by the given expansion of the model instead of the support
+	 * vectors. The compiled model is dropped when a new model is trained or loaded.
+	 * 
+	 * @param compiledModel compiled model, or null to use the support vectors again
+	 */
+	public void setCompiledModel(SVMCompiledModel compiledModel) {
+		checkModifiable();
+		this.compiledModel = compiledModel;
+	}
+
+	/**
+	 * Compiles the current model and switches the classifier to the compiled mode.
+	 * 
+	 * @return compiled model
+	 * @see SVMCompiledModel
+	 */
+	public SVMCompiledModel compileModel() {
+		checkModifiable();
+		SVMCompiledModel compiled = SVMCompiledModel.compile(model, featureVectorBuilder.size());
+		this.compiledModel = compiled;
+		return compiled;
+	}
+
+	public void loadCompiledModel(String compiledModelPath) throws IOException {
+		checkModifiable();
+		this.compiledModel = SVMCompiledModel.read(new File(compiledModelPath));
+	}
+
+	private SVMCompiledModel getCompiledModel(FeatureVector scaled) {
+		SVMCompiledModel currentCompiled = compiledModel;
+		if (currentCompiled == null || currentCompiled.getDimensions() != scaled.size()) {
+			return null;
+		}
+		return currentCompiled;
+	}
+
+	private SVMInferenceEngine getEngine(FeatureVector scaled) {
+		SVMInferenceEngine currentEngine = engine;
+		if (currentEngine == null || currentEngine.getModel() != model
+				|| currentEngine.getDimensions() != scaled.size()) {
+			return null;
+		}
+		return currentEngine;
+	}
+
     public Map<E, Double> predictProbabilities(S object, T context) {
         svm_node[] instance = buildDatasetForClassification(object, context);
         double[] probEstimates = new double[enumClassObj.getEnumConstants().length];
@@ -157,13 +290,11 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
 		int elemIdx = 0;
 		for(TrainingSample<E> trainingElem : trainingElements) {
 			FeatureVector scaledFV = scaler.scaleFeatureVector(trainingElem.getFeatureVector());
-			int featureIdx = 0;
-			for (double val: scaledFV.getValues()) {
+			for (int featureIdx = 0; featureIdx < scaledFV.size(); ++featureIdx) {
 				svm_node cur = new svm_node();
 				cur.index = featureIdx;
-				cur.value = val;
+				cur.value = scaledFV.getValue(featureIdx);
 				svmProblem.x[elemIdx][featureIdx] = cur;
-				++featureIdx;
 			}
 			svmProblem.y[elemIdx] = trainingElem.getLabel().ordinal();
 			++elemIdx;
@@ -172,15 +303,16 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
 	}
 	
 	protected svm_node[] buildDatasetForClassification(FeatureVector fv) {
-		FeatureVector scaled = scaler.scaleFeatureVector(fv);
+		return toNodes(scaler.scaleFeatureVector(fv));
+	}
+
+	svm_node[] toNodes(FeatureVector scaled) {
 		svm_node[] ret = new svm_node[featureVectorBuilder.size()];
-		int featureIdx = 0;
-		for (double val: scaled.getValues()) {
+		for (int featureIdx = 0; featureIdx < scaled.size(); ++featureIdx) {
 			svm_node cur = new svm_node();
 			cur.index = featureIdx;
-			cur.value = val;
+			cur.value = scaled.getValue(featureIdx);
 			ret[featureIdx] = cur;
-			++featureIdx;
 		}
 		return ret;
 	}
@@ -248,6 +380,7 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
 	}
 	
 	public void loadModelFromFile(BufferedReader modelFile, BufferedReader rangeFile) throws IOException {
+		checkModifiable();
         if (rangeFile == null) {
             this.scaler = new FeatureVectorScalerNoOp();
         } else {
@@ -264,6 +397,8 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
 		}
 
 		this.model = svm.svm_load_model(modelFile);
+		this.engine = SVMInferenceEngine.create(model, featureVectorBuilder.size());
+		this.compiledModel = null;
 	}
 
 	public void saveModel(String modelPath) throws IOException {
@@ -285,8 +420,158 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
         }
 	}
 
+    /**
+     * Estimates the heap size of the loaded model (support vectors,
+     * coefficients and scaling limits).
+     * 
+     * @return approximate size in bytes
+     */
+    public long estimateModelSize() {
+        if (model == null) {
+            return 0;
+        }
+        final long arrayHeader = 16;
+        final long reference = 8;
+        final long nodeSize = 24;
+        long size = 0;
+        if (model.SV != null) {
+            size += arrayHeader + reference * model.SV.length;
+            for (svm_node[] row : model.SV) {
+                size += arrayHeader + (reference + nodeSize) * row.length;
+            }
+        }
+        if (model.sv_coef != null) {
+            size += arrayHeader + reference * model.sv_coef.length;
+            for (double[] row : model.sv_coef) {
+                size += arrayHeader + 8 * row.length;
+            }
+        }
+        if (model.rho != null) {
+            size += arrayHeader + 8 * model.rho.length;
+        }
+        size += 2 * (arrayHeader + 4 * model.nr_class);
+        SVMCompiledModel currentCompiled = compiledModel;
+        if (currentCompiled != null) {
+            size += currentCompiled.estimateSize();
+        }
+        if (scaler instanceof FeatureVectorScalerImpl) {
+            size += arrayHeader + (reference + 32) * ((FeatureVectorScalerImpl) scaler).getLimits().length;
+        }
+        return size;
+    }
+
 	public void setParameter(svm_parameter param) {
+		checkModifiable();
 		this.param = param;
 	}
 
+	/**
+	 * Returns whether the classifier is shared through the model registry.
+	 * The methods changing the model or the way it is used throw
+	 * {@link UnsupportedOperationException} for such classifiers.
+	 * 
+	 * @return true if the classifier cannot be modified
+	 */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	private void checkModifiable() {
+		if (readOnly) {
+			throw new UnsupportedOperationException("Classifier shared by the model registry cannot be modified!");
+		}
+	}
+
+	/**
+	 * Creates a classifier from the model and range files.
+	 * 
+	 * @param <C> classifier type
+	 */
+	protected interface ClassifierFactory<C extends SVMClassifier<?, ?, ?>> {
+		C create(BufferedReader modelFile, BufferedReader rangeFile) throws AnalysisException, IOException;
+	}
+
+	/**
+	 * Returns the read-only classifier with the model read from the given resources,
+	 * shared by all the extractors.
+	 * 
+	 * @param <C> classifier type
+	 * @param type classifier class, used to find the resources
+	 * @param modelResource model resource path
+	 * @param rangeResource range resource path
+	 * @param factory factory creating the classifier
+	 * @return shared classifier instance
+	 * @throws AnalysisException 
+	 */
+	protected static <C extends SVMClassifier<?, ?, ?>> C getSharedInstance(final Class<C> type,
+			final String modelResource, final String rangeResource, final ClassifierFactory<C> factory)
+			throws AnalysisException {
+		return ModelRegistry.getDefault().getModel(ModelRegistry.resourceKey(type, modelResource, rangeResource),
+				new SharedClassifierLoader<C>() {
+
+					@Override
+					protected C create() throws AnalysisException, IOException {
+						BufferedReader modelReader = new BufferedReader(new InputStreamReader(type.getResourceAsStream(modelResource)));
+						BufferedReader rangeReader = new BufferedReader(new InputStreamReader(type.getResourceAsStream(rangeResource)));
+						return factory.create(modelReader, rangeReader);
+					}
+				});
+	}
+
+	/**
+	 * Returns the read-only classifier with the model read from the given streams.
+	 * Classifiers are shared by all the extractors using the same model and range files.
+	 * 
+	 * @param <C> classifier type
+	 * @param type classifier class
+	 * @param model model stream
+	 * @param range range stream
+	 * @param factory factory creating the classifier
+	 * @return shared classifier instance
+	 * @throws AnalysisException 
+	 */
+	protected static <C extends SVMClassifier<?, ?, ?>> C getSharedInstance(Class<C> type, 
+			InputStream model, InputStream range, final ClassifierFactory<C> factory) throws AnalysisException {
+		final byte[] modelBytes;
+		final byte[] rangeBytes;
+		try {
+			modelBytes = IOUtils.toByteArray(model);
+			rangeBytes = IOUtils.toByteArray(range);
+		} catch (IOException ex) {
+			throw new AnalysisException("Cannot create SVM classifier!", ex);
+		}
+		return ModelRegistry.getDefault().getModel(ModelRegistry.checksumKey(type, modelBytes, rangeBytes),
+				new SharedClassifierLoader<C>() {
+
+					@Override
+					protected C create() throws AnalysisException, IOException {
+						BufferedReader modelReader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(modelBytes)));
+						BufferedReader rangeReader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(rangeBytes)));
+						return factory.create(modelReader, rangeReader);
+					}
+				});
+	}
+
+	private abstract static class SharedClassifierLoader<C extends SVMClassifier<?, ?, ?>> implements ModelLoader<C> {
+
+		protected abstract C create() throws AnalysisException, IOException;
+
+		@Override
+		public C load() throws AnalysisException {
+			C classifier;
+			try {
+				classifier = create();
+			} catch (IOException ex) {
+				throw new AnalysisException("Cannot create SVM classifier!", ex);
+			}
+			((SVMClassifier<?, ?, ?>) classifier).readOnly = true;
+			return classifier;
+		}
+
+		@Override
+		public long estimateSize(C model) {
+			return model.estimateModelSize();
+		}
+	}
+
 }
@@ -0,0 +1,403 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.svm;
+
+import java.io.*;
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+
+/**
+ * Classification model with a polynomial kernel of degree at most 3 (or a
+ * linear kernel) expanded into explicit weights of the feature monomials.
+ * <p>
+ * The decision value of a pair of classes is a sum over support vectors of
+ * coef * (gamma * x.sv + coef0)^degree. Expanding the power, it becomes a
+ * polynomial in the instance's features, whose weights are computed once from
+ * the support vectors. The cost of a prediction depends on the number of
+ * features and classes, but not on the number of support vectors.
+ * <p>
+ * The weights are summed in a different order than the kernel values, so the
+ * decision values differ from libsvm's by rounding errors and an instance lying
+ * very close to the decision boundary may get a different label.
+ */
+public final class SVMCompiledModel {
+
+    private static final int MAGIC = 0x53564d43;
+
+    private static final int VERSION = 1;
+
+    private final int dimensions;
+
+    private final int degree;
+
+    private final int[] label;
+
+    /** Constant term of every pair of classes, offset included. */
+    private final double[] constants;
+
+    /** Weights of the monomials of every pair, degree by degree, in packed order. */
+    private final double[][] weights;
+
+    private SVMCompiledModel(int dimensions, int degree, int[] label, double[] constants, double[][] weights) {
+        this.dimensions = dimensions;
+        this.degree = degree;
+        this.label = label;
+        this.constants = constants;
+        this.weights = weights;
+    }
+
+    /**
+     * Checks whether the model can be compiled.
+     * 
+     * @param model libsvm model
+     * @return true if the model is a C-SVC or nu-SVC model with a linear kernel
+     * or a polynomial kernel of degree at most 3
+     */
+    public static boolean isSupported(svm_model model) {
+        svm_parameter param = model.param;
+        if (param.svm_type != svm_parameter.C_SVC && param.svm_type != svm_parameter.NU_SVC) {
+            return false;
+        }
+        return param.kernel_type == svm_parameter.LINEAR
+                || (param.kernel_type == svm_parameter.POLY && param.degree >= 0 && param.degree <= 3);
+    }
+
+    /**
+     * Expands the model's kernel.
+     * 
+     * @param model libsvm model
+     * @param dimensions number of features of the classified instances
+     * @return compiled model
+     */
+    public static SVMCompiledModel compile(svm_model model, int dimensions) {
+        if (!isSupported(model)) {
+            throw new IllegalArgumentException("Only models with a linear kernel or a polynomial kernel "
+                    + "of degree at most 3 can be compiled!");
+        }
+        svm_parameter param = model.param;
+        boolean linear = param.kernel_type == svm_parameter.LINEAR;
+        int degree = linear ? 1 : param.degree;
+        double gamma = linear ? 1 : param.gamma;
+        double coef0 = linear ? 0 : param.coef0;
+        
+        // scale of the power of x.sv in (gamma * x.sv + coef0)^degree
+        double[] termScale = new double[degree + 1];
+        for (int m = 0; m <= degree; m++) {
+            termScale[m] = binomial(degree, m) * Math.pow(gamma, m) * Math.pow(coef0, degree - m);
+        }
+        
+        int nrClass = model.nr_class;
+        int[] start = new int[nrClass];
+        for (int i = 1; i < nrClass; i++) {
+            start[i] = start[i - 1] + model.nSV[i - 1];
+        }
+        int pairs = nrClass * (nrClass - 1) / 2;
+        int[][] pairIndex = new int[nrClass][nrClass];
+        int p = 0;
+        for (int i = 0; i < nrClass; i++) {
+            for (int j = i + 1; j < nrClass; j++) {
+                pairIndex[i][j] = p;
+                pairIndex[j][i] = p;
+                p++;
+            }
+        }
+        
+        int monomials = monomialCount(dimensions, degree);
+        double[] constants = new double[pairs];
+        double[][] weights = new double[pairs][monomials];
+        double[] sv = new double[dimensions];
+        double[] svMonomials = new double[monomials];
+        for (int c = 0; c < nrClass; c++) {
+            for (int k = start[c]; k < start[c] + model.nSV[c]; k++) {
+                toDense(model.SV[k], sv);
+                computeMonomials(sv, dimensions, degree, svMonomials);
+                for (int o = 0; o < nrClass; o++) {
+                    if (o == c) {
+                        continue;
+                    }
+                    double coef = c < o ? model.sv_coef[o - 1][k] : model.sv_coef[o][k];
+                    constants[pairIndex[c][o]] += coef;
+                    double[] w = weights[pairIndex[c][o]];
+                    for (int m = 0; m < monomials; m++) {
+                        w[m] += coef * svMonomials[m];
+                    }
+                }
+            }
+        }
+        
+        double[] multiplicity = monomialMultiplicities(dimensions, degree);
+        double[] scale = new double[monomials];
+        int offset = 0;
+        for (int m = 1; m <= degree; m++) {
+            int count = monomialCount(dimensions, m) - monomialCount(dimensions, m - 1);
+            for (int i = offset; i < offset + count; i++) {
+                scale[i] = termScale[m] * multiplicity[i];
+            }
+            offset += count;
+        }
+        for (p = 0; p < pairs; p++) {
+            constants[p] = constants[p] * termScale[0] - model.rho[p];
+            for (int m = 0; m < monomials; m++) {
+                weights[p][m] *= scale[m];
+            }
+        }
+        return new SVMCompiledModel(dimensions, degree, model.label.clone(), constants, weights);
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    public int getDegree() {
+        return degree;
+    }
+
+    /**
+     * Computes the decision values of all the pairs of classes, in libsvm's order.
+     * 
+     * @param instance scaled feature values
+     * @return decision values
+     */
+    public double[] getDecisionValues(double[] instance) {
+        double[] monomials = new double[weights.length == 0 ? 0 : weights[0].length];
+        computeMonomials(instance, dimensions, degree, monomials);
+        double[] values = new double[constants.length];
+        for (int p = 0; p < constants.length; p++) {
+            double sum = constants[p];
+            double[] w = weights[p];
+            for (int m = 0; m < w.length; m++) {
+                sum += w[m] * monomials[m];
+            }
+            values[p] = sum;
+        }
+        return values;
+    }
+
+    /**
+     * Predicts the label of the instance by one-against-one voting.
+     * 
+     * @param instance scaled feature values
+     * @return model label
+     */
+    public int predict(double[] instance) {
+        double[] values = getDecisionValues(instance);
+        int nrClass = label.length;
+        int[] vote = new int[nrClass];
+        int p = 0;
+        for (int i = 0; i < nrClass; i++) {
+            for (int j = i + 1; j < nrClass; j++) {
+                if (values[p++] > 0) {
+                    ++vote[i];
+                } else {
+                    ++vote[j];
+                }
+            }
+        }
+        int voteMaxIdx = 0;
+        for (int i = 1; i < nrClass; i++) {
+            if (vote[i] > vote[voteMaxIdx]) {
+                voteMaxIdx = i;
+            }
+        }
+        return label[voteMaxIdx];
+    }
+
+    /**
+     * @return approximate heap size of the weights in bytes
+     */
+    public long estimateSize() {
+        long size = 16 + 8 * constants.length + 16 + 4 * label.length;
+        for (double[] w : weights) {
+            size += 16 + 8 * w.length;
+        }
+        return size;
+    }
+
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(dimensions);
+        out.writeInt(degree);
+        out.writeInt(label.length);
+        for (int l : label) {
+            out.writeInt(l);
+        }
+        for (int p = 0; p < constants.length; p++) {
+            out.writeDouble(constants[p]);
+            for (double w : weights[p]) {
+                out.writeDouble(w);
+            }
+        }
+        out.flush();
+    }
+
+    public void write(File file) throws IOException {
+        OutputStream stream = new FileOutputStream(file);
+        try {
+            write(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    public static SVMCompiledModel read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a compiled SVM model!");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported compiled SVM model version: " + version);
+        }
+        int dimensions = in.readInt();
+        int degree = in.readInt();
+        int nrClass = in.readInt();
+        if (dimensions < 0 || degree < 0 || degree > 3 || nrClass < 1) {
+            throw new IOException("Corrupted compiled SVM model!");
+        }
+        int[] label = new int[nrClass];
+        for (int i = 0; i < nrClass; i++) {
+            label[i] = in.readInt();
+        }
+        int pairs = nrClass * (nrClass - 1) / 2;
+        int monomials = monomialCount(dimensions, degree);
+        double[] constants = new double[pairs];
+        double[][] weights = new double[pairs][monomials];
+        for (int p = 0; p < pairs; p++) {
+            constants[p] = in.readDouble();
+            for (int m = 0; m < monomials; m++) {
+                weights[p][m] = in.readDouble();
+            }
+        }
+        return new SVMCompiledModel(dimensions, degree, label, constants, weights);
+    }
+
+    public static SVMCompiledModel read(File file) throws IOException {
+        InputStream stream = new FileInputStream(file);
+        try {
+            return read(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static void toDense(svm_node[] nodes, double[] values) {
+        java.util.Arrays.fill(values, 0);
+        for (svm_node node : nodes) {
+            if (node.index >= 0 && node.index < values.length) {
+                values[node.index] = node.value;
+            }
+        }
+    }
+
+    /**
+     * Number of monomials of degree 1 to the given degree, without repetitions.
+     */
+    private static int monomialCount(int dimensions, int degree) {
+        int count = 0;
+        if (degree >= 1) {
+            count += dimensions;
+        }
+        if (degree >= 2) {
+            count += dimensions * (dimensions + 1) / 2;
+        }
+        if (degree >= 3) {
+            count += dimensions * (dimensions + 1) * (dimensions + 2) / 6;
+        }
+        return count;
+    }
+
+    /**
+     * Computes the monomials x_i, x_i x_j (i &lt;= j) and x_i x_j x_l (i &lt;= j &lt;= l),
+     * degree by degree, in lexicographic order of indices.
+     */
+    private static void computeMonomials(double[] x, int dimensions, int degree, double[] monomials) {
+        int m = 0;
+        if (degree >= 1) {
+            for (int i = 0; i < dimensions; i++) {
+                monomials[m++] = x[i];
+            }
+        }
+        if (degree >= 2) {
+            for (int i = 0; i < dimensions; i++) {
+                for (int j = i; j < dimensions; j++) {
+                    monomials[m++] = x[i] * x[j];
+                }
+            }
+        }
+        if (degree >= 3) {
+            for (int i = 0; i < dimensions; i++) {
+                for (int j = i; j < dimensions; j++) {
+                    double xij = x[i] * x[j];
+                    for (int l = j; l < dimensions; l++) {
+                        monomials[m++] = xij * x[l];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of index orderings giving every monomial, that is the number of
+     * times the monomial appears in the expansion of (x.sv)^degree.
+     */
+    private static double[] monomialMultiplicities(int dimensions, int degree) {
+        double[] multiplicity = new double[monomialCount(dimensions, degree)];
+        int m = 0;
+        if (degree >= 1) {
+            for (int i = 0; i < dimensions; i++) {
+                multiplicity[m++] = 1;
+            }
+        }
+        if (degree >= 2) {
+            for (int i = 0; i < dimensions; i++) {
+                for (int j = i; j < dimensions; j++) {
+                    multiplicity[m++] = i == j ? 1 : 2;
+                }
+            }
+        }
+        if (degree >= 3) {
+            for (int i = 0; i < dimensions; i++) {
+                for (int j = i; j < dimensions; j++) {
+                    for (int l = j; l < dimensions; l++) {
+                        if (i == j && j == l) {
+                            multiplicity[m++] = 1;
+                        } else if (i == j || j == l) {
+                            multiplicity[m++] = 3;
+                        } else {
+                            multiplicity[m++] = 6;
+                        }
+                    }
+                }
+            }
+        }
+        return multiplicity;
+    }
+
+    private static double binomial(int n, int k) {
+        double result = 1;
+        for (int i = 1; i <= k; i++) {
+            result = result * (n - k + i) / i;
+        }
+        return result;
+    }
+
+}
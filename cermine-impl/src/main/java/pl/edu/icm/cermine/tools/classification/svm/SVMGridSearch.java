@@ -0,0 +1,637 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.svm;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_parameter;
+import libsvm.svm_problem;
+import org.apache.commons.cli.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.edu.icm.cermine.evaluation.ClassificationResults;
+import pl.edu.icm.cermine.evaluation.tools.PenaltyCalculator;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.structure.SVMInitialZoneClassifier;
+import pl.edu.icm.cermine.structure.SVMMetadataZoneClassifier;
+import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.model.BxZone;
+import pl.edu.icm.cermine.structure.model.BxZoneLabel;
+import pl.edu.icm.cermine.structure.model.BxZoneLabelCategory;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
+import pl.edu.icm.cermine.tools.classification.general.ClassificationUtils;
+import pl.edu.icm.cermine.tools.classification.general.TrainingSample;
+import pl.edu.icm.cermine.tools.classification.general.TrainingSamplesGenerator;
+
+/**
+ * Cross-validated grid search of SVM zone classifier parameters.
+ * <p>
+ * The documents are divided into folds once, all the samples of a document
+ * belong to the same fold. For every fold the training samples
+ * are scaled and converted to a libsvm problem, and the test samples are scaled,
+ * only once, and these data are shared read-only by the trainings of all
+ * the parameter combinations. The trainings of all the combinations in all 
+ * the folds are run concurrently on a bounded pool of threads, with the most
+ * expensive ones (highest C) started first. The total size of the kernel
+ * caches is limited, each running training gets its part of the budget.
+ * <p>
+ * The classifiers are trained as by {@link SVMInitialBuilder} and 
+ * {@link SVMMetadataBuilder}, with class weights inversely proportional
+ * to the class sizes.
+ */
+public class SVMGridSearch {
+    
+    private static final Logger log = LoggerFactory.getLogger(SVMGridSearch.class);
+    
+    /** default total size of the kernel caches, in megabytes */
+    public static final double DEFAULT_CACHE_SIZE = 1024;
+    
+    public static final int DEFAULT_FOLDS = 5;
+    
+    private static final String[] KERNEL_NAMES = {"linear", "poly", "rbf", "sigmoid"};
+    
+    public enum Metric {
+        ACCURACY,
+        MACRO_F1
+    }
+    
+    private final FeatureVectorBuilder<BxZone, BxPage> featureVectorBuilder;
+    
+    private int folds = DEFAULT_FOLDS;
+    
+    private int threads = Runtime.getRuntime().availableProcessors();
+    
+    private double cacheSize = DEFAULT_CACHE_SIZE;
+    
+    private long seed = 0;
+    
+    private Metric metric = Metric.ACCURACY;
+
+    public SVMGridSearch(FeatureVectorBuilder<BxZone, BxPage> featureVectorBuilder) {
+        this.featureVectorBuilder = featureVectorBuilder;
+    }
+    
+    /**
+     * Parameters of a single classifier.
+     */
+    public static final class GridPoint {
+        
+        private final int kernelType;
+        private final double C;
+        private final double gamma;
+        private final int degree;
+
+        /**
+         * @param kernelType libsvm kernel type, precomputed kernels are not supported
+         * @param C cost
+         * @param gamma kernel gamma
+         * @param degree polynomial kernel degree
+         */
+        public GridPoint(int kernelType, double C, double gamma, int degree) {
+            if (kernelType < 0 || kernelType >= KERNEL_NAMES.length) {
+                throw new IllegalArgumentException("Unsupported kernel type: " + kernelType);
+            }
+            this.kernelType = kernelType;
+            this.C = C;
+            this.gamma = gamma;
+            this.degree = degree;
+        }
+
+        public int getKernelType() {
+            return kernelType;
+        }
+
+        public double getC() {
+            return C;
+        }
+
+        public double getGamma() {
+            return gamma;
+        }
+
+        public int getDegree() {
+            return degree;
+        }
+        
+        svm_parameter toParameter(List<TrainingSample<BxZoneLabel>> trainingSamples, double cacheSize) {
+            PenaltyCalculator pc = new PenaltyCalculator(trainingSamples);
+            int[] intClasses = new int[pc.getClasses().size()];
+            double[] classesWeights = new double[pc.getClasses().size()];
+            int labelIdx = 0;
+            for (BxZoneLabel label : pc.getClasses()) {
+                intClasses[labelIdx] = label.ordinal();
+                classesWeights[labelIdx] = pc.getPenaltyWeigth(label);
+                ++labelIdx;
+            }
+            
+            svm_parameter param = SVMZoneClassifier.getDefaultParam();
+            param.svm_type = svm_parameter.C_SVC;
+            param.kernel_type = kernelType;
+            param.C = C;
+            param.gamma = gamma;
+            param.degree = degree;
+            param.cache_size = cacheSize;
+            param.weight = classesWeights;
+            param.weight_label = intClasses;
+            param.nr_weight = intClasses.length;
+            return param;
+        }
+
+        @Override
+        public String toString() {
+            return KERNEL_NAMES[kernelType] + " C=" + C + " gamma=" + gamma + " degree=" + degree;
+        }
+    }
+    
+    /**
+     * Cross-validation results of a grid point.
+     */
+    public static final class Result {
+        
+        private final GridPoint point;
+        
+        private final ClassificationResults results = new ClassificationResults();
+        
+        /** sum of the training times of all the folds, in milliseconds */
+        private long trainingTime;
+
+        Result(GridPoint point) {
+            this.point = point;
+        }
+
+        public GridPoint getPoint() {
+            return point;
+        }
+
+        /**
+         * @return results summed over all the folds
+         */
+        public ClassificationResults getResults() {
+            return results;
+        }
+
+        public long getTrainingTime() {
+            return trainingTime;
+        }
+        
+        public double getScore(Metric metric) {
+            return metric == Metric.ACCURACY ? results.getAccuracy() : results.getMacroF1();
+        }
+    }
+    
+    /**
+     * Builds the grid of all the combinations of the given values. Gamma 
+     * is not used by the linear kernel and degree is used only by the polynomial
+     * kernel, so the combinations differing only in unused parameters are skipped.
+     * 
+     * @param kernelTypes libsvm kernel types, precomputed kernels are not supported
+     * @param Cs values of C
+     * @param gammas values of gamma
+     * @param degrees values of degree
+     * @return grid points
+     */
+    public static List<GridPoint> grid(int[] kernelTypes, double[] Cs, double[] gammas, int[] degrees) {
+        List<GridPoint> points = new ArrayList<GridPoint>();
+        for (int kernelType : kernelTypes) {
+            double[] kernelGammas = kernelType == svm_parameter.LINEAR ? new double[]{gammas[0]} : gammas;
+            int[] kernelDegrees = kernelType == svm_parameter.POLY ? degrees : new int[]{degrees[0]};
+            for (double C : Cs) {
+                for (double gamma : kernelGammas) {
+                    for (int degree : kernelDegrees) {
+                        points.add(new GridPoint(kernelType, C, gamma, degree));
+                    }
+                }
+            }
+        }
+        return points;
+    }
+    
+    /**
+     * Cross-validates the classifiers of all the grid points. The document
+     * boundaries of the samples are not known, so the samples are divided 
+     * into folds as contiguous blocks, which keeps all the samples
+     * of a document together, except at the boundaries of the blocks.
+     * 
+     * @param samples labelled samples, in document order
+     * @param points grid points
+     * @return results in the order of the grid points
+     * @throws AnalysisException if a classifier cannot be trained or the search is interrupted
+     */
+    public List<Result> search(List<TrainingSample<BxZoneLabel>> samples, List<GridPoint> points) throws AnalysisException {
+        if (samples.size() < folds) {
+            throw new AnalysisException("Not enough samples for " + folds + " folds!");
+        }
+        List<List<TrainingSample<BxZoneLabel>>> blocks = new ArrayList<List<TrainingSample<BxZoneLabel>>>(folds);
+        for (int fold = 0; fold < folds; fold++) {
+            blocks.add(samples.subList(fold * samples.size() / folds, (fold + 1) * samples.size() / folds));
+        }
+        return searchDocuments(blocks, points);
+    }
+    
+    /**
+     * Cross-validates the classifiers of all the grid points. The documents
+     * are divided into folds, so the samples of a document are never used
+     * for both training and testing.
+     * 
+     * @param documents labelled samples of the documents
+     * @param points grid points
+     * @return results in the order of the grid points
+     * @throws AnalysisException if a classifier cannot be trained or the search is interrupted
+     */
+    public List<Result> searchDocuments(List<List<TrainingSample<BxZoneLabel>>> documents, List<GridPoint> points) 
+            throws AnalysisException {
+        if (documents.size() < folds) {
+            throw new AnalysisException("Not enough documents for " + folds + " folds!");
+        }
+        List<List<List<TrainingSample<BxZoneLabel>>>> foldDocuments = divide(documents, folds, seed);
+        final List<Fold> foldData = new ArrayList<Fold>(folds);
+        for (int fold = 0; fold < folds; fold++) {
+            List<TrainingSample<BxZoneLabel>> trainingSamples = new ArrayList<TrainingSample<BxZoneLabel>>();
+            List<TrainingSample<BxZoneLabel>> testSamples = new ArrayList<TrainingSample<BxZoneLabel>>();
+            for (int i = 0; i < folds; i++) {
+                for (List<TrainingSample<BxZoneLabel>> document : foldDocuments.get(i)) {
+                    if (i == fold) {
+                        testSamples.addAll(document);
+                    } else {
+                        trainingSamples.addAll(document);
+                    }
+                }
+            }
+            foldData.add(new Fold(trainingSamples, testSamples));
+        }
+        
+        final List<Result> results = new ArrayList<Result>(points.size());
+        List<TrainingTask> tasks = new ArrayList<TrainingTask>(points.size() * folds);
+        for (GridPoint point : points) {
+            Result result = new Result(point);
+            results.add(result);
+            for (int fold = 0; fold < folds; fold++) {
+                tasks.add(new TrainingTask(result, foldData.get(fold)));
+            }
+        }
+        Collections.sort(tasks, new Comparator<TrainingTask>() {
+
+            @Override
+            public int compare(TrainingTask t1, TrainingTask t2) {
+                return Double.compare(t2.result.point.C, t1.result.point.C);
+            }
+        });
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisException("Grid search interrupted!", ex);
+        } catch (ExecutionException ex) {
+            throw new AnalysisException("Cannot train classifier!", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+    
+    /**
+     * @param results grid search results
+     * @return the result with the highest score
+     */
+    public Result getBest(List<Result> results) {
+        Result best = null;
+        for (Result result : results) {
+            if (best == null || result.getScore(metric) > best.getScore(metric)) {
+                best = result;
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * Trains the classifier with the parameters of the grid point on all the samples.
+     * 
+     * @param samples labelled samples
+     * @param point grid point
+     * @return trained classifier
+     */
+    public SVMZoneClassifier train(List<TrainingSample<BxZoneLabel>> samples, GridPoint point) {
+        SVMZoneClassifier classifier = new SVMZoneClassifier(featureVectorBuilder);
+        classifier.setParameter(point.toParameter(samples, cacheSize));
+        classifier.buildClassifier(samples);
+        return classifier;
+    }
+    
+    /**
+     * Writes the results as a tab-separated table.
+     * 
+     * @param results grid search results
+     * @param writer output
+     * @throws IOException 
+     */
+    public static void writeResults(List<Result> results, Writer writer) throws IOException {
+        writer.write("kernel\tC\tgamma\tdegree\taccuracy\tmacro_f1\ttraining_time_ms\n");
+        for (Result result : results) {
+            GridPoint point = result.getPoint();
+            writer.write(KERNEL_NAMES[point.getKernelType()] + "\t" + point.getC() + "\t" + point.getGamma() 
+                    + "\t" + point.getDegree() + "\t" + String.format(Locale.US, "%.5f", result.getResults().getAccuracy())
+                    + "\t" + String.format(Locale.US, "%.5f", result.getResults().getMacroF1())
+                    + "\t" + result.getTrainingTime() + "\n");
+        }
+        writer.flush();
+    }
+    
+    /**
+     * Divides the documents randomly into folds of sizes differing by at most one.
+     * 
+     * @param documents documents
+     * @param folds number of folds
+     * @param seed seed of the random division
+     * @return documents of the folds
+     */
+    static <T> List<List<T>> divide(List<T> documents, int folds, long seed) {
+        List<T> shuffled = new ArrayList<T>(documents);
+        Collections.shuffle(shuffled, new Random(seed));
+        List<List<T>> foldDocuments = new ArrayList<List<T>>(folds);
+        for (int fold = 0; fold < folds; fold++) {
+            foldDocuments.add(new ArrayList<T>());
+        }
+        for (int i = 0; i < shuffled.size(); i++) {
+            foldDocuments.get(i % folds).add(shuffled.get(i));
+        }
+        return foldDocuments;
+    }
+    
+    /**
+     * Scaled data of a single fold, shared by the trainings of all the grid points.
+     */
+    private final class Fold {
+        
+        private final List<TrainingSample<BxZoneLabel>> trainingSamples;
+        
+        private final BxZoneLabel[] testLabels;
+        
+        private final SVMZoneClassifier classifier;
+        
+        private final svm_problem problem;
+        
+        private final FeatureVector[] testVectors;
+        
+        private final double[][] testInstances;
+
+        Fold(List<TrainingSample<BxZoneLabel>> trainingSamples, List<TrainingSample<BxZoneLabel>> testSamples) {
+            this.trainingSamples = trainingSamples;
+            this.testLabels = new BxZoneLabel[testSamples.size()];
+            this.classifier = new SVMZoneClassifier(featureVectorBuilder);
+            classifier.scaler.calculateFeatureLimits(trainingSamples);
+            this.problem = classifier.buildDatasetForTraining(trainingSamples);
+            this.testVectors = new FeatureVector[testSamples.size()];
+            this.testInstances = new double[testSamples.size()][];
+            for (int i = 0; i < testVectors.length; i++) {
+                testLabels[i] = testSamples.get(i).getLabel();
+                testVectors[i] = classifier.scaler.scaleFeatureVector(testSamples.get(i).getFeatureVector());
+                testInstances[i] = testVectors[i].getValues();
+            }
+        }
+        
+        int[] predict(svm_model model) {
+            SVMInferenceEngine engine = SVMInferenceEngine.create(model, featureVectorBuilder.size());
+            if (engine != null) {
+                return engine.predict(testInstances);
+            }
+            int[] predicted = new int[testVectors.length];
+            for (int i = 0; i < testVectors.length; i++) {
+                predicted[i] = (int) svm.svm_predict(model, classifier.toNodes(testVectors[i]));
+            }
+            return predicted;
+        }
+    }
+    
+    private final class TrainingTask implements Callable<Void> {
+        
+        private final Result result;
+        
+        private final Fold fold;
+
+        TrainingTask(Result result, Fold fold) {
+            this.result = result;
+            this.fold = fold;
+        }
+
+        @Override
+        public Void call() throws AnalysisException {
+            svm_parameter param = result.point.toParameter(fold.trainingSamples, cacheSize / threads);
+            String error = svm.svm_check_parameter(fold.problem, param);
+            if (error != null) {
+                throw new AnalysisException("Invalid SVM parameters " + result.point + ": " + error);
+            }
+            long start = System.currentTimeMillis();
+            svm_model model = svm.svm_train(fold.problem, param);
+            long time = System.currentTimeMillis() - start;
+            
+            BxZoneLabel[] labels = BxZoneLabel.values();
+            ClassificationResults foldResults = new ClassificationResults();
+            int[] predicted = fold.predict(model);
+            for (int i = 0; i < predicted.length; i++) {
+                foldResults.addOneZoneResult(fold.testLabels[i], labels[predicted[i]]);
+            }
+            synchronized (result) {
+                result.results.add(foldResults);
+                result.trainingTime += time;
+            }
+            log.info("Fold trained for " + result.point + " in " + time + " ms, accuracy " + foldResults.getAccuracy());
+            return null;
+        }
+    }
+    
+    public int getFolds() {
+        return folds;
+    }
+
+    public void setFolds(int folds) {
+        if (folds < 2) {
+            throw new IllegalArgumentException("At least two folds are needed!");
+        }
+        this.folds = folds;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive!");
+        }
+        this.threads = threads;
+    }
+
+    public double getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * @param cacheSize total size of the kernel caches of the concurrent trainings, in megabytes
+     */
+    public void setCacheSize(double cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @param seed seed of the random division of the documents into folds
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public Metric getMetric() {
+        return metric;
+    }
+
+    /**
+     * @param metric measure used to choose the best grid point
+     */
+    public void setMetric(Metric metric) {
+        this.metric = metric;
+    }
+    
+    private static double[] parseDoubles(String values) {
+        String[] parts = values.split(",");
+        double[] ret = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            ret[i] = Double.parseDouble(parts[i].trim());
+        }
+        return ret;
+    }
+    
+    private static int[] parseInts(String values) {
+        String[] parts = values.split(",");
+        int[] ret = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            ret[i] = Integer.parseInt(parts[i].trim());
+        }
+        return ret;
+    }
+    
+    public static void main(String[] args) throws ParseException, AnalysisException, IOException {
+        Options options = new Options();
+        options.addOption("input", true, "input directory or sample file");
+        options.addOption("output", true, "output path of the best model");
+        options.addOption("type", true, "classifier type: initial or metadata");
+        options.addOption("kernel", true, "comma-separated kernel types");
+        options.addOption("g", true, "comma-separated values of gamma");
+        options.addOption("C", true, "comma-separated values of C");
+        options.addOption("degree", true, "comma-separated values of degree");
+        options.addOption("fold", true, "number of folds, " + DEFAULT_FOLDS + " by default");
+        options.addOption("threads", true, "number of threads, the number of processors by default");
+        options.addOption("cache", true, "total size of kernel caches in MB, " + DEFAULT_CACHE_SIZE + " by default");
+        options.addOption("seed", true, "seed of the division into folds");
+        options.addOption("metric", true, "accuracy or f1, accuracy by default");
+        options.addOption("results", true, "path of the results table, standard output by default");
+
+        CommandLineParser parser = new GnuParser();
+        CommandLine line = parser.parse(options, args);
+        if (!(line.hasOption("input") && line.hasOption("output") && line.hasOption("type") 
+                && line.hasOption("kernel") && line.hasOption("C"))) {
+            HelpFormatter formatter = new HelpFormatter();
+            formatter.printHelp(" -input <path> -output <model path> -type initial|metadata -kernel K,... -C c,... "
+                    + "[-g g,...] [-degree d,...] [-options]", options);
+            System.exit(1);
+        }
+        
+        boolean initial = "initial".equals(line.getOptionValue("type"));
+        if (!initial && !"metadata".equals(line.getOptionValue("type"))) {
+            throw new ParseException("Unknown classifier type: " + line.getOptionValue("type"));
+        }
+        FeatureVectorBuilder<BxZone, BxPage> featureVectorBuilder = initial 
+                ? SVMInitialZoneClassifier.getFeatureVectorBuilder() : SVMMetadataZoneClassifier.getFeatureVectorBuilder();
+        
+        SVMGridSearch search = new SVMGridSearch(featureVectorBuilder);
+        if (line.hasOption("fold")) {
+            search.setFolds(Integer.parseInt(line.getOptionValue("fold")));
+        }
+        if (line.hasOption("threads")) {
+            search.setThreads(Integer.parseInt(line.getOptionValue("threads")));
+        }
+        if (line.hasOption("cache")) {
+            search.setCacheSize(Double.parseDouble(line.getOptionValue("cache")));
+        }
+        if (line.hasOption("seed")) {
+            search.setSeed(Long.parseLong(line.getOptionValue("seed")));
+        }
+        if ("f1".equals(line.getOptionValue("metric"))) {
+            search.setMetric(Metric.MACRO_F1);
+        }
+        List<GridPoint> points = grid(parseInts(line.getOptionValue("kernel")), parseDoubles(line.getOptionValue("C")),
+                parseDoubles(line.getOptionValue("g", "0.125")), parseInts(line.getOptionValue("degree", "3")));
+
+        String inPath = line.getOptionValue("input");
+        List<TrainingSample<BxZoneLabel>> samples;
+        List<Result> results;
+        if (new File(inPath).isDirectory()) {
+            TrainingSamplesGenerator generator = new TrainingSamplesGenerator();
+            generator.setThreads(search.getThreads());
+            List<List<TrainingSample<BxZoneLabel>>> documents = generator.collectDocuments(
+                    TrainingSamplesGenerator.listDocumentFiles(inPath),
+                    TrainingSamplesGenerator.zoneSamples(featureVectorBuilder, 
+                    initial ? BxZoneLabel.getLabelToGeneralMap() : BxZoneLabel.getIdentityMap()));
+            samples = new ArrayList<TrainingSample<BxZoneLabel>>();
+            for (int i = 0; i < documents.size(); i++) {
+                if (!initial) {
+                    documents.set(i, ClassificationUtils.filterElements(documents.get(i), BxZoneLabelCategory.CAT_METADATA));
+                }
+                samples.addAll(documents.get(i));
+            }
+            results = search.searchDocuments(documents, points);
+        } else {
+            samples = SVMZoneClassifier.loadProblem(inPath, featureVectorBuilder);
+            if (initial) {
+                for (TrainingSample<BxZoneLabel> sample : samples) {
+                    sample.setLabel(sample.getLabel().getGeneralLabel());
+                }
+            } else {
+                samples = ClassificationUtils.filterElements(samples, BxZoneLabelCategory.CAT_METADATA);
+            }
+            results = search.search(samples, points);
+        }
+        
+        if (line.hasOption("results")) {
+            Writer writer = new BufferedWriter(new FileWriter(line.getOptionValue("results")));
+            try {
+                writeResults(results, writer);
+            } finally {
+                writer.close();
+            }
+        } else {
+            writeResults(results, new OutputStreamWriter(System.out));
+        }
+        
+        Result best = search.getBest(results);
+        System.out.println("Best parameters: " + best.getPoint() + ", " + search.getMetric() + " = " + best.getScore(search.getMetric()));
+        search.train(samples, best.getPoint()).saveModel(line.getOptionValue("output"));
+    }
+    
+}
@@ -0,0 +1,346 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.svm;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+
+/**
+ * Prediction engine for classification models loaded by libsvm. Support
+ * vectors, coefficients and offsets are copied once into primitive arrays and
+ * the kernel is evaluated for blocks of instances, support vector by support
+ * vector.
+ * <p>
+ * The arithmetic follows svm.svm_predict step by step, so the predicted labels
+ * are the same as libsvm's. Only C-SVC and nu-SVC models with linear,
+ * polynomial, RBF or sigmoid kernels and all the support vectors listing every
+ * feature are supported, {@link #create(svm_model, int)} returns null for the
+ * other models.
+ */
+public final class SVMInferenceEngine {
+
+    /** Number of instances whose kernel values are computed together. */
+    private static final int BLOCK_SIZE = 64;
+
+    private final svm_model model;
+
+    private final int dimensions;
+
+    private final int kernelType;
+
+    private final double gamma;
+
+    private final double coef0;
+
+    private final int degree;
+
+    private final int svCount;
+
+    /** Support vectors, row by row. */
+    private final double[] sv;
+
+    private final double[][] coef;
+
+    private final double[] rho;
+
+    private final int[] start;
+
+    private final int[] nSV;
+
+    private final int[] label;
+
+    private SVMInferenceEngine(svm_model model, int dimensions) {
+        this.model = model;
+        this.dimensions = dimensions;
+        svm_parameter param = model.param;
+        this.kernelType = param.kernel_type;
+        this.gamma = param.gamma;
+        this.coef0 = param.coef0;
+        this.degree = param.degree;
+        this.svCount = model.l;
+        this.sv = new double[svCount * dimensions];
+        for (int i = 0; i < svCount; i++) {
+            for (int j = 0; j < dimensions; j++) {
+                sv[i * dimensions + j] = model.SV[i][j].value;
+            }
+        }
+        int nrClass = model.nr_class;
+        this.coef = new double[nrClass - 1][];
+        for (int i = 0; i < nrClass - 1; i++) {
+            coef[i] = model.sv_coef[i].clone();
+        }
+        this.rho = model.rho.clone();
+        this.nSV = model.nSV.clone();
+        this.label = model.label.clone();
+        this.start = new int[nrClass];
+        for (int i = 1; i < nrClass; i++) {
+            start[i] = start[i - 1] + nSV[i - 1];
+        }
+    }
+
+    /**
+     * Creates the engine for the model.
+     * 
+     * @param model libsvm model
+     * @param dimensions number of features of the classified instances
+     * @return the engine, or null if the model is not supported
+     */
+    public static SVMInferenceEngine create(svm_model model, int dimensions) {
+        if (model == null || model.SV == null || model.sv_coef == null || model.rho == null
+                || model.nSV == null || model.label == null) {
+            return null;
+        }
+        int svmType = model.param.svm_type;
+        if (svmType != svm_parameter.C_SVC && svmType != svm_parameter.NU_SVC) {
+            return null;
+        }
+        int kernel = model.param.kernel_type;
+        if (kernel != svm_parameter.LINEAR && kernel != svm_parameter.POLY
+                && kernel != svm_parameter.RBF && kernel != svm_parameter.SIGMOID) {
+            return null;
+        }
+        if (model.SV.length < model.l) {
+            return null;
+        }
+        for (int i = 0; i < model.l; i++) {
+            svm_node[] row = model.SV[i];
+            if (row.length != dimensions) {
+                return null;
+            }
+            for (int j = 0; j < dimensions; j++) {
+                if (row[j] == null || row[j].index != j) {
+                    return null;
+                }
+            }
+        }
+        return new SVMInferenceEngine(model, dimensions);
+    }
+
+    public svm_model getModel() {
+        return model;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Predicts the label of a single instance.
+     * 
+     * @param instance scaled feature values
+     * @return model label, as returned by svm.svm_predict
+     */
+    public int predict(double[] instance) {
+        double[] kvalue = new double[svCount];
+        for (int i = 0; i < svCount; i++) {
+            kvalue[i] = kernel(instance, i);
+        }
+        return decide(kvalue, 0);
+    }
+
+    /**
+     * Predicts the labels of the instances.
+     * 
+     * @param instances scaled feature values
+     * @return model labels, as returned by svm.svm_predict
+     */
+    public int[] predict(double[][] instances) {
+        int[] labels = new int[instances.length];
+        double[] kvalues = new double[Math.min(BLOCK_SIZE, instances.length) * svCount];
+        for (int from = 0; from < instances.length; from += BLOCK_SIZE) {
+            predictBlock(instances, from, Math.min(instances.length, from + BLOCK_SIZE), labels, kvalues);
+        }
+        return labels;
+    }
+
+    /**
+     * Predicts the labels of the instances. Blocks of instances are claimed
+     * by the calling thread and by the helper tasks submitted to the executor.
+     * 
+     * @param instances scaled feature values
+     * @param executor executor for helper tasks, can be null
+     * @param parallelism maximum number of threads used
+     * @return model labels, as returned by svm.svm_predict
+     */
+    public int[] predict(final double[][] instances, ExecutorService executor, int parallelism) {
+        final int blocks = (instances.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int helpers = Math.min(blocks, parallelism) - 1;
+        if (executor == null || helpers <= 0) {
+            return predict(instances);
+        }
+        final int[] labels = new int[instances.length];
+        final AtomicInteger nextBlock = new AtomicInteger();
+        final CountDownLatch finished = new CountDownLatch(blocks);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                double[] kvalues = null;
+                int block;
+                while ((block = nextBlock.getAndIncrement()) < blocks) {
+                    try {
+                        if (kvalues == null) {
+                            kvalues = new double[BLOCK_SIZE * svCount];
+                        }
+                        int from = block * BLOCK_SIZE;
+                        predictBlock(instances, from, Math.min(instances.length, from + BLOCK_SIZE), labels, kvalues);
+                    } catch (Throwable ex) {
+                        error.compareAndSet(null, ex);
+                    } finally {
+                        finished.countDown();
+                    }
+                }
+            }
+        };
+        for (int i = 0; i < helpers; i++) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException ex) {
+                break;
+            }
+        }
+        worker.run();
+        
+        boolean interrupted = false;
+        while (true) {
+            try {
+                finished.await();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        Throwable ex = error.get();
+        if (ex instanceof RuntimeException) {
+            throw (RuntimeException) ex;
+        } else if (ex instanceof Error) {
+            throw (Error) ex;
+        } else if (ex != null) {
+            throw new IllegalStateException(ex);
+        }
+        return labels;
+    }
+
+    private void predictBlock(double[][] instances, int from, int to, int[] labels, double[] kvalues) {
+        for (int i = 0; i < svCount; i++) {
+            for (int r = from; r < to; r++) {
+                kvalues[(r - from) * svCount + i] = kernel(instances[r], i);
+            }
+        }
+        for (int r = from; r < to; r++) {
+            labels[r] = decide(kvalues, (r - from) * svCount);
+        }
+    }
+
+    /**
+     * Computes the kernel value of the instance and the support vector,
+     * as Kernel.k_function does for the dense instances.
+     */
+    private double kernel(double[] x, int svIndex) {
+        int offset = svIndex * dimensions;
+        switch (kernelType) {
+            case svm_parameter.LINEAR:
+                return dot(x, offset);
+            case svm_parameter.POLY:
+                return powi(gamma * dot(x, offset) + coef0, degree);
+            case svm_parameter.RBF:
+                double sum = 0;
+                for (int j = 0; j < dimensions; j++) {
+                    double d = x[j] - sv[offset + j];
+                    sum += d * d;
+                }
+                return Math.exp(-gamma * sum);
+            case svm_parameter.SIGMOID:
+                return Math.tanh(gamma * dot(x, offset) + coef0);
+            default:
+                return 0;
+        }
+    }
+
+    private double dot(double[] x, int offset) {
+        double sum = 0;
+        for (int j = 0; j < dimensions; j++) {
+            sum += x[j] * sv[offset + j];
+        }
+        return sum;
+    }
+
+    private static double powi(double base, int times) {
+        double tmp = base;
+        double ret = 1.0;
+        for (int t = times; t > 0; t /= 2) {
+            if (t % 2 == 1) {
+                ret *= tmp;
+            }
+            tmp = tmp * tmp;
+        }
+        return ret;
+    }
+
+    /**
+     * One-against-one voting, as in svm.svm_predict_values.
+     */
+    private int decide(double[] kvalue, int offset) {
+        int nrClass = start.length;
+        int[] vote = new int[nrClass];
+        int p = 0;
+        for (int i = 0; i < nrClass; i++) {
+            for (int j = i + 1; j < nrClass; j++) {
+                double sum = 0;
+                int si = start[i];
+                int sj = start[j];
+                int ci = nSV[i];
+                int cj = nSV[j];
+                double[] coef1 = coef[j - 1];
+                double[] coef2 = coef[i];
+                for (int k = 0; k < ci; k++) {
+                    sum += coef1[si + k] * kvalue[offset + si + k];
+                }
+                for (int k = 0; k < cj; k++) {
+                    sum += coef2[sj + k] * kvalue[offset + sj + k];
+                }
+                sum -= rho[p];
+                if (sum > 0) {
+                    ++vote[i];
+                } else {
+                    ++vote[j];
+                }
+                p++;
+            }
+        }
+        int voteMaxIdx = 0;
+        for (int i = 1; i < nrClass; i++) {
+            if (vote[i] > vote[voteMaxIdx]) {
+                voteMaxIdx = i;
+            }
+        }
+        return label[voteMaxIdx];
+    }
+
+}
@@ -23,7 +23,6 @@ import java.io.IOException;
 import java.util.List;
 import libsvm.svm_parameter;
 import org.apache.commons.cli.*;
-import pl.edu.icm.cermine.evaluation.tools.EvaluationUtils.DocumentsIterator;
 import pl.edu.icm.cermine.evaluation.tools.PenaltyCalculator;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.SVMInitialZoneClassifier;
@@ -31,8 +30,8 @@ import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.structure.model.BxZoneLabel;
 import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
-import pl.edu.icm.cermine.tools.classification.general.BxDocsToTrainingSamplesConverter;
 import pl.edu.icm.cermine.tools.classification.general.TrainingSample;
+import pl.edu.icm.cermine.tools.classification.general.TrainingSamplesGenerator;
 
 public class SVMInitialBuilder {
 
@@ -79,11 +78,12 @@ public class SVMInitialBuilder {
         options.addOption("g", true, "gamma");
         options.addOption("C", true, "C");
         options.addOption("degree", true, "degree");
+        options.addOption("threads", true, "number of threads used to generate the samples");
 
         CommandLineParser parser = new GnuParser();
         CommandLine line = parser.parse(options, args);
         if (!(line.hasOption("input") && line.hasOption("output") && line.hasOption("kernel") && line.hasOption("g") && line.hasOption("C") )) {
-            System.err.println("Usage: SVMInitialBuilder -input input_directory -output output_model_file -kernel K -gamma G -C c [-degree d]");
+            System.err.println("Usage: SVMInitialBuilder -input input_directory -output output_model_file -kernel K -gamma G -C c [-degree d] [-threads t]");
             System.exit(1);
         }
         Double C = Double.valueOf(line.getOptionValue("C"));
@@ -111,11 +111,14 @@ public class SVMInitialBuilder {
         }
         File input = new File(inDir);
         if (input.isDirectory()) {
-            DocumentsIterator it = new DocumentsIterator(inDir);
-            FeatureVectorBuilder<BxZone, BxPage> featureVectorBuilder = SVMInitialZoneClassifier.getFeatureVectorBuilder();
-            List<TrainingSample<BxZoneLabel>> trainingSamples =
-                BxDocsToTrainingSamplesConverter.getZoneTrainingSamples(it.iterator(), featureVectorBuilder,
-                    BxZoneLabel.getLabelToGeneralMap());
+            TrainingSamplesGenerator generator = new TrainingSamplesGenerator();
+            if (line.hasOption("threads")) {
+                generator.setThreads(Integer.parseInt(line.getOptionValue("threads")));
+            }
+            List<TrainingSample<BxZoneLabel>> trainingSamples = generator.collect(
+                    TrainingSamplesGenerator.listDocumentFiles(inDir),
+                    TrainingSamplesGenerator.zoneSamples(SVMInitialZoneClassifier.getFeatureVectorBuilder(),
+                    BxZoneLabel.getLabelToGeneralMap()));
             SVMZoneClassifier classifier = getZoneClassifier(trainingSamples, kernelType, gamma, C, degree);
             classifier.saveModel(outFile);
         } else {
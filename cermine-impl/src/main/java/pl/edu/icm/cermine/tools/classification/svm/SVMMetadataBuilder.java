@@ -23,7 +23,6 @@ import java.io.IOException;
 import java.util.List;
 import libsvm.svm_parameter;
 import org.apache.commons.cli.*;
-import pl.edu.icm.cermine.evaluation.tools.EvaluationUtils.DocumentsIterator;
 import pl.edu.icm.cermine.evaluation.tools.PenaltyCalculator;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.SVMMetadataZoneClassifier;
@@ -31,10 +30,10 @@ import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.structure.model.BxZoneLabel;
 import pl.edu.icm.cermine.structure.model.BxZoneLabelCategory;
-import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
-import pl.edu.icm.cermine.tools.classification.general.BxDocsToTrainingSamplesConverter;
 import pl.edu.icm.cermine.tools.classification.general.ClassificationUtils;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
 import pl.edu.icm.cermine.tools.classification.general.TrainingSample;
+import pl.edu.icm.cermine.tools.classification.general.TrainingSamplesGenerator;
 
 
 public class SVMMetadataBuilder {
@@ -81,11 +80,12 @@ public class SVMMetadataBuilder {
         options.addOption("g", true, "gamma");
         options.addOption("C", true, "C");
         options.addOption("degree", true, "degree");
+        options.addOption("threads", true, "number of threads used to generate the samples");
 
         CommandLineParser parser = new GnuParser();
         CommandLine line = parser.parse(options, args);
         if (!(line.hasOption("input") && line.hasOption("output") && line.hasOption("kernel") && line.hasOption("g") && line.hasOption("C") )) {
-            System.err.println("Usage: SVMMetadataBuilder -input input_directory -output output_model_file -kernel K -gamma G -C c [-degree d]");
+            System.err.println("Usage: SVMMetadataBuilder -input input_directory -output output_model_file -kernel K -gamma G -C c [-degree d] [-threads t]");
             System.exit(1);
         }
 
@@ -115,10 +115,13 @@ public class SVMMetadataBuilder {
         File input = new File(inDir);
         List<TrainingSample<BxZoneLabel>> trainingSamples;
         if (input.isDirectory()) {
-            DocumentsIterator it = new DocumentsIterator(inDir);
-            FeatureVectorBuilder<BxZone, BxPage> featureVectorBuilder = SVMMetadataZoneClassifier.getFeatureVectorBuilder();
-            trainingSamples = BxDocsToTrainingSamplesConverter.getZoneTrainingSamples(it.iterator(), featureVectorBuilder,
-                    BxZoneLabel.getIdentityMap());
+            TrainingSamplesGenerator generator = new TrainingSamplesGenerator();
+            if (line.hasOption("threads")) {
+                generator.setThreads(Integer.parseInt(line.getOptionValue("threads")));
+            }
+            trainingSamples = generator.collect(TrainingSamplesGenerator.listDocumentFiles(inDir),
+                    TrainingSamplesGenerator.zoneSamples(SVMMetadataZoneClassifier.getFeatureVectorBuilder(),
+                    BxZoneLabel.getIdentityMap()));
         } else {
             trainingSamples = SVMZoneClassifier.loadProblem(inDir, SVMMetadataZoneClassifier.getFeatureVectorBuilder());
         }
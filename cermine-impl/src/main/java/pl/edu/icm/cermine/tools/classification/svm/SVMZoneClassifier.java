@@ -23,13 +23,17 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
 import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.metadata.zoneclassification.features.PageFeatureContext;
 import pl.edu.icm.cermine.structure.ZoneClassifier;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.structure.model.BxZoneLabel;
+import pl.edu.icm.cermine.tools.classification.features.FeatureSchema;
 import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
 import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
+import pl.edu.icm.cermine.tools.classification.general.BinarySampleReader;
+import pl.edu.icm.cermine.tools.classification.general.BinarySampleWriter;
 import pl.edu.icm.cermine.tools.classification.general.TrainingSample;
 
 public class SVMZoneClassifier extends SVMClassifier<BxZone, BxPage, BxZoneLabel>  implements ZoneClassifier{
@@ -40,9 +44,14 @@ public class SVMZoneClassifier extends SVMClassifier<BxZone, BxPage, BxZoneLabel
 
 	@Override
 	public BxDocument classifyZones(BxDocument document) throws AnalysisException {
-    	for (BxZone zone: document.asZones()) {
-    		BxZoneLabel predicted = predictLabel(zone, zone.getParent());
-			zone.setLabel(predicted);
+		PageFeatureContext.openScope(this);
+		try {
+			for (BxZone zone: document.asZones()) {
+				BxZoneLabel predicted = predictLabel(zone, zone.getParent());
+				zone.setLabel(predicted);
+			}
+		} finally {
+			PageFeatureContext.closeScope(this);
 		}
 		return document;
 	}
@@ -52,20 +61,33 @@ public class SVMZoneClassifier extends SVMClassifier<BxZone, BxPage, BxZoneLabel
 		return loadProblem(file, fvb);
 	}
 
+	/**
+	 * Loads the samples from a libsvm file, or from a file written by
+	 * {@link BinarySampleWriter}.
+	 */
 	public static List<TrainingSample<BxZoneLabel>> loadProblem(File file, FeatureVectorBuilder<BxZone, BxPage> fvb) throws IOException {
+		if (BinarySampleReader.isBinarySampleFile(file)) {
+			BinarySampleReader<BxZoneLabel> reader = new BinarySampleReader<BxZoneLabel>(
+					new BufferedInputStream(new FileInputStream(file)), BxZoneLabel.class, fvb.getSchema());
+			try {
+				return reader.readAll();
+			} finally {
+				reader.close();
+			}
+		}
 		List<TrainingSample<BxZoneLabel>> ret = new ArrayList<TrainingSample<BxZoneLabel>>();
 		BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
 		String line;
 		final Pattern partsPattern = Pattern.compile(" ");
 		final Pattern twopartPattern = Pattern.compile(":");
+        FeatureSchema schema = fvb.getSchema();
 		while((line = br.readLine()) != null) {
 			String[] parts = partsPattern.split(line);
 			BxZoneLabel label = BxZoneLabel.values()[Integer.parseInt(parts[0])];
-			FeatureVector fv = new FeatureVector();
-            List<String> featureNames = fvb.getFeatureNames();
+			FeatureVector fv = new FeatureVector(schema);
 			for(int partIdx=1; partIdx<parts.length; ++partIdx) {
 				String[] subparts = twopartPattern.split(parts[partIdx]);
-                fv.addFeature(featureNames.get(partIdx-1), Double.parseDouble(subparts[1]));
+                fv.setValue(partIdx-1, Double.parseDouble(subparts[1]));
 			}
 			TrainingSample<BxZoneLabel> sample = new TrainingSample<BxZoneLabel>(fv, label);
 			ret.add(sample);
@@ -83,6 +83,30 @@ public class ContentExtractorTest {
         assertEquals(testDocument, extractor.getBxDocument());
     }
     
+    @Test
+    public void getBxDocumentFromFileTest() throws IOException, AnalysisException, URISyntaxException {
+        InputStream testStream = this.getClass().getResourceAsStream(TEST_PDF_1);
+        BxDocument streamDocument;
+        try {
+            extractor.uploadPDF(testStream);
+            streamDocument = extractor.getBxDocument();
+        } finally {
+            testStream.close();
+        }
+        
+        extractor.uploadPDF(new File(this.getClass().getResource(TEST_PDF_1).toURI()));
+        BxDocument fileDocument = extractor.getBxDocument();
+        assertTrue(BxModelUtils.areEqual(streamDocument, fileDocument));
+        
+        extractor.reset();
+        try {
+            extractor.getBxDocument();
+            fail("No document should be uploaded after reset");
+        } catch (AnalysisException ex) {
+            // expected
+        }
+    }
+    
     @Test
     public void textRawFullTextTest() throws AnalysisException, JDOMException, IOException, SAXException {
         InputStream testStream = this.getClass().getResourceAsStream(TEST_PDF_2);
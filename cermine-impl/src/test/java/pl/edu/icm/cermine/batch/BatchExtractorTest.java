@@ -0,0 +1,246 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jdom.Element;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pl.edu.icm.cermine.DocumentContentExtractor;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.structure.CharacterExtractor;
+import pl.edu.icm.cermine.structure.DocumentSegmenter;
+import pl.edu.icm.cermine.structure.ReadingOrderResolver;
+import pl.edu.icm.cermine.structure.ZoneClassifier;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.model.BxPage;
+
+public class BatchExtractorTest {
+    
+    private File dir;
+    
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("batch", "");
+        dir.delete();
+        dir.mkdir();
+        for (int i = 0; i < 20; i++) {
+            FileUtils.writeStringToFile(new File(dir, "doc" + i + ".pdf"), "content" + i);
+        }
+        FileUtils.writeStringToFile(new File(dir, "sub/broken.pdf"), "broken");
+        FileUtils.writeStringToFile(new File(dir, "sub/slow.pdf"), "slow");
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testProcess() throws AnalysisException, IOException {
+        BatchExtractor extractor = new StubBatchExtractor();
+        extractor.setThreads(3);
+        extractor.setQueueCapacity(2);
+        extractor.setDocumentTimeout(300);
+        
+        List<BatchDocument> documents = BatchDocument.fromDirectory(dir, null, "cermxml");
+        assertEquals(22, documents.size());
+        
+        BatchStatistics statistics = extractor.process(documents);
+        assertEquals(20, statistics.getProcessedCount());
+        assertTrue(statistics.getPeakHeap() > 0);
+        assertEquals(1, statistics.getFailedCount());
+        assertEquals(1, statistics.getTimedOutCount());
+        assertEquals(0, statistics.getSkippedCount());
+        
+        for (int i = 0; i < 20; i++) {
+            String output = FileUtils.readFileToString(new File(dir, "doc" + i + ".cermxml"), "UTF-8");
+            assertTrue(output.contains("<article>content" + i + "</article>"));
+        }
+        assertFalse(new File(dir, "sub/broken.cermxml").exists());
+        assertFalse(new File(dir, "sub/slow.cermxml").exists());
+        assertTrue(FileUtils.listFiles(dir, new String[]{"part"}, true).isEmpty());
+        
+        // restarted run processes only the documents without output
+        FileUtils.forceDelete(new File(dir, "doc3.cermxml"));
+        statistics = extractor.process(documents);
+        assertEquals(1, statistics.getProcessedCount());
+        assertEquals(19, statistics.getSkippedCount());
+        assertEquals(1, statistics.getFailedCount());
+        assertEquals(1, statistics.getTimedOutCount());
+    }
+    
+    @Test
+    public void testOutputDirectory() throws AnalysisException {
+        File outDir = new File(dir, "out");
+        BatchExtractor extractor = new StubBatchExtractor();
+        extractor.setThreads(1);
+        
+        BatchStatistics statistics = extractor.process(BatchDocument.fromDirectory(dir, outDir, "xml"));
+        assertEquals(21, statistics.getProcessedCount());
+        assertTrue(new File(outDir, "doc0.xml").exists());
+        assertTrue(new File(outDir, "sub/slow.xml").exists());
+    }
+    
+    @Test
+    public void testAbandonedWorkersLimit() throws AnalysisException, IOException {
+        File stuckDir = new File(dir, "stuck");
+        for (int i = 0; i < 4; i++) {
+            FileUtils.writeStringToFile(new File(stuckDir, "stuck" + i + ".pdf"), "stuck");
+            FileUtils.writeStringToFile(new File(stuckDir, "doc" + i + ".pdf"), "content" + i);
+        }
+        StubBatchExtractor extractor = new StubBatchExtractor();
+        extractor.setThreads(1);
+        extractor.setDocumentTimeout(100);
+        extractor.setMaxAbandonedWorkers(1);
+        
+        BatchStatistics statistics = extractor.process(BatchDocument.fromDirectory(stuckDir, null, "cermxml"));
+        assertEquals(4, statistics.getProcessedCount());
+        assertEquals(4, statistics.getTimedOutCount());
+        // one worker of the stage and at most one running abandoned worker
+        assertTrue(extractor.maxRunning.get() <= 2);
+    }
+    
+    private static class StubBatchExtractor extends BatchExtractor {
+        
+        /** zone classifications running at the same time */
+        private final AtomicInteger running = new AtomicInteger();
+        
+        private final AtomicInteger maxRunning = new AtomicInteger();
+
+        @Override
+        protected CharacterExtractor createCharacterExtractor() {
+            return new CharacterExtractor() {
+                @Override
+                public BxDocument extractCharacters(InputStream stream) throws AnalysisException {
+                    try {
+                        return createDocument(IOUtils.toString(stream));
+                    } catch (IOException ex) {
+                        throw new AnalysisException(ex);
+                    }
+                }
+
+                @Override
+                public BxDocument extractCharacters(File file) throws AnalysisException {
+                    try {
+                        return createDocument(FileUtils.readFileToString(file));
+                    } catch (IOException ex) {
+                        throw new AnalysisException(ex);
+                    }
+                }
+                
+                private BxDocument createDocument(String content) throws AnalysisException {
+                    if (content.equals("broken")) {
+                        throw new AnalysisException("Broken document");
+                    }
+                    BxPage page = new BxPage();
+                    BxDocument document = new BxDocument().addPage(page);
+                    page.setId(content);
+                    return document;
+                }
+            };
+        }
+
+        @Override
+        protected DocumentSegmenter createDocumentSegmenter() {
+            return new DocumentSegmenter() {
+                @Override
+                public BxDocument segmentDocument(BxDocument document) {
+                    return document;
+                }
+            };
+        }
+
+        @Override
+        protected ReadingOrderResolver createReadingOrderResolver() {
+            return new ReadingOrderResolver() {
+                @Override
+                public BxDocument resolve(BxDocument document) {
+                    return document;
+                }
+            };
+        }
+
+        @Override
+        protected ZoneClassifier createZoneClassifier() {
+            return new ZoneClassifier() {
+                @Override
+                public BxDocument classifyZones(BxDocument document) {
+                    int now = running.incrementAndGet();
+                    int max;
+                    do {
+                        max = maxRunning.get();
+                    } while (now > max && !maxRunning.compareAndSet(max, now));
+                    try {
+                        return classify(document);
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                }
+                
+                private BxDocument classify(BxDocument document) {
+                    if (document.getPages().get(0).getId().equals("stuck")) {
+                        // ignores interruption, like CPU-bound parsing
+                        long end = System.currentTimeMillis() + 400;
+                        while (System.currentTimeMillis() < end) {
+                            Thread.interrupted();
+                        }
+                    }
+                    if (document.getPages().get(0).getId().equals("slow")) {
+                        try {
+                            Thread.sleep(2000);
+                        } catch (InterruptedException ex) {
+                            // abandoned
+                        }
+                    }
+                    return document;
+                }
+            };
+        }
+
+        @Override
+        protected DocumentContentExtractor<Element> createContentExtractor() {
+            return new DocumentContentExtractor<Element>() {
+                @Override
+                public Element extractContent(InputStream stream) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public Element extractContent(File file) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public Element extractContent(BxDocument document) {
+                    return new Element("article").setText(document.getPages().get(0).getId());
+                }
+            };
+        }
+    }
+    
+}
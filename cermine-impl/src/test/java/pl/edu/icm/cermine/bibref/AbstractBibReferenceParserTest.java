@@ -18,6 +18,9 @@
 
 package pl.edu.icm.cermine.bibref;
 
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 import pl.edu.icm.cermine.bibref.model.BibEntry;
@@ -143,6 +146,18 @@ public abstract class AbstractBibReferenceParserTest {
         assertTrue((double) parsedFields / (double) allFields >= getMinPercentage());
     }
     
+    @Test
+    public void parseBibReferencesTest() throws AnalysisException {
+        List<String> texts = new ArrayList<String>();
+        List<BibEntry> expected = new ArrayList<BibEntry>();
+        for (BibEntry entry : entries) {
+            texts.add(entry.getText());
+            expected.add(getParser().parseBibReference(entry.getText()));
+        }
+        assertEquals(expected, getParser().parseBibReferences(texts));
+        assertTrue(getParser().parseBibReferences(new ArrayList<String>()).isEmpty());
+    }
+    
     protected abstract BibReferenceParser<BibEntry> getParser();
     
     protected abstract double getMinPercentage();    
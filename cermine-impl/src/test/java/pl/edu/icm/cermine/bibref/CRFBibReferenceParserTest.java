@@ -18,8 +18,28 @@
 
 package pl.edu.icm.cermine.bibref;
 
+import edu.umass.cs.mallet.base.types.FeatureVector;
+import edu.umass.cs.mallet.base.types.FeatureVectorSequence;
+import edu.umass.cs.mallet.base.types.Instance;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import org.apache.commons.io.IOUtils;
 import org.junit.Before;
+import org.junit.Test;
 import pl.edu.icm.cermine.bibref.model.BibEntry;
+import pl.edu.icm.cermine.bibref.parsing.model.Citation;
+import pl.edu.icm.cermine.bibref.parsing.tools.CitationUtils;
 import pl.edu.icm.cermine.exception.AnalysisException;
 
 /**
@@ -37,6 +57,112 @@ public class CRFBibReferenceParserTest extends AbstractBibReferenceParserTest {
         parser = CRFBibReferenceParser.getInstance();
     }
 
+    @Test
+    public void parallelParsingTest() throws AnalysisException {
+        List<String> texts = new ArrayList<String>();
+        for (int i = 0; i < 20; i++) {
+            texts.add("[" + i + "] A. Author" + i + ", Title of the paper number " + i + ", J. Test, " + i + " (19" + (50 + i) + ") 1-" + (10 + i) + ".");
+        }
+        List<BibEntry> expected = parseOneByOne(texts);
+        
+        assertEquals(expected, parser.parseBibReferences(texts));
+        
+        final AtomicInteger helpers = new AtomicInteger();
+        ExecutorService executor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS, 
+                new ArrayBlockingQueue<Runnable>(2), new ThreadPoolExecutor.CallerRunsPolicy()) {
+            @Override
+            public void execute(Runnable command) {
+                helpers.incrementAndGet();
+                super.execute(command);
+            }
+        };
+        try {
+            assertEquals(expected, parser.withExecutor(executor, 3).parseBibReferences(texts));
+            assertEquals(2, helpers.get());
+            assertEquals(expected, parser.withExecutor(executor, 1).parseBibReferences(texts));
+            assertEquals(2, helpers.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullExecutorTest() {
+        parser.withExecutor(null, 2);
+    }
+
+    @Test
+    public void concurrentParsingTest() throws Exception {
+        int threads = 4;
+        final List<String> texts = readReferences();
+        List<BibEntry> expected = parseOneByOne(texts);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<BibEntry>>> results = new ArrayList<Future<List<BibEntry>>>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(new Callable<List<BibEntry>>() {
+                    @Override
+                    public List<BibEntry> call() throws AnalysisException {
+                        return parseOneByOne(texts);
+                    }
+                }));
+            }
+            for (Future<List<BibEntry>> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    private List<BibEntry> parseOneByOne(List<String> texts) throws AnalysisException {
+        List<BibEntry> entries = new ArrayList<BibEntry>(texts.size());
+        for (String text : texts) {
+            entries.add(parser.parseBibReference(text));
+        }
+        return entries;
+    }
+
+    @Test
+    public void instanceBuilderTest() throws AnalysisException, IOException {
+        CRFBibReferenceParser localParser = new CRFBibReferenceParser(
+                CRFBibReferenceParser.class.getResourceAsStream("/pl/edu/icm/cermine/bibref/acrf.ser.gz"));
+        List<Citation> citations = new ArrayList<Citation>();
+        for (String text : readReferences()) {
+            citations.add(CitationUtils.stringToCitation(text));
+        }
+        
+        List<Instance> piped = localParser.pipe(citations);
+        List<Instance> built = localParser.toInstances(citations);
+        assertEquals(citations.size(), piped.size());
+        assertEquals(citations.size(), built.size());
+        for (int i = 0; i < citations.size(); i++) {
+            FeatureVectorSequence pipedData = (FeatureVectorSequence) piped.get(i).getData();
+            FeatureVectorSequence builtData = (FeatureVectorSequence) built.get(i).getData();
+            assertEquals(citations.get(i).getTokens().size(), builtData.size());
+            assertEquals(pipedData.size(), builtData.size());
+            for (int j = 0; j < pipedData.size(); j++) {
+                FeatureVector pipedVector = pipedData.getFeatureVector(j);
+                FeatureVector builtVector = builtData.getFeatureVector(j);
+                assertEquals(pipedVector.numLocations(), builtVector.numLocations());
+                for (int k = 0; k < pipedVector.numLocations(); k++) {
+                    assertEquals(pipedVector.indexAtLocation(k), builtVector.indexAtLocation(k));
+                    assertEquals(pipedVector.valueAtLocation(k), builtVector.valueAtLocation(k), 0.0);
+                }
+            }
+        }
+    }
+
+    private List<String> readReferences() throws IOException {
+        InputStream is = CRFBibReferenceParserTest.class.getResourceAsStream("/pl/edu/icm/cermine/bibref/refs.txt");
+        try {
+            return IOUtils.readLines(is, "UTF-8");
+        } finally {
+            is.close();
+        }
+    }
+
     @Override
     protected BibReferenceParser<BibEntry> getParser() {
         return parser;
@@ -0,0 +1,161 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.bibref;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pl.edu.icm.cermine.bibref.model.BibEntry;
+import pl.edu.icm.cermine.exception.AnalysisException;
+
+public class CachingBibReferenceParserTest {
+    
+    private static final String REFERENCE = "W. Hoeffding, Probability inequalities, J. Amer. Statist. Assoc, 58 (1963) 13-30.";
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testNormalize() {
+        assertEquals("The ﬁrst and the ﬃrst learn- ing",
+                "The first and the ffirst learn- ing", CachingBibReferenceParser.normalize(" The ﬁrst  and\nthe ﬃrst learn- ing "));
+        assertFalse(CachingBibReferenceParser.normalize("Smith- jones").equals(CachingBibReferenceParser.normalize("Smithjones")));
+    }
+    
+    @Test
+    public void testCache() throws AnalysisException {
+        CountingParser delegate = new CountingParser();
+        CachingBibReferenceParser parser = new CachingBibReferenceParser(delegate, 2);
+        
+        BibEntry entry = parser.parseBibReference(REFERENCE);
+        assertEquals(entry, parser.parseBibReference(REFERENCE));
+        BibEntry spaced = parser.parseBibReference("  W.  Hoeffding, Probability inequalities, J. Amer. Statist. Assoc, 58 (1963) 13-30.");
+        assertEquals(1, delegate.count);
+        assertEquals(2, parser.getHitCount());
+        assertEquals(1, parser.getMissCount());
+        assertEquals("Hoeffding", spaced.getFirstFieldValue(BibEntry.FIELD_AUTHOR));
+        assertEquals(6, spaced.getFirstField(BibEntry.FIELD_AUTHOR).getStartIndex());
+        
+        parser.parseBibReference("B");
+        parser.parseBibReference("C");
+        assertEquals(2, parser.size());
+        assertEquals(1, parser.getEvictionCount());
+        parser.parseBibReference(REFERENCE);
+        assertEquals(4, delegate.count);
+    }
+    
+    @Test
+    public void testBatch() throws AnalysisException {
+        CountingParser delegate = new CountingParser();
+        CachingBibReferenceParser parser = new CachingBibReferenceParser(delegate, 10);
+        parser.parseBibReference("A");
+        List<BibEntry> entries = parser.parseBibReferences(Arrays.asList("A", "B", "C", "B ", "A"));
+        assertEquals(3, delegate.count);
+        assertEquals(1, delegate.batches);
+        assertEquals(5, entries.size());
+        assertEquals("B ", entries.get(3).getText());
+        assertEquals(entries.get(1).getFieldKeys(), entries.get(3).getFieldKeys());
+        assertEquals(3, parser.getMissCount());
+        assertEquals(3, parser.getHitCount());
+    }
+    
+    @Test
+    public void testPersistence() throws AnalysisException, IOException {
+        File file = new File(folder.getRoot(), "references.cache");
+        CountingParser delegate = new CountingParser();
+        CachingBibReferenceParser parser = new CachingBibReferenceParser(delegate, 3, file, "counting");
+        BibEntry entry = parser.parseBibReference(REFERENCE);
+        for (int i = 0; i < 10; i++) {
+            parser.parseBibReference("Reference " + i);
+        }
+        parser.close();
+        assertEquals(11, delegate.count);
+        
+        parser = new CachingBibReferenceParser(delegate, 3, file, "counting");
+        assertEquals(3, parser.size());
+        assertEquals("Reference 9", parser.parseBibReference("Reference 9").getText());
+        assertEquals(11, delegate.count);
+        parser.parseBibReference(REFERENCE);
+        assertEquals(12, delegate.count);
+        assertEquals(entry, parser.parseBibReference(REFERENCE));
+        parser.close();
+        
+        parser = new CachingBibReferenceParser(delegate, 3, file, "counting");
+        assertEquals(entry, parser.parseBibReference(REFERENCE));
+        assertEquals(12, delegate.count);
+        parser.clear();
+        parser.close();
+        assertEquals(0, new CachingBibReferenceParser(delegate, 3, file, "counting").size());
+    }
+    
+    @Test
+    public void testFingerprint() throws AnalysisException, IOException {
+        File file = new File(folder.getRoot(), "references.cache");
+        CountingParser delegate = new CountingParser();
+        CachingBibReferenceParser parser = new CachingBibReferenceParser(delegate, 3, file, "model-1");
+        parser.parseBibReference(REFERENCE);
+        parser.close();
+        
+        parser = new CachingBibReferenceParser(delegate, 3, file, "model-2");
+        assertEquals(0, parser.size());
+        parser.parseBibReference(REFERENCE);
+        assertEquals(2, delegate.count);
+        parser.close();
+        
+        assertEquals(1, new CachingBibReferenceParser(delegate, 3, file, "model-2").size());
+        assertEquals(0, new CachingBibReferenceParser(delegate, 3, file, "model-1").size());
+    }
+    
+    private static class CountingParser implements BibReferenceParser<BibEntry> {
+
+        private int count;
+        
+        private int batches;
+        
+        @Override
+        public BibEntry parseBibReference(String text) {
+            count++;
+            BibEntry entry = new BibEntry(BibEntry.TYPE_ARTICLE).setText(text);
+            int start = text.indexOf("Hoeffding");
+            if (start >= 0) {
+                entry.addField(BibEntry.FIELD_AUTHOR, "Hoeffding", start, start + "Hoeffding".length());
+            }
+            entry.addField(BibEntry.FIELD_TITLE, text.trim());
+            return entry;
+        }
+
+        @Override
+        public List<BibEntry> parseBibReferences(List<String> texts) {
+            batches++;
+            List<BibEntry> entries = new ArrayList<BibEntry>();
+            for (String text : texts) {
+                entries.add(parseBibReference(text));
+            }
+            return entries;
+        }
+        
+    }
+    
+}
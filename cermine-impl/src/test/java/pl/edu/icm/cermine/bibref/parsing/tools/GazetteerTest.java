@@ -0,0 +1,98 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.bibref.parsing.tools;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Test;
+import pl.edu.icm.cermine.bibref.parsing.features.IsCityFeature;
+import pl.edu.icm.cermine.bibref.parsing.model.CitationToken;
+import pl.edu.icm.cermine.bibref.parsing.tools.Gazetteer.Dictionary;
+
+public class GazetteerTest {
+    
+    @After
+    public void tearDown() {
+        Gazetteer.setDefault(null);
+    }
+
+    @Test
+    public void defaultDictionariesTest() {
+        Gazetteer gazetteer = Gazetteer.getDefault();
+        
+        assertTrue(gazetteer.contains("Springer", Dictionary.PUBLISHER_WORD));
+        assertTrue(gazetteer.contains("Springer", Dictionary.SERIES_WORD));
+        assertFalse(gazetteer.contains("Springer", Dictionary.CITY));
+        
+        assertTrue(gazetteer.contains("GÖTTINGEN", Dictionary.CITY));
+        assertEquals(0L, gazetteer.getMemberships("parser"));
+    }
+    
+    @Test
+    public void externalEntriesTest() {
+        Gazetteer.Builder builder = new Gazetteer.Builder()
+                .addEntries(Dictionary.CITY, Arrays.asList("Kuala Lumpur", "Warsaw"))
+                .addEntries(Dictionary.SOURCE_WORD, Arrays.asList("Lumpur Journal"));
+        Gazetteer gazetteer = builder.build();
+        
+        assertTrue(gazetteer.contains("lumpur", Dictionary.CITY));
+        assertTrue(gazetteer.contains("lumpur", Dictionary.SOURCE_WORD));
+        assertFalse(gazetteer.contains("lumpur", Dictionary.PUBLISHER_WORD));
+        assertTrue(gazetteer.contains("Kuala", Dictionary.CITY));
+        assertFalse(gazetteer.contains("Kuala", Dictionary.SOURCE_WORD));
+        
+        builder.addEntries(Dictionary.PUBLISHER_WORD, Arrays.asList("Lumpur"));
+        assertFalse(gazetteer.contains("lumpur", Dictionary.PUBLISHER_WORD));
+        assertTrue(builder.build().contains("lumpur", Dictionary.PUBLISHER_WORD));
+    }
+    
+    @Test
+    public void featureTest() {
+        IsCityFeature feature = new IsCityFeature();
+        CitationToken token = new CitationToken("Warsaw", 0, 6);
+        assertEquals(1.0, feature.calculateFeatureValue(token, null), 0.0);
+        
+        Gazetteer.setDefault(new Gazetteer.Builder().addEntries(Dictionary.CITY, Arrays.asList("Lumpur")).build());
+        assertEquals(0.0, feature.calculateFeatureValue(token, null), 0.0);
+        
+        token.setText("LUMPUR");
+        assertEquals(1.0, feature.calculateFeatureValue(token, null), 0.0);
+    }
+    
+    @Test
+    public void replacedGazetteerReleasedTest() throws InterruptedException {
+        IsCityFeature feature = new IsCityFeature();
+        CitationToken token = new CitationToken("Lumpur", 0, 6);
+        Gazetteer gazetteer = new Gazetteer.Builder().addEntries(Dictionary.CITY, Arrays.asList("Lumpur")).build();
+        WeakReference<Gazetteer> replaced = new WeakReference<Gazetteer>(gazetteer);
+        Gazetteer.setDefault(gazetteer);
+        assertEquals(1.0, feature.calculateFeatureValue(token, null), 0.0);
+        
+        gazetteer = null;
+        Gazetteer.setDefault(null);
+        for (int i = 0; i < 10 && replaced.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(replaced.get());
+    }
+    
+}
@@ -0,0 +1,166 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.content;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import pl.edu.icm.cermine.content.filtering.features.RelativeMeanLengthFeature;
+import pl.edu.icm.cermine.content.headers.features.LengthFeature;
+import pl.edu.icm.cermine.content.headers.features.PrevLineLengthFeature;
+import pl.edu.icm.cermine.structure.model.*;
+
+public class DocumentStatisticsTest {
+    
+    private static final double EPSILON = 1e-9;
+    
+    private BxDocument document;
+    
+    private List<BxLine> lines;
+    
+    @Before
+    public void setUp() {
+        Random random = new Random(1);
+        document = new BxDocument();
+        lines = new ArrayList<BxLine>();
+        BxLine previous = null;
+        for (int p = 0; p < 3; p++) {
+            BxPage page = new BxPage();
+            for (int z = 0; z < 4; z++) {
+                BxZone zone = new BxZone();
+                for (int l = 0; l < 5; l++) {
+                    BxLine line = new BxLine().setBounds(new BxBounds(random.nextDouble() * 100, l * 12, 
+                            random.nextDouble() * 400, 8 + random.nextInt(4)));
+                    if (previous != null) {
+                        previous.setNext(line);
+                        line.setPrev(previous);
+                    }
+                    previous = line;
+                    zone.addLine(line);
+                    lines.add(line);
+                }
+                page.addZone(zone);
+            }
+            document.addPage(page);
+        }
+    }
+    
+    @Test
+    public void statisticsTest() {
+        double widthSum = 0;
+        double heightSum = 0;
+        for (BxLine line : lines) {
+            widthSum += line.getWidth();
+            heightSum += line.getHeight();
+        }
+        BxPage page = document.getPages().get(1);
+        double pageWidthSum = 0;
+        for (BxZone zone : page.getZones()) {
+            for (BxLine line : zone.getLines()) {
+                pageWidthSum += line.getWidth();
+            }
+        }
+        
+        DocumentStatistics.openScope(this);
+        try {
+            DocumentStatistics statistics = DocumentStatistics.get(page);
+            assertSame(statistics, DocumentStatistics.get(document.getPages().get(0)));
+            for (BxLine line : lines) {
+                assertEquals(lines.size(), statistics.getLineCount(line));
+                assertEquals(widthSum / lines.size(), statistics.getMeanLineWidth(line), EPSILON);
+                assertEquals(heightSum / lines.size(), statistics.getMeanLineHeight(line), EPSILON);
+            }
+            assertEquals(20, statistics.getPageLineCount(page));
+            assertEquals(pageWidthSum / 20, statistics.getPageMeanLineWidth(page), EPSILON);
+            
+            int smaller = 0;
+            double median = statistics.getMedianLineWidth(lines.get(0));
+            for (BxLine line : lines) {
+                if (line.getWidth() < median) {
+                    smaller++;
+                }
+            }
+            assertEquals(lines.size() / 2, smaller);
+        } finally {
+            DocumentStatistics.closeScope(this);
+        }
+    }
+    
+    @Test
+    public void featuresTest() {
+        RelativeMeanLengthFeature zoneFeature = new RelativeMeanLengthFeature();
+        LengthFeature lengthFeature = new LengthFeature();
+        PrevLineLengthFeature prevLengthFeature = new PrevLineLengthFeature();
+        
+        List<Double> expected = new ArrayList<Double>();
+        for (BxPage page : document.getPages()) {
+            for (BxZone zone : page.getZones()) {
+                expected.add(zoneFeature.calculateFeatureValue(zone, page));
+                for (BxLine line : zone.getLines()) {
+                    expected.add(lengthFeature.calculateFeatureValue(line, page));
+                    expected.add(prevLengthFeature.calculateFeatureValue(line, page));
+                }
+            }
+        }
+        
+        DocumentStatistics.openScope(this);
+        try {
+            int i = 0;
+            for (BxPage page : document.getPages()) {
+                for (BxZone zone : page.getZones()) {
+                    assertEquals(expected.get(i++), zoneFeature.calculateFeatureValue(zone, page), EPSILON);
+                    for (BxLine line : zone.getLines()) {
+                        assertEquals(expected.get(i++), lengthFeature.calculateFeatureValue(line, page), EPSILON);
+                        assertEquals(expected.get(i++), prevLengthFeature.calculateFeatureValue(line, page), EPSILON);
+                    }
+                }
+            }
+        } finally {
+            DocumentStatistics.closeScope(this);
+        }
+    }
+    
+    @Test
+    public void ownerScopeTest() {
+        BxPage page = document.getPages().get(0);
+        DocumentStatistics.openScope(this);
+        try {
+            DocumentStatistics statistics = DocumentStatistics.get(page);
+            Object other = new Object();
+            DocumentStatistics.openScope(other);
+            try {
+                assertNotSame(statistics, DocumentStatistics.get(page));
+            } finally {
+                DocumentStatistics.closeScope(other);
+            }
+            assertSame(statistics, DocumentStatistics.get(page));
+        } finally {
+            DocumentStatistics.closeScope(this);
+        }
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void closeScopeTest() {
+        DocumentStatistics.closeScope(this);
+    }
+    
+}
@@ -0,0 +1,105 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.metadata.extraction.enhancers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
+import org.jdom.Element;
+import org.junit.Test;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.model.BxZone;
+import pl.edu.icm.cermine.structure.model.BxZoneLabel;
+
+public class ZoneLabelIndexTest {
+
+    private static final BxZoneLabel[] LABELS = {
+        BxZoneLabel.MET_BIB_INFO, BxZoneLabel.GEN_BODY, BxZoneLabel.MET_DATES, BxZoneLabel.MET_BIB_INFO,
+        BxZoneLabel.MET_TITLE, BxZoneLabel.MET_DATES, BxZoneLabel.GEN_BODY
+    };
+    
+    private static final BxZoneLabel[] LABELS_WITH_UNLABELLED = {
+        null, BxZoneLabel.MET_BIB_INFO, null, BxZoneLabel.MET_TITLE, BxZoneLabel.GEN_BODY, null
+    };
+    
+    private static class ZoneCollector extends AbstractFilterEnhancer {
+        
+        List<BxZone> zones = new ArrayList<BxZone>();
+        
+        @Override
+        public void enhanceMetadata(BxDocument document, Element metadata, Set<EnhancedField> enhancedFields) {
+            for (BxPage page : filterPages(document)) {
+                for (BxZone zone : filterZones(page)) {
+                    zones.add(zone);
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void filterZonesTest() {
+        assertSameAsUnindexed(createDocument(LABELS));
+    }
+    
+    @Test
+    public void filterUnlabelledZonesTest() {
+        assertSameAsUnindexed(createDocument(LABELS_WITH_UNLABELLED));
+    }
+    
+    private static BxDocument createDocument(BxZoneLabel[] zoneLabels) {
+        BxDocument document = new BxDocument();
+        for (int p = 0; p < 2; p++) {
+            BxPage page = new BxPage();
+            for (BxZoneLabel label : zoneLabels) {
+                BxZone zone = new BxZone();
+                zone.setLabel(label);
+                page.addZone(zone);
+            }
+            document.addPage(page);
+        }
+        return document;
+    }
+    
+    private static void assertSameAsUnindexed(BxDocument document) {
+        for (List<BxZoneLabel> labels : Arrays.asList(
+                Arrays.asList(BxZoneLabel.MET_BIB_INFO),
+                Arrays.asList(BxZoneLabel.MET_DATES, BxZoneLabel.MET_BIB_INFO),
+                Arrays.asList(BxZoneLabel.MET_ABSTRACT),
+                Arrays.asList(BxZoneLabel.values()))) {
+            ZoneCollector expected = new ZoneCollector();
+            expected.setSearchedZoneLabels(labels);
+            expected.enhanceMetadata(document, null, null);
+            
+            ZoneCollector indexed = new ZoneCollector();
+            indexed.setSearchedZoneLabels(labels);
+            ZoneLabelIndex.openScope(this);
+            try {
+                assertEquals(!expected.zones.isEmpty(), indexed.hasSearchedZones(document));
+                indexed.enhanceMetadata(document, null, null);
+            } finally {
+                ZoneLabelIndex.closeScope(this);
+            }
+            assertEquals(expected.zones, indexed.zones);
+        }
+    }
+    
+}
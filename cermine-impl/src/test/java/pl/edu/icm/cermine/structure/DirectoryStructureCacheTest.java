@@ -0,0 +1,145 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pl.edu.icm.cermine.PdfBxStructureExtractor;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.tools.BxModelUtils;
+import pl.edu.icm.cermine.structure.transformers.BxDocumentToTrueVizWriter;
+
+public class DirectoryStructureCacheTest {
+    
+    private static final String TEST_FILE = "/pl/edu/icm/cermine/test1.pdf";
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private PdfBxStructureExtractor createExtractor() {
+        ZoneClassifier classifier = new ZoneClassifier() {
+
+            @Override
+            public BxDocument classifyZones(BxDocument document) {
+                return document;
+            }
+        };
+        return new PdfBxStructureExtractor(new ITextCharacterExtractor(), new DocstrumSegmenter(),
+                new HierarchicalReadingOrderResolver(), classifier);
+    }
+    
+    @Test
+    public void testExtractorCache() throws AnalysisException, URISyntaxException, IOException, TransformationException {
+        File pdf = new File(this.getClass().getResource(TEST_FILE).toURI());
+        final DirectoryStructureCache directoryCache = new DirectoryStructureCache(folder.getRoot());
+        final Map<String, Integer> hits = new HashMap<String, Integer>();
+        StructureCache cache = new StructureCache() {
+
+            @Override
+            public BxDocument get(String key) {
+                BxDocument document = directoryCache.get(key);
+                if (document != null) {
+                    hits.put(key, hits.containsKey(key) ? hits.get(key) + 1 : 1);
+                }
+                return document;
+            }
+
+            @Override
+            public void put(String key, BxDocument document) {
+                directoryCache.put(key, document);
+            }
+        };
+        
+        BxDocument expected = createExtractor().extractStructure(pdf);
+        PdfBxStructureExtractor extractor = createExtractor();
+        extractor.setStructureCache(cache);
+        
+        BxDocument missed = extractor.extractStructure(pdf);
+        assertTrue(hits.isEmpty());
+        InputStream stream = this.getClass().getResourceAsStream(TEST_FILE);
+        BxDocument hit;
+        try {
+            hit = extractor.extractStructure(stream);
+        } finally {
+            stream.close();
+        }
+        assertEquals(1, hits.size());
+        assertEquals(1, hits.values().iterator().next().intValue());
+        
+        assertTrue(BxModelUtils.areEqual(expected, missed));
+        assertTrue(BxModelUtils.areEqual(expected, hit));
+        BxDocumentToTrueVizWriter writer = new BxDocumentToTrueVizWriter();
+        assertEquals(writer.write(expected.getPages()), writer.write(hit.getPages()));
+        
+        extractor.setConfigurationVersion("other");
+        extractor.extractStructure(pdf);
+        assertEquals(1, hits.size());
+        assertEquals(1, hits.values().iterator().next().intValue());
+    }
+    
+    @Test
+    public void testConfigurationVersion() {
+        ITextCharacterExtractor characterExtractor = new ITextCharacterExtractor();
+        DocstrumSegmenter segmenter = new DocstrumSegmenter();
+        ReadingOrderResolver roResolver = new HierarchicalReadingOrderResolver();
+        String version = StructureCacheKeys.defaultConfigurationVersion(characterExtractor, segmenter, roResolver);
+        assertEquals(version, StructureCacheKeys.defaultConfigurationVersion(
+                new ITextCharacterExtractor(), new DocstrumSegmenter(), roResolver));
+        
+        segmenter.setAngleTolerance(Math.PI / 4);
+        String segmenterVersion = StructureCacheKeys.defaultConfigurationVersion(characterExtractor, segmenter, roResolver);
+        assertFalse(version.equals(segmenterVersion));
+        
+        characterExtractor.setPagesLimits(5, 5);
+        assertFalse(segmenterVersion.equals(
+                StructureCacheKeys.defaultConfigurationVersion(characterExtractor, segmenter, roResolver)));
+    }
+    
+    @Test
+    public void testCorruptedEntry() throws IOException {
+        DirectoryStructureCache cache = new DirectoryStructureCache(folder.getRoot());
+        String key = "0123456789abcdef-0123456789abcdef";
+        assertNull(cache.get(key));
+        cache.put(key, new BxDocument());
+        assertNotNull(cache.get(key));
+        
+        File file = new File(new File(folder.getRoot(), "01"), key + ".bxd");
+        assertTrue(file.isFile());
+        FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        } finally {
+            stream.close();
+        }
+        assertNull(cache.get(key));
+        assertFalse(file.exists());
+    }
+    
+}
@@ -107,6 +107,14 @@ public class DocstrumPageSegmenterTest {
         testSegmentPages_badBounds(new BxBounds(0, 0, Double.POSITIVE_INFINITY, 0));
     }
 
+    @Test(expected=AnalysisException.class, timeout=10000)
+    public void testSegmentPages_overflowingCenter() throws AnalysisException {
+        BxDocument doc = new BxDocument().addPage(new BxPage()
+                .addChunk(new BxChunk(new BxBounds(0, 0, 5, 10), "a"))
+                .addChunk(new BxChunk(new BxBounds(Double.MAX_VALUE, 0, Double.MAX_VALUE, 10), "b")));
+        new DocstrumSegmenter().segmentDocument(doc);
+    }
+
     private static void assertBetween(int min, int max, int value) {
         assertTrue("expected between:<" + min + "> and:<" + max + "> but was:<" + value + ">",
                 min <= value && value <= max);
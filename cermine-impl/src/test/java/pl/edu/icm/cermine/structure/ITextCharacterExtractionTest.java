@@ -18,11 +18,17 @@
 
 package pl.edu.icm.cermine.structure;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.BxBounds;
+import pl.edu.icm.cermine.structure.model.BxChunk;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxPage;
 
@@ -62,4 +68,51 @@ public class ITextCharacterExtractionTest {
             assertTrue(page.getChunks().get(7).getBounds().isSimilarTo(b7, 0.08));
         }
     }
+
+    @Test
+    public void duplicateGlyphsTest() {
+        ITextCharacterExtractor.PageGlyphs glyphs = new ITextCharacterExtractor.PageGlyphs();
+        glyphs.add(10.0f, 20.0f, 5.0f, 8.0f, "a");
+        glyphs.add(10.5f, 20.5f, 5.0f, 8.0f, "a");
+        glyphs.add(9.5f, 19.9f, 5.2f, 8.1f, "a");
+        glyphs.add(10.0f, 20.0f, 5.0f, 8.0f, "b");
+        glyphs.add(11.2f, 20.0f, 5.0f, 8.0f, "a");
+        glyphs.add(-0.5f, 20.0f, 5.0f, 8.0f, "c");
+        glyphs.add(0.4f, 20.0f, 5.0f, 8.0f, "c");
+        
+        List<BxChunk> chunks = glyphs.toChunks();
+        assertEquals(4, chunks.size());
+        assertEquals("a", chunks.get(0).toText());
+        assertEquals("b", chunks.get(1).toText());
+        assertEquals(11.2f, chunks.get(2).getX(), 0.0);
+        assertEquals("c", chunks.get(3).toText());
+        assertEquals(-0.5f, chunks.get(3).getX(), 0.0);
+        
+        assertTrue(glyphs.toChunks().isEmpty());
+    }
+
+    @Test
+    public void fileExtractionTest() throws AnalysisException, IOException {
+        for (String file : INPUT_FILES) {
+            File pdf = File.createTempFile("cermine", ".pdf");
+            try {
+                FileUtils.copyInputStreamToFile(this.getClass().getResourceAsStream(INPUT_DIR + file), pdf);
+                BxDocument streamDocument = extractor.extractCharacters(this.getClass().getResourceAsStream(INPUT_DIR + file));
+                BxDocument fileDocument = extractor.extractCharacters(pdf);
+                
+                assertEquals(streamDocument.getPages().size(), fileDocument.getPages().size());
+                for (int i = 0; i < streamDocument.getPages().size(); i++) {
+                    List<BxChunk> expected = streamDocument.getPages().get(i).getChunks();
+                    List<BxChunk> actual = fileDocument.getPages().get(i).getChunks();
+                    assertEquals(expected.size(), actual.size());
+                    for (int j = 0; j < expected.size(); j++) {
+                        assertEquals(expected.get(j).toText(), actual.get(j).toText());
+                        assertTrue(expected.get(j).getBounds().isSimilarTo(actual.get(j).getBounds(), 0));
+                    }
+                }
+            } finally {
+                pdf.delete();
+            }
+        }
+    }
 }
@@ -21,7 +21,9 @@ package pl.edu.icm.cermine.structure;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.*;
 import static org.junit.Assert.*;
 import org.junit.Test;
 import pl.edu.icm.cermine.exception.AnalysisException;
@@ -107,6 +109,58 @@ public class ParallelDocstrumPageSegmenterTest {
         testSegmentPages_badBounds(new BxBounds(0, 0, Double.POSITIVE_INFINITY, 0));
     }
 
+    @Test
+    public void testSegmentDocumentsConcurrently() throws Exception {
+        final List<BxDocument> inDocs = new ArrayList<BxDocument>();
+        for (int i = 0; i < 4; i++) {
+            Reader reader = new InputStreamReader(getResource("DocstrumPageSegmenter01.xml"));
+            BxDocument inDoc = new BxDocument().setPages(new MargToTextrImporter().read(reader));
+            new UnsegmentedPagesFlattener().process(inDoc);
+            inDocs.add(inDoc);
+        }
+        String expected = toText(new DocstrumSegmenter().segmentDocument(inDocs.get(0)));
+        
+        ExecutorService pageExecutor = Executors.newFixedThreadPool(2);
+        ExecutorService docExecutor = Executors.newFixedThreadPool(inDocs.size());
+        try {
+            final DocstrumSegmenter pageSegmenter = new ParallelDocstrumSegmenter(pageExecutor, 2);
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (final BxDocument inDoc : inDocs) {
+                results.add(docExecutor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws AnalysisException {
+                        return toText(pageSegmenter.segmentDocument(inDoc));
+                    }
+                }));
+            }
+            for (Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            docExecutor.shutdown();
+            pageExecutor.shutdown();
+        }
+    }
+
+    @Test(expected=AnalysisException.class)
+    public void testSegmentPages_badBoundsParallel() throws AnalysisException {
+        BxDocument doc = new BxDocument()
+                .addPage(new BxPage().addChunk(new BxChunk(new BxBounds(0, 0, 1, 1), "a")))
+                .addPage(new BxPage().addChunk(new BxChunk(null, "a")));
+        new ParallelDocstrumSegmenter().segmentDocument(doc);
+    }
+
+    private static String toText(BxDocument document) {
+        StringBuilder sb = new StringBuilder();
+        for (BxZone zone : document.asZones()) {
+            for (BxLine line : zone.getLines()) {
+                sb.append(line.toText()).append("\n");
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
     private static void assertBetween(int min, int max, int value) {
         assertTrue("expected between:<" + min + "> and:<" + max + "> but was:<" + value + ">",
                 min <= value && value <= max);
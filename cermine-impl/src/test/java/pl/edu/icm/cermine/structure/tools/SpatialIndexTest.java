@@ -0,0 +1,89 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure.tools;
+
+import java.util.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import pl.edu.icm.cermine.structure.model.BxBounds;
+
+public class SpatialIndexTest {
+
+    @Test
+    public void testFind() {
+        List<String> elements = Arrays.asList("a", "b", "c", "d");
+        List<BxBounds> bounds = Arrays.asList(
+                new BxBounds(0, 0, 10, 10),
+                new BxBounds(20, 0, 10, 10),
+                new BxBounds(0, 20, 10, 10),
+                new BxBounds(5, 5, 20, 20));
+        SpatialIndex<String> index = new SpatialIndex<String>(elements, bounds);
+
+        assertEquals(4, index.size());
+        assertEquals(Arrays.asList("a", "d"), index.find(1, 1, 6, 6));
+        assertEquals(Arrays.asList("b", "d"), index.find(new BxBounds(21, 6, 2, 2)));
+        assertEquals(Arrays.asList("c", "d"), index.find(10, 25, 10, 25));
+        assertEquals(Arrays.asList("a", "b", "c", "d"), index.find(-1, -1, 100, 100));
+        assertTrue(index.find(50, 50, 60, 60).isEmpty());
+        // touching rectangles intersect
+        assertArrayEquals(new int[]{0, 1}, index.findIndices(10, 0, 20, 1));
+    }
+
+    @Test
+    public void testFindEmpty() {
+        SpatialIndex<String> index = new SpatialIndex<String>(new ArrayList<String>(), new ArrayList<BxBounds>());
+        assertEquals(0, index.size());
+        assertTrue(index.find(0, 0, 10, 10).isEmpty());
+    }
+
+    @Test
+    public void testFindNaN() {
+        double[] xs = {0, Double.NaN, 2};
+        double[] ys = {0, 1, 2};
+        SpatialIndex<Integer> index = new SpatialIndex<Integer>(Arrays.asList(0, 1, 2), xs, ys, xs, ys);
+        assertArrayEquals(new int[]{0, 2}, index.findIndices(-10, -10, 10, 10));
+    }
+
+    @Test
+    public void testFindRandom() {
+        Random random = new Random(1);
+        int count = 2000;
+        List<Integer> elements = new ArrayList<Integer>();
+        List<BxBounds> bounds = new ArrayList<BxBounds>();
+        for (int i = 0; i < count; i++) {
+            elements.add(i);
+            bounds.add(new BxBounds(random.nextDouble() * 1000, random.nextDouble() * 1000,
+                    random.nextDouble() * 30, random.nextDouble() * 30));
+        }
+        SpatialIndex<Integer> index = new SpatialIndex<Integer>(elements, bounds);
+        for (int q = 0; q < 200; q++) {
+            double x0 = random.nextDouble() * 1000, y0 = random.nextDouble() * 1000;
+            double x1 = x0 + random.nextDouble() * 100, y1 = y0 + random.nextDouble() * 100;
+            List<Integer> expected = new ArrayList<Integer>();
+            for (int i = 0; i < count; i++) {
+                BxBounds b = bounds.get(i);
+                if (b.getX() <= x1 && x0 <= b.getX() + b.getWidth()
+                        && b.getY() <= y1 && y0 <= b.getY() + b.getHeight()) {
+                    expected.add(i);
+                }
+            }
+            assertEquals(expected, index.find(x0, y0, x1, y1));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure.transformers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.zip.ZipFile;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.model.*;
+
+public class BinaryToBxDocumentReaderTest {
+    
+    private static final String PATH = "/pl/edu/icm/cermine/structure/";
+    
+    private BxDocument readTrueViz(String zipFilename, String filename) throws IOException, URISyntaxException, TransformationException {
+        ZipFile zipFile = new ZipFile(new File(this.getClass().getResource(PATH + zipFilename).toURI()));
+        try {
+            InputStreamReader reader = new InputStreamReader(zipFile.getInputStream(zipFile.getEntry(filename)), "UTF-8");
+            BxDocument document = new BxDocument().setPages(new TrueVizToBxDocumentReader().read(reader));
+            document.setFilename(filename);
+            return document;
+        } finally {
+            zipFile.close();
+        }
+    }
+    
+    @Test
+    public void testRoundTrip() throws TransformationException, IOException, URISyntaxException {
+        BxDocument expected = readTrueViz("roa_test_small.zip", "1748717X.xml.out");
+        BxDocumentToBinaryWriter writer = new BxDocumentToBinaryWriter();
+        BinaryToBxDocumentReader reader = new BinaryToBxDocumentReader();
+        
+        byte[] plain = writer.write(expected);
+        byte[] compressed = writer.write(expected, BxDocumentToBinaryWriter.COMPRESS);
+        assertTrue(compressed.length < plain.length);
+        
+        assertDocumentsEqual(expected, reader.read(plain));
+        assertDocumentsEqual(expected, reader.read(compressed));
+        
+        BxDocumentToTrueVizWriter trueVizWriter = new BxDocumentToTrueVizWriter();
+        assertEquals(trueVizWriter.write(expected.getPages()), trueVizWriter.write(reader.read(plain).getPages()));
+    }
+    
+    @Test
+    public void testExactBoundsAndSharedChunks() throws TransformationException {
+        BxChunk chunk = new BxChunk(new BxBounds(1.0 / 3, -2.5, 0.1f, 1e300), "a");
+        BxChunk other = new BxChunk(new BxBounds(-0.0, 7.125, 3, 4), "b");
+        BxWord word = new BxWord().setBounds(new BxBounds(Math.PI, Math.E, 0.001, 12345.678));
+        word.addChunk(chunk);
+        word.addChunk(other);
+        BxLine line = new BxLine().addWord(word);
+        BxZone zone = new BxZone().addLine(line);
+        zone.addChunk(chunk);
+        BxPage page = new BxPage().addZone(zone);
+        page.addChunk(other);
+        page.addChunk(new BxChunk(null, null));
+        chunk.setNext(other);
+        other.setPrev(chunk);
+        BxDocument expected = new BxDocument().addPage(page);
+        
+        BxDocument actual = new BinaryToBxDocumentReader().read(new BxDocumentToBinaryWriter().write(expected));
+        
+        assertNull(actual.getFilename());
+        assertNull(actual.asZones().get(0).getLabel());
+        assertNull(actual.asPages().get(0).getBounds());
+        BxWord actualWord = actual.asWords().get(0);
+        assertBoundsEqual(word.getBounds(), actualWord.getBounds());
+        assertBoundsEqual(chunk.getBounds(), actualWord.getChunks().get(0).getBounds());
+        assertBoundsEqual(other.getBounds(), actualWord.getChunks().get(1).getBounds());
+        assertSame(actualWord.getChunks().get(0), actual.asZones().get(0).getChunks().get(0));
+        assertSame(actualWord.getChunks().get(1), actual.asPages().get(0).getChunks().get(0));
+        assertSame(actualWord.getChunks().get(1), actualWord.getChunks().get(0).getNext());
+        assertSame(actualWord.getChunks().get(0), actualWord.getChunks().get(1).getPrev());
+        assertSame(actualWord, actualWord.getChunks().get(0).getParent());
+        assertNull(actual.asPages().get(0).getChunks().get(1).getBounds());
+        assertNull(actual.asPages().get(0).getChunks().get(1).toText());
+    }
+    
+    @Test(expected = TransformationException.class)
+    public void testWrongMagic() throws TransformationException {
+        new BinaryToBxDocumentReader().read(new byte[]{'<', '?', 'x', 'm', 'l', ' ', 'v'});
+    }
+    
+    @Test(expected = TransformationException.class)
+    public void testTruncated() throws TransformationException, IOException, URISyntaxException {
+        byte[] bytes = new BxDocumentToBinaryWriter().write(readTrueViz("roa_test_small.zip", "1748717X.xml.out"));
+        byte[] truncated = new byte[bytes.length / 2];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        new BinaryToBxDocumentReader().read(truncated);
+    }
+    
+    private void assertDocumentsEqual(BxDocument expected, BxDocument actual) {
+        assertEquals(expected.getFilename(), actual.getFilename());
+        assertChainsEqual(expected.asPages(), actual.asPages());
+        assertChainsEqual(expected.asZones(), actual.asZones());
+        assertChainsEqual(expected.asLines(), actual.asLines());
+        assertChainsEqual(expected.asWords(), actual.asWords());
+        assertChainsEqual(expected.asChunks(), actual.asChunks());
+        for (int i = 0; i < expected.asZones().size(); i++) {
+            assertEquals(expected.asZones().get(i).getLabel(), actual.asZones().get(i).getLabel());
+            assertEquals(expected.asZones().get(i).toText(), actual.asZones().get(i).toText());
+        }
+    }
+    
+    private <A extends BxObject<A, ?>> void assertChainsEqual(List<A> expected, List<A> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            A e = expected.get(i);
+            A a = actual.get(i);
+            assertEquals(e.getId(), a.getId());
+            assertEquals(e.getNextId(), a.getNextId());
+            assertEquals(e.hasNext() ? e.getNext().getId() : null, a.hasNext() ? a.getNext().getId() : null);
+            assertEquals(e.hasPrev() ? e.getPrev().getId() : null, a.hasPrev() ? a.getPrev().getId() : null);
+            assertBoundsEqual(e.getBounds(), a.getBounds());
+        }
+    }
+    
+    private void assertBoundsEqual(BxBounds expected, BxBounds actual) {
+        assertEquals(Double.doubleToLongBits(expected.getX()), Double.doubleToLongBits(actual.getX()));
+        assertEquals(Double.doubleToLongBits(expected.getY()), Double.doubleToLongBits(actual.getY()));
+        assertEquals(Double.doubleToLongBits(expected.getWidth()), Double.doubleToLongBits(actual.getWidth()));
+        assertEquals(Double.doubleToLongBits(expected.getHeight()), Double.doubleToLongBits(actual.getHeight()));
+    }
+    
+}
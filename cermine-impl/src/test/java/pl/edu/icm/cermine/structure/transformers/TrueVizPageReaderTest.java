@@ -0,0 +1,176 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure.transformers;
+
+import java.io.*;
+import java.lang.ref.WeakReference;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipFile;
+import org.apache.commons.io.IOUtils;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.model.*;
+
+public class TrueVizPageReaderTest {
+    
+    private static final String PATH = "/pl/edu/icm/cermine/structure/";
+    
+    private String readFromZipFile(String zipFilename, String filename) throws IOException, URISyntaxException {
+        ZipFile zipFile = new ZipFile(new File(this.getClass().getResource(PATH + zipFilename).toURI()));
+        try {
+            return IOUtils.toString(zipFile.getInputStream(zipFile.getEntry(filename)), "UTF-8");
+        } finally {
+            zipFile.close();
+        }
+    }
+    
+    private List<BxPage> readPages(String trueViz) throws TransformationException, IOException {
+        TrueVizPageReader reader = new TrueVizPageReader(new StringReader(trueViz));
+        List<BxPage> pages = new ArrayList<BxPage>();
+        try {
+            BxPage page;
+            while ((page = reader.readPage()) != null) {
+                pages.add(page);
+            }
+        } finally {
+            reader.close();
+        }
+        return pages;
+    }
+    
+    @Test
+    public void testPagesAsInDocument() throws TransformationException, IOException, URISyntaxException {
+        String trueViz = readFromZipFile("roa_test_small.zip", "1748717X.xml.out");
+        BxDocument expected = new BxDocument().setPages(new TrueVizToBxDocumentReader().read(trueViz));
+        BxDocument actual = new BxDocument().setPages(readPages(trueViz));
+        
+        assertTrue(expected.asPages().size() > 1);
+        assertEquals(expected.asPages().size(), actual.asPages().size());
+        Map<Object, Integer> pageIndices = new IdentityHashMap<Object, Integer>();
+        for (int i = 0; i < actual.asPages().size(); i++) {
+            BxPage page = actual.asPages().get(i);
+            pageIndices.put(page, i);
+            for (BxZone zone : page.getZones()) {
+                pageIndices.put(zone, i);
+                for (BxLine line : zone.getLines()) {
+                    pageIndices.put(line, i);
+                    for (BxWord word : line.getWords()) {
+                        pageIndices.put(word, i);
+                        for (BxChunk chunk : word.getChunks()) {
+                            pageIndices.put(chunk, i);
+                        }
+                    }
+                }
+            }
+        }
+        assertChainsEqual(expected.asPages(), actual.asPages(), pageIndices);
+        assertChainsEqual(expected.asZones(), actual.asZones(), pageIndices);
+        assertChainsEqual(expected.asLines(), actual.asLines(), pageIndices);
+        assertChainsEqual(expected.asWords(), actual.asWords(), pageIndices);
+        assertChainsEqual(expected.asChunks(), actual.asChunks(), pageIndices);
+        for (int i = 0; i < expected.asZones().size(); i++) {
+            assertEquals(expected.asZones().get(i).getLabel(), actual.asZones().get(i).getLabel());
+            assertEquals(expected.asZones().get(i).toText(), actual.asZones().get(i).toText());
+        }
+        
+        BxDocumentToTrueVizWriter writer = new BxDocumentToTrueVizWriter();
+        assertEquals(writer.write(expected.getPages()), writer.write(actual.getPages()));
+    }
+    
+    @Test
+    public void testEarlierPagesReleased() throws TransformationException, IOException, URISyntaxException {
+        String trueViz = readFromZipFile("roa_test_small.zip", "1748717X.xml.out");
+        TrueVizPageReader reader = new TrueVizPageReader(new StringReader(trueViz));
+        try {
+            WeakReference<BxPage> first = new WeakReference<BxPage>(reader.readPage());
+            BxPage last = reader.readPage();
+            assertNotNull(last);
+            BxPage page;
+            while ((page = reader.readPage()) != null) {
+                last = page;
+            }
+            assertNull(last.getPrev());
+            for (int i = 0; i < 10 && first.get() != null; i++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+            assertNull(first.get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            reader.close();
+        }
+    }
+    
+    @Test
+    public void testSinglePage() throws TransformationException, IOException {
+        InputStream stream = this.getClass().getResourceAsStream(PATH + "imports/MargImporterTest1.xml");
+        String trueViz = IOUtils.toString(stream, "UTF-8");
+        stream.close();
+        List<BxPage> pages = readPages(trueViz);
+        
+        assertEquals(1, pages.size());
+        assertEquals("0", pages.get(0).getId());
+        assertEquals("-1", pages.get(0).getNextId());
+        assertEquals(new TrueVizToBxDocumentReader().read(trueViz).get(0).toText(), pages.get(0).toText());
+    }
+    
+    @Test
+    public void testRoundTrip() throws TransformationException, IOException, URISyntaxException {
+        String trueViz = readFromZipFile("roa_test_small.zip", "1748717X.xml.out");
+        BxDocumentToTrueVizWriter writer = new BxDocumentToTrueVizWriter();
+        String written = writer.write(new TrueVizToBxDocumentReader().read(trueViz));
+        assertEquals(written, writer.write(readPages(written)));
+    }
+    
+    /**
+     * Checks the links of the elements. Links back to the elements of earlier pages
+     * are not set by the page reader, so these are checked only within pages.
+     */
+    private <A extends Indexable<A>> void assertChainsEqual(List<A> expected, List<A> actual, 
+            Map<Object, Integer> pageIndices) {
+        assertEquals(expected.size(), actual.size());
+        Map<A, A> prevs = new IdentityHashMap<A, A>();
+        for (A a : actual) {
+            if (a.hasNext()) {
+                prevs.put(a.getNext(), a);
+            }
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            A e = expected.get(i);
+            A a = actual.get(i);
+            assertEquals(e.getId(), a.getId());
+            assertEquals(e.getNextId(), a.getNextId());
+            assertEquals(e.hasNext() ? e.getNext().getId() : null, a.hasNext() ? a.getNext().getId() : null);
+            A prev = prevs.get(a);
+            assertEquals(e.hasPrev() ? e.getPrev().getId() : null, prev == null ? null : prev.getId());
+            if (prev != null && !(a instanceof BxPage) && pageIndices.get(prev).equals(pageIndices.get(a))) {
+                assertSame(prev, a.getPrev());
+            } else {
+                assertNull(a.getPrev());
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,107 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import pl.edu.icm.cermine.exception.AnalysisException;
+
+public class ModelRegistryTest {
+    
+    private ModelRegistry registry;
+    
+    private AtomicInteger loads;
+    
+    @Before
+    public void setUp() {
+        registry = ModelRegistry.getDefault();
+        registry.clear();
+        loads = new AtomicInteger();
+    }
+
+    private ModelLoader<Object> countingLoader() {
+        return new ModelLoader<Object>() {
+
+            @Override
+            public Object load() throws AnalysisException {
+                loads.incrementAndGet();
+                return new Object();
+            }
+
+            @Override
+            public long estimateSize(Object model) {
+                return 100;
+            }
+        };
+    }
+    
+    @Test
+    public void testLoadedOnce() throws AnalysisException {
+        Object first = registry.getModel("model", countingLoader());
+        Object second = registry.getModel("model", countingLoader());
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        
+        Object other = registry.getModel("other", countingLoader());
+        assertNotSame(first, other);
+        assertEquals(2, loads.get());
+        
+        assertEquals(2, registry.getStats().size());
+        assertEquals(200, registry.getTotalEstimatedSize());
+    }
+    
+    @Test
+    public void testConcurrentLoad() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Object>> results = new ArrayList<Future<Object>>();
+        for (int i = 0; i < 32; i++) {
+            results.add(executor.submit(new Callable<Object>() {
+
+                @Override
+                public Object call() throws Exception {
+                    start.await();
+                    return registry.getModel("model", countingLoader());
+                }
+            }));
+        }
+        start.countDown();
+        Object model = results.get(0).get();
+        for (Future<Object> result : results) {
+            assertSame(model, result.get());
+        }
+        executor.shutdown();
+        assertEquals(1, loads.get());
+    }
+    
+    @Test
+    public void testChecksumKey() {
+        byte[] a = "model a".getBytes();
+        byte[] b = "model b".getBytes();
+        assertEquals(ModelRegistry.checksumKey(Object.class, a), ModelRegistry.checksumKey(Object.class, a.clone()));
+        assertFalse(ModelRegistry.checksumKey(Object.class, a).equals(ModelRegistry.checksumKey(Object.class, b)));
+        assertFalse(ModelRegistry.checksumKey(Object.class, a).equals(ModelRegistry.checksumKey(String.class, a)));
+    }
+    
+}
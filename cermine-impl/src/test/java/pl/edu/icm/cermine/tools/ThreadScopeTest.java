@@ -0,0 +1,117 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pl.edu.icm.cermine.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class ThreadScopeTest {
+    
+    private final ThreadScope<List<String>> scope = new ThreadScope<List<String>>("test",
+            new ThreadScope.StateFactory<List<String>>() {
+
+                @Override
+                public List<String> create() {
+                    return new ArrayList<String>();
+                }
+            });
+    
+    @Test
+    public void testNestedScopes() {
+        assertNull(scope.get());
+        scope.open(this);
+        try {
+            List<String> state = scope.get();
+            assertNotNull(state);
+            scope.open(this);
+            try {
+                assertSame(state, scope.get());
+            } finally {
+                scope.close(this);
+            }
+            assertSame(state, scope.get());
+        } finally {
+            scope.close(this);
+        }
+        assertNull(scope.get());
+    }
+    
+    @Test
+    public void testOwners() {
+        Object other = new Object();
+        scope.open(this);
+        try {
+            List<String> state = scope.get();
+            state.add("cached");
+            scope.open(other);
+            try {
+                assertNotSame(state, scope.get());
+                assertTrue(scope.get().isEmpty());
+                scope.open(this);
+                try {
+                    assertNotSame(state, scope.get());
+                } finally {
+                    scope.close(this);
+                }
+            } finally {
+                scope.close(other);
+            }
+            assertSame(state, scope.get());
+        } finally {
+            scope.close(this);
+        }
+        assertNull(scope.get());
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testCloseByOtherOwner() {
+        scope.open(this);
+        try {
+            scope.close(new Object());
+        } finally {
+            scope.close(this);
+        }
+    }
+    
+    @Test
+    public void testStateNotShared() throws InterruptedException {
+        scope.open(this);
+        try {
+            final List<List<String>> other = new ArrayList<List<String>>();
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    other.add(scope.get());
+                }
+            };
+            thread.start();
+            thread.join();
+            assertNull(other.get(0));
+        } finally {
+            scope.close(this);
+        }
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testCloseWithoutOpen() {
+        scope.close(this);
+    }
+    
+}
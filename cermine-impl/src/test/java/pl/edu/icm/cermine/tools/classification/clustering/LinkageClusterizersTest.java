@@ -0,0 +1,215 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.clustering;
+
+import java.util.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class LinkageClusterizersTest {
+    
+    @Test
+    public void singleLinkageTest() {
+        Random random = new Random(7);
+        for (int test = 0; test < 50; test++) {
+            double[][] distances = randomDistances(random, 1 + random.nextInt(40));
+            double maxDistance = random.nextDouble() * 0.5;
+            int[] expected = naiveSingleLinkage(distances, maxDistance);
+            int[] actual = new SingleLinkageClusterizer().clusterize(distances, maxDistance);
+            assertSamePartition(expected, actual);
+            assertCanonicalIds(actual);
+        }
+    }
+    
+    @Test
+    public void completeLinkageTest() {
+        Random random = new Random(8);
+        for (int test = 0; test < 50; test++) {
+            double[][] distances = randomDistances(random, 1 + random.nextInt(40));
+            double maxDistance = random.nextDouble();
+            int[] expected = naiveCompleteLinkage(distances, maxDistance, null);
+            int[] actual = new CompleteLinkageClusterizer().clusterize(distances, maxDistance);
+            assertSamePartition(expected, actual);
+            assertCanonicalIds(actual);
+        }
+    }
+    
+    @Test
+    public void completeLinkageAsymmetricTest() {
+        Random random = new Random(10);
+        for (int test = 0; test < 50; test++) {
+            double[][] distances = randomDistances(random, 2 + random.nextInt(40));
+            for (double[] row : distances) {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] *= 0.5 + random.nextDouble();
+                }
+            }
+            int i = random.nextInt(distances.length);
+            distances[i][(i + 1 + random.nextInt(distances.length - 1)) % distances.length] = Double.NaN;
+            double maxDistance = random.nextDouble();
+            int[] expected = naiveCompleteLinkage(distances, maxDistance, null);
+            int[] actual = new CompleteLinkageClusterizer().clusterize(distances, maxDistance);
+            assertSamePartition(expected, actual);
+            assertCanonicalIds(actual);
+        }
+    }
+    
+    @Test
+    public void completeLinkageEvaluatorTest() {
+        ClusteringEvaluator evaluator = new ClusteringEvaluator() {
+
+            @Override
+            public boolean isAcceptable(int[] clusters) {
+                Set<Integer> ids = new HashSet<Integer>();
+                for (int cluster : clusters) {
+                    ids.add(cluster);
+                }
+                return ids.size() <= 3;
+            }
+        };
+        Random random = new Random(9);
+        for (int test = 0; test < 20; test++) {
+            double[][] distances = randomDistances(random, 4 + random.nextInt(30));
+            int[] expected = naiveCompleteLinkage(distances, 0.1, evaluator);
+            int[] actual = new CompleteLinkageClusterizer(evaluator).clusterize(distances, 0.1);
+            assertSamePartition(expected, actual);
+            assertTrue(evaluator.isAcceptable(actual));
+        }
+    }
+    
+    @Test
+    public void emptyTest() {
+        assertEquals(0, new SingleLinkageClusterizer().clusterize(new double[0][0], 1).length);
+        assertEquals(0, new CompleteLinkageClusterizer().clusterize(new double[0][0], 1).length);
+    }
+    
+    private static double[][] randomDistances(Random random, int n) {
+        double[][] points = new double[n][2];
+        for (double[] point : points) {
+            point[0] = random.nextDouble();
+            point[1] = random.nextDouble();
+        }
+        double[][] distances = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                distances[i][j] = Math.hypot(points[i][0] - points[j][0], points[i][1] - points[j][1]);
+            }
+        }
+        return distances;
+    }
+    
+    private static void assertSamePartition(int[] expected, int[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            for (int j = 0; j < expected.length; j++) {
+                assertEquals(expected[i] == expected[j], actual[i] == actual[j]);
+            }
+        }
+    }
+    
+    private static void assertCanonicalIds(int[] clusters) {
+        for (int i = 0; i < clusters.length; i++) {
+            assertTrue(clusters[i] <= i);
+            assertEquals(clusters[i], clusters[clusters[i]]);
+        }
+    }
+    
+    private static int[] naiveSingleLinkage(double[][] distanceMatrix, double maxDistance) {
+        int[] clusters = new int[distanceMatrix.length];
+        for (int i = 0; i < clusters.length; i++) {
+            clusters[i] = i;
+        }
+        while (true) {
+            int mini = -1;
+            int minj = -1;
+            for (int k = 0; k < distanceMatrix.length; k++) {
+                for (int l = 0; l < distanceMatrix.length; l++) {
+                    if (distanceMatrix[k][l] < maxDistance && clusters[k] != clusters[l]) {
+                        mini = k;
+                        minj = l;
+                    }
+                }
+            }
+            if (mini == -1) {
+                return clusters;
+            }
+            int old = clusters[mini];
+            for (int i = 0; i < clusters.length; i++) {
+                if (clusters[i] == old) {
+                    clusters[i] = clusters[minj];
+                }
+            }
+        }
+    }
+    
+    private static int[] naiveCompleteLinkage(double[][] distanceMatrix, double maxDistance, 
+            ClusteringEvaluator evaluator) {
+        List<List<Integer>> clusters = new ArrayList<List<Integer>>();
+        for (int i = 0; i < distanceMatrix.length; i++) {
+            clusters.add(new ArrayList<Integer>(Arrays.asList(i)));
+        }
+        while (clusters.size() > 1) {
+            double mind = Double.POSITIVE_INFINITY;
+            int min1 = -1;
+            int min2 = -1;
+            for (int c1 = 0; c1 < clusters.size(); c1++) {
+                for (int c2 = 0; c2 < clusters.size(); c2++) {
+                    if (c1 == c2) {
+                        continue;
+                    }
+                    double maxd = Double.NEGATIVE_INFINITY;
+                    for (int i : clusters.get(c1)) {
+                        for (int j : clusters.get(c2)) {
+                            if (distanceMatrix[i][j] > maxd) {
+                                maxd = distanceMatrix[i][j];
+                            }
+                        }
+                    }
+                    if (maxd < mind) {
+                        mind = maxd;
+                        min1 = c1;
+                        min2 = c2;
+                    }
+                }
+            }
+            if (mind < maxDistance || (evaluator != null && !evaluator.isAcceptable(createClusterArray(clusters)))) {
+                clusters.get(min1).addAll(clusters.get(min2));
+                clusters.remove(min2);
+            } else {
+                break;
+            }
+        }
+        return createClusterArray(clusters);
+    }
+    
+    private static int[] createClusterArray(List<List<Integer>> clusters) {
+        int length = 0;
+        for (List<Integer> cluster : clusters) {
+            length += cluster.size();
+        }
+        int[] clusterArray = new int[length];
+        for (int c = 0; c < clusters.size(); c++) {
+            for (int element : clusters.get(c)) {
+                clusterArray[element] = c;
+            }
+        }
+        return clusterArray;
+    }
+    
+}
@@ -0,0 +1,130 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.features;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class FeatureVectorTest {
+
+    @Test
+    public void testSchemaVector() {
+        FeatureSchema schema = new FeatureSchema(Arrays.asList("a", "b", "a", "c"));
+        assertFalse(schema.hasUniqueNames());
+        assertEquals(0, schema.indexOf("a"));
+        assertEquals(-1, schema.indexOf("d"));
+
+        FeatureVector vector = new FeatureVector(schema);
+        vector.setValues(new double[]{1, 2, 3, 4});
+        assertEquals(4, vector.size());
+        assertSame(schema, vector.getSchema());
+        assertEquals(1, vector.getValue("a"), 0);
+        assertEquals(3, vector.getValue(2), 0);
+        assertEquals(4, vector.getValue("c"), 0);
+
+        vector.setValue("b", 5);
+        assertArrayEquals(new double[]{1, 5, 3, 4}, vector.getValues(), 0);
+    }
+
+    @Test
+    public void testAddFeature() {
+        FeatureVector vector = new FeatureVector(new FeatureSchema(Arrays.asList("a", "b")));
+        vector.addFeature("b", 7);
+        vector.addFeature("x", 8);
+        assertEquals(Arrays.asList("a", "b", "b", "x"), vector.getFeatureNames());
+        assertEquals(0, vector.getValue("b"), 0);
+        assertEquals(8, vector.getValue("x"), 0);
+        assertEquals(7, vector.getValue(2), 0);
+        assertFalse(vector.getSchema().hasUniqueNames());
+
+        FeatureVector empty = new FeatureVector();
+        for (int i = 0; i < 100; i++) {
+            empty.addFeature("f" + i, i);
+        }
+        assertEquals(100, empty.size());
+        assertEquals(42, empty.getValue("f42"), 0);
+    }
+
+    @Test
+    public void testCopy() {
+        FeatureVector vector = new FeatureVector(new FeatureSchema(Arrays.asList("a", "b")));
+        vector.addFeature("c", 1);
+        FeatureVector copy = vector.copy();
+        copy.setValue("a", 3);
+        copy.addFeature("d", 4);
+        assertEquals(0, vector.getValue("a"), 0);
+        assertEquals(3, vector.size());
+        assertEquals(4, copy.size());
+        assertEquals(1, copy.getValue("c"), 0);
+    }
+
+    @Test
+    public void testBuilderSchema() {
+        List<FeatureCalculator<Double, Object>> calculators = new ArrayList<FeatureCalculator<Double, Object>>();
+        calculators.add(new ValueCalculator("a", 1));
+        calculators.add(new ValueCalculator("b", 2));
+        FeatureVectorBuilder<Double, Object> builder = new FeatureVectorBuilder<Double, Object>();
+        builder.setFeatureCalculators(calculators);
+        calculators.set(1, new ValueCalculator("c", 3));
+        assertEquals(Arrays.asList("a", "b"), builder.getSchema().getFeatureNames());
+        assertEquals(2, builder.getFeatureVector(0.0, null).getValue("b"), 0);
+
+        builder.setFeatureCalculators(calculators);
+        assertEquals(Arrays.asList("a", "c"), builder.getSchema().getFeatureNames());
+        assertEquals(3, builder.getFeatureVector(0.0, null).getValue("c"), 0);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiableCalculators() {
+        FeatureVectorBuilder<Double, Object> builder = new FeatureVectorBuilder<Double, Object>();
+        builder.setFeatureCalculators(Arrays.<FeatureCalculator<Double, Object>>asList(new ValueCalculator("a", 1)));
+        builder.getFeatureCalculators().add(new ValueCalculator("b", 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingFeature() {
+        new FeatureVector(new FeatureSchema(Arrays.asList("a"))).getValue("b");
+    }
+
+    private static class ValueCalculator extends FeatureCalculator<Double, Object> {
+
+        private final String name;
+
+        private final double value;
+
+        ValueCalculator(String name, double value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public String getFeatureName() {
+            return name;
+        }
+
+        @Override
+        public double calculateFeatureValue(Double object, Object context) {
+            return value;
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.general;
+
+import java.util.Formatter;
+import java.util.Locale;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import pl.edu.icm.cermine.structure.model.BxZoneLabel;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
+
+public class LibSVMSampleWriterTest {
+    
+    private static final double[] SPECIAL_VALUES = {
+        0, -0.0, 1, -1, 0.5, 0.125, 0.1, 2.0 / 3, 0.000005, 0.0000049, -0.000001, -0.000005,
+        0.000015, 0.999995, 9.999995, 99999.999995, 1e-7, 1e20, 1.5e15, 123456789.123456, 
+        Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+    };
+
+    @Test
+    public void testAppendValue() {
+        for (double value : SPECIAL_VALUES) {
+            assertFormatted(value);
+        }
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            assertFormatted(random.nextDouble());
+            assertFormatted(random.nextGaussian() * 1000);
+            assertFormatted(random.nextInt(2000000) / 200000.0 - 4.999995);
+            assertFormatted(Double.longBitsToDouble(random.nextLong()));
+        }
+    }
+    
+    @Test
+    public void testAppendSample() {
+        FeatureVector vector = new FeatureVector();
+        vector.addFeature("a", 0.25);
+        vector.addFeature("b", -3);
+        vector.addFeature("c", 1.0 / 3);
+        StringBuilder sb = new StringBuilder();
+        LibSVMSampleWriter.appendSample(sb, new TrainingSample<BxZoneLabel>(vector, BxZoneLabel.MET_TITLE));
+        assertEquals(BxZoneLabel.MET_TITLE.ordinal() + " 1:0.25000 2:-3.00000 3:0.33333 \n", sb.toString());
+    }
+    
+    private void assertFormatted(double value) {
+        StringBuilder expected = new StringBuilder();
+        new Formatter(expected, Locale.US).format("%.5f", value);
+        StringBuilder actual = new StringBuilder();
+        LibSVMSampleWriter.appendValue(actual, value);
+        assertEquals(String.valueOf(value), expected.toString(), actual.toString());
+    }
+    
+}
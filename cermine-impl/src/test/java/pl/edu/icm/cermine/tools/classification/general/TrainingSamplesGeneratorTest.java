@@ -0,0 +1,150 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.general;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pl.edu.icm.cermine.structure.SVMInitialZoneClassifier;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.model.BxZoneLabel;
+import pl.edu.icm.cermine.structure.transformers.BxDocumentToBinaryWriter;
+import pl.edu.icm.cermine.structure.transformers.BxDocumentToTrueVizWriter;
+import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentReader;
+
+public class TrainingSamplesGeneratorTest {
+    
+    private static final String ZIP_PATH = "/pl/edu/icm/cermine/structure/roa_test_small.zip";
+    
+    private static final String ZIP_ENTRY = "1748717X.xml.out";
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private List<File> files;
+    
+    private final TrainingSamplesGenerator.SampleExtractor extractor = TrainingSamplesGenerator.zoneSamples(
+            SVMInitialZoneClassifier.getFeatureVectorBuilder(), BxZoneLabel.getLabelToGeneralMap());
+    
+    /**
+     * Stores the test document in TrueViz format and each of its pages 
+     * as a separate binary document, and adds a broken file.
+     */
+    @Before
+    public void setUp() throws Exception {
+        List<BxPage> pages;
+        ZipFile zipFile = new ZipFile(new File(this.getClass().getResource(ZIP_PATH).toURI()));
+        try {
+            Reader reader = new InputStreamReader(zipFile.getInputStream(zipFile.getEntry(ZIP_ENTRY)), "UTF-8");
+            pages = new TrueVizToBxDocumentReader().read(reader);
+        } finally {
+            zipFile.close();
+        }
+        
+        Writer writer = new OutputStreamWriter(new FileOutputStream(folder.newFile("all.xml")), "UTF-8");
+        try {
+            new BxDocumentToTrueVizWriter().write(writer, pages);
+        } finally {
+            writer.close();
+        }
+        for (int i = 0; i < pages.size(); i++) {
+            BxDocument document = new BxDocument().addPage(pages.get(i));
+            FileUtils.writeByteArrayToFile(folder.newFile(i + ".bxd"), new BxDocumentToBinaryWriter().write(document));
+        }
+        FileUtils.writeStringToFile(folder.newFile("broken.xml"), "<Page><Zone>");
+        FileUtils.writeStringToFile(folder.newFile("notes.txt"), "ignored");
+        
+        files = TrainingSamplesGenerator.listDocumentFiles(folder.getRoot().getPath());
+        assertEquals(pages.size() + 2, files.size());
+    }
+
+    @Test
+    public void testParallelGeneration() throws Exception {
+        String expected = generate(1, true);
+        assertTrue(expected.length() > 0);
+        
+        assertEquals(expected, generate(4, true));
+        
+        String unordered = generate(3, false);
+        assertEquals(sortedLines(expected), sortedLines(unordered));
+        
+        TrainingSamplesGenerator generator = new TrainingSamplesGenerator();
+        generator.setThreads(4);
+        generator.setOrdered(false);
+        List<TrainingSample<BxZoneLabel>> collected = generator.collect(files, extractor);
+        assertEquals(expected, toLibSVM(collected));
+        assertEquals(1, generator.getFailedDocuments());
+        assertFalse(generator.isOrdered());
+    }
+    
+    @Test
+    public void testBinarySamples() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TrainingSamplesGenerator generator = new TrainingSamplesGenerator();
+        generator.setThreads(2);
+        generator.addOutput(extractor, new BinarySampleWriter<BxZoneLabel>(bytes));
+        generator.generate(files);
+        
+        BinarySampleReader<BxZoneLabel> reader = new BinarySampleReader<BxZoneLabel>(
+                new ByteArrayInputStream(bytes.toByteArray()), BxZoneLabel.class,
+                SVMInitialZoneClassifier.getFeatureVectorBuilder().getSchema());
+        List<TrainingSample<BxZoneLabel>> samples = reader.readAll();
+        reader.close();
+        
+        assertEquals(generate(1, true), toLibSVM(samples));
+    }
+    
+    private String generate(int threads, boolean ordered) throws Exception {
+        StringWriter writer = new StringWriter();
+        TrainingSamplesGenerator generator = new TrainingSamplesGenerator();
+        generator.setThreads(threads);
+        generator.setMaxPendingDocuments(2);
+        generator.setOrdered(ordered);
+        generator.addOutput(extractor, new LibSVMSampleWriter<BxZoneLabel>(writer));
+        assertEquals(files.size() - 1, generator.generate(files));
+        assertEquals(1, generator.getFailedDocuments());
+        return writer.toString();
+    }
+    
+    private String toLibSVM(List<TrainingSample<BxZoneLabel>> samples) throws IOException {
+        StringWriter writer = new StringWriter();
+        LibSVMSampleWriter<BxZoneLabel> svmWriter = new LibSVMSampleWriter<BxZoneLabel>(writer);
+        for (TrainingSample<BxZoneLabel> sample : samples) {
+            svmWriter.write(sample);
+        }
+        return writer.toString();
+    }
+    
+    private List<String> sortedLines(String text) {
+        List<String> lines = new ArrayList<String>(Arrays.asList(text.split("\n")));
+        Collections.sort(lines);
+        return lines;
+    }
+    
+}
@@ -0,0 +1,122 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.hmm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import pl.edu.icm.cermine.tools.classification.features.FeatureCalculator;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
+import pl.edu.icm.cermine.tools.classification.hmm.model.HMMProbabilityInfo;
+import pl.edu.icm.cermine.tools.classification.hmm.model.HMMProbabilityInfoFactory;
+import pl.edu.icm.cermine.tools.classification.hmm.model.HMMTrainingSample;
+
+public class HMMServiceImplTest {
+    
+    private static final List<String> STATES = Arrays.asList("low", "high", "unused");
+    
+    private FeatureVectorBuilder<Double, Object> builder;
+    
+    private HMMProbabilityInfo<String> probabilityInfo;
+    
+    private HMMService hmmService = new HMMServiceImpl();
+    
+    @Before
+    public void setUp() {
+        builder = new FeatureVectorBuilder<Double, Object>();
+        builder.setFeatureCalculators(Arrays.<FeatureCalculator<Double, Object>>asList(
+                new FeatureCalculator<Double, Object>() {
+
+                    @Override
+                    public String getFeatureName() {
+                        return "Value";
+                    }
+
+                    @Override
+                    public double calculateFeatureValue(Double object, Object context) {
+                        return object;
+                    }
+                },
+                new FeatureCalculator<Double, Object>() {
+
+                    @Override
+                    public String getFeatureName() {
+                        return "Noise";
+                    }
+
+                    @Override
+                    public double calculateFeatureValue(Double object, Object context) {
+                        return object * 1000 % 1;
+                    }
+                }));
+        
+        Random random = new Random(1);
+        List<HMMTrainingSample<String>> samples = new ArrayList<HMMTrainingSample<String>>();
+        for (int i = 0; i < 50; i++) {
+            HMMTrainingSample<String> previous = null;
+            for (int j = 0; j < 20; j++) {
+                double value = random.nextDouble();
+                String label = value <= 0.5 ? "low" : "high";
+                HMMTrainingSample<String> sample = new HMMTrainingSample<String>(builder.getFeatureVector(value, null), label, j == 0);
+                if (previous != null) {
+                    previous.setNextLabel(label);
+                }
+                samples.add(sample);
+                previous = sample;
+            }
+        }
+        probabilityInfo = HMMProbabilityInfoFactory.getFVHMMProbability(samples, builder, 1e-6);
+    }
+    
+    @Test
+    public void testEmissionProbabilities() {
+        for (double value : new double[]{0.1, 0.49, 0.51, 0.9}) {
+            FeatureVector message = builder.getFeatureVector(value, null);
+            double[] probabilities = probabilityInfo.getEmissionProbabilities(STATES, message);
+            for (int i = 0; i < STATES.size(); i++) {
+                assertEquals(probabilityInfo.getEmissionProbability(STATES.get(i), message), probabilities[i], 0);
+            }
+        }
+    }
+    
+    @Test
+    public void testViterbi() {
+        Random random = new Random(2);
+        for (int length : new int[]{1, 2, 10, 5000}) {
+            List<FeatureVector> messages = new ArrayList<FeatureVector>();
+            List<String> expected = new ArrayList<String>();
+            for (int i = 0; i < length; i++) {
+                double value = random.nextDouble();
+                if (Math.abs(value - 0.5) < 0.05) {
+                    value = 0.2;
+                }
+                messages.add(builder.getFeatureVector(value, null));
+                expected.add(value <= 0.5 ? "low" : "high");
+            }
+            assertEquals(expected, hmmService.viterbiMostProbableStates(probabilityInfo, STATES, messages));
+        }
+        assertTrue(hmmService.viterbiMostProbableStates(probabilityInfo, STATES, new ArrayList<FeatureVector>()).isEmpty());
+    }
+    
+}
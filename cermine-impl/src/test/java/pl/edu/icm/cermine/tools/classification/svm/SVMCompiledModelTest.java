@@ -0,0 +1,185 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.svm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import libsvm.*;
+import static org.junit.Assert.*;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import pl.edu.icm.cermine.content.filtering.SVMContentFilter;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.structure.model.BxZoneLabel;
+import pl.edu.icm.cermine.tools.classification.features.FeatureCalculator;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
+import pl.edu.icm.cermine.tools.classification.general.TrainingSample;
+
+public class SVMCompiledModelTest {
+    
+    private static final int DIMENSIONS = 5;
+    
+    private static final BxZoneLabel[] LABELS = {BxZoneLabel.MET_TITLE, BxZoneLabel.MET_ABSTRACT, BxZoneLabel.BODY_CONTENT};
+    
+    @BeforeClass
+    public static void setUpClass() {
+        svm.svm_set_print_string_function(new svm_print_interface() {
+            @Override
+            public void print(String string) {
+            }
+        });
+    }
+    
+    @Test
+    public void testDecisionValues() {
+        int[][] kernels = {{svm_parameter.POLY, 3}, {svm_parameter.POLY, 2}, {svm_parameter.POLY, 1}, {svm_parameter.LINEAR, 0}};
+        for (int[] kernel : kernels) {
+            Random random = new Random(kernel[0] * 10 + kernel[1]);
+            TestClassifier classifier = new TestClassifier();
+            svm_parameter param = SVMClassifier.getDefaultParam();
+            param.kernel_type = kernel[0];
+            param.degree = kernel[1];
+            classifier.setParameter(param);
+            classifier.buildClassifier(randomSamples(random, 150));
+            
+            SVMCompiledModel compiled = SVMCompiledModel.compile(classifier.model, DIMENSIONS);
+            int nrClass = classifier.model.nr_class;
+            double[] expected = new double[nrClass * (nrClass - 1) / 2];
+            for (int i = 0; i < 300; i++) {
+                double[] instance = new double[DIMENSIONS];
+                for (int j = 0; j < DIMENSIONS; j++) {
+                    instance[j] = random.nextInt(4) == 0 ? 0 : random.nextDouble() * 1.2 - 0.1;
+                }
+                FeatureVector fv = new FeatureVector(classifier.featureVectorBuilder.getSchema());
+                fv.setValues(instance);
+                svm.svm_predict_values(classifier.model, classifier.toNodes(fv), expected);
+                assertArrayEquals(expected, compiled.getDecisionValues(instance), 1e-9);
+            }
+        }
+    }
+    
+    @Test
+    public void testCompiledMode() throws IOException {
+        Random random = new Random(3);
+        TestClassifier classifier = new TestClassifier();
+        classifier.buildClassifier(randomSamples(random, 200));
+        List<double[]> objects = new ArrayList<double[]>();
+        for (int i = 0; i < 500; i++) {
+            objects.add(randomPoint(random));
+        }
+        List<BxZoneLabel> expected = classifier.predictLabels(objects, null);
+        
+        SVMCompiledModel compiled = classifier.compileModel();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        compiled.write(out);
+        classifier.setCompiledModel(SVMCompiledModel.read(new ByteArrayInputStream(out.toByteArray())));
+        
+        List<BxZoneLabel> actual = classifier.predictLabels(objects, null);
+        int agreed = 0;
+        for (int i = 0; i < objects.size(); i++) {
+            assertEquals(actual.get(i), classifier.predictLabel(objects.get(i), null));
+            if (expected.get(i) == actual.get(i)) {
+                agreed++;
+            }
+        }
+        assertTrue(agreed >= objects.size() - 1);
+    }
+    
+    @Test
+    public void testUnsupported() throws AnalysisException {
+        SVMContentFilter filter = SVMContentFilter.getDefaultInstance();
+        assertFalse(SVMCompiledModel.isSupported(filter.model));
+        try {
+            SVMCompiledModel.compile(filter.model, filter.featureVectorBuilder.size());
+            fail();
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+    
+    @Test
+    public void testSharedInstanceReadOnly() throws AnalysisException {
+        SVMContentFilter filter = SVMContentFilter.getDefaultInstance();
+        assertTrue(filter.isReadOnly());
+        try {
+            filter.compileModel();
+            fail();
+        } catch (UnsupportedOperationException ex) {
+        }
+        try {
+            filter.setParameter(SVMClassifier.getDefaultParam());
+            fail();
+        } catch (UnsupportedOperationException ex) {
+        }
+        assertFalse(new SVMContentFilter().isReadOnly());
+    }
+    
+    private static List<TrainingSample<BxZoneLabel>> randomSamples(Random random, int count) {
+        FeatureVectorBuilder<double[], Object> builder = createBuilder();
+        List<TrainingSample<BxZoneLabel>> samples = new ArrayList<TrainingSample<BxZoneLabel>>();
+        for (int i = 0; i < count; i++) {
+            double[] point = randomPoint(random);
+            BxZoneLabel label = LABELS[(point[0] + point[1] > 1 ? 1 : 0) + (point[2] > 0.7 ? 1 : 0)];
+            samples.add(new TrainingSample<BxZoneLabel>(builder.getFeatureVector(point, null), label));
+        }
+        return samples;
+    }
+    
+    private static double[] randomPoint(Random random) {
+        double[] point = new double[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            point[i] = random.nextDouble() * 10;
+        }
+        return point;
+    }
+    
+    private static FeatureVectorBuilder<double[], Object> createBuilder() {
+        List<FeatureCalculator<double[], Object>> calculators = new ArrayList<FeatureCalculator<double[], Object>>();
+        for (int i = 0; i < DIMENSIONS; i++) {
+            final int index = i;
+            calculators.add(new FeatureCalculator<double[], Object>() {
+                
+                @Override
+                public String getFeatureName() {
+                    return "f" + index;
+                }
+
+                @Override
+                public double calculateFeatureValue(double[] object, Object context) {
+                    return object[index];
+                }
+            });
+        }
+        FeatureVectorBuilder<double[], Object> builder = new FeatureVectorBuilder<double[], Object>();
+        builder.setFeatureCalculators(calculators);
+        return builder;
+    }
+    
+    private static class TestClassifier extends SVMClassifier<double[], Object, BxZoneLabel> {
+
+        TestClassifier() {
+            super(createBuilder(), BxZoneLabel.class);
+        }
+    }
+
+}
@@ -0,0 +1,196 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.svm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import libsvm.svm;
+import libsvm.svm_parameter;
+import libsvm.svm_print_interface;
+import static org.junit.Assert.*;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.model.BxZone;
+import pl.edu.icm.cermine.structure.model.BxZoneLabel;
+import pl.edu.icm.cermine.tools.classification.features.FeatureCalculator;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
+import pl.edu.icm.cermine.tools.classification.general.TrainingSample;
+
+public class SVMGridSearchTest {
+    
+    private static final int DIMENSIONS = 4;
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @BeforeClass
+    public static void setUpClass() {
+        svm.svm_set_print_string_function(new svm_print_interface() {
+            @Override
+            public void print(String string) {
+            }
+        });
+    }
+
+    @Test
+    public void testGrid() {
+        List<SVMGridSearch.GridPoint> points = SVMGridSearch.grid(
+                new int[]{svm_parameter.LINEAR, svm_parameter.POLY, svm_parameter.RBF},
+                new double[]{1, 10}, new double[]{0.5, 2}, new int[]{2, 3});
+        // linear: 2 Cs, poly: 2 Cs * 2 gammas * 2 degrees, rbf: 2 Cs * 2 gammas
+        assertEquals(2 + 8 + 4, points.size());
+        assertEquals(svm_parameter.LINEAR, points.get(0).getKernelType());
+        assertEquals(svm_parameter.RBF, points.get(points.size() - 1).getKernelType());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testGridPrecomputedKernel() {
+        SVMGridSearch.grid(new int[]{svm_parameter.LINEAR, svm_parameter.PRECOMPUTED},
+                new double[]{1}, new double[]{1}, new int[]{3});
+    }
+    
+    @Test
+    public void testDivide() {
+        List<Integer> documents = new ArrayList<Integer>();
+        for (int i = 0; i < 17; i++) {
+            documents.add(i);
+        }
+        List<List<Integer>> folds = SVMGridSearch.divide(documents, 5, 11);
+        assertEquals(folds, SVMGridSearch.divide(documents, 5, 11));
+        assertEquals(5, folds.size());
+        Set<Integer> divided = new HashSet<Integer>();
+        for (List<Integer> fold : folds) {
+            assertTrue(fold.size() == 3 || fold.size() == 4);
+            for (Integer document : fold) {
+                assertTrue(divided.add(document));
+            }
+        }
+        assertEquals(new HashSet<Integer>(documents), divided);
+    }
+    
+    @Test
+    public void testSearchDocuments() throws AnalysisException {
+        FeatureVectorBuilder<BxZone, BxPage> builder = createBuilder();
+        Random random = new Random(5);
+        List<List<TrainingSample<BxZoneLabel>>> documents = new ArrayList<List<TrainingSample<BxZoneLabel>>>();
+        for (int i = 0; i < 12; i++) {
+            documents.add(randomSamples(builder, random, 5 + random.nextInt(10)));
+        }
+        List<SVMGridSearch.GridPoint> points = SVMGridSearch.grid(new int[]{svm_parameter.RBF},
+                new double[]{8}, new double[]{1}, new int[]{3});
+        
+        SVMGridSearch search = new SVMGridSearch(builder);
+        search.setFolds(4);
+        search.setThreads(2);
+        List<SVMGridSearch.Result> results = search.searchDocuments(documents, points);
+        
+        assertEquals(1, results.size());
+        assertTrue(results.get(0).getResults().getAccuracy() > 0.8);
+    }
+    
+    @Test
+    public void testSearch() throws AnalysisException, IOException {
+        FeatureVectorBuilder<BxZone, BxPage> builder = createBuilder();
+        List<TrainingSample<BxZoneLabel>> samples = randomSamples(builder, new Random(3), 150);
+        List<SVMGridSearch.GridPoint> points = SVMGridSearch.grid(
+                new int[]{svm_parameter.LINEAR, svm_parameter.RBF},
+                new double[]{0.001, 8}, new double[]{1}, new int[]{3});
+        
+        SVMGridSearch sequential = new SVMGridSearch(builder);
+        sequential.setFolds(3);
+        sequential.setThreads(1);
+        List<SVMGridSearch.Result> expected = sequential.search(samples, points);
+        
+        SVMGridSearch parallel = new SVMGridSearch(builder);
+        parallel.setFolds(3);
+        parallel.setThreads(3);
+        List<SVMGridSearch.Result> results = parallel.search(samples, points);
+        
+        assertEquals(points.size(), results.size());
+        for (int i = 0; i < points.size(); i++) {
+            assertSame(points.get(i), results.get(i).getPoint());
+            assertEquals(expected.get(i).getResults().getAccuracy(), results.get(i).getResults().getAccuracy(), 0);
+            assertEquals(expected.get(i).getResults().getMacroF1(), results.get(i).getResults().getMacroF1(), 0);
+        }
+        
+        SVMGridSearch.Result best = parallel.getBest(results);
+        assertEquals(8, best.getPoint().getC(), 0);
+        assertTrue(best.getResults().getAccuracy() > 0.9);
+        
+        StringWriter table = new StringWriter();
+        SVMGridSearch.writeResults(results, table);
+        assertEquals(points.size() + 1, table.toString().split("\n").length);
+        
+        File model = new File(folder.getRoot(), "best.model");
+        parallel.train(samples, best.getPoint()).saveModel(model.getPath());
+        assertTrue(model.isFile());
+        assertTrue(new File(model.getPath() + ".range").isFile());
+    }
+    
+    private static List<TrainingSample<BxZoneLabel>> randomSamples(FeatureVectorBuilder<BxZone, BxPage> builder, 
+            Random random, int count) {
+        List<TrainingSample<BxZoneLabel>> samples = new ArrayList<TrainingSample<BxZoneLabel>>();
+        for (int i = 0; i < count; i++) {
+            double[] point = new double[DIMENSIONS];
+            for (int j = 0; j < DIMENSIONS; j++) {
+                point[j] = random.nextDouble() * 10;
+            }
+            FeatureVector fv = new FeatureVector(builder.getSchema());
+            fv.setValues(point);
+            BxZoneLabel label = point[0] > 6 ? BxZoneLabel.MET_TITLE 
+                    : point[1] > 4 ? BxZoneLabel.MET_ABSTRACT : BxZoneLabel.MET_AUTHOR;
+            samples.add(new TrainingSample<BxZoneLabel>(fv, label));
+        }
+        return samples;
+    }
+    
+    private static FeatureVectorBuilder<BxZone, BxPage> createBuilder() {
+        List<FeatureCalculator<BxZone, BxPage>> calculators = new ArrayList<FeatureCalculator<BxZone, BxPage>>();
+        for (int i = 0; i < DIMENSIONS; i++) {
+            final int index = i;
+            calculators.add(new FeatureCalculator<BxZone, BxPage>() {
+                
+                @Override
+                public String getFeatureName() {
+                    return "f" + index;
+                }
+
+                @Override
+                public double calculateFeatureValue(BxZone object, BxPage context) {
+                    return 0;
+                }
+            });
+        }
+        FeatureVectorBuilder<BxZone, BxPage> builder = new FeatureVectorBuilder<BxZone, BxPage>();
+        builder.setFeatureCalculators(calculators);
+        return builder;
+    }
+    
+}
@@ -0,0 +1,166 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.svm;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import libsvm.svm;
+import libsvm.svm_parameter;
+import libsvm.svm_print_interface;
+import static org.junit.Assert.*;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import pl.edu.icm.cermine.content.filtering.SVMContentFilter;
+import pl.edu.icm.cermine.content.headers.SVMHeaderLinesClassifier;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.structure.model.BxZoneLabel;
+import pl.edu.icm.cermine.tools.classification.features.FeatureCalculator;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
+import pl.edu.icm.cermine.tools.classification.general.TrainingSample;
+
+public class SVMInferenceEngineTest {
+    
+    private static final int DIMENSIONS = 6;
+    
+    private static final BxZoneLabel[] LABELS = {BxZoneLabel.MET_TITLE, BxZoneLabel.MET_ABSTRACT, BxZoneLabel.BODY_CONTENT};
+    
+    @BeforeClass
+    public static void setUpClass() {
+        svm.svm_set_print_string_function(new svm_print_interface() {
+            @Override
+            public void print(String string) {
+            }
+        });
+    }
+    
+    @Test
+    public void testBundledModels() throws AnalysisException {
+        assertSameAsLibsvm(SVMContentFilter.getDefaultInstance(), new Random(1));
+        assertSameAsLibsvm(SVMHeaderLinesClassifier.getDefaultInstance(), new Random(2));
+    }
+
+    @Test
+    public void testKernels() {
+        int[] kernels = {svm_parameter.LINEAR, svm_parameter.POLY, svm_parameter.RBF, svm_parameter.SIGMOID};
+        for (int kernel : kernels) {
+            Random random = new Random(kernel);
+            TestClassifier classifier = new TestClassifier();
+            svm_parameter param = SVMClassifier.getDefaultParam();
+            param.kernel_type = kernel;
+            classifier.setParameter(param);
+            classifier.buildClassifier(randomSamples(random, 150));
+            assertNotNull(SVMInferenceEngine.create(classifier.model, DIMENSIONS));
+            assertSameAsLibsvm(classifier, random);
+        }
+    }
+    
+    @Test
+    public void testPredictLabels() throws InterruptedException {
+        Random random = new Random(7);
+        TestClassifier classifier = new TestClassifier();
+        classifier.buildClassifier(randomSamples(random, 200));
+        List<double[]> objects = new ArrayList<double[]>();
+        for (int i = 0; i < 500; i++) {
+            objects.add(randomPoint(random));
+        }
+        List<BxZoneLabel> expected = new ArrayList<BxZoneLabel>();
+        for (double[] object : objects) {
+            expected.add(classifier.predictLabel(object, null));
+        }
+        assertEquals(expected, classifier.predictLabels(objects, null));
+        
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            assertEquals(expected, classifier.predictLabels(objects, null, executor, 4));
+            assertEquals(expected.subList(0, 1), classifier.predictLabels(objects.subList(0, 1), null, executor, 4));
+            assertTrue(classifier.predictLabels(new ArrayList<double[]>(), null, executor, 4).isEmpty());
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    private static <S, T> void assertSameAsLibsvm(SVMClassifier<S, T, BxZoneLabel> classifier, Random random) {
+        int dimensions = classifier.featureVectorBuilder.size();
+        SVMInferenceEngine engine = SVMInferenceEngine.create(classifier.model, dimensions);
+        assertNotNull(engine);
+        double[][] instances = new double[300][dimensions];
+        int[] expected = new int[instances.length];
+        for (int i = 0; i < instances.length; i++) {
+            for (int j = 0; j < dimensions; j++) {
+                instances[i][j] = random.nextInt(4) == 0 ? 0 : random.nextDouble() * 1.2 - 0.1;
+            }
+            FeatureVector fv = new FeatureVector(classifier.featureVectorBuilder.getSchema());
+            fv.setValues(instances[i]);
+            expected[i] = (int) svm.svm_predict(classifier.model, classifier.toNodes(fv));
+            assertEquals(expected[i], engine.predict(instances[i]));
+        }
+        assertArrayEquals(expected, engine.predict(instances));
+    }
+    
+    private static List<TrainingSample<BxZoneLabel>> randomSamples(Random random, int count) {
+        FeatureVectorBuilder<double[], Object> builder = createBuilder();
+        List<TrainingSample<BxZoneLabel>> samples = new ArrayList<TrainingSample<BxZoneLabel>>();
+        for (int i = 0; i < count; i++) {
+            double[] point = randomPoint(random);
+            BxZoneLabel label = LABELS[(point[0] + point[1] > 1 ? 1 : 0) + (point[2] > 0.7 ? 1 : 0)];
+            samples.add(new TrainingSample<BxZoneLabel>(builder.getFeatureVector(point, null), label));
+        }
+        return samples;
+    }
+    
+    private static double[] randomPoint(Random random) {
+        double[] point = new double[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            point[i] = random.nextDouble() * 10;
+        }
+        return point;
+    }
+    
+    private static FeatureVectorBuilder<double[], Object> createBuilder() {
+        List<FeatureCalculator<double[], Object>> calculators = new ArrayList<FeatureCalculator<double[], Object>>();
+        for (int i = 0; i < DIMENSIONS; i++) {
+            final int index = i;
+            calculators.add(new FeatureCalculator<double[], Object>() {
+                
+                @Override
+                public String getFeatureName() {
+                    return "f" + index;
+                }
+
+                @Override
+                public double calculateFeatureValue(double[] object, Object context) {
+                    return object[index];
+                }
+            });
+        }
+        FeatureVectorBuilder<double[], Object> builder = new FeatureVectorBuilder<double[], Object>();
+        builder.setFeatureCalculators(calculators);
+        return builder;
+    }
+    
+    private static class TestClassifier extends SVMClassifier<double[], Object, BxZoneLabel> {
+
+        TestClassifier() {
+            super(createBuilder(), BxZoneLabel.class);
+        }
+    }
+
+}
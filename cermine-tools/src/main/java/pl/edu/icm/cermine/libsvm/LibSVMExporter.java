@@ -18,25 +18,15 @@
 
 package pl.edu.icm.cermine.libsvm;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.util.Formatter;
+import java.io.*;
 import java.util.List;
-import java.util.Locale;
 import org.apache.commons.cli.*;
-import pl.edu.icm.cermine.evaluation.tools.EvaluationUtils;
-import pl.edu.icm.cermine.evaluation.tools.EvaluationUtils.DocumentsIterator;
 import pl.edu.icm.cermine.exception.AnalysisException;
-import pl.edu.icm.cermine.exception.TransformationException;
 import pl.edu.icm.cermine.structure.HierarchicalReadingOrderResolver;
 import pl.edu.icm.cermine.structure.SVMInitialZoneClassifier;
 import pl.edu.icm.cermine.structure.SVMMetadataZoneClassifier;
 import pl.edu.icm.cermine.structure.model.*;
-import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
-import pl.edu.icm.cermine.tools.classification.general.BxDocsToTrainingSamplesConverter;
-import pl.edu.icm.cermine.tools.classification.general.TrainingSample;
+import pl.edu.icm.cermine.tools.classification.general.*;
 import pl.edu.icm.cermine.tools.classification.sampleselection.SampleFilter;
 
 public class LibSVMExporter {
@@ -45,41 +35,17 @@ public class LibSVMExporter {
        	if(trainingElement.getLabel() == null) {
        		return;
        	}
-       	fileWriter.write(String.valueOf(trainingElement.getLabel().ordinal()));
-       	fileWriter.write(" ");
-        	
-       	Integer featureCounter = 1;
-       	for (Double value : trainingElement.getFeatureVector().getValues()) {
-       		StringBuilder sb = new StringBuilder();
-       		Formatter formatter = new Formatter(sb, Locale.US);
-       		formatter.format("%d:%.5f", featureCounter++, value);
-       		fileWriter.write(sb.toString());
-       		fileWriter.write(" ");
-       	}
-       	fileWriter.write("\n");
+       	StringBuilder sb = new StringBuilder();
+       	LibSVMSampleWriter.appendSample(sb, trainingElement);
+       	fileWriter.append(sb);
     }
     
     public static void toLibSVM(List<TrainingSample<BxZoneLabel>> trainingElements, String filePath) throws IOException {
-    	BufferedWriter svmDataFile = null;
+    	TrainingSampleWriter<BxZoneLabel> svmDataFile = null;
         try {
-            FileWriter fstream = new FileWriter(filePath);
-            svmDataFile = new BufferedWriter(fstream);
+            svmDataFile = new LibSVMSampleWriter<BxZoneLabel>(new BufferedWriter(new FileWriter(filePath)));
             for (TrainingSample<BxZoneLabel> elem : trainingElements) {
-            	if(elem.getLabel() == null) {
-            		continue;
-            	}
-                svmDataFile.write(String.valueOf(elem.getLabel().ordinal()));
-                svmDataFile.write(" ");
-
-                Integer featureCounter = 1;
-                for (Double value : elem.getFeatureVector().getValues()) {
-                    StringBuilder sb = new StringBuilder();
-                    Formatter formatter = new Formatter(sb, Locale.US);
-                    formatter.format("%d:%.5f", featureCounter++, value);
-                    svmDataFile.write(sb.toString());
-                    svmDataFile.write(" ");
-                }
-                svmDataFile.write("\n");
+                svmDataFile.write(elem);
             }
             svmDataFile.close();
         } catch (Exception e) {
@@ -94,73 +60,80 @@ public class LibSVMExporter {
         System.out.println("Done.");
     }
     
-    public static void main(String[] args) throws ParseException, IOException, TransformationException, AnalysisException, CloneNotSupportedException {
+    private static TrainingSampleWriter<BxZoneLabel> createWriter(String path, boolean binary) throws IOException {
+        if (binary) {
+            return new BinarySampleWriter<BxZoneLabel>(new BufferedOutputStream(new FileOutputStream(path)));
+        }
+        return new LibSVMSampleWriter<BxZoneLabel>(new BufferedWriter(new FileWriter(path)));
+    }
+    
+    public static void main(String[] args) throws ParseException, IOException, AnalysisException {
         Options options = new Options();
+        options.addOption("threads", true, "number of threads, the number of processors by default");
+        options.addOption("unordered", false, "write the documents in the order of completion");
+        options.addOption("binary", false, "write binary sample files instead of libsvm");
 
         CommandLineParser parser = new GnuParser();
         CommandLine line = parser.parse(options, args);
 
-        if (args.length != 1) {
+        if (line.getArgs().length != 1) {
             HelpFormatter formatter = new HelpFormatter();
             formatter.printHelp(" [-options] input-directory", options);
             System.exit(1); 
         }
         String inputDirPath = line.getArgs()[0];
         File inputDirFile = new File(inputDirPath);
+        boolean binary = line.hasOption("binary");
+        String extension = binary ? ".bin" : ".dat";
+
+        final HierarchicalReadingOrderResolver ror = new HierarchicalReadingOrderResolver();
+        TrainingSamplesGenerator generator = new TrainingSamplesGenerator() {
+
+            @Override
+            protected BxDocument prepareDocument(BxDocument doc) throws AnalysisException {
+                String filename = doc.getFilename();
+                doc = ror.resolve(doc);
+                doc.setFilename(filename);
+
+                for (BxZone zone : doc.asZones()) {
+                    if (zone.getLabel() != null) {
+                        if (zone.getLabel().getCategory() != BxZoneLabelCategory.CAT_METADATA) {
+                            zone.setLabel(zone.getLabel().getGeneralLabel());
+                        }
+                    }
+                    else {
+                        zone.setLabel(BxZoneLabel.OTH_UNKNOWN);
+                    }
+                }
+                return doc;
+            }
+        };
+        if (line.hasOption("threads")) {
+            generator.setThreads(Integer.parseInt(line.getOptionValue("threads")));
+        }
+        generator.setOrdered(!line.hasOption("unordered"));
 
-        Integer docIdx = 0;
-
-        HierarchicalReadingOrderResolver ror = new HierarchicalReadingOrderResolver();
-        EvaluationUtils.DocumentsIterator iter = new DocumentsIterator(inputDirPath);
-
-        FeatureVectorBuilder<BxZone, BxPage> metaVectorBuilder = SVMMetadataZoneClassifier.getFeatureVectorBuilder();
-        FeatureVectorBuilder<BxZone, BxPage> initialVectorBuilder = SVMInitialZoneClassifier.getFeatureVectorBuilder();
-
-		SampleFilter metaSamplesFilter = new SampleFilter(
-				BxZoneLabelCategory.CAT_METADATA);
-
-		FileWriter initialStream = new FileWriter("initial_"
-				+ inputDirFile.getName() + ".dat");
-		BufferedWriter svmInitialFile = new BufferedWriter(initialStream);
-
-		FileWriter metaStream = new FileWriter("meta_" + inputDirFile.getName()
-				+ ".dat");
-		BufferedWriter svmMetaFile = new BufferedWriter(metaStream);
-
-        for(BxDocument doc: iter) {
-        	System.out.println(docIdx + ": " + doc.getFilename());
-        	String filename = doc.getFilename();
-        	doc = ror.resolve(doc);
-        	doc.setFilename(filename);
+        final TrainingSamplesGenerator.SampleExtractor metaSamples = TrainingSamplesGenerator.zoneSamples(
+                SVMMetadataZoneClassifier.getFeatureVectorBuilder(), BxZoneLabel.getIdentityMap());
+        final SampleFilter metaSamplesFilter = new SampleFilter(BxZoneLabelCategory.CAT_METADATA);
+        TrainingSamplesGenerator.SampleExtractor initialSamples = TrainingSamplesGenerator.zoneSamples(
+                SVMInitialZoneClassifier.getFeatureVectorBuilder(), BxZoneLabel.getLabelToGeneralMap());
 
-        	for (BxZone zone : doc.asZones()) {
-        		if (zone.getLabel() != null) {
-        			if (zone.getLabel().getCategory() != BxZoneLabelCategory.CAT_METADATA) {
-        				zone.setLabel(zone.getLabel().getGeneralLabel());
-        			}
-        		}
-        		else {
-        			zone.setLabel(BxZoneLabel.OTH_UNKNOWN);
-        		}
-        	}
-			List<TrainingSample<BxZoneLabel>> newMetaSamples = BxDocsToTrainingSamplesConverter
-					.getZoneTrainingSamples(doc, metaVectorBuilder,
-							BxZoneLabel.getIdentityMap());
-			newMetaSamples = metaSamplesFilter.pickElements(newMetaSamples);
-        	
-			List<TrainingSample<BxZoneLabel>> newInitialSamples = BxDocsToTrainingSamplesConverter
-					.getZoneTrainingSamples(doc, initialVectorBuilder,
-							BxZoneLabel.getLabelToGeneralMap());
+        TrainingSampleWriter<BxZoneLabel> svmMetaFile = createWriter("meta_" + inputDirFile.getName() + extension, binary);
+        TrainingSampleWriter<BxZoneLabel> svmInitialFile = createWriter("initial_" + inputDirFile.getName() + extension, binary);
+        try {
+            generator.addOutput(new TrainingSamplesGenerator.SampleExtractor() {
 
-			for (TrainingSample<BxZoneLabel> sample : newMetaSamples) {
-				toLibSVM(sample, svmMetaFile);
-			}
-			for (TrainingSample<BxZoneLabel> sample : newInitialSamples) {
-				toLibSVM(sample, svmInitialFile);
-			}
-        	++docIdx;
+                @Override
+                public List<TrainingSample<BxZoneLabel>> getSamples(BxDocument document) throws AnalysisException {
+                    return metaSamplesFilter.pickElements(metaSamples.getSamples(document));
+                }
+            }, svmMetaFile);
+            generator.addOutput(initialSamples, svmInitialFile);
+            generator.generate(TrainingSamplesGenerator.listDocumentFiles(inputDirPath));
+        } finally {
+            svmInitialFile.close();
+            svmMetaFile.close();
         }
-		svmInitialFile.close();
-		svmMetaFile.close();
     }
-}
\ No newline at end of file
+}
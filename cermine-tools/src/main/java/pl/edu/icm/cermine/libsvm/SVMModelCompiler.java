@@ -0,0 +1,174 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.libsvm;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_node;
+import org.apache.commons.cli.*;
+import pl.edu.icm.cermine.tools.classification.features.FeatureSchema;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
+import pl.edu.icm.cermine.tools.classification.general.FeatureVectorScalerImpl;
+import pl.edu.icm.cermine.tools.classification.svm.SVMCompiledModel;
+
+/**
+ * Converts a libsvm model with a polynomial kernel and its range file into a
+ * compiled model (see {@link SVMCompiledModel}) and reports how well the compiled
+ * model agrees with the original one on an evaluation set in libsvm format, as
+ * written by {@link LibSVMExporter}.
+ */
+public final class SVMModelCompiler {
+
+    public static void main(String[] args) throws ParseException, IOException {
+        Options options = new Options();
+        options.addOption("model", true, "libsvm model file");
+        options.addOption("range", true, "range file of the model");
+        options.addOption("output", true, "compiled model file");
+        options.addOption("eval", true, "optional evaluation set in libsvm format (unscaled features)");
+
+        CommandLineParser parser = new GnuParser();
+        CommandLine line = parser.parse(options, args);
+
+        if (!line.hasOption("model") || !line.hasOption("range") || !line.hasOption("output")) {
+            HelpFormatter formatter = new HelpFormatter();
+            formatter.printHelp(" -model <file> -range <file> -output <file> [-eval <file>]", options);
+            System.exit(1);
+        }
+
+        svm_model model = svm.svm_load_model(line.getOptionValue("model"));
+        BufferedReader rangeReader = new BufferedReader(new InputStreamReader(new FileInputStream(line.getOptionValue("range"))));
+        FeatureVectorScalerImpl scaler;
+        try {
+            scaler = FeatureVectorScalerImpl.fromRangeReader(rangeReader);
+        } finally {
+            rangeReader.close();
+        }
+        int dimensions = scaler.getLimits().length;
+
+        if (!SVMCompiledModel.isSupported(model)) {
+            System.err.println("Only models with a linear kernel or a polynomial kernel of degree at most 3 can be compiled.");
+            System.exit(1);
+        }
+        long start = System.currentTimeMillis();
+        SVMCompiledModel compiled = SVMCompiledModel.compile(model, dimensions);
+        compiled.write(new File(line.getOptionValue("output")));
+        System.out.println(String.format(Locale.US, "Compiled %d support vectors, %d features, degree %d in %d ms, size %.1f kB",
+                model.l, dimensions, compiled.getDegree(), System.currentTimeMillis() - start,
+                compiled.estimateSize() / 1024.0));
+
+        if (line.hasOption("eval")) {
+            List<double[]> instances = loadInstances(new File(line.getOptionValue("eval")), scaler);
+            printReport(model, compiled, instances);
+        }
+    }
+
+    private static List<double[]> loadInstances(File file, FeatureVectorScalerImpl scaler) throws IOException {
+        int dimensions = scaler.getLimits().length;
+        List<String> names = new ArrayList<String>(dimensions);
+        for (int i = 0; i < dimensions; i++) {
+            names.add("f" + i);
+        }
+        FeatureSchema schema = new FeatureSchema(names);
+        Pattern partsPattern = Pattern.compile("\\s+");
+        List<double[]> instances = new ArrayList<double[]>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
+        try {
+            String dataLine;
+            while ((dataLine = reader.readLine()) != null) {
+                String[] parts = partsPattern.split(dataLine.trim());
+                if (parts.length == 0 || parts[0].isEmpty()) {
+                    continue;
+                }
+                FeatureVector fv = new FeatureVector(schema);
+                for (int i = 1; i < parts.length; i++) {
+                    int colon = parts[i].indexOf(':');
+                    int index = Integer.parseInt(parts[i].substring(0, colon)) - 1;
+                    if (index >= 0 && index < dimensions) {
+                        fv.setValue(index, Double.parseDouble(parts[i].substring(colon + 1)));
+                    }
+                }
+                instances.add(scaler.scaleFeatureVector(fv).getValues());
+            }
+        } finally {
+            reader.close();
+        }
+        return instances;
+    }
+
+    private static void printReport(svm_model model, SVMCompiledModel compiled, List<double[]> instances) {
+        int pairs = model.nr_class * (model.nr_class - 1) / 2;
+        double[] originalValues = new double[pairs];
+        int[] original = new int[instances.size()];
+        int agreed = 0;
+        double maxDifference = 0;
+        double sumDifference = 0;
+        for (int i = 0; i < instances.size(); i++) {
+            double[] instance = instances.get(i);
+            original[i] = (int) svm.svm_predict_values(model, toNodes(instance), originalValues);
+            double[] compiledValues = compiled.getDecisionValues(instance);
+            for (int p = 0; p < pairs; p++) {
+                double difference = Math.abs(originalValues[p] - compiledValues[p]);
+                maxDifference = Math.max(maxDifference, difference);
+                sumDifference += difference;
+            }
+            if (original[i] == compiled.predict(instance)) {
+                agreed++;
+            }
+        }
+
+        long start = System.nanoTime();
+        for (double[] instance : instances) {
+            svm.svm_predict(model, toNodes(instance));
+        }
+        long originalTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (double[] instance : instances) {
+            compiled.predict(instance);
+        }
+        long compiledTime = System.nanoTime() - start;
+
+        int count = Math.max(1, instances.size());
+        System.out.println(String.format(Locale.US, "Instances: %d", instances.size()));
+        System.out.println(String.format(Locale.US, "Agreement: %d/%d (%.4f%%)", agreed, instances.size(),
+                100.0 * agreed / count));
+        System.out.println(String.format(Locale.US, "Decision value difference: max %.3e, mean %.3e",
+                maxDifference, sumDifference / Math.max(1, pairs * instances.size())));
+        System.out.println(String.format(Locale.US, "Prediction time: original %.2f us, compiled %.2f us",
+                originalTime / 1000.0 / count, compiledTime / 1000.0 / count));
+    }
+
+    private static svm_node[] toNodes(double[] instance) {
+        svm_node[] nodes = new svm_node[instance.length];
+        for (int i = 0; i < instance.length; i++) {
+            nodes[i] = new svm_node();
+            nodes[i].index = i;
+            nodes[i].value = instance[i];
+        }
+        return nodes;
+    }
+
+    private SVMModelCompiler() {
+    }
+
+}
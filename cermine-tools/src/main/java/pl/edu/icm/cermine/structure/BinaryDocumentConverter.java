@@ -0,0 +1,139 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.apache.commons.cli.*;
+import org.apache.commons.io.FileUtils;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.transformers.BinaryToBxDocumentReader;
+import pl.edu.icm.cermine.structure.transformers.BxDocumentToBinaryWriter;
+import pl.edu.icm.cermine.structure.transformers.BxDocumentToTrueVizWriter;
+import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentReader;
+
+/**
+ * Converts documents between TrueViz and the binary format
+ * (see {@link BxDocumentToBinaryWriter}). The input can be a single file or
+ * a directory, in which case all the files with the given extension are converted.
+ */
+public final class BinaryDocumentConverter {
+    
+    private static final String TRUEVIZ_EXTENSION = "xml";
+    
+    private static final String BINARY_EXTENSION = "bxd";
+
+    public static void main(String[] args) throws ParseException, IOException, TransformationException {
+        Options options = new Options();
+        options.addOption("input", true, "input file or directory");
+        options.addOption("output", true, "output file or directory");
+        options.addOption("ext", true, "extension of the input files in a directory");
+        options.addOption("compress", false, "compress the binary files");
+        options.addOption("totrueviz", false, "convert binary files to TrueViz");
+
+        CommandLineParser parser = new GnuParser();
+        CommandLine line = parser.parse(options, args);
+
+        if (!line.hasOption("input") || !line.hasOption("output")) {
+            HelpFormatter formatter = new HelpFormatter();
+            formatter.printHelp(" -input <path> -output <path> [-ext <extension>] [-compress] [-totrueviz]", options);
+            System.exit(1);
+        }
+        
+        boolean toTrueViz = line.hasOption("totrueviz");
+        boolean compress = line.hasOption("compress");
+        File input = new File(line.getOptionValue("input"));
+        File output = new File(line.getOptionValue("output"));
+        
+        List<File[]> conversions = new ArrayList<File[]>();
+        if (input.isDirectory()) {
+            String inExt = line.getOptionValue("ext", toTrueViz ? BINARY_EXTENSION : TRUEVIZ_EXTENSION);
+            String outExt = toTrueViz ? TRUEVIZ_EXTENSION : BINARY_EXTENSION;
+            if (!output.isDirectory() && !output.mkdirs()) {
+                throw new IOException("Cannot create output directory: " + output);
+            }
+            for (File file : FileUtils.listFiles(input, new String[]{inExt}, true)) {
+                String name = file.getName();
+                name = name.substring(0, name.length() - inExt.length()) + outExt;
+                conversions.add(new File[]{file, new File(output, name)});
+            }
+        } else {
+            conversions.add(new File[]{input, output});
+        }
+        
+        long inputSize = 0;
+        long outputSize = 0;
+        long start = System.currentTimeMillis();
+        for (File[] conversion : conversions) {
+            if (toTrueViz) {
+                toTrueViz(conversion[0], conversion[1]);
+            } else {
+                toBinary(conversion[0], conversion[1], compress);
+            }
+            inputSize += conversion[0].length();
+            outputSize += conversion[1].length();
+        }
+        System.out.println(String.format(Locale.US, "Converted %d files in %d ms, size %.1f kB -> %.1f kB",
+                conversions.size(), System.currentTimeMillis() - start, inputSize / 1024.0, outputSize / 1024.0));
+    }
+    
+    private static void toBinary(File input, File output, boolean compress) throws IOException, TransformationException {
+        Reader reader = new InputStreamReader(new FileInputStream(input), "UTF-8");
+        BxDocument document;
+        try {
+            document = new BxDocument().setPages(new TrueVizToBxDocumentReader().read(reader));
+            document.setFilename(input.getName());
+        } finally {
+            reader.close();
+        }
+        OutputStream stream = new BufferedOutputStream(new FileOutputStream(output));
+        try {
+            if (compress) {
+                new BxDocumentToBinaryWriter().write(stream, document, BxDocumentToBinaryWriter.COMPRESS);
+            } else {
+                new BxDocumentToBinaryWriter().write(stream, document);
+            }
+        } finally {
+            stream.close();
+        }
+    }
+    
+    private static void toTrueViz(File input, File output) throws IOException, TransformationException {
+        InputStream stream = new FileInputStream(input);
+        BxDocument document;
+        try {
+            document = new BinaryToBxDocumentReader().read(stream);
+        } finally {
+            stream.close();
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(output), "UTF-8");
+        try {
+            new BxDocumentToTrueVizWriter().write(writer, document.getPages());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private BinaryDocumentConverter() {
+    }
+
+}
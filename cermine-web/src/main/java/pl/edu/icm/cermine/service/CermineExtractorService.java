@@ -40,5 +40,26 @@ public interface CermineExtractorService {
      */
     ExtractionResult extractNLM(InputStream ii) throws AnalysisException, ServiceException;
 
-    long initExtractionTask(byte[] pdf, String fileName);
+    /**
+     * Registers an asynchronous extraction task. The content is spooled to
+     * a temporary file, so that queued tasks do not keep whole PDFs in memory.
+     *
+     * @param pdf pdf content
+     * @param fileName original file name
+     * @return task id
+     * @throws ServiceException
+     */
+    long initExtractionTask(byte[] pdf, String fileName) throws ServiceException;
+
+    /**
+     * Registers an asynchronous extraction task. The content is copied from
+     * the stream to a temporary file, without reading the whole PDF into memory.
+     * The stream is closed.
+     *
+     * @param pdf pdf content stream
+     * @param fileName original file name
+     * @return task id
+     * @throws ServiceException
+     */
+    long initExtractionTask(InputStream pdf, String fileName) throws ServiceException;
 }
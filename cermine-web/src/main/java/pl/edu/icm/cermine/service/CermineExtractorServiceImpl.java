@@ -19,12 +19,14 @@
 package pl.edu.icm.cermine.service;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 import java.util.concurrent.*;
 import javax.annotation.PostConstruct;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.jdom.Document;
 import org.jdom.Element;
 import org.jdom.output.Format;
@@ -46,8 +48,10 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
 
     int threadPoolSize = 4;
     int maxQueueForBatch = 0;
+    int extractorPoolSize = 0;
+    long extractorBorrowTimeout = 0;
     Logger log = LoggerFactory.getLogger(CermineExtractorServiceImpl.class);
-    List<PdfNLMContentExtractor> extractors;
+    ExtractorPool extractors;
     ExecutorService processingExecutor;
     ExecutorService batchProcessingExecutor;
     @Autowired
@@ -67,10 +71,9 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
                 q = new ArrayBlockingQueue<Runnable>(100000);
             }
             batchProcessingExecutor = new ThreadPoolExecutor(threadPoolSize, threadPoolSize, 1, TimeUnit.DAYS, q);
-            extractors = new ArrayList<PdfNLMContentExtractor>();
-            for (int i = 0; i < threadPoolSize; i++) {
-                extractors.add(new PdfNLMContentExtractor());
-            }
+            extractors = new ExtractorPool(extractorPoolSize > 0 ? extractorPoolSize : threadPoolSize, 
+                    extractorBorrowTimeout);
+            extractors.init();
         } catch (Exception ex) {
             log.error("Failed to init content extractor", ex);
             throw new RuntimeException(ex);
@@ -93,6 +96,38 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
         this.maxQueueForBatch = maxQueueForBatch;
     }
 
+    public int getExtractorPoolSize() {
+        return extractorPoolSize;
+    }
+
+    /**
+     * Sets the number of pooled extractors. Non-positive value means
+     * the pool size is equal to the thread pool size.
+     * 
+     * @param extractorPoolSize 
+     */
+    public void setExtractorPoolSize(int extractorPoolSize) {
+        this.extractorPoolSize = extractorPoolSize;
+    }
+
+    public long getExtractorBorrowTimeout() {
+        return extractorBorrowTimeout;
+    }
+
+    /**
+     * Sets the maximum time (in milliseconds) an extraction waits 
+     * for a free extractor. Non-positive value means no limit.
+     * 
+     * @param extractorBorrowTimeout 
+     */
+    public void setExtractorBorrowTimeout(long extractorBorrowTimeout) {
+        this.extractorBorrowTimeout = extractorBorrowTimeout;
+    }
+
+    public ExtractorPool getExtractorPool() {
+        return extractors;
+    }
+
     @Override
     public ExtractionResult extractNLM(InputStream is) throws AnalysisException, ServiceException {
         log.debug("Starting extractNLM task...");
@@ -116,9 +151,24 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
     }
 
     @Override
-    public long initExtractionTask(byte[] pdf, String fileName) {
+    public long initExtractionTask(byte[] pdf, String fileName) throws ServiceException {
+        return initExtractionTask(new ByteArrayInputStream(pdf), fileName);
+    }
+
+    @Override
+    public long initExtractionTask(InputStream pdf, String fileName) throws ServiceException {
         ExtractionTask task = new ExtractionTask();
-        task.setPdf(pdf);
+        File pdfFile = null;
+        try {
+            pdfFile = File.createTempFile("cermine", ".pdf");
+            FileUtils.copyInputStreamToFile(pdf, pdfFile);
+            task.setPdfFile(pdfFile);
+        } catch (IOException ex) {
+            FileUtils.deleteQuietly(pdfFile);
+            throw new ServiceException("Cannot store the uploaded file.", ex);
+        } finally {
+            IOUtils.closeQuietly(pdf);
+        }
         task.setFileName(fileName);
         task.setCreationDate(new Date());
         task.setStatus(ExtractionTask.TaskStatus.CREATED);
@@ -132,16 +182,11 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
 
     protected PdfNLMContentExtractor obtainExtractor() {
         log.debug("Obtaining extractor from the pool");
-        PdfNLMContentExtractor res = null;
         try {
-            synchronized (extractors) {
-                while (extractors.isEmpty()) {
-                    log.debug("Extractor pool is empty, going to sleep...");
-                    extractors.wait();
-                }
-                res = extractors.remove(0);
-            }
-            return res;
+            return extractors.borrow();
+        } catch (ServiceException se) {
+            log.warn("Timed out while waiting for extractor: {}", extractors);
+            throw new IllegalStateException(se.getMessage(), se);
         } catch (InterruptedException ire) {
             log.error("Unexpected exception while waiting for extractor...", ire);
             throw new RuntimeException(ire);
@@ -149,15 +194,16 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
     }
 
     protected void returnExtractor(PdfNLMContentExtractor e) {
-        log.debug("Returning extractor to the pool...");
-        synchronized (extractors) {
-            try {
-                e = new PdfNLMContentExtractor();
-                extractors.add(e);
-            } catch (AnalysisException ex) {
-                throw new RuntimeException("Cannot create extractor!", ex);
-            }
-            extractors.notify();
+        returnExtractor(e, false);
+    }
+    
+    protected void returnExtractor(PdfNLMContentExtractor e, boolean failed) {
+        if (failed) {
+            log.debug("Evicting failed extractor from the pool...");
+            extractors.evict(e);
+        } else {
+            log.debug("Returning extractor to the pool...");
+            extractors.giveBack(e);
         }
     }
 
@@ -169,12 +215,35 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
      * @return
      */
     private ExtractionResult performExtraction(ExtractionResult result, InputStream input) {
+        return performExtraction(result, input, null);
+    }
+
+    /**
+     * Method to perform real extraction on a file. The file is read partially,
+     * without loading it entirely into memory.
+     *
+     * @param result
+     * @param file
+     * @return
+     */
+    private ExtractionResult performExtraction(ExtractionResult result, File file) {
+        return performExtraction(result, null, file);
+    }
+
+    private ExtractionResult performExtraction(ExtractionResult result, InputStream input, File file) {
         PdfNLMContentExtractor e = null;
+        boolean failed = false;
         try {
             e = obtainExtractor();
             result.processingStart = new Date();
-            log.debug("Starting extraction on the input stream...");
-            Element resEl = e.extractContent(input);
+            Element resEl;
+            if (file != null) {
+                log.debug("Starting extraction on the file {}...", file);
+                resEl = e.extractContent(file);
+            } else {
+                log.debug("Starting extraction on the input stream...");
+                resEl = e.extractContent(input);
+            }
             log.debug("Extraction ok..");
             XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
             Document doc = new Document(resEl);
@@ -186,14 +255,22 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
             result.setMeta(ArticleMeta.extractNLM(doc));
             log.debug("Article meta extraction succeeded");
             result.setSucceeded(true);
+        } catch (RuntimeException ex) {
+            // the extractor may be left in an inconsistent state, it is replaced
+            log.debug("Unexpected exception from analysis: ", ex);
+            failed = true;
+            result.setError(ex);
+            result.setSucceeded(false);
         } catch (Exception anal) {
+            // the input could not be processed, the extractor can be reused
             log.debug("Exception from analysis: ", anal);
             result.setError(anal);
             result.setSucceeded(false);
         } finally {
             if (e != null) {
-                returnExtractor(e);
+                returnExtractor(e, failed);
             }
+            log.debug("Extractor pool state: {}", extractors);
             result.setProcessingEnd(new Date());
         }
         return result;
@@ -216,7 +293,15 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
             result.setProcessingStart(new Date());
             result.setSubmit(task.getCreationDate());
             log.debug("Running extraction: " + task.getId());
-            performExtraction(result, new ByteArrayInputStream(task.getPdf()));
+            try {
+                performExtraction(result, task.getPdfFile());
+            } finally {
+                //remove the spooled file, we will run out of disk space after few requests without it...
+                if (!task.getPdfFile().delete()) {
+                    log.warn("Cannot delete temporary file: " + task.getPdfFile());
+                }
+                task.setPdfFile(null);
+            }
             task.setResult(result);
             log.debug("Processing finished: " + task.getId());
             if (result.isSucceeded()) {
@@ -224,7 +309,6 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
             } else {
                 task.setStatus(ExtractionTask.TaskStatus.FAILED);
             }
-            task.setPdf(null);//clean up memory, we will overflow after few request without it...
             log.debug("finishing task: " + task.getId());
         }
     }
@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine.service;
 
+import java.io.File;
 import java.util.Date;
 
 /**
@@ -63,7 +64,7 @@ public class ExtractionTask {
         
     }
     private long id;
-    byte[] pdf;
+    File pdfFile;
     String fileName;
     String md5Sum;
     private TaskStatus status;
@@ -79,12 +80,12 @@ public class ExtractionTask {
         this.id = id;
     }
 
-    public byte[] getPdf() {
-        return pdf;
+    public File getPdfFile() {
+        return pdfFile;
     }
 
-    public void setPdf(byte[] pdf) {
-        this.pdf = pdf;
+    public void setPdfFile(File pdfFile) {
+        this.pdfFile = pdfFile;
     }
 
     public String getMd5Sum() {
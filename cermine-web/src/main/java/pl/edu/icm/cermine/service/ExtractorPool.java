@@ -0,0 +1,199 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.service;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.edu.icm.cermine.PdfNLMContentExtractor;
+import pl.edu.icm.cermine.exception.AnalysisException;
+
+/**
+ * Thread-safe, fixed-size pool of content extractors. 
+ * <p>
+ * Extractors are borrowed for a single extraction and given back afterwards.
+ * Extractors that threw an unexpected runtime exception during extraction
+ * are evicted and replaced with fresh instances, while the ones that rejected
+ * their input are given back. Since the models are shared through the model registry, creating
+ * a replacement does not reload them.
+ * <p>
+ * The pool keeps basic metrics: number of borrows, total and maximum 
+ * time spent waiting for an extractor, number of timeouts and evictions.
+ */
+public class ExtractorPool {
+    
+    Logger log = LoggerFactory.getLogger(ExtractorPool.class);
+
+    private final int size;
+    
+    /** maximum time to wait for an extractor, in milliseconds; non-positive means no limit */
+    private final long borrowTimeout;
+    
+    private final BlockingQueue<PdfNLMContentExtractor> idle;
+    
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public ExtractorPool(int size, long borrowTimeout) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + size);
+        }
+        this.size = size;
+        this.borrowTimeout = borrowTimeout;
+        this.idle = new LinkedBlockingQueue<PdfNLMContentExtractor>(size);
+    }
+    
+    /**
+     * Fills the pool with extractors.
+     * 
+     * @throws AnalysisException 
+     */
+    public void init() throws AnalysisException {
+        while (idle.size() < size) {
+            idle.add(createExtractor());
+        }
+    }
+    
+    protected PdfNLMContentExtractor createExtractor() throws AnalysisException {
+        return new PdfNLMContentExtractor();
+    }
+    
+    /**
+     * Borrows an extractor, waiting if none is available.
+     * 
+     * @return extractor
+     * @throws ServiceException if no extractor became available within the borrow timeout
+     * @throws InterruptedException 
+     */
+    public PdfNLMContentExtractor borrow() throws ServiceException, InterruptedException {
+        long start = System.nanoTime();
+        PdfNLMContentExtractor extractor = idle.poll();
+        if (extractor == null) {
+            log.debug("Extractor pool is empty, waiting...");
+            if (borrowTimeout > 0) {
+                extractor = idle.poll(borrowTimeout, TimeUnit.MILLISECONDS);
+            } else {
+                extractor = idle.take();
+            }
+        }
+        long wait = System.nanoTime() - start;
+        if (extractor == null) {
+            timeoutCount.incrementAndGet();
+            throw new ServiceException("No extractor available within " + borrowTimeout + " ms.");
+        }
+        borrowCount.incrementAndGet();
+        totalWaitTime.addAndGet(wait);
+        long max = maxWaitTime.get();
+        while (wait > max && !maxWaitTime.compareAndSet(max, wait)) {
+            max = maxWaitTime.get();
+        }
+        return extractor;
+    }
+    
+    /**
+     * Gives back a healthy extractor.
+     * 
+     * @param extractor extractor
+     */
+    public void giveBack(PdfNLMContentExtractor extractor) {
+        if (!idle.offer(extractor)) {
+            log.warn("Extractor given back to a full pool, discarding it");
+        }
+    }
+    
+    /**
+     * Discards an extractor that failed and puts a fresh one in its place.
+     * 
+     * @param extractor failed extractor
+     */
+    public void evict(PdfNLMContentExtractor extractor) {
+        evictionCount.incrementAndGet();
+        PdfNLMContentExtractor replacement;
+        try {
+            replacement = createExtractor();
+        } catch (AnalysisException ex) {
+            log.error("Cannot create replacement extractor, reusing the evicted one", ex);
+            replacement = extractor;
+        }
+        giveBack(replacement);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getBorrowTimeout() {
+        return borrowTimeout;
+    }
+    
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+    
+    /**
+     * @return total time spent by borrowers waiting for an extractor, in milliseconds
+     */
+    public long getTotalWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitTime.get());
+    }
+    
+    /**
+     * @return mean time spent by a borrower waiting for an extractor, in milliseconds
+     */
+    public double getMeanWaitTime() {
+        long borrows = borrowCount.get();
+        if (borrows == 0) {
+            return 0;
+        }
+        return totalWaitTime.get() / 1000000.0 / borrows;
+    }
+    
+    /**
+     * @return maximum time spent by a borrower waiting for an extractor, in milliseconds
+     */
+    public long getMaxWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitTime.get());
+    }
+
+    @Override
+    public String toString() {
+        return "ExtractorPool{size=" + size + ", idle=" + getIdleCount() + ", borrows=" + getBorrowCount()
+                + ", meanWait=" + getMeanWaitTime() + "ms, maxWait=" + getMaxWaitTime() + "ms, timeouts="
+                + getTimeoutCount() + ", evictions=" + getEvictionCount() + "}";
+    }
+    
+}
@@ -151,8 +151,7 @@ public class CermineController {
     public String uploadFileStream(@RequestParam("files") MultipartFile file, HttpServletRequest request, Model model) {
         logger.info("Got an upload request.");
         try {
-            byte[] content = file.getBytes();
-            if (content.length == 0) {
+            if (file.isEmpty()) {
                 model.addAttribute("warning", "An empty or no file sent.");
                 return "home";
             }
@@ -160,7 +159,7 @@ public class CermineController {
             logger.debug("Original filename is: " + filename);
             filename = taskManager.getProperFilename(filename);
             logger.debug("Created filename: " + filename);
-            long taskId = extractorService.initExtractionTask(content, filename);
+            long taskId = extractorService.initExtractionTask(file.getInputStream(), filename);
             logger.debug("Task manager is: " + taskManager);
             return "redirect:/task.html?task=" + taskId;
 
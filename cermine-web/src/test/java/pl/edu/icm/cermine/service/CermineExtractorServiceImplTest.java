@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine.service;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -74,6 +75,20 @@ public class CermineExtractorServiceImplTest {
 
     }
 
+    /**
+     * Test of extractNLM method with an invalid file, of class CermineExtractorServiceImpl.
+     */
+    @Test
+    public void testExtractNLMInvalidInput() throws Exception {
+        CermineExtractorServiceImpl instance = new CermineExtractorServiceImpl();
+        instance.setThreadPoolSize(1);
+        instance.init();
+        ExtractionResult result = instance.extractNLM(new ByteArrayInputStream("not a pdf".getBytes("UTF-8")));
+        assertFalse(result.isSucceeded());
+        assertTrue(result.getError() instanceof AnalysisException);
+        assertEquals(0, instance.getExtractorPool().getEvictionCount());
+    }
+
     /**
      * Test of extractNLM method, of class CermineExtractorServiceImpl.
      */
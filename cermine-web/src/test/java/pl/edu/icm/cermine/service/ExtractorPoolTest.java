@@ -0,0 +1,87 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.service;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import pl.edu.icm.cermine.PdfNLMContentExtractor;
+import pl.edu.icm.cermine.exception.AnalysisException;
+
+public class ExtractorPoolTest {
+    
+    private static class TestPool extends ExtractorPool {
+        
+        int created = 0;
+
+        public TestPool(int size, long borrowTimeout) {
+            super(size, borrowTimeout);
+        }
+
+        @Override
+        protected PdfNLMContentExtractor createExtractor() throws AnalysisException {
+            created++;
+            return new PdfNLMContentExtractor(null, null, null, null);
+        }
+        
+    }
+
+    @Test
+    public void testBorrowAndGiveBack() throws Exception {
+        TestPool pool = new TestPool(2, 0);
+        pool.init();
+        assertEquals(2, pool.getIdleCount());
+        
+        PdfNLMContentExtractor e1 = pool.borrow();
+        PdfNLMContentExtractor e2 = pool.borrow();
+        assertNotSame(e1, e2);
+        assertEquals(0, pool.getIdleCount());
+        
+        pool.giveBack(e1);
+        assertSame(e1, pool.borrow());
+        assertEquals(3, pool.getBorrowCount());
+        assertEquals(2, pool.created);
+    }
+    
+    @Test
+    public void testBorrowTimeout() throws Exception {
+        TestPool pool = new TestPool(1, 50);
+        pool.init();
+        pool.borrow();
+        try {
+            pool.borrow();
+            fail("Borrowing from an exhausted pool should time out");
+        } catch (ServiceException ex) {
+            assertEquals(1, pool.getTimeoutCount());
+        }
+        assertTrue(pool.getMaxWaitTime() < 50);
+    }
+    
+    @Test
+    public void testEviction() throws Exception {
+        TestPool pool = new TestPool(1, 0);
+        pool.init();
+        PdfNLMContentExtractor failed = pool.borrow();
+        pool.evict(failed);
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(1, pool.getEvictionCount());
+        assertNotSame(failed, pool.borrow());
+        assertEquals(2, pool.created);
+    }
+    
+}